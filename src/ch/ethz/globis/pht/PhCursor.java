@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+/**
+ * A cursor for sequences of point operations on keys that are close to each other, 
+ * for example updates of moving objects.
+ * 
+ * The cursor remembers the path through the tree of the last operation. The next 
+ * operation starts with the deepest node on this path whose prefix matches the new key, 
+ * instead of starting at the root.
+ * 
+ * A cursor is not thread-safe. It detects modifications of the tree that are not performed
+ * via the cursor and falls back to starting at the root in this case.
+ *
+ * @param <T> value type
+ * @see PhTree#cursor()
+ */
+public interface PhCursor<T> {
+
+	/**
+	 * @param key
+	 * @return the value associated with the key or {@code null} if the key was not found
+	 * @see PhTree#get(long...)
+	 */
+	T get(long... key);
+
+	/**
+	 * @param key
+	 * @return {@code true} if the key exists in the tree
+	 * @see PhTree#contains(long...)
+	 */
+	boolean contains(long... key);
+
+	/**
+	 * @param key
+	 * @param value
+	 * @return the previously associated value or {@code null} if the key was not found
+	 * @see PhTree#put(long[], Object)
+	 */
+	T put(long[] key, T value);
+
+	/**
+	 * @param key
+	 * @return the associated value or {@code null} if the key was not found
+	 * @see PhTree#remove(long...)
+	 */
+	T remove(long... key);
+
+	/**
+	 * @param oldKey
+	 * @param newKey
+	 * @return the value associated with the updated key or {@code null}
+	 * @see PhTree#update(long[], long[])
+	 */
+	T update(long[] oldKey, long[] newKey);
+
+	/**
+	 * Forget the current path, the next operation starts at the root.
+	 */
+	void reset();
+}
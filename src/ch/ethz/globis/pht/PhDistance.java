@@ -31,4 +31,24 @@ public interface PhDistance {
 	 * @param outMax
 	 */
 	void toMBB(double distance, long[] center, long[] outMin, long[] outMax);
+
+	/**
+	 * Returns a lower bound for the distance between {@code v} and any point in the box
+	 * {@code [min, max]}. This is used to skip nodes during range and kNN queries.
+	 * The default implementation returns the distance to the closest point of the box,
+	 * which is found by clamping {@code v} to the box in every dimension. This is exact
+	 * for euclidean distances on order preserving encodings. 
+	 * 
+	 * @param v
+	 * @param min lower left corner of the box
+	 * @param max upper right corner of the box
+	 * @param buf buffer with the same length as {@code v}
+	 * @return Lower bound of the distance.
+	 */
+	default double distToBox(long[] v, long[] min, long[] max, long[] buf) {
+		for (int i = 0; i < buf.length; i++) {
+			buf[i] = min[i] > v[i] ? min[i] : (max[i] < v[i] ? max[i] : v[i]); 
+		}
+		return dist(v, buf);
+	}
 }
\ No newline at end of file
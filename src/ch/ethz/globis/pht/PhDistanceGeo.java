@@ -0,0 +1,168 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import ch.ethz.globis.pht.util.BitTools;
+
+
+/**
+ * Great-circle (haversine) distance for geographic coordinates in degrees, encoded as
+ * {@code double} values (see {@link ch.ethz.globis.pht.pre.EmptyPPF}).
+ *
+ * Longitude is expected in [-180, 180] and latitude in [-90, 90]. Other dimensions of the
+ * key are ignored by the distance and are not restricted by {@link #toMBB}.
+ *
+ * {@link #toMBB} returns the smallest lon/lat box that contains the circle. If the circle
+ * contains a pole or crosses the antimeridian, the box covers all longitudes.
+ * {@link #distToBox} returns the exact distance to a node's lon/lat box, so nodes on the far
+ * side of such a box are still skipped during range and kNN queries.
+ *
+ * @see PhDistance
+ */
+public class PhDistanceGeo implements PhDistance {
+
+	/** Mean earth radius in meters. */
+	public static final double EARTH_RADIUS_M = 6371008.8;
+
+	/** Distance in meters for keys {lon, lat}. */
+	public static final PhDistanceGeo THIS = new PhDistanceGeo(0, 1, EARTH_RADIUS_M);
+
+	/** Margin for rounding errors of MBBs, in degrees (about 1cm). */
+	private static final double EPS_DEG = 1e-7;
+
+	private final int dimLon;
+	private final int dimLat;
+	private final double radius;
+
+	/**
+	 * @param dimLon dimension that contains the longitude
+	 * @param dimLat dimension that contains the latitude
+	 * @param radius radius of the sphere, this defines the unit of the distance
+	 */
+	public PhDistanceGeo(int dimLon, int dimLat, double radius) {
+		this.dimLon = dimLon;
+		this.dimLat = dimLat;
+		this.radius = radius;
+	}
+
+	/**
+	 * Calculate the great-circle distance with the haversine formula.
+	 *
+	 * @see PhDistance#dist(long[], long[])
+	 */
+	@Override
+	public double dist(long[] v1, long[] v2) {
+		return dist(BitTools.toDouble(v1[dimLon]), BitTools.toDouble(v1[dimLat]),
+				BitTools.toDouble(v2[dimLon]), BitTools.toDouble(v2[dimLat]));
+	}
+
+	/**
+	 * @param lon1
+	 * @param lat1
+	 * @param lon2
+	 * @param lat2
+	 * @return The great-circle distance between two points given in degrees.
+	 */
+	public double dist(double lon1, double lat1, double lon2, double lat2) {
+		double phi1 = Math.toRadians(lat1);
+		double phi2 = Math.toRadians(lat2);
+		double sLat = Math.sin((phi2 - phi1) * 0.5);
+		double sLon = Math.sin(Math.toRadians(lon2 - lon1) * 0.5);
+		double a = sLat*sLat + Math.cos(phi1) * Math.cos(phi2) * sLon*sLon;
+		return 2 * radius * Math.asin(Math.min(1, Math.sqrt(a)));
+	}
+
+	@Override
+	public void toMBB(double distance, long[] center, long[] outMin,
+			long[] outMax) {
+		for (int i = 0; i < center.length; i++) {
+			outMin[i] = Long.MIN_VALUE;
+			outMax[i] = Long.MAX_VALUE;
+		}
+		double lon = BitTools.toDouble(center[dimLon]);
+		double lat = BitTools.toDouble(center[dimLat]);
+		double delta = distance / radius;
+		double dLat = Math.toDegrees(delta) + EPS_DEG;
+		double latMin = lat - dLat;
+		double latMax = lat + dLat;
+		double lonMin = -180;
+		double lonMax = 180;
+		if (latMin > -90 && latMax < 90) {
+			//No pole inside the circle, see "Finding Points Within a Distance of a
+			//Latitude/Longitude Using Bounding Coordinates", J. P. Matuschek
+			double dLon = Math.toDegrees(
+					Math.asin(Math.sin(delta) / Math.cos(Math.toRadians(lat)))) + EPS_DEG;
+			if (lon - dLon >= -180 && lon + dLon <= 180) {
+				lonMin = lon - dLon;
+				lonMax = lon + dLon;
+			}
+		}
+		outMin[dimLon] = BitTools.toSortableLong(lonMin);
+		outMax[dimLon] = BitTools.toSortableLong(lonMax);
+		outMin[dimLat] = BitTools.toSortableLong(Math.max(-90, latMin));
+		outMax[dimLat] = BitTools.toSortableLong(Math.min(90, latMax));
+	}
+
+	@Override
+	public double distToBox(long[] v, long[] min, long[] max, long[] buf) {
+		double lon = BitTools.toDouble(v[dimLon]);
+		double lat = BitTools.toDouble(v[dimLat]);
+		double lonMin = toDegrees(min[dimLon], -180, 180);
+		double lonMax = toDegrees(max[dimLon], -180, 180);
+		double latMin = toDegrees(min[dimLat], -90, 90);
+		double latMax = toDegrees(max[dimLat], -90, 90);
+		if (lon >= lonMin && lon <= lonMax) {
+			//The closest point is on the same meridian
+			if (lat < latMin) {
+				return Math.toRadians(latMin - lat) * radius;
+			}
+			if (lat > latMax) {
+				return Math.toRadians(lat - latMax) * radius;
+			}
+			return 0;
+		}
+		//The closest point is on one of the two meridian edges of the box
+		double d1 = distToMeridian(lon, lat, lonMin, latMin, latMax);
+		double d2 = distToMeridian(lon, lat, lonMax, latMin, latMax);
+		return Math.min(d1, d2);
+	}
+
+	/**
+	 * @return The distance between (lon, lat) and the meridian segment at lonM between
+	 * latMin and latMax.
+	 */
+	private double distToMeridian(double lon, double lat, double lonM,
+			double latMin, double latMax) {
+		double dLon = Math.abs(lon - lonM);
+		dLon = dLon > 180 ? 360 - dLon : dLon;
+		if (dLon >= 90) {
+			//The meridian segment lies on the far side, the distance along the meridian has
+			//its maximum at the antipode of the closest point on the opposite meridian.
+			//The minimum is therefore at one of the ends of the segment.
+			return Math.min(dist(lon, lat, lonM, latMin), dist(lon, lat, lonM, latMax));
+		}
+		//The distance along the meridian has a single minimum at the foot of the 
+		//perpendicular great circle.
+		double latC = Math.toDegrees(Math.atan(
+				Math.tan(Math.toRadians(lat)) / Math.cos(Math.toRadians(dLon))));
+		latC = latC < latMin ? latMin : (latC > latMax ? latMax : latC);
+		return dist(lon, lat, lonM, latC);
+	}
+
+	/**
+	 * Convert a node boundary to degrees. Node boundaries can be anywhere in the
+	 * {@code long} range, including NaN and infinity.
+	 */
+	private static double toDegrees(long l, double min, double max) {
+		double d = BitTools.toDouble(l);
+		if (Double.isNaN(d)) {
+			//NaN values lie beyond +/- infinity in the sortable encoding
+			return l < 0 ? min : max;
+		}
+		return d < min ? min : (d > max ? max : d);
+	}
+}
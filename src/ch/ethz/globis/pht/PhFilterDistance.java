@@ -18,11 +18,19 @@ public class PhFilterDistance implements PhFilter {
 	private long[] v;
 	private PhDistance dist;
 	private double maxDist;
+	private long[] buf;
+	private long[] bufMin;
+	private long[] bufMax;
 
 	public void set(long[] v, PhDistance dist, double maxDist) {
 		this.v = v;
 		this.dist = dist;
 		this.maxDist = maxDist;
+		if (buf == null || buf.length != v.length) {
+			buf = new long[v.length];
+			bufMin = new long[v.length];
+			bufMax = new long[v.length];
+		}
 	}
 
 	@Override
@@ -34,15 +42,11 @@ public class PhFilterDistance implements PhFilter {
 	public boolean isValid(int bitsToIgnore, long[] prefix) {
 		long maskMin = (-1L) << bitsToIgnore;
 		long maskMax = ~maskMin;
-		long[] buf = new long[prefix.length];
 		for (int i = 0; i < buf.length; i++) {
-			//if v is outside the node, return distance to closest edge,
-			//otherwise return v itself (assume possible distance=0)
-			long min = prefix[i] & maskMin;
-			long max = prefix[i] | maskMax;
-			buf[i] = min > v[i] ? min : (max < v[i] ? max : v[i]); 
+			bufMin[i] = prefix[i] & maskMin;
+			bufMax[i] = prefix[i] | maskMax;
 		}
-		return dist.dist(v, buf) <= maxDist;
+		return dist.distToBox(v, bufMin, bufMax, buf) <= maxDist;
 	}
 
 }
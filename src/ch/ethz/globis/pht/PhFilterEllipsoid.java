@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import ch.ethz.globis.pht.pre.PreProcessorPointF;
+
+/**
+ * Filter for axis aligned ellipsoids.
+ * A point {@code x} passes the filter if {@code sum(((x[i]-center[i])/radius[i])^2) <= 1}.
+ *
+ * Node classification is exact.
+ *
+ * @see PhFilterRegion
+ */
+public class PhFilterEllipsoid extends PhFilterRegion {
+
+	private final double[] center;
+	private final double[] invRadius;
+
+	/**
+	 *
+	 * @param pre preprocessor for converting keys
+	 * @param center center of the ellipsoid
+	 * @param radius semi-axes of the ellipsoid
+	 */
+	public PhFilterEllipsoid(PreProcessorPointF pre, double[] center, double[] radius) {
+		super(center.length, pre);
+		if (radius.length != center.length) {
+			throw new IllegalArgumentException("radius.length=" + radius.length +
+					" DIM=" + center.length);
+		}
+		this.center = center.clone();
+		this.invRadius = new double[radius.length];
+		for (int i = 0; i < radius.length; i++) {
+			invRadius[i] = 1./radius[i];
+		}
+	}
+
+	@Override
+	public boolean contains(double[] point) {
+		double d = 0;
+		for (int i = 0; i < center.length; i++) {
+			double x = (point[i] - center[i]) * invRadius[i];
+			d += x*x;
+		}
+		return d <= 1;
+	}
+
+	@Override
+	protected int classifyBox(double[] min, double[] max) {
+		double dMin = 0;
+		double dMax = 0;
+		for (int i = 0; i < center.length; i++) {
+			double c = center[i];
+			double lo = (min[i] - c) * invRadius[i];
+			double hi = (max[i] - c) * invRadius[i];
+			//closest point
+			if (lo > 0) {
+				dMin += lo*lo;
+			} else if (hi < 0) {
+				dMin += hi*hi;
+			}
+			//farthest corner
+			double far = Math.max(Math.abs(lo), Math.abs(hi));
+			dMax += far*far;
+		}
+		if (dMin > 1) {
+			return OUTSIDE;
+		}
+		return dMax <= 1 ? INSIDE : PARTIAL;
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import ch.ethz.globis.pht.pre.PreProcessorPointF;
+
+/**
+ * Filter for the intersection of half-spaces, i.e. a convex polytope.
+ * A point {@code x} passes the filter if {@code normal[j] * x <= offset[j]} for all
+ * half-spaces {@code j}.
+ *
+ * Node classification is exact for each individual half-space. For the intersection
+ * it is conservative: a node that is outside the polytope but crosses every single
+ * boundary plane is classified as {@link #PARTIAL}.
+ *
+ * @see PhFilterRegion
+ */
+public class PhFilterHalfSpaces extends PhFilterRegion {
+
+	private final int DIM;
+	private final double[][] normals;
+	private final double[] offsets;
+
+	/**
+	 *
+	 * @param pre preprocessor for converting keys
+	 * @param normals normal vectors [nHalfSpaces][DIM], pointing outwards
+	 * @param offsets offsets [nHalfSpaces]
+	 */
+	public PhFilterHalfSpaces(PreProcessorPointF pre, double[][] normals, double[] offsets) {
+		this(normals[0].length, pre, normals.length);
+		if (normals.length != offsets.length) {
+			throw new IllegalArgumentException("normals.length=" + normals.length +
+					" offsets.length=" + offsets.length);
+		}
+		for (int i = 0; i < normals.length; i++) {
+			setHalfSpace(i, normals[i], offsets[i]);
+		}
+	}
+
+	protected PhFilterHalfSpaces(int dim, PreProcessorPointF pre, int nHalfSpaces) {
+		super(dim, pre);
+		this.DIM = dim;
+		this.normals = new double[nHalfSpaces][];
+		this.offsets = new double[nHalfSpaces];
+	}
+
+	protected final void setHalfSpace(int i, double[] normal, double offset) {
+		if (normal.length != DIM) {
+			throw new IllegalArgumentException("normal.length=" + normal.length + " DIM=" + DIM);
+		}
+		normals[i] = normal.clone();
+		offsets[i] = offset;
+	}
+
+	/**
+	 * Add the axis aligned bounding box of the region as additional half-spaces. This
+	 * makes node classification exact for convex polygons in 2D (separating axis theorem).
+	 * @param first index of the first of the 2*DIM half-spaces
+	 * @param min
+	 * @param max
+	 */
+	protected final void setBoundingBox(int first, double[] min, double[] max) {
+		for (int d = 0; d < DIM; d++) {
+			double[] n = new double[DIM];
+			n[d] = 1;
+			setHalfSpace(first + 2*d, n, max[d]);
+			n[d] = -1;
+			setHalfSpace(first + 2*d + 1, n, -min[d]);
+		}
+	}
+
+	@Override
+	public boolean contains(double[] point) {
+		for (int j = 0; j < normals.length; j++) {
+			double[] n = normals[j];
+			double s = 0;
+			for (int d = 0; d < DIM; d++) {
+				if (n[d] != 0) {
+					s += n[d] * point[d];
+				}
+			}
+			if (!(s <= offsets[j])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected int classifyBox(double[] min, double[] max) {
+		boolean isInside = true;
+		for (int j = 0; j < normals.length; j++) {
+			double[] n = normals[j];
+			//smallest and largest value of n*x inside the box
+			double lo = 0;
+			double hi = 0;
+			for (int d = 0; d < DIM; d++) {
+				double nd = n[d];
+				if (nd > 0) {
+					lo += nd * min[d];
+					hi += nd * max[d];
+				} else if (nd < 0) {
+					lo += nd * max[d];
+					hi += nd * min[d];
+				}
+			}
+			if (lo > offsets[j]) {
+				return OUTSIDE;
+			}
+			//This is also 'false' for NaN
+			if (!(hi <= offsets[j])) {
+				isInside = false;
+			}
+		}
+		return isInside ? INSIDE : PARTIAL;
+	}
+
+	public int getHalfSpaceCount() {
+		return normals.length;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import ch.ethz.globis.pht.pre.PreProcessorPointF;
+
+/**
+ * Filter for oriented (rotated) boxes.
+ * A point {@code x} passes the filter if {@code |axis[j] * (x - center)| <= halfLength[j]}
+ * for all axes {@code j}.
+ *
+ * The axis aligned bounding box of the oriented box is checked as well, which makes node
+ * classification exact in 2D.
+ *
+ * @see PhFilterRegion
+ */
+public class PhFilterOrientedBox extends PhFilterHalfSpaces {
+
+	/**
+	 *
+	 * @param pre preprocessor for converting keys
+	 * @param center center of the box
+	 * @param axes orthonormal axes of the box [DIM][DIM]
+	 * @param halfLengths half of the extent of the box along each axis
+	 */
+	public PhFilterOrientedBox(PreProcessorPointF pre, double[] center, double[][] axes,
+			double[] halfLengths) {
+		super(center.length, pre, 4*center.length);
+		final int DIM = center.length;
+		if (axes.length != DIM || halfLengths.length != DIM) {
+			throw new IllegalArgumentException("axes.length=" + axes.length +
+					" halfLengths.length=" + halfLengths.length + " DIM=" + DIM);
+		}
+		double[] min = new double[DIM];
+		double[] max = new double[DIM];
+		for (int j = 0; j < DIM; j++) {
+			double[] a = axes[j];
+			double c = 0;
+			for (int d = 0; d < DIM; d++) {
+				c += a[d]*center[d];
+			}
+			setHalfSpace(2*j, a, c + halfLengths[j]);
+			double[] aNeg = new double[DIM];
+			for (int d = 0; d < DIM; d++) {
+				aNeg[d] = -a[d];
+			}
+			setHalfSpace(2*j + 1, aNeg, -c + halfLengths[j]);
+		}
+		for (int d = 0; d < DIM; d++) {
+			double ext = 0;
+			for (int j = 0; j < DIM; j++) {
+				ext += Math.abs(axes[j][d]) * halfLengths[j];
+			}
+			min[d] = center[d] - ext;
+			max[d] = center[d] + ext;
+		}
+		setBoundingBox(2*DIM, min, max);
+	}
+}
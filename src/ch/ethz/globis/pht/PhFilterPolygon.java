@@ -0,0 +1,78 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import ch.ethz.globis.pht.pre.PreProcessorPointF;
+
+/**
+ * Filter for convex polygons, for example for geofence queries.
+ * The polygon is defined on the first two dimensions, any further dimensions are
+ * not constrained by the filter.
+ *
+ * The vertices can be given in clockwise or counter-clockwise order. Node classification is
+ * exact because the edges as well as the bounding box of the polygon are checked.
+ *
+ * @see PhFilterRegion
+ */
+public class PhFilterPolygon extends PhFilterHalfSpaces {
+
+	/**
+	 *
+	 * @param dim dimensionality of the tree, at least 2
+	 * @param pre preprocessor for converting keys
+	 * @param vertices vertices [n][2] of a convex polygon
+	 */
+	public PhFilterPolygon(int dim, PreProcessorPointF pre, double[][] vertices) {
+		super(dim, pre, vertices.length + 4);
+		if (dim < 2 || vertices.length < 3) {
+			throw new IllegalArgumentException("dim=" + dim + " vertices=" + vertices.length);
+		}
+		final int N = vertices.length;
+		double area2 = 0;
+		for (int i = 0; i < N; i++) {
+			double[] v1 = vertices[i];
+			double[] v2 = vertices[(i+1) % N];
+			area2 += v1[0]*v2[1] - v2[0]*v1[1];
+		}
+		if (area2 == 0) {
+			throw new IllegalArgumentException("Polygon is degenerate.");
+		}
+		//orientation: +1 for counter-clockwise
+		double sign = area2 > 0 ? 1 : -1;
+
+		double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+		double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		for (int i = 0; i < N; i++) {
+			double[] v1 = vertices[i];
+			double[] v2 = vertices[(i+1) % N];
+			double[] v3 = vertices[(i+2) % N];
+			double ex = v2[0] - v1[0];
+			double ey = v2[1] - v1[1];
+			double cross = ex*(v3[1]-v2[1]) - ey*(v3[0]-v2[0]);
+			if (cross*sign < 0) {
+				throw new IllegalArgumentException("Polygon is not convex at vertex " + (i+1));
+			}
+			//outward normal of edge v1->v2
+			double[] n = new double[dim];
+			n[0] = ey*sign;
+			n[1] = -ex*sign;
+			setHalfSpace(i, n, n[0]*v1[0] + n[1]*v1[1]);
+			for (int d = 0; d < 2; d++) {
+				min[d] = Math.min(min[d], v1[d]);
+				max[d] = Math.max(max[d], v1[d]);
+			}
+		}
+		//bounding box for the first two dimensions
+		for (int d = 0; d < 2; d++) {
+			double[] n = new double[dim];
+			n[d] = 1;
+			setHalfSpace(N + 2*d, n, max[d]);
+			n[d] = -1;
+			setHalfSpace(N + 2*d + 1, n, -min[d]);
+		}
+	}
+}
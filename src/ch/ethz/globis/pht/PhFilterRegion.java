@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import ch.ethz.globis.pht.pre.PreProcessorPointF;
+
+/**
+ * Base class for filters that describe a region in space, such as polygons or ellipsoids.
+ *
+ * In addition to the plain {@link PhFilter} contract, a region filter can classify the
+ * prefix box of a node as {@link #OUTSIDE}, {@link #PARTIAL} or {@link #INSIDE}. Query
+ * iterators use this to prune nodes that are outside and to skip all further checks for
+ * nodes that are completely inside the region.
+ *
+ * The region is defined in {@code double} space. Keys are converted with the
+ * {@link PreProcessorPointF} of the tree, e.g. {@code new EmptyPPF()} for a default
+ * {@code PhTreeF} or {@code new IntegerPP(1)} for plain integer keys. The preprocessor must
+ * preserve the ordering of values.
+ *
+ * Instances are not thread safe, they reuse internal buffers to avoid allocating objects
+ * during traversal.
+ */
+public abstract class PhFilterRegion implements PhFilter {
+
+	/** The node does not intersect with the region. */
+	public static final int OUTSIDE = 0;
+	/** The node may or may not intersect with the region. */
+	public static final int PARTIAL = 1;
+	/** The node lies completely inside the region. */
+	public static final int INSIDE = 2;
+
+	private final PreProcessorPointF pre;
+	private final long[] lMin;
+	private final long[] lMax;
+	private final double[] bufMin;
+	private final double[] bufMax;
+	private final double[] bufPoint;
+
+	protected PhFilterRegion(int dim, PreProcessorPointF pre) {
+		this.pre = pre;
+		this.lMin = new long[dim];
+		this.lMax = new long[dim];
+		this.bufMin = new double[dim];
+		this.bufMax = new double[dim];
+		this.bufPoint = new double[dim];
+	}
+
+	@Override
+	public boolean isValid(long[] key) {
+		pre.post(key, bufPoint);
+		return contains(bufPoint);
+	}
+
+	@Override
+	public boolean isValid(int bitsToIgnore, long[] prefix) {
+		return classify(bitsToIgnore, prefix) != OUTSIDE;
+	}
+
+	/**
+	 * Classify all keys with the given prefix.
+	 * @param bitsToIgnore trailing bits to ignore
+	 * @param prefix
+	 * @return {@link #OUTSIDE}, {@link #PARTIAL} or {@link #INSIDE}
+	 */
+	public int classify(int bitsToIgnore, long[] prefix) {
+		if (bitsToIgnore >= 64) {
+			return PARTIAL;
+		}
+		long maskMin = (-1L) << bitsToIgnore;
+		long maskMax = ~maskMin;
+		for (int i = 0; i < prefix.length; i++) {
+			lMin[i] = prefix[i] & maskMin;
+			lMax[i] = prefix[i] | maskMax;
+		}
+		pre.post(lMin, bufMin);
+		pre.post(lMax, bufMax);
+		for (int i = 0; i < bufMin.length; i++) {
+			//NaN may occur at the border of the encoded 'double' space
+			if (Double.isNaN(bufMin[i]) || Double.isNaN(bufMax[i])) {
+				return PARTIAL;
+			}
+		}
+		return classifyBox(bufMin, bufMax);
+	}
+
+	/**
+	 *
+	 * @param point
+	 * @return True if the point lies inside the region.
+	 */
+	public abstract boolean contains(double[] point);
+
+	/**
+	 * Classify an axis aligned box. It is always correct to return {@link #PARTIAL}, but
+	 * implementations should return {@link #OUTSIDE} or {@link #INSIDE} whenever possible.
+	 * @param min lower left corner of the box
+	 * @param max upper right corner of the box
+	 * @return {@link #OUTSIDE}, {@link #PARTIAL} or {@link #INSIDE}
+	 */
+	protected abstract int classifyBox(double[] min, double[] max);
+
+}
@@ -7,10 +7,14 @@
 package ch.ethz.globis.pht;
 
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import ch.ethz.globis.pht.util.PhIteratorBase;
 import ch.ethz.globis.pht.util.PhMapper;
+import ch.ethz.globis.pht.util.PhTreeMemoryStats;
 import ch.ethz.globis.pht.util.PhTreeQStats;
+import ch.ethz.globis.pht.hd.PhTreeHD;
 import ch.ethz.globis.pht.v8.PhTree8;
 
 /**
@@ -41,6 +45,31 @@ public interface PhTree<T> {
 
 	public abstract PhTreeHelper.Stats getStatsIdealNoNode();
 
+	/**
+	 * In contrast to {@link #getStats()} and {@link #getQuality()}, this does not traverse
+	 * the tree. The statistics are updated whenever nodes are created, resized or removed.
+	 * @return A snapshot of the memory statistics of the tree.
+	 */
+	public PhTreeMemoryStats getMemoryStats();
+
+	/**
+	 * Trim the arrays of all nodes and switch nodes to a more compact representation
+	 * where possible. This is useful after removing many entries.
+	 * Iterators that are in use become invalid.
+	 * @return estimated number of bytes that were reclaimed
+	 */
+	public long compact();
+
+	/**
+	 * Incremental version of {@link #compact()} that returns after the given time budget
+	 * is used up. Every call processes at least one node and continues where the previous
+	 * call stopped; when all nodes are processed, the next call starts a new pass.
+	 * Any modification of the tree restarts the pass at the root.
+	 * @param maxNanos time budget in nanoseconds
+	 * @return estimated number of bytes that were reclaimed by this call
+	 */
+	public long compact(long maxNanos);
+
 
 	/**
 	 * Insert an entry associated with a k dimensional key.
@@ -54,6 +83,46 @@ public interface PhTree<T> {
 
 	public abstract T get(long ... key);
 
+	/**
+	 * Batched lookup of several keys. The keys are processed in z-order, consecutive
+	 * lookups reuse the common part of their path in the tree.
+	 * @param keys the keys to look up
+	 * @param out the values associated with the keys or {@code null} if a key was not found,
+	 * the array must have at least the length of 'keys'.
+	 */
+	public abstract void getAll(long[][] keys, T[] out);
+
+	/**
+	 * Batched lookup of several keys.
+	 * @param keys the keys to look up
+	 * @param out the values associated with the keys or {@code null} if a key was not found
+	 * @param isSorted {@code true} if the keys are already sorted in z-order, see 
+	 * {@link PhTreeHelper#compareZOrder(long[], long[])}. Unsorted keys are also
+	 * processed correctly, but less efficiently.
+	 * @param parallel {@code true} if the lookups may be distributed over several threads.
+	 * This requires that the tree is not modified concurrently.
+	 * @see #getAll(long[][], Object[])
+	 */
+	public abstract void getAll(long[][] keys, T[] out, boolean isSorted, boolean parallel);
+
+	/**
+	 * Batched version of {@link #contains(long...)}, see {@link #getAll(long[][], Object[])}.
+	 * @param keys the keys to look up
+	 * @param out {@code true} for every key that was found
+	 */
+	public abstract void containsAll(long[][] keys, boolean[] out);
+
+	/**
+	 * Batched version of {@link #contains(long...)}, 
+	 * see {@link #getAll(long[][], Object[], boolean, boolean)}.
+	 * @param keys the keys to look up
+	 * @param out {@code true} for every key that was found
+	 * @param isSorted {@code true} if the keys are already sorted in z-order
+	 * @param parallel {@code true} if the lookups may be distributed over several threads
+	 */
+	public abstract void containsAll(long[][] keys, boolean[] out, boolean isSorted, 
+			boolean parallel);
+
 
 	/**
 	 * Remove the entry associated with a k dimensional key.
@@ -62,6 +131,64 @@ public interface PhTree<T> {
 	 */
 	public abstract T remove(long... key);
 
+	/**
+	 * Remove all entries inside the given rectangle. Sub-nodes that lie completely inside 
+	 * the rectangle are removed as a whole, their entries are not compared with the
+	 * rectangle and not removed one by one. The removed sub-trees are still traversed
+	 * once to update the size and the statistics of the tree.
+	 * @param min
+	 * @param max
+	 * @return the number of removed entries
+	 */
+	public abstract int removeRange(long[] min, long[] max);
+
+	/**
+	 * Insert an entry only if the key does not exist yet. {@code null} values are not inserted.
+	 * @param key
+	 * @param value
+	 * @return the value associated with the key or {@code null} if the key was inserted
+	 */
+	public abstract T putIfAbsent(long[] key, T value);
+
+	/**
+	 * If the key does not exist yet, the function is called to compute a value. The value
+	 * is inserted unless it is {@code null}. 
+	 * @param key
+	 * @param mappingFunction
+	 * @return the current (existing or computed) value associated with the key
+	 */
+	public abstract T computeIfAbsent(long[] key, Function<long[], ? extends T> mappingFunction);
+
+	/**
+	 * If the key exists, the function is called to compute a new value from the key and 
+	 * the current value. If the new value is {@code null}, the entry is removed.
+	 * @param key
+	 * @param remappingFunction
+	 * @return the new value associated with the key or {@code null} if there is none
+	 */
+	public abstract T computeIfPresent(long[] key, 
+			BiFunction<long[], ? super T, ? extends T> remappingFunction);
+
+	/**
+	 * Computes a new value from the key and its current value ({@code null} if the key does
+	 * not exist). If the new value is {@code null}, the entry is removed or not inserted.
+	 * @param key
+	 * @param remappingFunction
+	 * @return the new value associated with the key or {@code null} if there is none
+	 */
+	public abstract T compute(long[] key, BiFunction<long[], ? super T, ? extends T> remappingFunction);
+
+	/**
+	 * If the key does not exist, the value is inserted. Otherwise the value is combined with
+	 * the current value. If the result is {@code null}, the entry is removed.
+	 * @param key
+	 * @param value
+	 * @param remappingFunction
+	 * @return the new value associated with the key or {@code null} if there is none
+	 */
+	public abstract T merge(long[] key, T value, 
+			BiFunction<? super T, ? super T, ? extends T> remappingFunction);
+
 	public abstract String toStringPlain();
 
 	public abstract String toStringTree();
@@ -78,6 +205,27 @@ public interface PhTree<T> {
 	 */
 	public abstract PhQuery<T> query(long[] min, long[] max);
 
+	/**
+	 * Performs a rectangular window query with an additional filter. Nodes are pruned with
+	 * {@link PhFilter#isValid(int, long[])}. For {@link PhFilterRegion} filters, entries in
+	 * nodes that lie completely inside the region are not checked individually. 
+	 * @param min Minimum values
+	 * @param max Maximum values
+	 * @param filter The filter
+	 * @return Result iterator.
+	 */
+	public abstract PhQuery<T> query(long[] min, long[] max, PhFilter filter);
+
+	/**
+	 * Performs a query for the union of several rectangular windows. The tree is traversed
+	 * only once and every matching entry is returned only once, even if it is contained 
+	 * in several windows.
+	 * @param mins Minimum values of each window [nWindows][DIM]
+	 * @param maxs Maximum values of each window [nWindows][DIM]
+	 * @return Result iterator.
+	 */
+	public abstract PhQueryMulti<T> query(long[][] mins, long[][] maxs);
+
 	public abstract int getDim();
 
 	/**
@@ -134,6 +282,29 @@ public interface PhTree<T> {
 	 */
 	public T update(long[] oldKey, long[] newKey);
 
+	/**
+	 * Update the keys of several entries, for example all moving objects of a time step.
+	 * The updates are grouped by the nodes that contain their old keys. Entries that stay 
+	 * in their node are changed in place, other entries are removed and then inserted 
+	 * again at the lowest node that contains the old and the new key. Nodes are merged at 
+	 * most once per batch.
+	 * If the new key of an update already exists or is the old key of another update, 
+	 * the result depends on the order in which the updates are applied.
+	 * @param oldKeys
+	 * @param newKeys
+	 * @return the number of updated entries
+	 * @see #update(long[], long[])
+	 */
+	public int updateAll(long[][] oldKeys, long[][] newKeys);
+
+	/**
+	 * Create a cursor for point operations on keys that are close to each other. 
+	 * Each operation of the cursor starts with the deepest node of the previous operation 
+	 * that is also a prefix of the new key.
+	 * @return a new cursor
+	 */
+	public PhCursor<T> cursor();
+
 	/**
 	 * Same as {@link #query(long[], long[])}, except that it returns a list
 	 * instead of an iterator. This may be faster for small result sets. 
@@ -148,11 +319,15 @@ public interface PhTree<T> {
 
 	/**
 	 * Create a new tree with the specified number of dimensions.
+	 * For more than 64 dimensions this returns a {@link PhTreeHD}.
 	 * 
 	 * @param dim number of dimensions
 	 * @return PhTree
 	 */
 	public static <T> PhTree<T> create(int dim) {
+		if (dim > 64) {
+			return new PhTreeHD<T>(dim);
+		}
 		return new PhTree8<T>(dim);
 	}
 
@@ -163,6 +338,9 @@ public interface PhTree<T> {
 	 * @return PhTree
 	 */
 	public static <T> PhTree<T> create(PhTreeConfig cfg) {
+		if (cfg.getDimActual() > 64) {
+			return new PhTreeHD<T>(cfg);
+		}
 		return new PhTree8<T>(cfg);
 	}
 
@@ -175,7 +353,7 @@ public interface PhTree<T> {
 	 * @deprecated Depth is not required anymore.
 	 */
 	public static <T> PhTree<T> create(int dim, int depth) {
-		return new PhTree8<T>(dim);
+		return create(dim);
 	}
 
 	public static interface PhIterator<T> extends PhIteratorBase<long[], T, PhEntry<T>> {
@@ -209,6 +387,16 @@ public interface PhTree<T> {
 		void reset(long[] min, long[] max);
 	}
 
+	public static interface PhQueryMulti<T> extends PhQuery<T> {
+
+		/**
+		 * Reset the query with new windows.
+		 * @param mins Minimum values of each window
+		 * @param maxs Maximum values of each window
+		 */
+		void reset(long[][] mins, long[][] maxs);
+	}
+
 	public static interface PhKnnQuery<T> extends PhIterator<T> {
 
 		/**
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import ch.ethz.globis.pht.PhTree.PhExtent;
+import ch.ethz.globis.pht.PhTree.PhIterator;
+import ch.ethz.globis.pht.PhTree.PhKnnQuery;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+import ch.ethz.globis.pht.util.PhIteratorBase;
+
+/**
+ * k-dimensional index (quad-/oct-/n-tree) for 32 bit integer keys.
+ * Supports key/value pairs.
+ *
+ * Keys are mapped to the unsigned range [0, 2^32) of the internal tree, which preserves
+ * their order and distances. The internal tree is configured with a depth of 32 bits,
+ * see {@link PhTreeConfig#setDepth(int)}, so it never stores the 32 upper bits
+ * of the keys and negative and positive keys are not separated at the root.
+ *
+ * @param <T> The value type of the tree
+ */
+public class PhTree32<T> {
+
+	private final PhTree<T> pht;
+
+	/**
+	 * Create a new tree with the specified number of dimensions.
+	 *
+	 * @param dim number of dimensions
+	 * @return PhTree32
+	 */
+	public static <T> PhTree32<T> create(int dim) {
+		PhTreeConfig cfg = new PhTreeConfig(dim);
+		cfg.setDepth(32);
+		return new PhTree32<T>(cfg);
+	}
+
+	/**
+	 * Create a new tree with a configuration instance. The tree uses a copy of the 
+	 * configuration with the depth set to 32 bits, the configuration itself is not modified.
+	 *
+	 * @param cfg configuration instance
+	 * @return PhTree32
+	 */
+	public static <T> PhTree32<T> create(PhTreeConfig cfg) {
+		PhTreeConfig cfg32 = new PhTreeConfig(cfg);
+		cfg32.setDepth(32);
+		return new PhTree32<T>(cfg32);
+	}
+
+	private PhTree32(PhTreeConfig cfg) {
+		this.pht = PhTree.create(cfg);
+	}
+
+	private static long[] pre(int[] key) {
+		long[] lKey = new long[key.length];
+		pre(key, lKey);
+		return lKey;
+	}
+
+	private static void pre(int[] key, long[] lKey) {
+		for (int i = 0; i < key.length; i++) {
+			lKey[i] = key[i] - (long)Integer.MIN_VALUE;
+		}
+	}
+
+	private static int[] post(long[] lKey) {
+		int[] key = new int[lKey.length];
+		for (int i = 0; i < key.length; i++) {
+			key[i] = (int) (lKey[i] + Integer.MIN_VALUE);
+		}
+		return key;
+	}
+
+	public int size() {
+		return pht.size();
+	}
+
+	/**
+	 * Insert an entry associated with a k dimensional key.
+	 * @param key
+	 * @param value
+	 * @return the previously associated value or {@code null} if the key was found
+	 */
+	public T put(int[] key, T value) {
+		return pht.put(pre(key), value);
+	}
+
+	public boolean contains(int... key) {
+		return pht.contains(pre(key));
+	}
+
+	public T get(int... key) {
+		return pht.get(pre(key));
+	}
+
+	/**
+	 * Remove the entry associated with a k dimensional key.
+	 * @param key
+	 * @return the associated value or {@code null} if the key was found
+	 */
+	public T remove(int... key) {
+		return pht.remove(pre(key));
+	}
+
+	/**
+	 * Remove all entries inside the given rectangle, see {@link PhTree#removeRange(long[], long[])}.
+	 * @param min
+	 * @param max
+	 * @return the number of removed entries
+	 */
+	public int removeRange(int[] min, int[] max) {
+		return pht.removeRange(pre(min), pre(max));
+	}
+
+	/**
+	 * See {@link PhTree#putIfAbsent(long[], Object)}.
+	 * @param key
+	 * @param value
+	 * @return the value associated with the key or {@code null} if the key was inserted
+	 */
+	public T putIfAbsent(int[] key, T value) {
+		return pht.putIfAbsent(pre(key), value);
+	}
+
+	/**
+	 * See {@link PhTree#computeIfAbsent(long[], Function)}.
+	 * @param key
+	 * @param mappingFunction
+	 * @return the current (existing or computed) value associated with the key
+	 */
+	public T computeIfAbsent(int[] key, Function<int[], ? extends T> mappingFunction) {
+		return pht.computeIfAbsent(pre(key), k -> mappingFunction.apply(key));
+	}
+
+	/**
+	 * See {@link PhTree#computeIfPresent(long[], BiFunction)}.
+	 * @param key
+	 * @param remappingFunction
+	 * @return the new value associated with the key or {@code null} if there is none
+	 */
+	public T computeIfPresent(int[] key,
+			BiFunction<int[], ? super T, ? extends T> remappingFunction) {
+		return pht.computeIfPresent(pre(key), (k, v) -> remappingFunction.apply(key, v));
+	}
+
+	/**
+	 * See {@link PhTree#compute(long[], BiFunction)}.
+	 * @param key
+	 * @param remappingFunction
+	 * @return the new value associated with the key or {@code null} if there is none
+	 */
+	public T compute(int[] key, BiFunction<int[], ? super T, ? extends T> remappingFunction) {
+		return pht.compute(pre(key), (k, v) -> remappingFunction.apply(key, v));
+	}
+
+	/**
+	 * See {@link PhTree#merge(long[], Object, BiFunction)}.
+	 * @param key
+	 * @param value
+	 * @param remappingFunction
+	 * @return the new value associated with the key or {@code null} if there is none
+	 */
+	public T merge(int[] key, T value,
+			BiFunction<? super T, ? super T, ? extends T> remappingFunction) {
+		return pht.merge(pre(key), value, remappingFunction);
+	}
+
+	/**
+	 * Update the key of an entry. Update may fail if the old key does not exist, or if the new
+	 * key already exists.
+	 * @param oldKey
+	 * @param newKey
+	 * @return the value (can be {@code null}) associated with the updated key if the key could be
+	 * updated, otherwise {@code null}.
+	 */
+	public T update(int[] oldKey, int[] newKey) {
+		return pht.update(pre(oldKey), pre(newKey));
+	}
+
+	public PhExtent32<T> queryExtent() {
+		return new PhExtent32<T>(pht.queryExtent());
+	}
+
+	/**
+	 * Performs a rectangular window query. The parameters are the min and max keys which
+	 * contain the minimum respectively the maximum keys in every dimension.
+	 * @param min Minimum values
+	 * @param max Maximum values
+	 * @return Result iterator.
+	 */
+	public PhQuery32<T> query(int[] min, int[] max) {
+		return new PhQuery32<>(pht.query(pre(min), pre(max)), pht.getDim());
+	}
+
+	/**
+	 * Find all entries within a given distance from a center point.
+	 * @param dist Maximum distance
+	 * @param center Center point
+	 * @return All entries with at most distance `dist` from `center`.
+	 */
+	public PhRangeQuery32<T> rangeQuery(double dist, int... center) {
+		return new PhRangeQuery32<>(pht.rangeQuery(dist, pre(center)), pht.getDim());
+	}
+
+	/**
+	 * Locate nearest neighbours for a given point in space.
+	 * @param nMin number of entries to be returned. More entries may or may not be returned if
+	 * several points have the same distance.
+	 * @param key
+	 * @return KNN query iterator.
+	 */
+	public PhKnnQuery32<T> nearestNeighbour(int nMin, int... key) {
+		return new PhKnnQuery32<>(pht.nearestNeighbour(nMin, pre(key)), pht.getDim());
+	}
+
+	/**
+	 * Same as {@link #query(int[], int[])}, except that it returns a list
+	 * instead of an iterator. This may be faster for small result sets.
+	 * @param min
+	 * @param max
+	 * @return List of query results
+	 */
+	public List<PhEntry32<T>> queryAll(int[] min, int[] max) {
+		return pht.queryAll(pre(min), pre(max), Integer.MAX_VALUE, PhPredicate.ACCEPT_ALL,
+				e -> new PhEntry32<T>(post(e.getKey()), e.getValue()));
+	}
+
+	/**
+	 * Same as {@link #queryAll(int[], int[])} with a filter and a mapper, see
+	 * {@link PhTree#queryAll(long[], long[], int, PhPredicate, 
+	 * ch.ethz.globis.pht.util.PhMapper)}.
+	 * @param min
+	 * @param max
+	 * @param maxResults maximum number of results
+	 * @param filter receives the keys of all entries inside the rectangle
+	 * @param mapper maps the accepted entries to the results
+	 * @return List of query results
+	 */
+	public <R> List<R> queryAll(int[] min, int[] max, int maxResults,
+			Predicate<int[]> filter, Function<PhEntry32<T>, R> mapper) {
+		return pht.queryAll(pre(min), pre(max), maxResults, 
+				k -> filter.test(post(k)),
+				e -> mapper.apply(new PhEntry32<T>(post(e.getKey()), e.getValue())));
+	}
+
+	public int getDim() {
+		return pht.getDim();
+	}
+
+	/**
+	 * Clear the tree.
+	 */
+	public void clear() {
+		pht.clear();
+	}
+
+	/**
+	 *
+	 * @return the internal PhTree that backs this PhTree32.
+	 */
+	public PhTree<T> getInternalTree() {
+		return pht;
+	}
+
+	public static class PhIterator32<T> implements PhIteratorBase<int[], T, PhEntry32<T>> {
+		private final PhIterator<T> iter;
+
+		private PhIterator32(PhIterator<T> iter) {
+			this.iter = iter;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iter.hasNext();
+		}
+
+		@Override
+		public T next() {
+			return nextValue();
+		}
+
+		@Override
+		public PhEntry32<T> nextEntry() {
+			PhEntry<T> e = iter.nextEntryReuse();
+			return new PhEntry32<T>(post(e.getKey()), e.getValue());
+		}
+
+		@Override
+		public int[] nextKey() {
+			return post(iter.nextEntryReuse().getKey());
+		}
+
+		@Override
+		public T nextValue() {
+			return iter.nextValue();
+		}
+
+		@Override
+		public void remove() {
+			iter.remove();
+		}
+	}
+
+	public static class PhExtent32<T> extends PhIterator32<T> {
+		private final PhExtent<T> iter;
+		private PhExtent32(PhExtent<T> iter) {
+			super(iter);
+			this.iter = iter;
+		}
+
+		public PhExtent32<T> reset() {
+			iter.reset();
+			return this;
+		}
+	}
+
+	public static class PhQuery32<T> extends PhIterator32<T> {
+		private final long[] lMin, lMax;
+		private final PhQuery<T> q;
+
+		private PhQuery32(PhQuery<T> iter, int DIM) {
+			super(iter);
+			q = iter;
+			lMin = new long[DIM];
+			lMax = new long[DIM];
+		}
+
+		public void reset(int[] lower, int[] upper) {
+			pre(lower, lMin);
+			pre(upper, lMax);
+			q.reset(lMin, lMax);
+		}
+	}
+
+	public static class PhKnnQuery32<T> extends PhIterator32<T> {
+		private final long[] lCenter;
+		private final PhKnnQuery<T> q;
+
+		private PhKnnQuery32(PhKnnQuery<T> iter, int DIM) {
+			super(iter);
+			q = iter;
+			lCenter = new long[DIM];
+		}
+
+		public PhKnnQuery32<T> reset(int nMin, PhDistance dist, int... center) {
+			pre(center, lCenter);
+			q.reset(nMin, dist, lCenter);
+			return this;
+		}
+	}
+
+	public static class PhRangeQuery32<T> extends PhIterator32<T> {
+		private final long[] lCenter;
+		private final PhRangeQuery<T> q;
+
+		private PhRangeQuery32(PhRangeQuery<T> iter, int DIM) {
+			super(iter);
+			this.q = iter;
+			this.lCenter = new long[DIM];
+		}
+
+		public PhRangeQuery32<T> reset(double range, int... center) {
+			pre(center, lCenter);
+			q.reset(range, lCenter);
+			return this;
+		}
+	}
+
+	/**
+	 * Entry class for int entries.
+	 *
+	 * @param <T>
+	 */
+	public static class PhEntry32<T> {
+		private final int[] key;
+		private final T value;
+		public PhEntry32(int[] key, T value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		public int[] getKey() {
+			return key;
+		}
+
+		public T getValue() {
+			return value;
+		}
+	}
+}
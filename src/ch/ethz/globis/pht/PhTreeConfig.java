@@ -6,6 +6,8 @@
  */
 package ch.ethz.globis.pht;
 
+import java.util.Arrays;
+
 public class PhTreeConfig {
 
 	/** Concurrency via copy on write. */
@@ -16,20 +18,67 @@ public class PhTreeConfig {
 	public static final int CONCURRENCY_OL_COW = 2;
 	/** Concurrency via copy on write and hand over hand locking. */
 	public static final int CONCURRENCY_HOH_COW = 3;
-	
+
+	/** Values are arbitrary objects. */
+	public static final int VALUES_OBJECT = 0;
+	/** Values are Long objects, nodes store them in primitive long[] arrays. */
+	public static final int VALUES_LONG = 1;
+	/** 
+	 * Key-only trees, nodes do not store values. Lookups return a shared placeholder 
+	 * object for existing keys, this should only be used with {@code PhTree<Object>}.
+	 */
+	public static final int VALUES_NONE = 2;
+	/** Values are Integer objects, nodes store them in primitive int[] arrays. */
+	public static final int VALUES_INT = 3;
+
+	/** Node indexes (NI) are crit-bit trees. */
+	public static final int NI_INDEX_CRITBIT = 0;
+	/**
+	 * Node indexes (NI) are blocks of sorted arrays of hypercube addresses with packed
+	 * postfixes. These need less memory than crit-bit trees and avoid pointer chasing.
+	 */
+	public static final int NI_INDEX_ARRAY = 1;
+
 	private int dimUser;
 	private int dimActual;
 	private boolean[] unique; 
 	private int concurrencyType = CONCURRENCY_NONE;
+	private int valueType = VALUES_OBJECT;
+	private int niSubThreshold = 500;
+	private int niPostThreshold = 50;
+	private double niHysteresis = 0.75;
+	private boolean niAutoTune = false;
+	private int niIndexType = NI_INDEX_CRITBIT;
+	private int[] depth;
 	
 	public PhTreeConfig(int dim) {
 		this.dimUser = dim;
 		this.dimActual = dim;
 		this.unique = new boolean[dimUser];
 	}
+
+	/**
+	 * Create a copy of a configuration.
+	 * @param cfg
+	 */
+	PhTreeConfig(PhTreeConfig cfg) {
+		this.dimUser = cfg.dimUser;
+		this.dimActual = cfg.dimActual;
+		this.unique = cfg.unique.clone();
+		this.concurrencyType = cfg.concurrencyType;
+		this.valueType = cfg.valueType;
+		this.niSubThreshold = cfg.niSubThreshold;
+		this.niPostThreshold = cfg.niPostThreshold;
+		this.niHysteresis = cfg.niHysteresis;
+		this.niAutoTune = cfg.niAutoTune;
+		this.niIndexType = cfg.niIndexType;
+		this.depth = cfg.depth == null ? null : cfg.depth.clone();
+	}
 	
 	/**
-	 * Mark a dimension as unique
+	 * Mark a dimension as unique.
+	 * For keys that occur several times with different values, use {@link PhTreeMulti},
+	 * which stores all values of a key in one entry instead of widening the keys.
 	 * @param dim
 	 */
 	public void setUnique(int dim) {
@@ -51,10 +100,52 @@ public class PhTreeConfig {
 	
 	/**
 	 * 
-	 * @return Depth in bits.
+	 * @return Depth in bits, this is the maximum depth of all dimensions.
 	 */
 	public int getDepth() {
-		return 64;
+		int max = 0;
+		for (int d = 0; d < dimUser; d++) {
+			max = Math.max(max, getDepth(d));
+		}
+		return max;
+	}
+
+	/**
+	 * @param dim
+	 * @return Depth of the dimension in bits.
+	 */
+	public int getDepth(int dim) {
+		return depth == null || dim >= depth.length ? 64 : depth[dim];
+	}
+
+	/**
+	 * Set the number of bits of all dimensions, see {@link #setDepth(int, int)}.
+	 * @param depth
+	 */
+	public void setDepth(int depth) {
+		for (int d = 0; d < dimUser; d++) {
+			setDepth(d, depth);
+		}
+	}
+
+	/**
+	 * Set the number of bits of a dimension. The keys in this dimension must then be in
+	 * the range [0, 2^depth), nodes store only the lowest 'depth' bits of this dimension.
+	 * This reduces the size of trees where some dimensions have much fewer bits than
+	 * others, for example 16 bit IDs and 64 bit timestamps.
+	 * The default is 64 bits, this allows all (including negative) values.
+	 * @param dim
+	 * @param depth
+	 */
+	public void setDepth(int dim, int depth) {
+		if (depth < 1 || depth > 64) {
+			throw new IllegalArgumentException("Invalid depth: " + depth);
+		}
+		if (this.depth == null) {
+			this.depth = new int[dimUser];
+			Arrays.fill(this.depth, 64);
+		}
+		this.depth[dim] = depth;
 	}
 
 	public int[] getDimsToSplit() {
@@ -76,4 +167,89 @@ public class PhTreeConfig {
 	public int getConcurrencyType() {
 		return concurrencyType;
 	}
+
+	/**
+	 * Define how values are stored, see {@link #VALUES_OBJECT}, {@link #VALUES_LONG},
+	 * {@link #VALUES_INT} and {@link #VALUES_NONE}.
+	 * @param valueType
+	 */
+	public void setValueType(int valueType) {
+		if (valueType != VALUES_OBJECT && valueType != VALUES_LONG && valueType != VALUES_NONE 
+				&& valueType != VALUES_INT) {
+			throw new IllegalArgumentException("Invalid value type: " + valueType);
+		}
+		this.valueType = valueType;
+	}
+
+	public int getValueType() {
+		return valueType;
+	}
+
+	/**
+	 * Nodes with more sub-nodes or more posts than the thresholds are stored with a 
+	 * node index (NI) instead of hypercube or linearized hypercube representation.
+	 * The default is 500 sub-nodes and 50 posts. 
+	 * @param maxSubs
+	 * @param maxPosts
+	 */
+	public void setNiThresholds(int maxSubs, int maxPosts) {
+		if (maxSubs < 1 || maxPosts < 1) {
+			throw new IllegalArgumentException("Invalid thresholds: " + maxSubs + "/" + maxPosts);
+		}
+		this.niSubThreshold = maxSubs;
+		this.niPostThreshold = maxPosts;
+	}
+
+	public int getNiSubThreshold() {
+		return niSubThreshold;
+	}
+
+	public int getNiPostThreshold() {
+		return niPostThreshold;
+	}
+
+	/**
+	 * NI nodes are converted back only when both counts drop to the given fraction
+	 * of the thresholds. The default is 0.75.
+	 * @param ratio value between 0 and 1
+	 */
+	public void setNiHysteresis(double ratio) {
+		if (ratio < 0 || ratio > 1) {
+			throw new IllegalArgumentException("Invalid hysteresis: " + ratio);
+		}
+		this.niHysteresis = ratio;
+	}
+
+	public double getNiHysteresis() {
+		return niHysteresis;
+	}
+
+	/**
+	 * Choose the NI thresholds depending on the dimensionality, this overrides 
+	 * {@link #setNiThresholds(int, int)}.
+	 * @param autoTune
+	 */
+	public void setNiAutoTune(boolean autoTune) {
+		this.niAutoTune = autoTune;
+	}
+
+	public boolean isNiAutoTune() {
+		return niAutoTune;
+	}
+
+	/**
+	 * Choose the data structure of node indexes, see {@link #NI_INDEX_CRITBIT} and
+	 * {@link #NI_INDEX_ARRAY}.
+	 * @param indexType
+	 */
+	public void setNiIndexType(int indexType) {
+		if (indexType != NI_INDEX_CRITBIT && indexType != NI_INDEX_ARRAY) {
+			throw new IllegalArgumentException("Invalid index type: " + indexType);
+		}
+		this.niIndexType = indexType;
+	}
+
+	public int getNiIndexType() {
+		return niIndexType;
+	}
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import ch.ethz.globis.pht.PhTreeLong.PhQueryLong;
+
+/**
+ * k-dimensional index (quad-/oct-/n-tree) with primitive {@code double} values.
+ *
+ * This is a thin wrapper around {@link PhTreeLong}, values are stored as raw long bits.
+ */
+public class PhTreeDouble {
+
+	private final PhTreeLong pht;
+
+	/**
+	 * Create a new tree with the specified number of dimensions. Lookups of
+	 * keys that do not exist return {@code 0.0}.
+	 *
+	 * @param dim number of dimensions
+	 * @return PhTreeDouble
+	 */
+	public static PhTreeDouble create(int dim) {
+		return new PhTreeDouble(dim, 0);
+	}
+
+	/**
+	 * Create a new tree with the specified number of dimensions.
+	 *
+	 * @param dim number of dimensions
+	 * @param noEntryValue the value that is returned if a key does not exist
+	 * @return PhTreeDouble
+	 */
+	public static PhTreeDouble create(int dim, double noEntryValue) {
+		return new PhTreeDouble(dim, noEntryValue);
+	}
+
+	private PhTreeDouble(int dim, double noEntryValue) {
+		this.pht = new PhTreeLong(dim, toLong(noEntryValue));
+	}
+
+	public int size() {
+		return pht.size();
+	}
+
+	/**
+	 * Insert an entry associated with a k dimensional key.
+	 * @param key
+	 * @param value
+	 * @return the previously associated value or the no-entry value if the key was not found
+	 */
+	public double put(long[] key, double value) {
+		return toDouble(pht.put(key, toLong(value)));
+	}
+
+	public boolean contains(long ... key) {
+		return pht.contains(key);
+	}
+
+	/**
+	 * @param key
+	 * @return the value associated with the key or the no-entry value if the key was not found
+	 */
+	public double get(long ... key) {
+		return toDouble(pht.get(key));
+	}
+
+	/**
+	 * Remove the entry associated with a k dimensional key.
+	 * @param key
+	 * @return the associated value or the no-entry value if the key was not found
+	 */
+	public double remove(long... key) {
+		return toDouble(pht.remove(key));
+	}
+
+	/**
+	 * Performs a rectangular window query.
+	 * @param min
+	 * @param max
+	 * @return query iterator
+	 */
+	public PhQueryDouble query(long[] min, long[] max) {
+		return new PhQueryDouble(pht.query(min, max));
+	}
+
+	public double getNoEntryValue() {
+		return toDouble(pht.getNoEntryValue());
+	}
+
+	public int getDim() {
+		return pht.getDim();
+	}
+
+	public void clear() {
+		pht.clear();
+	}
+
+	/**
+	 * @return the internal PhTree that backs this tree.
+	 */
+	public PhTree<Long> getInternalTree() {
+		return pht.getInternalTree();
+	}
+
+	@Override
+	public String toString() {
+		return pht.toString();
+	}
+
+	private static long toLong(double d) {
+		return Double.doubleToRawLongBits(d);
+	}
+
+	private static double toDouble(long l) {
+		return Double.longBitsToDouble(l);
+	}
+
+	public static class PhQueryDouble {
+		private final PhQueryLong q;
+
+		private PhQueryDouble(PhQueryLong q) {
+			this.q = q;
+		}
+
+		public void reset(long[] min, long[] max) {
+			q.reset(min, max);
+		}
+
+		public boolean hasNext() {
+			return q.hasNext();
+		}
+
+		public long[] nextKey() {
+			return q.nextKey();
+		}
+
+		public double nextValueDouble() {
+			return toDouble(q.nextValueLong());
+		}
+
+		/**
+		 * Returns the next value and writes the associated key into {@code keyOut}.
+		 * @param keyOut
+		 * @return the value
+		 */
+		public double nextValueDouble(long[] keyOut) {
+			return toDouble(q.nextValueLong(keyOut));
+		}
+
+		public void remove() {
+			q.remove();
+		}
+	}
+}
@@ -8,6 +8,8 @@ package ch.ethz.globis.pht;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import ch.ethz.globis.pht.PhTree.PhExtent;
 import ch.ethz.globis.pht.PhTree.PhIterator;
@@ -15,6 +17,8 @@ import ch.ethz.globis.pht.PhTree.PhQuery;
 import ch.ethz.globis.pht.PhTree.PhKnnQuery;
 import ch.ethz.globis.pht.pre.EmptyPPF;
 import ch.ethz.globis.pht.pre.PreProcessorPointF;
+import ch.ethz.globis.pht.pre.StreamingPPAnalyzer;
+import ch.ethz.globis.pht.pre.StreamingPPAnalyzer.Proposal;
 import ch.ethz.globis.pht.util.PhIteratorBase;
 import ch.ethz.globis.pht.util.PhMapper;
 import ch.ethz.globis.pht.util.PhMapperK;
@@ -31,8 +35,14 @@ import ch.ethz.globis.pht.util.PhMapperK;
  */
 public class PhTreeF<T> {
 
-	private final PhTree<T> pht;
-	private final PreProcessorPointF pre;
+	private PhTree<T> pht;
+	private PreProcessorPointF pre;
+	/** Configuration of the internal tree, {@code null} for the default configuration. */
+	private final PhTreeConfig cfg;
+	/** Optional analyzer that samples inserted keys, see {@link #setAnalyzer}. */
+	private StreamingPPAnalyzer analyzer;
+	/** Per thread buffers for converted keys, see {@link #preKey(double[], int)}. */
+	private final ThreadLocal<long[][]> buffers;
 
 	/**
 	 * Create a new tree with the specified number of dimensions.
@@ -56,6 +66,18 @@ public class PhTreeF<T> {
 		return new PhTreeF<T>(dim, pre);
 	}
 
+	/**
+	 * Create a new tree with a configuration instance and a custom preprocessor.
+	 * 
+	 * @param cfg configuration instance
+	 * @param pre The preprocessor to be used
+	 * @return PhTreeF
+	 * @see ch.ethz.globis.pht.pre.QuantizingPP#createConfig()
+	 */
+	public static <T> PhTreeF<T> create(PhTreeConfig cfg, PreProcessorPointF pre) {
+		return new PhTreeF<T>(PhTree.create(cfg), cfg, pre);
+	}
+
 	/**
 	 * Create a new PhTreeF as a wrapper around an existing PhTree.
 	 * 
@@ -63,17 +85,35 @@ public class PhTreeF<T> {
 	 * @return PhTreeF
 	 */
 	public static <T> PhTreeF<T> wrap(PhTree<T> tree) {
-		return new PhTreeF<T>(tree);
+		return new PhTreeF<T>(tree, null, new EmptyPPF());
 	}
 
 	private PhTreeF(int dim, PreProcessorPointF pre) {
 		this.pht = PhTree.create(dim);
+		this.cfg = null;
 		this.pre = pre;
+		this.buffers = ThreadLocal.withInitial(() -> new long[2][dim]);
 	}
 
-	private PhTreeF(PhTree<T> tree) {
+	private PhTreeF(PhTree<T> tree, PhTreeConfig cfg, PreProcessorPointF pre) {
 		this.pht = tree;
-		this.pre = new EmptyPPF();
+		this.cfg = cfg;
+		this.pre = pre;
+		this.buffers = ThreadLocal.withInitial(() -> new long[2][tree.getDim()]);
+	}
+
+	/**
+	 * Converts a key into one of the two key buffers of the current thread.
+	 * This must only be used for operations that do not keep a reference to the
+	 * converted key and that do not call back into user code, such as get() or put().
+	 * @param key
+	 * @param i buffer index, 0 or 1
+	 * @return the converted key
+	 */
+	private long[] preKey(double[] key, int i) {
+		long[] lKey = key.length == pht.getDim() ? buffers.get()[i] : new long[key.length];
+		pre.pre(key, lKey);
+		return lKey;
 	}
 
 	public int size() {
@@ -87,21 +127,18 @@ public class PhTreeF<T> {
 	 * @return the previously associated value or {@code null} if the key was found
 	 */
 	public T put(double[] key, T value) {
-		long[] lKey = new long[key.length];
-		pre.pre(key, lKey);
-		return pht.put(lKey, value);
+		if (analyzer != null) {
+			analyzer.add(key);
+		}
+		return pht.put(preKey(key, 0), value);
 	}
 
 	public boolean contains(double ... key) {
-		long[] lKey = new long[key.length];
-		pre.pre(key, lKey);
-		return pht.contains(lKey);
+		return pht.contains(preKey(key, 0));
 	}
 
 	public T get(double ... key) {
-		long[] lKey = new long[key.length];
-		pre.pre(key, lKey);
-		return pht.get(lKey);
+		return pht.get(preKey(key, 0));
 	}
 
 
@@ -111,9 +148,83 @@ public class PhTreeF<T> {
 	 * @return the associated value or {@code null} if the key was found
 	 */
 	public T remove(double... key) {
+		return pht.remove(preKey(key, 0));
+	}
+
+	/**
+	 * Remove all entries inside the given rectangle, see {@link PhTree#removeRange(long[], long[])}.
+	 * @param min
+	 * @param max
+	 * @return the number of removed entries
+	 */
+	public int removeRange(double[] min, double[] max) {
+		long[] lMin = new long[min.length];
+		long[] lMax = new long[max.length];
+		pre.pre(min, lMin);
+		pre.pre(max, lMax);
+		return pht.removeRange(lMin, lMax);
+	}
+
+	/**
+	 * See {@link PhTree#putIfAbsent(long[], Object)}.
+	 * @param key
+	 * @param value
+	 * @return the value associated with the key or {@code null} if the key was inserted
+	 */
+	public T putIfAbsent(double[] key, T value) {
+		return pht.putIfAbsent(preKey(key, 0), value);
+	}
+
+	/**
+	 * See {@link PhTree#computeIfAbsent(long[], Function)}.
+	 * @param key
+	 * @param mappingFunction
+	 * @return the current (existing or computed) value associated with the key
+	 */
+	public T computeIfAbsent(double[] key, Function<double[], ? extends T> mappingFunction) {
 		long[] lKey = new long[key.length];
 		pre.pre(key, lKey);
-		return pht.remove(lKey);
+		return pht.computeIfAbsent(lKey, k -> mappingFunction.apply(key));
+	}
+
+	/**
+	 * See {@link PhTree#computeIfPresent(long[], BiFunction)}.
+	 * @param key
+	 * @param remappingFunction
+	 * @return the new value associated with the key or {@code null} if there is none
+	 */
+	public T computeIfPresent(double[] key, 
+			BiFunction<double[], ? super T, ? extends T> remappingFunction) {
+		long[] lKey = new long[key.length];
+		pre.pre(key, lKey);
+		return pht.computeIfPresent(lKey, (k, v) -> remappingFunction.apply(key, v));
+	}
+
+	/**
+	 * See {@link PhTree#compute(long[], BiFunction)}.
+	 * @param key
+	 * @param remappingFunction
+	 * @return the new value associated with the key or {@code null} if there is none
+	 */
+	public T compute(double[] key, 
+			BiFunction<double[], ? super T, ? extends T> remappingFunction) {
+		long[] lKey = new long[key.length];
+		pre.pre(key, lKey);
+		return pht.compute(lKey, (k, v) -> remappingFunction.apply(key, v));
+	}
+
+	/**
+	 * See {@link PhTree#merge(long[], Object, BiFunction)}.
+	 * @param key
+	 * @param value
+	 * @param remappingFunction
+	 * @return the new value associated with the key or {@code null} if there is none
+	 */
+	public T merge(double[] key, T value, 
+			BiFunction<? super T, ? super T, ? extends T> remappingFunction) {
+		long[] lKey = new long[key.length];
+		pre.pre(key, lKey);
+		return pht.merge(lKey, value, remappingFunction);
 	}
 
 	public PhExtentF<T> queryExtent() {
@@ -136,6 +247,66 @@ public class PhTreeF<T> {
 		return new PhQueryF<>(pht.query(lMin, lMax), pht.getDim(), pre);
 	}
 
+	/**
+	 * Performs a rectangular window query with an additional filter, for example a
+	 * {@link PhFilterPolygon}. Region filters should be created with the preprocessor of 
+	 * this tree, see {@link #getPreprocessor()}.
+	 * @param min Minimum values
+	 * @param max Maximum values
+	 * @param filter The filter
+	 * @return Result iterator.
+	 */
+	public PhQueryF<T> query(double[] min, double[] max, PhFilter filter) {
+		long[] lMin = new long[min.length];
+		long[] lMax = new long[max.length];
+		pre.pre(min, lMin);
+		pre.pre(max, lMax);
+		return new PhQueryF<>(pht.query(lMin, lMax, filter), pht.getDim(), pre);
+	}
+
+	/**
+	 * Performs a query for the union of several rectangular windows, see 
+	 * {@link PhTree#query(long[][], long[][])}. 
+	 * @param mins Minimum values of each window
+	 * @param maxs Maximum values of each window
+	 * @return Result iterator.
+	 */
+	public PhIteratorF<T> query(double[][] mins, double[][] maxs) {
+		long[][] lMins = new long[mins.length][];
+		long[][] lMaxs = new long[maxs.length][];
+		for (int i = 0; i < mins.length; i++) {
+			lMins[i] = new long[mins[i].length];
+			pre.pre(mins[i], lMins[i]);
+		}
+		for (int i = 0; i < maxs.length; i++) {
+			lMaxs[i] = new long[maxs[i].length];
+			pre.pre(maxs[i], lMaxs[i]);
+		}
+		return new PhIteratorF<>(pht.query(lMins, lMaxs), pht.getDim(), pre);
+	}
+
+	/**
+	 * Query for geographic coordinates that may cross the antimeridian.
+	 * If {@code min[dimLon] > max[dimLon]}, the window covers the longitudes
+	 * [min, 180] and [-180, max]. Both parts are traversed in a single multi-window query,
+	 * see {@link #query(double[][], double[][])}. Otherwise this is a normal window query.
+	 * @param min Minimum values
+	 * @param max Maximum values
+	 * @param dimLon dimension that contains the longitude in degrees
+	 * @return Result iterator.
+	 * @see PhDistanceGeo
+	 */
+	public PhIteratorF<T> queryAntimeridian(double[] min, double[] max, int dimLon) {
+		if (min[dimLon] <= max[dimLon]) {
+			return query(min, max);
+		}
+		double[] max1 = max.clone();
+		max1[dimLon] = 180;
+		double[] min2 = min.clone();
+		min2[dimLon] = -180;
+		return query(new double[][]{min, min2}, new double[][]{max1, max});
+	}
+
 	/**
 	 * Find all entries within a given distance from a center point.
 	 * @param dist Maximum distance
@@ -201,11 +372,13 @@ public class PhTreeF<T> {
 		private final PhIterator<T> iter;
 		protected final PreProcessorPointF pre;
 		private final int DIM;
+		private final PhEntryF<T> buffer;
 
 		private PhIteratorF(PhIterator<T> iter, int DIM, PreProcessorPointF pre) {
 			this.iter = iter;
 			this.pre = pre;
 			this.DIM = DIM;
+			this.buffer = new PhEntryF<T>(new double[DIM], null);
 		}
 
 		@Override
@@ -233,6 +406,30 @@ public class PhTreeF<T> {
 			return d;
 		}
 
+		/**
+		 * Special 'next' method that avoids creating new objects internally by reusing Entry objects.
+		 * Advantage: Should completely avoid any GC effort.
+		 * Disadvantage: Returned PhEntries are not stable and are only valid until the
+		 * next call to next(). After that they may change state.
+		 * @return The next entry
+		 */
+		public PhEntryF<T> nextEntryReuse() {
+			PhEntry<T> e = iter.nextEntryReuse();
+			pre.post(e.getKey(), buffer.key);
+			buffer.value = e.getValue();
+			return buffer;
+		}
+
+		/**
+		 * Writes the next key into the given array, this avoids creating a new key.
+		 * @param out array of length DIM
+		 * @return 'out'
+		 */
+		public double[] nextKeyReuse(double[] out) {
+			pre.post(iter.nextEntryReuse().getKey(), out);
+			return out;
+		}
+
 		@Override
 		public T nextValue() {
 			return iter.nextValue();
@@ -325,7 +522,7 @@ public class PhTreeF<T> {
 	 */
 	public static class PhEntryF<T> {
 		private final double[] key;
-		private final T value;
+		private T value;
 		public PhEntryF(double[] key, T value) {
 			this.key = key;
 			this.value = value;
@@ -349,11 +546,7 @@ public class PhTreeF<T> {
 	 * updated, otherwise {@code null}.
 	 */
 	public T update(double[] oldKey, double[] newKey) {
-		long[] oldL = new long[oldKey.length];
-		long[] newL = new long[newKey.length];
-		pre.pre(oldKey, oldL);
-		pre.pre(newKey, newL);
-		return pht.update(oldL, newL);
+		return pht.update(preKey(oldKey, 0), preKey(newKey, 1));
 	}
 
 	/**
@@ -400,5 +593,106 @@ public class PhTreeF<T> {
 		return pre;
 	}
 
+	/**
+	 * Attach an analyzer that samples every key passed to {@link #put(double[], Object)}.
+	 * The analyzer can then be used with {@link #reEncodeIfDrifted()}.
+	 * @param analyzer the analyzer or {@code null} to stop sampling
+	 */
+	public void setAnalyzer(StreamingPPAnalyzer analyzer) {
+		this.analyzer = analyzer;
+	}
+
+	public StreamingPPAnalyzer getAnalyzer() {
+		return analyzer;
+	}
+
+	/**
+	 * Result of a re-encoding, see {@link PhTreeF#reEncode(PreProcessorPointF)}.
+	 */
+	public static class ReEncodeStats {
+		public final int nNodesBefore;
+		public final int nNodesAfter;
+		public final long bytesBefore;
+		public final long bytesAfter;
+
+		private ReEncodeStats(int nNodesBefore, int nNodesAfter, 
+				long bytesBefore, long bytesAfter) {
+			this.nNodesBefore = nNodesBefore;
+			this.nNodesAfter = nNodesAfter;
+			this.bytesBefore = bytesBefore;
+			this.bytesAfter = bytesAfter;
+		}
+
+		@Override
+		public String toString() {
+			return "nodes: " + nNodesBefore + " -> " + nNodesAfter + 
+					"  bytes: " + bytesBefore + " -> " + bytesAfter;
+		}
+	}
+
+	/**
+	 * Re-encode all entries with a new preprocessor. The entries are copied into a new
+	 * internal tree with the same configuration as the current one, which replaces the
+	 * current tree once it is complete. Trees created with {@link #wrap(PhTree)} use the
+	 * default configuration. Iterators that were created before this call continue on
+	 * the old tree.
+	 * Keys are converted with {@code getPreprocessor().post()} and {@code newPre.pre()}, 
+	 * they may lose precision if the new preprocessor is lossy. 
+	 * 
+	 * Note that {@link #getInternalTree()} returns a different tree after this call.
+	 * 
+	 * @param newPre the new preprocessor
+	 * @return node counts and memory estimates before and after the re-encoding
+	 * @throws IllegalArgumentException if a re-encoded key exceeds the bit depth of the
+	 * configuration, the tree is not modified in this case
+	 * @throws IllegalStateException if the new preprocessor maps different keys to the
+	 * same key, the tree is not modified in this case
+	 */
+	public ReEncodeStats reEncode(PreProcessorPointF newPre) {
+		PhTree<T> newTree = cfg != null ? PhTree.create(cfg) : PhTree.create(pht.getDim());
+		double[] dKey = new double[pht.getDim()];
+		long[] lKey = new long[pht.getDim()];
+		PhExtent<T> it = pht.queryExtent();
+		while (it.hasNext()) {
+			PhEntry<T> e = it.nextEntry();
+			pre.post(e.getKey(), dKey);
+			newPre.pre(dKey, lKey);
+			newTree.put(lKey, e.getValue());
+		}
+		if (newTree.size() != pht.size()) {
+			throw new IllegalStateException("The new preprocessor maps different keys to " +
+					"the same value: " + pht.size() + " -> " + newTree.size());
+		}
+		ReEncodeStats stats = new ReEncodeStats(
+				pht.getMemoryStats().nNodes, newTree.getMemoryStats().nNodes,
+				pht.getMemoryStats().getTotalBytes(), newTree.getMemoryStats().getTotalBytes());
+		pht = newTree;
+		pre = newPre;
+		return stats;
+	}
+
+	/**
+	 * Re-encode the tree if the analyzer reports that the data has drifted and either the
+	 * current preprocessor cannot represent the data anymore or the new proposal results in 
+	 * a smaller tree. Keys that were inserted with a lossy preprocessor are not restored.
+	 * This is meant to be called periodically during ingest, for example every 100000 
+	 * insertions.
+	 * @return the result of the re-encoding or {@code null} if the tree was not re-encoded
+	 * @throws IllegalArgumentException see {@link #reEncode(PreProcessorPointF)}
+	 * @throws IllegalStateException see {@link #reEncode(PreProcessorPointF)}
+	 * @see #setAnalyzer(StreamingPPAnalyzer)
+	 */
+	public ReEncodeStats reEncodeIfDrifted() {
+		if (analyzer == null || !analyzer.hasDrifted()) {
+			return null;
+		}
+		Proposal p = analyzer.propose();
+		if (analyzer.isLossless(pre) && 
+				p.getSampleStats().getTotalBytes() >= analyzer.evaluate(pre).getTotalBytes()) {
+			return null;
+		}
+		return reEncode(p.getPreprocessor());
+	}
+
 }
 
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import ch.ethz.globis.pht.v8.PhIteratorNoGC;
+import ch.ethz.globis.pht.v8.PhTree8;
+
+/**
+ * k-dimensional index (quad-/oct-/n-tree) with primitive {@code int} values.
+ *
+ * The nodes store the values in primitive int[] arrays instead of arrays of references
+ * to boxed Integer objects.
+ */
+public class PhTreeInt {
+
+	private final PhTree8<Integer> pht;
+	private final int noEntryValue;
+
+	/**
+	 * Create a new tree with the specified number of dimensions. Lookups of
+	 * keys that do not exist return {@code 0}.
+	 *
+	 * @param dim number of dimensions
+	 * @return PhTreeInt
+	 */
+	public static PhTreeInt create(int dim) {
+		return new PhTreeInt(dim, 0);
+	}
+
+	/**
+	 * Create a new tree with the specified number of dimensions.
+	 *
+	 * @param dim number of dimensions
+	 * @param noEntryValue the value that is returned if a key does not exist
+	 * @return PhTreeInt
+	 */
+	public static PhTreeInt create(int dim, int noEntryValue) {
+		return new PhTreeInt(dim, noEntryValue);
+	}
+
+	private PhTreeInt(int dim, int noEntryValue) {
+		PhTreeConfig cfg = new PhTreeConfig(dim);
+		cfg.setValueType(PhTreeConfig.VALUES_INT);
+		this.pht = new PhTree8<>(cfg);
+		this.noEntryValue = noEntryValue;
+	}
+
+	public int size() {
+		return pht.size();
+	}
+
+	/**
+	 * Insert an entry associated with a k dimensional key.
+	 * @param key
+	 * @param value
+	 * @return the previously associated value or the no-entry value if the key was not found
+	 */
+	public int put(long[] key, int value) {
+		return (int) pht.putLong(key, value, noEntryValue);
+	}
+
+	public boolean contains(long ... key) {
+		return pht.contains(key);
+	}
+
+	/**
+	 * @param key
+	 * @return the value associated with the key or the no-entry value if the key was not found
+	 */
+	public int get(long ... key) {
+		return (int) pht.getLong(key, noEntryValue);
+	}
+
+	/**
+	 * Remove the entry associated with a k dimensional key.
+	 * @param key
+	 * @return the associated value or the no-entry value if the key was not found
+	 */
+	public int remove(long... key) {
+		return (int) pht.removeLong(key, noEntryValue);
+	}
+
+	/**
+	 * Performs a rectangular window query.
+	 * @param min
+	 * @param max
+	 * @return query iterator
+	 */
+	public PhQueryInt query(long[] min, long[] max) {
+		return new PhQueryInt(pht.query(min, max));
+	}
+
+	public int getNoEntryValue() {
+		return noEntryValue;
+	}
+
+	public int getDim() {
+		return pht.getDim();
+	}
+
+	public void clear() {
+		pht.clear();
+	}
+
+	/**
+	 * @return the internal PhTree that backs this tree.
+	 */
+	public PhTree<Integer> getInternalTree() {
+		return pht;
+	}
+
+	@Override
+	public String toString() {
+		return pht.toString();
+	}
+
+	public static class PhQueryInt {
+		private final PhIteratorNoGC<Integer> q;
+
+		private PhQueryInt(PhIteratorNoGC<Integer> q) {
+			this.q = q;
+		}
+
+		public void reset(long[] min, long[] max) {
+			q.reset(min, max);
+		}
+
+		public boolean hasNext() {
+			return q.hasNext();
+		}
+
+		public long[] nextKey() {
+			return q.nextKey();
+		}
+
+		public int nextValueInt() {
+			return (int) q.nextValueLong(null);
+		}
+
+		/**
+		 * Returns the next value and writes the associated key into {@code keyOut}.
+		 * @param keyOut
+		 * @return the value
+		 */
+		public int nextValueInt(long[] keyOut) {
+			return (int) q.nextValueLong(keyOut);
+		}
+
+		public void remove() {
+			q.remove();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import ch.ethz.globis.pht.v8.PhIteratorNoGC;
+import ch.ethz.globis.pht.v8.PhTree8;
+
+/**
+ * k-dimensional index (quad-/oct-/n-tree) with primitive {@code long} values.
+ *
+ * The nodes store the values in primitive long[] arrays instead of arrays of references
+ * to boxed Long objects.
+ */
+public class PhTreeLong {
+
+	private final PhTree8<Long> pht;
+	private final long noEntryValue;
+
+	/**
+	 * Create a new tree with the specified number of dimensions. Lookups of
+	 * keys that do not exist return {@code 0}.
+	 *
+	 * @param dim number of dimensions
+	 * @return PhTreeLong
+	 */
+	public static PhTreeLong create(int dim) {
+		return new PhTreeLong(dim, 0);
+	}
+
+	/**
+	 * Create a new tree with the specified number of dimensions.
+	 *
+	 * @param dim number of dimensions
+	 * @param noEntryValue the value that is returned if a key does not exist
+	 * @return PhTreeLong
+	 */
+	public static PhTreeLong create(int dim, long noEntryValue) {
+		return new PhTreeLong(dim, noEntryValue);
+	}
+
+	PhTreeLong(int dim, long noEntryValue) {
+		PhTreeConfig cfg = new PhTreeConfig(dim);
+		cfg.setValueType(PhTreeConfig.VALUES_LONG);
+		this.pht = new PhTree8<>(cfg);
+		this.noEntryValue = noEntryValue;
+	}
+
+	public int size() {
+		return pht.size();
+	}
+
+	/**
+	 * Insert an entry associated with a k dimensional key.
+	 * @param key
+	 * @param value
+	 * @return the previously associated value or the no-entry value if the key was not found
+	 */
+	public long put(long[] key, long value) {
+		return pht.putLong(key, value, noEntryValue);
+	}
+
+	public boolean contains(long ... key) {
+		return pht.contains(key);
+	}
+
+	/**
+	 * @param key
+	 * @return the value associated with the key or the no-entry value if the key was not found
+	 */
+	public long get(long ... key) {
+		return pht.getLong(key, noEntryValue);
+	}
+
+	/**
+	 * Remove the entry associated with a k dimensional key.
+	 * @param key
+	 * @return the associated value or the no-entry value if the key was not found
+	 */
+	public long remove(long... key) {
+		return pht.removeLong(key, noEntryValue);
+	}
+
+	/**
+	 * Performs a rectangular window query.
+	 * @param min
+	 * @param max
+	 * @return query iterator
+	 */
+	public PhQueryLong query(long[] min, long[] max) {
+		return new PhQueryLong(pht.query(min, max));
+	}
+
+	public long getNoEntryValue() {
+		return noEntryValue;
+	}
+
+	public int getDim() {
+		return pht.getDim();
+	}
+
+	public void clear() {
+		pht.clear();
+	}
+
+	/**
+	 * @return the internal PhTree that backs this tree.
+	 */
+	public PhTree<Long> getInternalTree() {
+		return pht;
+	}
+
+	@Override
+	public String toString() {
+		return pht.toString();
+	}
+
+	public static class PhQueryLong {
+		private final PhIteratorNoGC<Long> q;
+
+		PhQueryLong(PhIteratorNoGC<Long> q) {
+			this.q = q;
+		}
+
+		public void reset(long[] min, long[] max) {
+			q.reset(min, max);
+		}
+
+		public boolean hasNext() {
+			return q.hasNext();
+		}
+
+		public long[] nextKey() {
+			return q.nextKey();
+		}
+
+		public long nextValueLong() {
+			return q.nextValueLong(null);
+		}
+
+		/**
+		 * Returns the next value and writes the associated key into {@code keyOut}.
+		 * @param keyOut
+		 * @return the value
+		 */
+		public long nextValueLong(long[] keyOut) {
+			return q.nextValueLong(keyOut);
+		}
+
+		public void remove() {
+			q.remove();
+		}
+	}
+}
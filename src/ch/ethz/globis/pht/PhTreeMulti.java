@@ -0,0 +1,440 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import ch.ethz.globis.pht.PhTree.PhExtent;
+import ch.ethz.globis.pht.PhTree.PhIterator;
+import ch.ethz.globis.pht.PhTree.PhKnnQuery;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+
+/**
+ * k-dimensional multimap, every key can be associated with several values.
+ *
+ * Values of the same key are stored in the post slot of the key. A key with a single
+ * value stores the value directly, only keys with several values use a bucket
+ * (an array of values). In contrast to adding a synthetic ID dimension to the keys,
+ * this does not increase the size of the nodes or the depth of the tree.
+ *
+ * Queries return one entry per value, entries of the same key are returned consecutively.
+ *
+ * @param <T> The value type of the tree
+ */
+public class PhTreeMulti<T> {
+
+	/** Placeholder for {@code null} values, the internal tree treats null as absent. */
+	private static final Object NULL = new Object();
+
+	private static final class Bucket {
+		private Object[] values;
+		private int size;
+
+		Bucket(Object v1, Object v2) {
+			values = new Object[]{v1, v2};
+			size = 2;
+		}
+
+		void add(Object v) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size + (size >> 1) + 1);
+			}
+			values[size++] = v;
+		}
+
+		int indexOf(Object v) {
+			for (int i = 0; i < size; i++) {
+				if (Objects.equals(values[i], v)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		void remove(int pos) {
+			System.arraycopy(values, pos+1, values, pos, size-pos-1);
+			values[--size] = null;
+		}
+	}
+
+	private final PhTree<Object> pht;
+	private int size;
+
+	/**
+	 * Create a new tree with the specified number of dimensions.
+	 *
+	 * @param dim number of dimensions
+	 * @return PhTreeMulti
+	 */
+	public static <T> PhTreeMulti<T> create(int dim) {
+		return new PhTreeMulti<T>(new PhTreeConfig(dim));
+	}
+
+	/**
+	 * Create a new tree with a configuration instance.
+	 *
+	 * @param cfg configuration instance
+	 * @return PhTreeMulti
+	 */
+	public static <T> PhTreeMulti<T> create(PhTreeConfig cfg) {
+		return new PhTreeMulti<T>(cfg);
+	}
+
+	private PhTreeMulti(PhTreeConfig cfg) {
+		if (cfg.getValueType() != PhTreeConfig.VALUES_OBJECT) {
+			throw new IllegalArgumentException("PhTreeMulti requires VALUES_OBJECT.");
+		}
+		this.pht = PhTree.create(cfg);
+	}
+
+	private static Object mask(Object v) {
+		return v == null ? NULL : v;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T unmask(Object v) {
+		return v == NULL ? null : (T) v;
+	}
+
+	/**
+	 * @return the number of entries, i.e. the number of values of all keys.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of distinct keys.
+	 */
+	public int getKeyCount() {
+		return pht.size();
+	}
+
+	/**
+	 * Associate a value with a k dimensional key. Existing values of the key are kept,
+	 * the same value may be associated several times with the same key.
+	 * @param key
+	 * @param value
+	 */
+	public void put(long[] key, T value) {
+		Object v = mask(value);
+		pht.compute(key, (k, old) -> {
+			if (old == null) {
+				return v;
+			}
+			if (old instanceof Bucket) {
+				((Bucket)old).add(v);
+				return old;
+			}
+			return new Bucket(old, v);
+		});
+		size++;
+	}
+
+	public boolean contains(long ... key) {
+		return pht.contains(key);
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @return whether the value is associated with the key.
+	 */
+	public boolean contains(long[] key, T value) {
+		Object o = pht.get(key);
+		if (o instanceof Bucket) {
+			return ((Bucket)o).indexOf(mask(value)) >= 0;
+		}
+		return o != null && Objects.equals(o, mask(value));
+	}
+
+	/**
+	 * @param key
+	 * @return all values associated with the key, or an empty list if there are none.
+	 */
+	public List<T> getAll(long ... key) {
+		return toList(pht.get(key));
+	}
+
+	private static <T> List<T> toList(Object o) {
+		if (o == null) {
+			return Collections.emptyList();
+		}
+		if (!(o instanceof Bucket)) {
+			return Collections.singletonList(unmask(o));
+		}
+		Bucket b = (Bucket) o;
+		ArrayList<T> list = new ArrayList<>(b.size);
+		for (int i = 0; i < b.size; i++) {
+			list.add(unmask(b.values[i]));
+		}
+		return list;
+	}
+
+	/**
+	 * Remove one occurrence of a value from a key.
+	 * @param key
+	 * @param value
+	 * @return {@code true} if the value was found.
+	 */
+	public boolean removeValue(long[] key, T value) {
+		Object v = mask(value);
+		Object o = pht.get(key);
+		if (o instanceof Bucket) {
+			Bucket b = (Bucket) o;
+			int pos = b.indexOf(v);
+			if (pos < 0) {
+				return false;
+			}
+			b.remove(pos);
+			if (b.size == 1) {
+				pht.put(key, b.values[0]);
+			}
+		} else if (o != null && Objects.equals(o, v)) {
+			pht.remove(key);
+		} else {
+			return false;
+		}
+		size--;
+		return true;
+	}
+
+	/**
+	 * Remove a key and all its values.
+	 * @param key
+	 * @return the values that were associated with the key
+	 */
+	public List<T> removeAll(long... key) {
+		List<T> list = toList(pht.remove(key));
+		size -= list.size();
+		return list;
+	}
+
+	/**
+	 * Move one occurrence of a value from one key to another key.
+	 * @param oldKey
+	 * @param newKey
+	 * @param value
+	 * @return {@code true} if the value was found.
+	 */
+	public boolean update(long[] oldKey, long[] newKey, T value) {
+		if (!removeValue(oldKey, value)) {
+			return false;
+		}
+		put(newKey, value);
+		return true;
+	}
+
+	public void clear() {
+		pht.clear();
+		size = 0;
+	}
+
+	public PhMultiExtent<T> queryExtent() {
+		return new PhMultiExtent<T>(pht.queryExtent(), pht.getDim());
+	}
+
+	/**
+	 * Performs a rectangular window query.
+	 * @param min Minimum values
+	 * @param max Maximum values
+	 * @return query iterator
+	 */
+	public PhMultiQuery<T> query(long[] min, long[] max) {
+		return new PhMultiQuery<>(pht.query(min, max), pht.getDim());
+	}
+
+	/**
+	 * Same as {@link #query(long[], long[])}, except that it returns a list.
+	 * @param min
+	 * @param max
+	 * @return List of query results
+	 */
+	public List<PhEntry<T>> queryAll(long[] min, long[] max) {
+		ArrayList<PhEntry<T>> list = new ArrayList<>();
+		PhMultiQuery<T> q = query(min, max);
+		while (q.hasNext()) {
+			list.add(q.nextEntry());
+		}
+		return list;
+	}
+
+	/**
+	 * Find all entries within a given distance from a center point.
+	 * @param dist Maximum distance
+	 * @param center Center point
+	 * @return query iterator
+	 */
+	public PhMultiRangeQuery<T> rangeQuery(double dist, long... center) {
+		return new PhMultiRangeQuery<>(pht.rangeQuery(dist, center), pht.getDim());
+	}
+
+	/**
+	 * Locate nearest neighbours for a given point in space.
+	 * @param nMin number of keys to be returned, all values of these keys are returned.
+	 * More keys may or may not be returned if several keys have the same distance.
+	 * @param key
+	 * @return KNN query iterator.
+	 */
+	public PhMultiKnnQuery<T> nearestNeighbour(int nMin, long... key) {
+		return new PhMultiKnnQuery<>(pht.nearestNeighbour(nMin, key), pht.getDim());
+	}
+
+	public int getDim() {
+		return pht.getDim();
+	}
+
+	/**
+	 * @return the internal PhTree that backs this tree.
+	 */
+	public PhTree<?> getInternalTree() {
+		return pht;
+	}
+
+	/**
+	 * Iterator that returns one entry for every value of the keys of the internal iterator.
+	 */
+	public static class PhMultiIterator<T> implements PhIterator<T> {
+		private final PhIterator<Object> iter;
+		private final PhEntry<T> result;
+		private final long[] key;
+		private final Object[] single = new Object[1];
+		private Object[] values;
+		private int nValues;
+		private int pos;
+
+		private PhMultiIterator(PhIterator<Object> iter, int DIM) {
+			this.iter = iter;
+			this.result = new PhEntry<>(new long[DIM], null);
+			this.key = new long[DIM];
+		}
+
+		void resetBucket() {
+			values = null;
+			nValues = 0;
+			pos = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return pos < nValues || iter.hasNext();
+		}
+
+		@Override
+		public T next() {
+			return nextValue();
+		}
+
+		@Override
+		public long[] nextKey() {
+			return nextEntryReuse().getKey().clone();
+		}
+
+		@Override
+		public T nextValue() {
+			return nextEntryReuse().getValue();
+		}
+
+		@Override
+		public PhEntry<T> nextEntry() {
+			return new PhEntry<>(nextEntryReuse());
+		}
+
+		@Override
+		public PhEntry<T> nextEntryReuse() {
+			if (pos >= nValues) {
+				if (!iter.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				PhEntry<Object> e = iter.nextEntryReuse();
+				System.arraycopy(e.getKey(), 0, key, 0, key.length);
+				Object o = e.getValue();
+				if (o instanceof Bucket) {
+					values = ((Bucket)o).values;
+					nValues = ((Bucket)o).size;
+				} else {
+					single[0] = o;
+					values = single;
+					nValues = 1;
+				}
+				pos = 0;
+			}
+			System.arraycopy(key, 0, result.getKey(), 0, key.length);
+			result.setValue(unmask(values[pos++]));
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove() not supported, use removeValue().");
+		}
+	}
+
+	public static class PhMultiExtent<T> extends PhMultiIterator<T> {
+		private final PhExtent<Object> iter;
+
+		private PhMultiExtent(PhExtent<Object> iter, int DIM) {
+			super(iter, DIM);
+			this.iter = iter;
+		}
+
+		public PhMultiExtent<T> reset() {
+			iter.reset();
+			resetBucket();
+			return this;
+		}
+	}
+
+	public static class PhMultiQuery<T> extends PhMultiIterator<T> {
+		private final PhQuery<Object> q;
+
+		private PhMultiQuery(PhQuery<Object> q, int DIM) {
+			super(q, DIM);
+			this.q = q;
+		}
+
+		public void reset(long[] min, long[] max) {
+			q.reset(min, max);
+			resetBucket();
+		}
+	}
+
+	public static class PhMultiKnnQuery<T> extends PhMultiIterator<T> {
+		private final PhKnnQuery<Object> q;
+
+		private PhMultiKnnQuery(PhKnnQuery<Object> q, int DIM) {
+			super(q, DIM);
+			this.q = q;
+		}
+
+		public PhMultiKnnQuery<T> reset(int nMin, PhDistance dist, long... center) {
+			q.reset(nMin, dist, center);
+			resetBucket();
+			return this;
+		}
+	}
+
+	public static class PhMultiRangeQuery<T> extends PhMultiIterator<T> {
+		private final PhRangeQuery<Object> q;
+
+		private PhMultiRangeQuery(PhRangeQuery<Object> q, int DIM) {
+			super(q, DIM);
+			this.q = q;
+		}
+
+		public PhMultiRangeQuery<T> reset(double range, long... center) {
+			q.reset(range, center);
+			resetBucket();
+			return this;
+		}
+	}
+}
@@ -31,6 +31,8 @@ public class PhTreeSolidF<T> implements Iterable<T> {
 	private final PreProcessorRangeF pre;
 	private final double[] MIN;
 	private final double[] MAX;
+	/** Per thread buffers for converted keys, see {@link #preKey(double[], double[], int)}. */
+	private final ThreadLocal<long[][]> buffers;
 	
 	/**
 	 * Create a new tree with the specified number of dimensions.
@@ -86,6 +88,22 @@ public class PhTreeSolidF<T> implements Iterable<T> {
 		Arrays.fill(MIN, Double.NEGATIVE_INFINITY);
 		MAX = new double[DIM];
 		Arrays.fill(MAX, Double.POSITIVE_INFINITY);
+		buffers = ThreadLocal.withInitial(() -> new long[2][2*DIM]);
+	}
+	
+	/**
+	 * Converts a key into one of the two key buffers of the current thread.
+	 * This must only be used for operations that do not keep a reference to the
+	 * converted key, such as get() or put().
+	 * @param lower
+	 * @param upper
+	 * @param i buffer index, 0 or 1
+	 * @return the converted key
+	 */
+	private long[] preKey(double[] lower, double[] upper, int i) {
+		long[] lVal = lower.length == DIM ? buffers.get()[i] : new long[lower.length*2];
+		pre.pre(lower, upper, lVal);
+		return lVal;
 	}
 	
 	/**
@@ -98,9 +116,7 @@ public class PhTreeSolidF<T> implements Iterable<T> {
 	 * @see PhTreeNV#insert(long...)
 	 */
 	public T put(double[] lower, double[] upper, T value) {
-		long[] lVal = new long[lower.length*2];
-		pre.pre(lower, upper, lVal);
-		return pht.put(lVal, value);
+		return pht.put(preKey(lower, upper, 0), value);
 	}
 	
 	/**
@@ -112,9 +128,7 @@ public class PhTreeSolidF<T> implements Iterable<T> {
 	 * @see PhTreeNV#delete(long...)
 	 */
 	public T remove(double[] lower, double[] upper) {
-		long[] lVal = new long[lower.length*2];
-		pre.pre(lower, upper, lVal);
-		return pht.remove(lVal);
+		return pht.remove(preKey(lower, upper, 0));
 	}
 	
 	/**
@@ -126,9 +140,7 @@ public class PhTreeSolidF<T> implements Iterable<T> {
 	 * @see PhTreeNV#contains(long...)
 	 */
 	public boolean contains(double[] lower, double[] upper) {
-		long[] lVal = new long[lower.length*2];
-		pre.pre(lower, upper, lVal);
-		return pht.contains(lVal);
+		return pht.contains(preKey(lower, upper, 0));
 	}
 	
 	/**
@@ -198,10 +210,12 @@ public class PhTreeSolidF<T> implements Iterable<T> {
 		protected final PhIterator<T> iter;
 		private final int DIM;
 		protected final PreProcessorRangeF pre;
+		private final PhEntrySF<T> buffer;
 		private PhIteratorSF(PhIterator<T> iter, int DIM, PreProcessorRangeF pre) {
 			this.iter = iter;
 			this.DIM = DIM;
 			this.pre = pre;
+			this.buffer = new PhEntrySF<>(new double[DIM], new double[DIM], null);
 		}
 		@Override
 		public boolean hasNext() {
@@ -213,30 +227,42 @@ public class PhTreeSolidF<T> implements Iterable<T> {
 		}
 		@Override
 		public T nextValue() {
-            PhEntry<T> pvEntry = iter.nextEntry();
-			return pvEntry.getValue();
+			return iter.nextValue();
 		}
 		@Override
 		public double[] nextKey() {
-			double[] lower = new double[DIM];
-			double[] upper = new double[DIM];
-            PhEntry<T> pvEntry = iter.nextEntry();
-            pre.post(pvEntry.getKey(), lower, upper);
-            double[] ret = new double[2*DIM];
-            for (int i = 0; i < DIM; i++) {
-            	ret[i] = lower[i];
-            	ret[i+DIM] = lower[i];
-            }
-			return ret;
+			return nextKeyReuse(new double[2*DIM]);
+		}
+		/**
+		 * Writes the next key into the given array, this avoids creating a new key.
+		 * @param out array of length 2*DIM, lower corner followed by upper corner
+		 * @return 'out'
+		 */
+		public double[] nextKeyReuse(double[] out) {
+			PhEntrySF<T> e = nextEntryReuse();
+			System.arraycopy(e.lower, 0, out, 0, DIM);
+			System.arraycopy(e.upper, 0, out, DIM, DIM);
+			return out;
 		}
 		@Override
 		public PhEntrySF<T> nextEntry() {
 			double[] lower = new double[DIM];
 			double[] upper = new double[DIM];
-            PhEntry<T> pvEntry = iter.nextEntry();
-            pre.post(pvEntry.getKey(), lower, upper);
+			PhEntry<T> pvEntry = iter.nextEntryReuse();
+			pre.post(pvEntry.getKey(), lower, upper);
 			return new PhEntrySF<>(lower, upper, pvEntry.getValue());
 		}
+		/**
+		 * Special 'next' method that avoids creating new objects internally by reusing Entry objects.
+		 * Returned entries are only valid until the next call to next().
+		 * @return The next entry
+		 */
+		public PhEntrySF<T> nextEntryReuse() {
+			PhEntry<T> pvEntry = iter.nextEntryReuse();
+			pre.post(pvEntry.getKey(), buffer.lower, buffer.upper);
+			buffer.value = pvEntry.getValue();
+			return buffer;
+		}
 		@Override
 		public void remove() {
 			iter.remove();
@@ -282,7 +308,7 @@ public class PhTreeSolidF<T> implements Iterable<T> {
 
 		private final double[] lower;
 		private final double[] upper;
-		private final T value;
+		private T value;
 
 		/**
 		 * Range object constructor.
@@ -364,11 +390,7 @@ public class PhTreeSolidF<T> implements Iterable<T> {
 	 * @see PhTree#update(long[], long[])
 	 */
 	public T update(double[] lo1, double[] up1, double[] lo2, double[] up2) {
-		long[] pOld = new long[lo1.length << 1];
-		long[] pNew = new long[lo1.length << 1];
-		pre.pre(lo1, up1, pOld);
-		pre.pre(lo2, up2, pNew);
-		return pht.update(pOld, pNew);
+		return pht.update(preKey(lo1, up1, 0), preKey(lo2, up2, 1));
 	}
 
 	/**
@@ -405,9 +427,7 @@ public class PhTreeSolidF<T> implements Iterable<T> {
 	}
 
 	public T get(double[] lower, double[] upper) {
-		long[] lVal = new long[lower.length*2];
-		pre.pre(lower, upper, lVal);
-		return pht.get(lVal);
+		return pht.get(preKey(lower, upper, 0));
 	}
 
     /**
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht;
+
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.function.LongSupplier;
+
+import ch.ethz.globis.pht.PhTree.PhIterator;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+import ch.ethz.globis.pht.v8.PhExpirySweeper;
+import ch.ethz.globis.pht.v8.PhTree8;
+
+/**
+ * k-dimensional index with entry expiry.
+ *
+ * Every entry carries an expiry time. Expired entries are treated as absent by all lookups
+ * and queries. They are physically removed by {@link #sweep(int)}, which performs a
+ * bounded amount of work per call. In addition, every {@code put()} reclaims a few expired
+ * entries, so a tree with regular insertions does not grow without bounds even if
+ * {@code sweep()} is never called.
+ *
+ * Every node of the tree keeps a lower bound of the expiry times in its sub-tree, see
+ * {@link PhExpirySweeper}. The sweeper skips all sub-trees whose bound lies in the future,
+ * so it does not scan live parts of the tree. Apart from the expiry time, entries need no
+ * additional memory.
+ *
+ * The tree supports up to 64 dimensions.
+ *
+ * @param <T> The value type of the tree
+ */
+public class PhTreeTTL<T> {
+
+	/** Number of expired entries that are reclaimed by every put(). */
+	private static final int PUT_SWEEP_WORK = 2;
+
+	private static final class Entry<T> {
+		private final T value;
+		private final long expiry;
+		Entry(T value, long expiry) {
+			this.value = value;
+			this.expiry = expiry;
+		}
+	}
+
+	private final PhTree8<Entry<T>> pht;
+	private final PhExpirySweeper<Entry<T>> sweeper;
+	private final ArrayList<long[]> expiredKeys = new ArrayList<>();
+	private final LongSupplier clock;
+
+	/**
+	 * Create a new tree with the specified number of dimensions. Expiry times are
+	 * measured with {@link System#currentTimeMillis()}.
+	 *
+	 * @param dim number of dimensions, at most 64
+	 * @return PhTreeTTL
+	 */
+	public static <T> PhTreeTTL<T> create(int dim) {
+		return new PhTreeTTL<T>(dim, System::currentTimeMillis);
+	}
+
+	/**
+	 * Create a new tree with the specified number of dimensions and a custom clock.
+	 *
+	 * @param dim number of dimensions, at most 64
+	 * @param clock the clock that defines the current time
+	 * @return PhTreeTTL
+	 */
+	public static <T> PhTreeTTL<T> create(int dim, LongSupplier clock) {
+		return new PhTreeTTL<T>(dim, clock);
+	}
+
+	private PhTreeTTL(int dim, LongSupplier clock) {
+		if (dim > 64) {
+			throw new IllegalArgumentException("Invalid dimensionality: " + dim + 
+					", PhTreeTTL supports at most 64 dimensions.");
+		}
+		this.pht = new PhTree8<>(dim);
+		this.sweeper = new PhExpirySweeper<>(pht, e -> e.expiry);
+		this.clock = clock;
+	}
+
+	/**
+	 * @return the number of entries, including expired entries that have not been
+	 * reclaimed yet.
+	 */
+	public int size() {
+		return pht.size();
+	}
+
+	/**
+	 * Insert an entry associated with a k dimensional key.
+	 * @param key
+	 * @param value
+	 * @param ttl time to live, in units of the clock. If the expiry time overflows, the
+	 * entry never expires.
+	 * @return the previously associated value or {@code null} if the key was not found
+	 * or had expired
+	 */
+	public T put(long[] key, T value, long ttl) {
+		long now = clock.getAsLong();
+		sweep(PUT_SWEEP_WORK, now);
+		long expiry = expiryOf(now, ttl);
+		Entry<T> prev = pht.put(key, new Entry<>(value, expiry));
+		sweeper.onPut(key, expiry);
+		return valueOf(prev, now);
+	}
+
+	/**
+	 * @return now + ttl, saturated to the range of long.
+	 */
+	private static long expiryOf(long now, long ttl) {
+		long expiry = now + ttl;
+		if (((now ^ expiry) & (ttl ^ expiry)) < 0) {
+			return ttl < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+		return expiry;
+	}
+
+	public boolean contains(long ... key) {
+		return valueOf(pht.get(key), clock.getAsLong()) != null;
+	}
+
+	public T get(long ... key) {
+		return valueOf(pht.get(key), clock.getAsLong());
+	}
+
+	/**
+	 * Remove the entry associated with a k dimensional key.
+	 * @param key
+	 * @return the associated value or {@code null} if the key was not found or had expired
+	 */
+	public T remove(long... key) {
+		return valueOf(pht.remove(key), clock.getAsLong());
+	}
+
+	/**
+	 * Remove up to {@code maxWork} expired entries.
+	 * @param maxWork maximum number of entries to remove
+	 * @return the number of removed entries
+	 */
+	public int sweep(int maxWork) {
+		return sweep(maxWork, clock.getAsLong());
+	}
+
+	private int sweep(int maxWork, long now) {
+		//collect first, removing entries restructures the tree
+		sweeper.collectExpired(now, maxWork, expiredKeys);
+		int n = expiredKeys.size();
+		for (int i = 0; i < n; i++) {
+			pht.remove(expiredKeys.get(i));
+		}
+		expiredKeys.clear();
+		return n;
+	}
+
+	/**
+	 * @return the earliest expiry time of all entries that are not reclaimed yet, or
+	 * {@link Long#MAX_VALUE} if there are none. This may be used to schedule the
+	 * next call to {@link #sweep(int)}.
+	 */
+	public long getNextExpiry() {
+		return sweeper.getNextExpiry();
+	}
+
+	public void clear() {
+		pht.clear();
+	}
+
+	/**
+	 * Performs a rectangular window query. Expired entries are skipped.
+	 * @param min
+	 * @param max
+	 * @return query iterator
+	 */
+	public PhQueryTTL<T> query(long[] min, long[] max) {
+		return new PhQueryTTL<>(pht.query(min, max), pht.getDim(), clock);
+	}
+
+	public int getDim() {
+		return pht.getDim();
+	}
+
+	/**
+	 * @return the internal PhTree that backs this tree.
+	 */
+	public PhTree<?> getInternalTree() {
+		return pht;
+	}
+
+	private static <T> T valueOf(Entry<T> e, long now) {
+		return (e == null || e.expiry <= now) ? null : e.value;
+	}
+
+	public static class PhQueryTTL<T> implements PhIterator<T> {
+		private final PhQuery<Entry<T>> q;
+		private final LongSupplier clock;
+		private final PhEntry<T> result;
+		private long now;
+		private PhEntry<Entry<T>> next;
+
+		private PhQueryTTL(PhQuery<Entry<T>> q, int DIM, LongSupplier clock) {
+			this.q = q;
+			this.clock = clock;
+			this.result = new PhEntry<>(new long[DIM], null);
+			this.now = clock.getAsLong();
+			findNext();
+		}
+
+		public void reset(long[] min, long[] max) {
+			q.reset(min, max);
+			now = clock.getAsLong();
+			findNext();
+		}
+
+		private void findNext() {
+			while (q.hasNext()) {
+				PhEntry<Entry<T>> e = q.nextEntryReuse();
+				if (e.getValue().expiry > now) {
+					next = e;
+					return;
+				}
+			}
+			next = null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public T next() {
+			return nextValue();
+		}
+
+		@Override
+		public long[] nextKey() {
+			return nextEntryReuse().getKey().clone();
+		}
+
+		@Override
+		public T nextValue() {
+			return nextEntryReuse().getValue();
+		}
+
+		@Override
+		public PhEntry<T> nextEntry() {
+			return new PhEntry<>(nextEntryReuse());
+		}
+
+		@Override
+		public PhEntry<T> nextEntryReuse() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			System.arraycopy(next.getKey(), 0, result.getKey(), 0, result.getKey().length);
+			result.setValue(next.getValue().value);
+			findNext();
+			return result;
+		}
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.hd;
+
+import org.zoodb.index.critbit.CritBit;
+import org.zoodb.index.critbit.CritBit.FullIterator;
+import org.zoodb.index.critbit.CritBit.QueryIterator;
+import org.zoodb.index.critbit.CritBit1D;
+
+import ch.ethz.globis.pht.PhEntry;
+
+/**
+ * Node of a {@link PhTreeHD}.
+ *
+ * All entries of a node share the bits above 'postLen' (the prefix). The bits at 'postLen'
+ * of all dimensions form the hypercube (HC) address of an entry. HC addresses have one bit
+ * per dimension and are stored in ceil(DIM/64) words, see {@link #hcPos(long[], long[])}.
+ *
+ * Nodes are always node indexes (NI): a 1D crit-bit tree maps HC addresses to
+ * sub-nodes or to {@link PhEntry} instances.
+ *
+ * @param <T> The value type of the tree
+ */
+class NodeHD<T> {
+
+	//the highest bit of every HC word is inverted, see hcPos()
+	private static final long HC_FLIP = Long.MIN_VALUE;
+
+	// this + postLen + ref-prefix + ref-ind
+	private static final int NODE_BYTES = 12 + 4 + 4 + 4;
+	// crit-bit tree object and crit-bit node, see NiIndexCB.estimateSize()
+	private static final int CB_BYTES = 40;
+	private static final int CB_NODE_BYTES = 48;
+
+	private final int postLen;
+	//bits above postLen, all other bits are 0
+	private final long[] prefix;
+	//values are NodeHD or PhEntry
+	private final CritBit1D<Object> ind;
+
+	NodeHD(long[] key, int postLen) {
+		this.postLen = postLen;
+		this.prefix = new long[key.length];
+		long mask = maskPrefix(postLen);
+		for (int d = 0; d < key.length; d++) {
+			prefix[d] = key[d] & mask;
+		}
+		this.ind = CritBit.create1D(key.length);
+	}
+
+	/**
+	 * @param postLen
+	 * @return Mask for the bits above postLen.
+	 */
+	static long maskPrefix(int postLen) {
+		return postLen == 63 ? 0 : (-1L) << (postLen+1);
+	}
+
+	/**
+	 * @param DIM
+	 * @return A new array for HC addresses.
+	 */
+	static long[] createHcPos(int DIM) {
+		return new long[(DIM+63) >>> 6];
+	}
+
+	/**
+	 * Calculate the HC address of 'key' in this node. Dimension 'd' is stored in word
+	 * d/64 at bit 63-(d%64), i.e. the first dimension is the most significant bit, as in
+	 * {@link ch.ethz.globis.pht.PhTreeHelper#posInArray(long[], int)}.
+	 * The highest bit of every word is inverted because the range queries of
+	 * {@link CritBit} compare words as signed values.
+	 * @param key
+	 * @param pos output: the HC address
+	 * @return the HC address
+	 */
+	long[] hcPos(long[] key, long[] pos) {
+		for (int i = 0; i < pos.length; i++) {
+			pos[i] = HC_FLIP;
+		}
+		for (int d = 0; d < key.length; d++) {
+			pos[d >>> 6] ^= ((key[d] >>> postLen) & 1L) << (63 - (d & 63));
+		}
+		return pos;
+	}
+
+	/**
+	 * @param key
+	 * @return True if the key matches the prefix of this node.
+	 */
+	boolean isPrefixOf(long[] key) {
+		long mask = maskPrefix(postLen);
+		for (int d = 0; d < key.length; d++) {
+			if (((key[d] ^ prefix[d]) & mask) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calculate the HC masks for a window query. Bits in 'lower' are set for dimensions
+	 * where only the upper half of the node overlaps with the window, bits in 'upper' are
+	 * set for dimensions where the upper half overlaps with the window. Both are in the
+	 * format returned by {@link #hcPos(long[], long[])}.
+	 * @param min
+	 * @param max
+	 * @param lower output
+	 * @param upper output
+	 * @return false if the node does not overlap with the window
+	 */
+	boolean calcLimits(long[] min, long[] max, long[] lower, long[] upper) {
+		for (int i = 0; i < lower.length; i++) {
+			lower[i] = 0;
+			upper[i] = 0;
+		}
+		final long maskLow = postLen == 63 ? Long.MAX_VALUE : (1L << postLen) - 1;
+		for (int d = 0; d < prefix.length; d++) {
+			long lo0, hi0, lo1, hi1;
+			if (postLen == 63) {
+				//the sign bit
+				lo0 = 0;
+				lo1 = Long.MIN_VALUE;
+			} else {
+				lo0 = prefix[d];
+				lo1 = prefix[d] | (1L << postLen);
+			}
+			hi0 = lo0 | maskLow;
+			hi1 = lo1 | maskLow;
+			boolean has0 = lo0 <= max[d] && hi0 >= min[d];
+			boolean has1 = lo1 <= max[d] && hi1 >= min[d];
+			long bit = 1L << (63 - (d & 63));
+			if (has1) {
+				upper[d >>> 6] |= bit;
+				if (!has0) {
+					lower[d >>> 6] |= bit;
+				}
+			} else if (!has0) {
+				return false;
+			}
+		}
+		for (int i = 0; i < lower.length; i++) {
+			lower[i] ^= HC_FLIP;
+			upper[i] ^= HC_FLIP;
+		}
+		return true;
+	}
+
+	/**
+	 * @param pos HC address
+	 * @param lower see {@link #calcLimits(long[], long[], long[], long[])}
+	 * @param upper see {@link #calcLimits(long[], long[], long[], long[])}
+	 * @return True if the HC address is within the limits.
+	 */
+	static boolean checkHcPos(long[] pos, long[] lower, long[] upper) {
+		for (int i = 0; i < pos.length; i++) {
+			long p = pos[i] ^ HC_FLIP;
+			long l = lower[i] ^ HC_FLIP;
+			long u = upper[i] ^ HC_FLIP;
+			if ((p & l) != l || (p & ~u) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calculate the region of this node, i.e. the smallest box that contains all keys
+	 * with the prefix of this node.
+	 * @param min output
+	 * @param max output
+	 */
+	void getBox(long[] min, long[] max) {
+		if (postLen == 63) {
+			for (int d = 0; d < min.length; d++) {
+				min[d] = Long.MIN_VALUE;
+				max[d] = Long.MAX_VALUE;
+			}
+			return;
+		}
+		final long maskLow = (1L << (postLen+1)) - 1;
+		for (int d = 0; d < min.length; d++) {
+			min[d] = prefix[d];
+			max[d] = prefix[d] | maskLow;
+		}
+	}
+
+	/**
+	 * Calculate the point of the region of this node that is closest to 'center'.
+	 * @param center
+	 * @param out output
+	 */
+	void closestPoint(long[] center, long[] out) {
+		if (postLen == 63) {
+			System.arraycopy(center, 0, out, 0, center.length);
+			return;
+		}
+		final long maskLow = (1L << (postLen+1)) - 1;
+		for (int d = 0; d < center.length; d++) {
+			long lo = prefix[d];
+			long hi = prefix[d] | maskLow;
+			out[d] = center[d] < lo ? lo : (center[d] > hi ? hi : center[d]);
+		}
+	}
+
+	Object get(long[] pos) {
+		return ind.get(pos);
+	}
+
+	void put(long[] pos, Object o) {
+		ind.put(pos, o);
+	}
+
+	Object remove(long[] pos) {
+		return ind.remove(pos);
+	}
+
+	int getEntryCount() {
+		return ind.size();
+	}
+
+	FullIterator<Object> iterator() {
+		return ind.iterator();
+	}
+
+	/**
+	 * @param lower see {@link #calcLimits(long[], long[], long[], long[])}
+	 * @param upper see {@link #calcLimits(long[], long[], long[], long[])}
+	 * @return Iterator over all entries with HC addresses between 'lower' and 'upper'.
+	 * The result must be filtered with {@link #checkHcPos(long[], long[], long[])}.
+	 */
+	QueryIterator<Object> query(long[] lower, long[] upper) {
+		return ind.query(lower, upper);
+	}
+
+	int getPostLen() {
+		return postLen;
+	}
+
+	/**
+	 * @return Estimated size of a node object in bytes.
+	 */
+	static long estimateSizeNode() {
+		return NODE_BYTES;
+	}
+
+	/**
+	 * @param DIM
+	 * @return Estimated size of the prefix array of a node in bytes.
+	 */
+	static long estimateSizePrefix(int DIM) {
+		return 16 + DIM*8L;
+	}
+
+	/**
+	 * @param DIM
+	 * @param nNodes number of nodes
+	 * @param nIndexEntries number of sub-nodes and entries stored in all nodes
+	 * @return Estimated size of the crit-bit trees of all nodes in bytes, including the
+	 * HC addresses.
+	 */
+	static long estimateSizeIndex(int DIM, int nNodes, int nIndexEntries) {
+		return nNodes * (long) CB_BYTES +
+				nIndexEntries * (CB_NODE_BYTES + 16 + 8L*((DIM+63) >>> 6));
+	}
+
+	/**
+	 * @param DIM
+	 * @return Estimated size of a PhEntry with its key in bytes.
+	 */
+	static long estimateSizeEntry(int DIM) {
+		return 12 + 4 + 4 + 16 + DIM*8L;
+	}
+
+	long[] getPrefix() {
+		return prefix;
+	}
+}
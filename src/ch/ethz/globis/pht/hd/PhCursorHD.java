@@ -0,0 +1,189 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.hd;
+
+import java.util.Arrays;
+
+import ch.ethz.globis.pht.PhCursor;
+import ch.ethz.globis.pht.PhEntry;
+
+/**
+ * Point operations on a {@link PhTreeHD} that reuse the path of the previous operation.
+ *
+ * As in {@link ch.ethz.globis.pht.v8.PhTree8#cursor()}, the nodes that were traversed for
+ * the previous key are kept on a stack. An operation starts with the deepest node on the
+ * stack whose prefix matches the current key.
+ *
+ * The path is discarded when the tree is modified other than via this cursor.
+ *
+ * @param <T> The value type of the tree
+ */
+final class PhCursorHD<T> implements PhCursor<T> {
+
+	private final PhTreeHD<T> pht;
+	private final int DIM;
+	//postLen decreases with every level, so there are at most 64 levels
+	@SuppressWarnings("unchecked")
+	private final NodeHD<T>[] path = (NodeHD<T>[]) new NodeHD<?>[64];
+	private int depth = 0;
+	private final long[] pos;
+	private int modCount;
+
+	PhCursorHD(PhTreeHD<T> pht) {
+		this.pht = pht;
+		this.DIM = pht.getDim();
+		this.pos = NodeHD.createHcPos(DIM);
+		this.modCount = pht.getModCount();
+	}
+
+	@Override
+	public void reset() {
+		depth = 0;
+	}
+
+	@Override
+	public T get(long... key) {
+		PhEntry<T> e = lookup(key);
+		return e == null ? null : e.getValue();
+	}
+
+	@Override
+	public boolean contains(long... key) {
+		return lookup(key) != null;
+	}
+
+	@Override
+	public T put(long[] key, T value) {
+		checkKey(key);
+		if (!seek(key, key)) {
+			T ret = pht.put(key, value);
+			modCount = pht.getModCount();
+			return ret;
+		}
+		NodeHD<T> node = path[depth-1];
+		T ret = pht.putFrom(key, value, node);
+		modCount = pht.getModCount();
+		//'node' still exists, but its sub-nodes may have been replaced
+		descend(key);
+		return ret;
+	}
+
+	@Override
+	public T remove(long... key) {
+		checkKey(key);
+		if (!seek(key, key)) {
+			return null;
+		}
+		NodeHD<T> node = path[depth-1];
+		NodeHD<T> parent = depth > 1 ? path[depth-2] : null;
+		T ret = pht.removeFrom(key, node, parent);
+		modCount = pht.getModCount();
+		checkPath(key, node, parent);
+		return ret;
+	}
+
+	@Override
+	public T update(long[] oldKey, long[] newKey) {
+		checkKey(oldKey);
+		checkKey(newKey);
+		if (!seek(oldKey, newKey)) {
+			return null;
+		}
+		NodeHD<T> node = path[depth-1];
+		NodeHD<T> parent = depth > 1 ? path[depth-2] : null;
+		T ret = pht.updateFrom(oldKey, newKey, node, parent);
+		modCount = pht.getModCount();
+		checkPath(newKey, node, parent);
+		if (depth > 0) {
+			descend(newKey);
+		}
+		return ret;
+	}
+
+	private void checkKey(long[] key) {
+		if (key.length != DIM) {
+			throw new IllegalArgumentException("Invalid number of arguments: " +
+					key.length + " / " + DIM);
+		}
+	}
+
+	/**
+	 * Remove 'node' from the path if it has been replaced by its remaining entry.
+	 * 'node' must be the last node on the path and its prefix must match the key.
+	 */
+	private void checkPath(long[] key, NodeHD<T> node, NodeHD<T> parent) {
+		if (parent == null) {
+			if (pht.getRoot() != node) {
+				depth = 0;
+			}
+		} else if (parent.get(parent.hcPos(key, pos)) != node) {
+			depth--;
+		}
+	}
+
+	/**
+	 * Truncate the path to the deepest node whose prefix matches both keys.
+	 * @param key1
+	 * @param key2
+	 * @return {@code false} if the tree is empty
+	 */
+	private boolean seek(long[] key1, long[] key2) {
+		if (modCount != pht.getModCount()) {
+			reset();
+			modCount = pht.getModCount();
+		}
+		if (depth == 0) {
+			NodeHD<T> root = pht.getRoot();
+			if (root == null) {
+				return false;
+			}
+			//the root matches every key
+			path[depth++] = root;
+			return true;
+		}
+		while (depth > 1 &&
+				!(path[depth-1].isPrefixOf(key1) && path[depth-1].isPrefixOf(key2))) {
+			depth--;
+		}
+		return true;
+	}
+
+	private PhEntry<T> lookup(long[] key) {
+		checkKey(key);
+		if (!seek(key, key)) {
+			return null;
+		}
+		return descend(key);
+	}
+
+	/**
+	 * Descend from the last node on the path and add all sub-nodes with matching prefix
+	 * to the path.
+	 * @param key
+	 * @return the entry or {@code null} if the key was not found
+	 */
+	@SuppressWarnings("unchecked")
+	private PhEntry<T> descend(long[] key) {
+		NodeHD<T> node = path[depth-1];
+		while (true) {
+			Object o = node.get(node.hcPos(key, pos));
+			if (o instanceof NodeHD) {
+				node = (NodeHD<T>) o;
+				if (!node.isPrefixOf(key)) {
+					return null;
+				}
+				path[depth++] = node;
+				continue;
+			}
+			if (o == null) {
+				return null;
+			}
+			PhEntry<T> e = (PhEntry<T>) o;
+			return Arrays.equals(e.getKey(), key) ? e : null;
+		}
+	}
+}
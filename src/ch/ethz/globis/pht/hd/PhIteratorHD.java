@@ -0,0 +1,164 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.hd;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.zoodb.index.critbit.CritBit.QueryIterator;
+import org.zoodb.index.critbit.CritBit.Entry;
+
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhFilter;
+import ch.ethz.globis.pht.PhTree.PhExtent;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+
+/**
+ * Window query and extent iterator for {@link PhTreeHD}.
+ * Sub-nodes are only visited if their prefix overlaps with the query window, and only
+ * the HC addresses that overlap with the window are read from the node indexes.
+ *
+ * @param <T> The value type of the tree
+ */
+final class PhIteratorHD<T> implements PhExtent<T>, PhQuery<T> {
+
+	private static final class NodeIter {
+		QueryIterator<Object> iter;
+		final long[] lower;
+		final long[] upper;
+		NodeIter(int DIM) {
+			lower = NodeHD.createHcPos(DIM);
+			upper = NodeHD.createHcPos(DIM);
+		}
+	}
+
+	private final int DIM;
+	private final PhTreeHD<T> tree;
+	private final PhFilter filter;
+	//postLen decreases with every level, so there are at most 64 levels
+	private final NodeIter[] stack = new NodeIter[64];
+	private int stackTop = -1;
+	private long[] min;
+	private long[] max;
+	private PhEntry<T> next;
+
+	PhIteratorHD(PhTreeHD<T> tree, PhFilter filter) {
+		this.DIM = tree.getDim();
+		this.tree = tree;
+		this.filter = filter;
+	}
+
+	@Override
+	public PhExtent<T> reset() {
+		long[] min = new long[DIM];
+		long[] max = new long[DIM];
+		Arrays.fill(min, Long.MIN_VALUE);
+		Arrays.fill(max, Long.MAX_VALUE);
+		reset(min, max);
+		return this;
+	}
+
+	@Override
+	public void reset(long[] min, long[] max) {
+		this.min = min;
+		this.max = max;
+		this.stackTop = -1;
+		if (tree.getRoot() != null) {
+			push(tree.getRoot());
+		}
+		findNext();
+	}
+
+	private void push(NodeHD<T> node) {
+		if (stack[stackTop+1] == null) {
+			stack[stackTop+1] = new NodeIter(DIM);
+		}
+		NodeIter ni = stack[stackTop+1];
+		if (!node.calcLimits(min, max, ni.lower, ni.upper)) {
+			return;
+		}
+		ni.iter = node.query(ni.lower, ni.upper);
+		stackTop++;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void findNext() {
+		while (stackTop >= 0) {
+			NodeIter ni = stack[stackTop];
+			if (!ni.iter.hasNext()) {
+				ni.iter = null;
+				stackTop--;
+				continue;
+			}
+			Entry<Object> e = ni.iter.nextEntry();
+			if (!NodeHD.checkHcPos(e.key(), ni.lower, ni.upper)) {
+				continue;
+			}
+			Object o = e.value();
+			if (o instanceof NodeHD) {
+				NodeHD<T> sub = (NodeHD<T>) o;
+				if (filter == null || filter.isValid(sub.getPostLen()+1, sub.getPrefix())) {
+					push(sub);
+				}
+				continue;
+			}
+			PhEntry<T> pe = (PhEntry<T>) o;
+			if (isInRange(pe.getKey()) && (filter == null || filter.isValid(pe.getKey()))) {
+				next = pe;
+				return;
+			}
+		}
+		next = null;
+	}
+
+	private boolean isInRange(long[] key) {
+		for (int d = 0; d < key.length; d++) {
+			if (key[d] < min[d] || key[d] > max[d]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	@Override
+	public T next() {
+		return nextValue();
+	}
+
+	@Override
+	public long[] nextKey() {
+		return nextEntryReuse().getKey().clone();
+	}
+
+	@Override
+	public T nextValue() {
+		return nextEntryReuse().getValue();
+	}
+
+	@Override
+	public PhEntry<T> nextEntry() {
+		return new PhEntry<>(nextEntryReuse());
+	}
+
+	/**
+	 * The returned entry is the entry stored in the tree, it must not be modified.
+	 */
+	@Override
+	public PhEntry<T> nextEntryReuse() {
+		if (next == null) {
+			throw new NoSuchElementException();
+		}
+		PhEntry<T> ret = next;
+		findNext();
+		return ret;
+	}
+}
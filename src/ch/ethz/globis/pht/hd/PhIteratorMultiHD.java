@@ -0,0 +1,245 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.hd;
+
+import java.util.NoSuchElementException;
+
+import org.zoodb.index.critbit.CritBit.Entry;
+import org.zoodb.index.critbit.CritBit.QueryIterator;
+
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhTree.PhQueryMulti;
+
+/**
+ * Query iterator for the union of several rectangular windows of a {@link PhTreeHD}.
+ *
+ * The tree is traversed only once, as in {@link ch.ethz.globis.pht.v8.PhIteratorMultiNoGC}.
+ * For every node, the iterator determines which of the windows of the parent node still
+ * overlap with the region of the node. Only these windows are passed on to sub-nodes,
+ * nodes without overlapping windows are skipped. Within a node, the bounding box of the
+ * remaining windows is used to limit the HC addresses that are read from the node index.
+ * Every matching entry is returned exactly once, even if it is contained in several windows.
+ *
+ * @param <T> The value type of the tree
+ */
+final class PhIteratorMultiHD<T> implements PhQueryMulti<T> {
+
+	/**
+	 * Windows that are relevant for a given node and their bounding box.
+	 */
+	private static final class Level {
+		QueryIterator<Object> iter;
+		int[] active;
+		int nActive;
+		final long[] min;
+		final long[] max;
+		final long[] lower;
+		final long[] upper;
+
+		Level(int DIM) {
+			min = new long[DIM];
+			max = new long[DIM];
+			lower = NodeHD.createHcPos(DIM);
+			upper = NodeHD.createHcPos(DIM);
+		}
+
+		void ensureCapacity(int n) {
+			if (active == null || active.length < n) {
+				active = new int[n];
+			}
+		}
+	}
+
+	private final int DIM;
+	private final PhTreeHD<T> tree;
+	//postLen decreases with every level, so there are at most 64 levels
+	private final Level[] stack = new Level[64];
+	private int stackTop = -1;
+	private final long[] nodeMin;
+	private final long[] nodeMax;
+	private long[][] mins;
+	private long[][] maxs;
+	private PhEntry<T> next;
+
+	PhIteratorMultiHD(PhTreeHD<T> tree) {
+		this.DIM = tree.getDim();
+		this.tree = tree;
+		this.nodeMin = new long[DIM];
+		this.nodeMax = new long[DIM];
+	}
+
+	@Override
+	public void reset(long[][] mins, long[][] maxs) {
+		if (mins.length != maxs.length) {
+			throw new IllegalArgumentException("Invalid number of windows: " +
+					mins.length + " / " + maxs.length);
+		}
+		for (int i = 0; i < mins.length; i++) {
+			if (mins[i].length != DIM || maxs[i].length != DIM) {
+				throw new IllegalArgumentException("Invalid number of arguments: " +
+						mins[i].length + " / " + maxs[i].length + "  DIM=" + DIM);
+			}
+		}
+		this.mins = mins;
+		this.maxs = maxs;
+		this.stackTop = -1;
+		if (tree.getRoot() != null && mins.length > 0) {
+			push(tree.getRoot());
+		}
+		findNext();
+	}
+
+	@Override
+	public void reset(long[] min, long[] max) {
+		reset(new long[][]{min}, new long[][]{max});
+	}
+
+	private boolean overlaps(int window) {
+		long[] min = mins[window];
+		long[] max = maxs[window];
+		for (int d = 0; d < DIM; d++) {
+			if (min[d] > nodeMax[d] || max[d] < nodeMin[d]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void push(NodeHD<T> node) {
+		Level parent = stackTop < 0 ? null : stack[stackTop];
+		Level level = stack[stackTop+1];
+		if (level == null) {
+			level = new Level(DIM);
+			stack[stackTop+1] = level;
+		}
+
+		//remove windows that do not overlap with the node
+		node.getBox(nodeMin, nodeMax);
+		int nActive = 0;
+		if (parent == null) {
+			level.ensureCapacity(mins.length);
+			for (int i = 0; i < mins.length; i++) {
+				if (overlaps(i)) {
+					level.active[nActive++] = i;
+				}
+			}
+		} else {
+			level.ensureCapacity(parent.nActive);
+			for (int i = 0; i < parent.nActive; i++) {
+				int w = parent.active[i];
+				if (overlaps(w)) {
+					level.active[nActive++] = w;
+				}
+			}
+		}
+		if (nActive == 0) {
+			return;
+		}
+		level.nActive = nActive;
+
+		//bounding box of the remaining windows
+		System.arraycopy(mins[level.active[0]], 0, level.min, 0, DIM);
+		System.arraycopy(maxs[level.active[0]], 0, level.max, 0, DIM);
+		for (int i = 1; i < nActive; i++) {
+			long[] min = mins[level.active[i]];
+			long[] max = maxs[level.active[i]];
+			for (int d = 0; d < DIM; d++) {
+				level.min[d] = min[d] < level.min[d] ? min[d] : level.min[d];
+				level.max[d] = max[d] > level.max[d] ? max[d] : level.max[d];
+			}
+		}
+
+		if (!node.calcLimits(level.min, level.max, level.lower, level.upper)) {
+			return;
+		}
+		level.iter = node.query(level.lower, level.upper);
+		stackTop++;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void findNext() {
+		while (stackTop >= 0) {
+			Level level = stack[stackTop];
+			if (!level.iter.hasNext()) {
+				level.iter = null;
+				stackTop--;
+				continue;
+			}
+			Entry<Object> e = level.iter.nextEntry();
+			if (!NodeHD.checkHcPos(e.key(), level.lower, level.upper)) {
+				continue;
+			}
+			Object o = e.value();
+			if (o instanceof NodeHD) {
+				push((NodeHD<T>) o);
+				continue;
+			}
+			PhEntry<T> pe = (PhEntry<T>) o;
+			if (isInside(level, pe.getKey())) {
+				next = pe;
+				return;
+			}
+		}
+		next = null;
+	}
+
+	private boolean isInside(Level level, long[] key) {
+		for (int i = 0; i < level.nActive; i++) {
+			if (isInside(key, mins[level.active[i]], maxs[level.active[i]])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isInside(long[] key, long[] min, long[] max) {
+		for (int d = 0; d < key.length; d++) {
+			if (key[d] < min[d] || key[d] > max[d]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	@Override
+	public T next() {
+		return nextValue();
+	}
+
+	@Override
+	public long[] nextKey() {
+		return nextEntryReuse().getKey().clone();
+	}
+
+	@Override
+	public T nextValue() {
+		return nextEntryReuse().getValue();
+	}
+
+	@Override
+	public PhEntry<T> nextEntry() {
+		return new PhEntry<>(nextEntryReuse());
+	}
+
+	/**
+	 * The returned entry is the entry stored in the tree, it must not be modified.
+	 */
+	@Override
+	public PhEntry<T> nextEntryReuse() {
+		if (next == null) {
+			throw new NoSuchElementException();
+		}
+		PhEntry<T> ret = next;
+		findNext();
+		return ret;
+	}
+}
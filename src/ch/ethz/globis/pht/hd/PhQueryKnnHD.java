@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.hd;
+
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.zoodb.index.critbit.CritBit.FullIterator;
+
+import ch.ethz.globis.pht.PhDistance;
+import ch.ethz.globis.pht.PhDistanceL;
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhTree.PhKnnQuery;
+
+/**
+ * kNN query for {@link PhTreeHD}.
+ * Nodes and entries are visited in the order of their distance to the center, the distance
+ * of a node is the distance to the closest point of its prefix region. Nodes that are
+ * farther away than the n-th closest entry are never visited.
+ *
+ * @param <T> The value type of the tree
+ */
+final class PhQueryKnnHD<T> implements PhKnnQuery<T> {
+
+	private static final class Candidate implements Comparable<Candidate> {
+		final double dist;
+		final Object o;
+		Candidate(double dist, Object o) {
+			this.dist = dist;
+			this.o = o;
+		}
+		@Override
+		public int compareTo(Candidate c) {
+			return Double.compare(dist, c.dist);
+		}
+	}
+
+	private final PhTreeHD<T> tree;
+	private final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+	private final ArrayList<PhEntry<T>> results = new ArrayList<>();
+	private int resultPos;
+	private final long[] closest;
+
+	PhQueryKnnHD(PhTreeHD<T> tree) {
+		this.tree = tree;
+		this.closest = new long[tree.getDim()];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public PhKnnQuery<T> reset(int nMin, PhDistance dist, long... center) {
+		if (dist == null) {
+			dist = PhDistanceL.THIS;
+		}
+		results.clear();
+		resultPos = 0;
+		queue.clear();
+		if (tree.getRoot() == null || nMin <= 0) {
+			return this;
+		}
+		queue.add(new Candidate(0, tree.getRoot()));
+		while (!queue.isEmpty() && results.size() < nMin) {
+			Candidate c = queue.poll();
+			if (c.o instanceof PhEntry) {
+				results.add((PhEntry<T>) c.o);
+				continue;
+			}
+			FullIterator<Object> it = ((NodeHD<T>) c.o).iterator();
+			while (it.hasNext()) {
+				Object o = it.next();
+				if (o instanceof NodeHD) {
+					((NodeHD<T>) o).closestPoint(center, closest);
+					queue.add(new Candidate(dist.dist(center, closest), o));
+				} else {
+					queue.add(new Candidate(dist.dist(center, ((PhEntry<T>) o).getKey()), o));
+				}
+			}
+		}
+		queue.clear();
+		return this;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return resultPos < results.size();
+	}
+
+	@Override
+	public T next() {
+		return nextValue();
+	}
+
+	@Override
+	public long[] nextKey() {
+		return nextEntryReuse().getKey().clone();
+	}
+
+	@Override
+	public T nextValue() {
+		return nextEntryReuse().getValue();
+	}
+
+	@Override
+	public PhEntry<T> nextEntry() {
+		return new PhEntry<>(nextEntryReuse());
+	}
+
+	/**
+	 * The returned entry is the entry stored in the tree, it must not be modified.
+	 */
+	@Override
+	public PhEntry<T> nextEntryReuse() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return results.get(resultPos++);
+	}
+}
@@ -0,0 +1,747 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.hd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.zoodb.index.critbit.CritBit.FullIterator;
+
+import ch.ethz.globis.pht.PhCursor;
+import ch.ethz.globis.pht.PhDimFilter;
+import ch.ethz.globis.pht.PhDistance;
+import ch.ethz.globis.pht.PhDistanceL;
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhFilter;
+import ch.ethz.globis.pht.PhFilterDistance;
+import ch.ethz.globis.pht.PhPredicate;
+import ch.ethz.globis.pht.PhRangeQuery;
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTreeConfig;
+import ch.ethz.globis.pht.PhTreeHelper;
+import ch.ethz.globis.pht.util.Bits;
+import ch.ethz.globis.pht.util.PhMapper;
+import ch.ethz.globis.pht.util.PhTreeMemoryStats;
+import ch.ethz.globis.pht.util.PhTreeQStats;
+import ch.ethz.globis.pht.util.StringBuilderLn;
+
+/**
+ * PH-tree for more than 64 dimensions.
+ *
+ * The hypercube (HC) addresses of {@link ch.ethz.globis.pht.v8.PhTree8} are stored in a
+ * single {@code long}, which limits it to 64 dimensions. This tree uses HC addresses with
+ * one {@code long} per 64 dimensions and stores all nodes as node indexes (NI), i.e. as
+ * crit-bit trees over the HC addresses, see {@link NodeHD}.
+ * Window queries prune sub-nodes by their prefix and read only the matching HC addresses
+ * of each node, kNN queries visit nodes in the order of their distance to the center.
+ *
+ * {@link PhTree#create(int)} returns this tree for more than 64 dimensions.
+ *
+ * @param <T> The value type of the tree
+ */
+public class PhTreeHD<T> implements PhTree<T> {
+
+	private final int DIM;
+	private NodeHD<T> root = null;
+	private int nEntries = 0;
+	private int nNodes = 0;
+	//incremented by every operation that may add or remove nodes, see PhCursorHD
+	private int modCount = 0;
+	//infix length histogram for getMemoryStats(), see addInfix()
+	private final int[] infixHist = new int[64];
+
+	public PhTreeHD(int dim) {
+		if (dim < 1) {
+			throw new IllegalArgumentException("Invalid dimensionality: " + dim);
+		}
+		this.DIM = dim;
+	}
+
+	/**
+	 * Values are always stored as objects, the value type of the configuration is ignored.
+	 * @param cfg
+	 */
+	public PhTreeHD(PhTreeConfig cfg) {
+		this(cfg.getDimActual());
+	}
+
+	NodeHD<T> getRoot() {
+		return root;
+	}
+
+	int getModCount() {
+		return modCount;
+	}
+
+	@Override
+	public int size() {
+		return nEntries;
+	}
+
+	@Override
+	public int getNodeCount() {
+		return nNodes;
+	}
+
+	@Override
+	public PhTreeQStats getQuality() {
+		PhTreeQStats stats = new PhTreeQStats(64);
+		if (root != null) {
+			getQuality(0, 64, root, stats);
+		}
+		return stats;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void getQuality(int currentDepth, int parentPostLen, NodeHD<T> node,
+			PhTreeQStats stats) {
+		stats.nNodes++;
+		stats.nNI++;
+		int infixLen = parentPostLen - node.getPostLen() - 1;
+		stats.infixHist[infixLen]++;
+		stats.nodeDepthHist[currentDepth]++;
+		stats.nodeSizeLogHist[32-Integer.numberOfLeadingZeros(node.getEntryCount())]++;
+
+		currentDepth += infixLen;
+		stats.q_totalDepth += currentDepth;
+
+		int nPost = 0;
+		FullIterator<Object> it = node.iterator();
+		while (it.hasNext()) {
+			Object o = it.next();
+			if (o instanceof NodeHD) {
+				getQuality(currentDepth + 1, node.getPostLen(), (NodeHD<T>) o, stats);
+			} else {
+				nPost++;
+			}
+		}
+
+		//count post-fixes
+		stats.q_nPostFixN[currentDepth] += nPost;
+	}
+
+	@Override
+	public PhTreeHelper.Stats getStats() {
+		PhTreeHelper.Stats stats = new PhTreeHelper.Stats();
+		if (root != null) {
+			getStats(root, stats);
+		}
+		return stats;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void getStats(NodeHD<T> node, PhTreeHelper.Stats stats) {
+		stats.nNodes++;
+		stats.nNI++;
+		int nChildren = node.getEntryCount();
+		//same estimate as used for getMemoryStats()
+		stats.size += NodeHD.estimateSizeNode() + NodeHD.estimateSizePrefix(DIM) +
+				NodeHD.estimateSizeIndex(DIM, 1, nChildren);
+
+		int nSub = 0;
+		FullIterator<Object> it = node.iterator();
+		while (it.hasNext()) {
+			Object o = it.next();
+			if (o instanceof NodeHD) {
+				nSub++;
+				getStats((NodeHD<T>) o, stats);
+			} else {
+				stats.size += NodeHD.estimateSizeEntry(DIM);
+			}
+		}
+		if (nSub > 0) {
+			stats.nInnerNodes++;
+			stats.nSubOnly += nSub;
+		} else {
+			stats.nLeafNodes++;
+		}
+		//The root has a fixed postLen and may have a single sub-node
+		if (nChildren == 1 && node != root) {
+			stats.nLonely++;
+		}
+		stats.nChildren += nChildren;
+	}
+
+	/**
+	 * Nodes are always node indexes, this returns the same as {@link #getStats()}.
+	 */
+	@Override
+	public PhTreeHelper.Stats getStatsIdealNoNode() {
+		return getStats();
+	}
+
+	@Override
+	public PhTreeMemoryStats getMemoryStats() {
+		PhTreeMemoryStats stats = new PhTreeMemoryStats();
+		stats.nNodes = nNodes;
+		stats.nNI = nNodes;
+		stats.bytesNodes = nNodes * NodeHD.estimateSizeNode();
+		stats.bytesBitArrays = nNodes * NodeHD.estimateSizePrefix(DIM);
+		//every entry and every node except the root is stored in the index of a node
+		int nIndexEntries = nEntries + (nNodes > 0 ? nNodes - 1 : 0);
+		stats.bytesNiIndex = NodeHD.estimateSizeIndex(DIM, nNodes, nIndexEntries);
+		stats.bytesNiEntries = nEntries * NodeHD.estimateSizeEntry(DIM);
+		stats.infixHist = infixHist.clone();
+		return stats;
+	}
+
+	/**
+	 * Add (sign=1) or subtract (sign=-1) the infix of a node to/from the histogram.
+	 * The infix length depends on the parent, the root has parentPostLen=64.
+	 */
+	private void addInfix(int sign, int parentPostLen, NodeHD<T> node) {
+		infixHist[parentPostLen - node.getPostLen() - 1] += sign;
+	}
+
+	/**
+	 * Nodes are always stored as node indexes, there is nothing to compact.
+	 * @return 0
+	 */
+	@Override
+	public long compact() {
+		return 0;
+	}
+
+	@Override
+	public long compact(long maxNanos) {
+		return 0;
+	}
+
+	private void checkDim(long[] key) {
+		if (key.length != DIM) {
+			throw new IllegalArgumentException("Invalid number of arguments: " + key.length +
+					" DIM=" + DIM);
+		}
+	}
+
+	/**
+	 * @return The highest bit where a and b differ, or -1 if they are equal.
+	 */
+	private static int getDiffBit(long[] a, long[] b) {
+		long diff = 0;
+		for (int d = 0; d < a.length; d++) {
+			diff |= a[d] ^ b[d];
+		}
+		return 63 - Long.numberOfLeadingZeros(diff);
+	}
+
+	/**
+	 * Create a node that contains the new entry and an existing entry or sub-node.
+	 */
+	@SuppressWarnings("unchecked")
+	private NodeHD<T> split(NodeHD<T> parent, long[] key, T value, long[] otherKey,
+			Object other) {
+		int postLen = getDiffBit(key, otherKey);
+		NodeHD<T> n = new NodeHD<>(key, postLen);
+		long[] pos = NodeHD.createHcPos(DIM);
+		n.put(n.hcPos(otherKey, pos), other);
+		n.put(n.hcPos(key, pos), new PhEntry<>(key.clone(), value));
+		nNodes++;
+		addInfix(1, parent.getPostLen(), n);
+		if (other instanceof NodeHD) {
+			addInfix(-1, parent.getPostLen(), (NodeHD<T>) other);
+			addInfix(1, postLen, (NodeHD<T>) other);
+		}
+		return n;
+	}
+
+	@Override
+	public T put(long[] key, T value) {
+		checkDim(key);
+		if (root == null) {
+			root = new NodeHD<>(key, 63);
+			nNodes++;
+			addInfix(1, 64, root);
+		}
+		return putFrom(key, value, root);
+	}
+
+	/**
+	 * Insert an entry, starting the descent at the given node.
+	 * @param key
+	 * @param value
+	 * @param node a node whose prefix matches the key
+	 * @return the previous value or {@code null}
+	 */
+	@SuppressWarnings("unchecked")
+	T putFrom(long[] key, T value, NodeHD<T> node) {
+		modCount++;
+		long[] pos = NodeHD.createHcPos(DIM);
+		while (true) {
+			node.hcPos(key, pos);
+			Object o = node.get(pos);
+			if (o == null) {
+				node.put(pos, new PhEntry<>(key.clone(), value));
+			} else if (o instanceof NodeHD) {
+				NodeHD<T> sub = (NodeHD<T>) o;
+				if (sub.isPrefixOf(key)) {
+					node = sub;
+					continue;
+				}
+				//the new node is inserted between 'node' and 'sub'
+				node.put(pos, split(node, key, value, sub.getPrefix(), sub));
+			} else {
+				PhEntry<T> e = (PhEntry<T>) o;
+				if (Arrays.equals(e.getKey(), key)) {
+					T old = e.getValue();
+					e.setValue(value);
+					return old;
+				}
+				node.put(pos, split(node, key, value, e.getKey(), e));
+			}
+			nEntries++;
+			return null;
+		}
+	}
+
+	private PhEntry<T> getEntry(long[] key) {
+		checkDim(key);
+		return root == null ? null : getEntryFrom(key, root);
+	}
+
+	/**
+	 * @param key
+	 * @param node a node whose prefix matches the key
+	 * @return the entry or {@code null}
+	 */
+	@SuppressWarnings("unchecked")
+	PhEntry<T> getEntryFrom(long[] key, NodeHD<T> node) {
+		long[] pos = NodeHD.createHcPos(DIM);
+		while (true) {
+			Object o = node.get(node.hcPos(key, pos));
+			if (o instanceof NodeHD) {
+				node = (NodeHD<T>) o;
+				if (!node.isPrefixOf(key)) {
+					return null;
+				}
+				continue;
+			}
+			if (o == null) {
+				return null;
+			}
+			PhEntry<T> e = (PhEntry<T>) o;
+			return Arrays.equals(e.getKey(), key) ? e : null;
+		}
+	}
+
+	@Override
+	public boolean contains(long... key) {
+		return getEntry(key) != null;
+	}
+
+	@Override
+	public T get(long... key) {
+		PhEntry<T> e = getEntry(key);
+		return e == null ? null : e.getValue();
+	}
+
+	@Override
+	public void getAll(long[][] keys, T[] out) {
+		getAll(keys, out, false, false);
+	}
+
+	/**
+	 * The keys are not sorted, 'isSorted' is ignored.
+	 */
+	@Override
+	public void getAll(long[][] keys, T[] out, boolean isSorted, boolean parallel) {
+		if (out.length < keys.length) {
+			throw new IllegalArgumentException("Invalid number of arguments: " +
+					keys.length + " / " + out.length);
+		}
+		IntStream s = IntStream.range(0, keys.length);
+		(parallel ? s.parallel() : s).forEach(i -> out[i] = get(keys[i]));
+	}
+
+	@Override
+	public void containsAll(long[][] keys, boolean[] out) {
+		containsAll(keys, out, false, false);
+	}
+
+	/**
+	 * The keys are not sorted, 'isSorted' is ignored.
+	 */
+	@Override
+	public void containsAll(long[][] keys, boolean[] out, boolean isSorted, boolean parallel) {
+		if (out.length < keys.length) {
+			throw new IllegalArgumentException("Invalid number of arguments: " +
+					keys.length + " / " + out.length);
+		}
+		IntStream s = IntStream.range(0, keys.length);
+		(parallel ? s.parallel() : s).forEach(i -> out[i] = contains(keys[i]));
+	}
+
+	@Override
+	public T remove(long... key) {
+		checkDim(key);
+		return root == null ? null : removeFrom(key, root, null);
+	}
+
+	/**
+	 * Remove an entry, starting the descent at the given node. A node that is left with
+	 * a single entry is replaced by this entry in its parent.
+	 * @param key
+	 * @param node a node whose prefix matches the key
+	 * @param parent the parent of 'node' or {@code null} if 'node' is the root
+	 * @return the removed value or {@code null}
+	 */
+	@SuppressWarnings("unchecked")
+	T removeFrom(long[] key, NodeHD<T> node, NodeHD<T> parent) {
+		modCount++;
+		long[] pos = NodeHD.createHcPos(DIM);
+		long[] parentPos = NodeHD.createHcPos(DIM);
+		if (parent != null) {
+			parent.hcPos(key, parentPos);
+		}
+		while (true) {
+			node.hcPos(key, pos);
+			Object o = node.get(pos);
+			if (o instanceof NodeHD) {
+				NodeHD<T> sub = (NodeHD<T>) o;
+				if (!sub.isPrefixOf(key)) {
+					return null;
+				}
+				parent = node;
+				node = sub;
+				long[] t = parentPos;
+				parentPos = pos;
+				pos = t;
+				continue;
+			}
+			if (o == null || !Arrays.equals(((PhEntry<T>) o).getKey(), key)) {
+				return null;
+			}
+			node.remove(pos);
+			nEntries--;
+			if (parent != null && node.getEntryCount() == 1) {
+				//replace the node with its remaining entry or sub-node
+				Object rest = node.iterator().next();
+				parent.put(parentPos, rest);
+				nNodes--;
+				addInfix(-1, parent.getPostLen(), node);
+				if (rest instanceof NodeHD) {
+					addInfix(-1, node.getPostLen(), (NodeHD<T>) rest);
+					addInfix(1, parent.getPostLen(), (NodeHD<T>) rest);
+				}
+			} else if (nEntries == 0) {
+				root = null;
+				nNodes = 0;
+				Arrays.fill(infixHist, 0);
+			}
+			return ((PhEntry<T>) o).getValue();
+		}
+	}
+
+	/**
+	 * In contrast to {@link ch.ethz.globis.pht.v8.PhTree8}, this removes every entry
+	 * individually.
+	 */
+	@Override
+	public int removeRange(long[] min, long[] max) {
+		ArrayList<long[]> keys = new ArrayList<>();
+		PhQuery<T> q = query(min, max);
+		while (q.hasNext()) {
+			keys.add(q.nextEntryReuse().getKey());
+		}
+		for (long[] key: keys) {
+			remove(key);
+		}
+		return keys.size();
+	}
+
+	@Override
+	public T putIfAbsent(long[] key, T value) {
+		PhEntry<T> e = getEntry(key);
+		if (e != null) {
+			return e.getValue();
+		}
+		if (value != null) {
+			put(key, value);
+		}
+		return null;
+	}
+
+	@Override
+	public T computeIfAbsent(long[] key, Function<long[], ? extends T> mappingFunction) {
+		PhEntry<T> e = getEntry(key);
+		if (e != null) {
+			return e.getValue();
+		}
+		T value = mappingFunction.apply(key);
+		if (value != null) {
+			put(key, value);
+		}
+		return value;
+	}
+
+	@Override
+	public T computeIfPresent(long[] key,
+			BiFunction<long[], ? super T, ? extends T> remappingFunction) {
+		PhEntry<T> e = getEntry(key);
+		if (e == null) {
+			return null;
+		}
+		T value = remappingFunction.apply(key, e.getValue());
+		if (value == null) {
+			remove(key);
+		} else {
+			e.setValue(value);
+		}
+		return value;
+	}
+
+	@Override
+	public T compute(long[] key, BiFunction<long[], ? super T, ? extends T> remappingFunction) {
+		PhEntry<T> e = getEntry(key);
+		T value = remappingFunction.apply(key, e == null ? null : e.getValue());
+		if (value == null) {
+			if (e != null) {
+				remove(key);
+			}
+		} else if (e != null) {
+			e.setValue(value);
+		} else {
+			put(key, value);
+		}
+		return value;
+	}
+
+	@Override
+	public T merge(long[] key, T value,
+			BiFunction<? super T, ? super T, ? extends T> remappingFunction) {
+		PhEntry<T> e = getEntry(key);
+		if (e == null) {
+			if (value != null) {
+				put(key, value);
+			}
+			return value;
+		}
+		T newValue = remappingFunction.apply(e.getValue(), value);
+		if (newValue == null) {
+			remove(key);
+		} else {
+			e.setValue(newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public T update(long[] oldKey, long[] newKey) {
+		checkDim(oldKey);
+		checkDim(newKey);
+		return root == null ? null : updateFrom(oldKey, newKey, root, null);
+	}
+
+	/**
+	 * Move an entry to a new key, starting the descent at the given node.
+	 * @param oldKey
+	 * @param newKey
+	 * @param node a node whose prefix matches both keys
+	 * @param parent the parent of 'node' or {@code null} if 'node' is the root
+	 * @return the value of the entry, or {@code null} if 'oldKey' does not exist or
+	 * 'newKey' already exists
+	 */
+	T updateFrom(long[] oldKey, long[] newKey, NodeHD<T> node, NodeHD<T> parent) {
+		PhEntry<T> e = getEntryFrom(oldKey, node);
+		if (e == null) {
+			return null;
+		}
+		if (Arrays.equals(oldKey, newKey)) {
+			return e.getValue();
+		}
+		if (getEntryFrom(newKey, node) != null) {
+			return null;
+		}
+		T value = e.getValue();
+		removeFrom(oldKey, node, parent);
+		if (root == null) {
+			put(newKey, value);
+		} else if (parent != null && parent.get(parent.hcPos(newKey,
+				NodeHD.createHcPos(DIM))) != node) {
+			//'node' was replaced by its remaining entry
+			putFrom(newKey, value, parent);
+		} else {
+			putFrom(newKey, value, node);
+		}
+		return value;
+	}
+
+	/**
+	 * The updates are applied one after the other, in the given order.
+	 */
+	@Override
+	public int updateAll(long[][] oldKeys, long[][] newKeys) {
+		if (oldKeys.length != newKeys.length) {
+			throw new IllegalArgumentException("Invalid number of arguments: " +
+					oldKeys.length + " / " + newKeys.length);
+		}
+		int n = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			long[] oldKey = oldKeys[i];
+			long[] newKey = newKeys[i];
+			//update() returns null on failure and also for null values
+			if (contains(oldKey) && (Arrays.equals(oldKey, newKey) || !contains(newKey))) {
+				update(oldKey, newKey);
+				n++;
+			}
+		}
+		return n;
+	}
+
+	@Override
+	public String toString() {
+		return toStringPlain();
+	}
+
+	@Override
+	public String toStringPlain() {
+		StringBuilderLn sb = new StringBuilderLn();
+		PhExtent<T> it = queryExtent();
+		while (it.hasNext()) {
+			PhEntry<T> e = it.nextEntryReuse();
+			sb.append(Bits.toBinary(e.getKey(), 64));
+			sb.appendLn("  v=" + e.getValue());
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toStringTree() {
+		StringBuilderLn sb = new StringBuilderLn();
+		if (root != null) {
+			toStringTree(sb, 0, root);
+		}
+		return sb.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void toStringTree(StringBuilderLn sb, int currentDepth, NodeHD<T> node) {
+		String ind = "*";
+		for (int i = 0; i < currentDepth; i++) ind += "-";
+		sb.appendLn(ind + "io=" + (node.getPostLen()+1) + " n=" + node.getEntryCount() +
+				" prefix=[" + Bits.toBinary(node.getPrefix(), 64) + "]");
+		FullIterator<Object> it = node.iterator();
+		while (it.hasNext()) {
+			Object o = it.next();
+			if (o instanceof NodeHD) {
+				toStringTree(sb, currentDepth + 1, (NodeHD<T>) o);
+			} else {
+				PhEntry<T> e = (PhEntry<T>) o;
+				sb.appendLn(ind + Bits.toBinary(e.getKey(), 64) + "  v=" + e.getValue());
+			}
+		}
+	}
+
+	@Override
+	public PhExtent<T> queryExtent() {
+		return new PhIteratorHD<T>(this, null).reset();
+	}
+
+	@Override
+	public PhQuery<T> query(long[] min, long[] max) {
+		return query(min, max, null);
+	}
+
+	@Override
+	public PhQuery<T> query(long[] min, long[] max, PhFilter filter) {
+		if (min.length != DIM || max.length != DIM) {
+			throw new IllegalArgumentException("Invalid number of arguments: " + min.length +
+					" / " + max.length + "  DIM=" + DIM);
+		}
+		PhQuery<T> q = new PhIteratorHD<>(this, filter);
+		q.reset(min, max);
+		return q;
+	}
+
+	@Override
+	public PhQueryMulti<T> query(long[][] mins, long[][] maxs) {
+		PhQueryMulti<T> q = new PhIteratorMultiHD<>(this);
+		q.reset(mins, maxs);
+		return q;
+	}
+
+	@Override
+	public List<PhEntry<T>> queryAll(long[] min, long[] max) {
+		return queryAll(min, max, Integer.MAX_VALUE, PhPredicate.ACCEPT_ALL, PhMapper.PVENTRY());
+	}
+
+	@Override
+	public <R> List<R> queryAll(long[] min, long[] max, int maxResults,
+			PhPredicate filter, PhMapper<T, R> mapper) {
+		ArrayList<R> list = new ArrayList<>();
+		PhQuery<T> q = query(min, max);
+		while (q.hasNext() && list.size() < maxResults) {
+			PhEntry<T> e = q.nextEntryReuse();
+			if (filter.test(e.getKey())) {
+				list.add(mapper.map(new PhEntry<>(e)));
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public int getDim() {
+		return DIM;
+	}
+
+	@Override
+	public int getBitDepth() {
+		return 64;
+	}
+
+	@Override
+	public PhKnnQuery<T> nearestNeighbour(int nMin, long... center) {
+		return nearestNeighbour(nMin, PhDistanceL.THIS, null, center);
+	}
+
+	/**
+	 * The dimension filter is ignored.
+	 */
+	@Override
+	public PhKnnQuery<T> nearestNeighbour(int nMin, PhDistance dist, PhDimFilter dims,
+			long... center) {
+		checkDim(center);
+		return new PhQueryKnnHD<>(this).reset(nMin, dist, center);
+	}
+
+	@Override
+	public PhRangeQuery<T> rangeQuery(double dist, long... center) {
+		return rangeQuery(dist, null, center);
+	}
+
+	@Override
+	public PhRangeQuery<T> rangeQuery(double dist, PhDistance optionalDist, long... center) {
+		checkDim(center);
+		PhFilterDistance filter = new PhFilterDistance();
+		if (optionalDist == null) {
+			optionalDist = PhDistanceL.THIS;
+		}
+		filter.set(center, optionalDist, dist);
+		PhQuery<T> q = new PhIteratorHD<>(this, filter);
+		PhRangeQuery<T> qr = new PhRangeQuery<>(q, this, optionalDist, filter);
+		qr.reset(dist, center);
+		return qr;
+	}
+
+	@Override
+	public PhCursor<T> cursor() {
+		return new PhCursorHD<>(this);
+	}
+
+	@Override
+	public void clear() {
+		modCount++;
+		root = null;
+		nEntries = 0;
+		nNodes = 0;
+		Arrays.fill(infixHist, 0);
+	}
+}
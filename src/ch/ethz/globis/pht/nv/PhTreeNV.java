@@ -80,7 +80,7 @@ public abstract class PhTreeNV {
 	public static PhTreeNV create(int dim, int depth) {
 		//return new PhTree1(dim, depth);
 		//return new PhTree2_CB(dim, depth);
-		return new PhTreeVProxy(dim);
+		return new PhTreeSet(dim);
 	}
 
 	public PhTreeNV() {
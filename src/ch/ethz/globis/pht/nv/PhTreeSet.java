@@ -0,0 +1,27 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.nv;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTreeConfig;
+
+/**
+ * Key-only PhTree. In contrast to a plain {@link PhTreeVProxy}, the nodes of this tree 
+ * do not store any values, see {@link PhTreeConfig#VALUES_NONE}.
+ */
+public class PhTreeSet extends PhTreeVProxy {
+
+	public PhTreeSet(int dim) {
+		super(createTree(dim));
+	}
+
+	private static PhTree<Object> createTree(int dim) {
+		PhTreeConfig cfg = new PhTreeConfig(dim);
+		cfg.setValueType(PhTreeConfig.VALUES_NONE);
+		return PhTree.create(cfg);
+	}
+}
@@ -79,7 +79,7 @@ public class ExponentPPAnalyzer {
 	}
 	
 	
-	private static double getDisplacement(double d1, double d2) {
+	static double getDisplacement(double d1, double d2) {
 		//apply safety margins for rounding errors
 		double MARGIN = 1.0001; 
 		d1 *= d1 > 0 ? 1/MARGIN : MARGIN;
@@ -10,25 +10,28 @@ package ch.ethz.globis.pht.pre;
 public class IntegerPP implements PreProcessorPointF {
 
 	private final double preMult;
-	private final double postMult;
 	
 	public IntegerPP(double multiplyer) {
 		preMult = multiplyer;
-		postMult = 1./multiplyer;
 	}
 	
 	@Override
 	public void pre(double[] raw, long[] pre) {
 		for (int d=0; d<raw.length; d++) {
-			pre[d] = (long) (raw[d] * preMult);
+			pre[d] = Math.round(raw[d] * preMult);
 		}
 	}
 
 	@Override
 	public void post(long[] pre, double[] post) {
 		for (int d=0; d<pre.length; d++) {
-			post[d] = pre[d] * postMult;
+			//division instead of multiplying with 1/preMult, this restores values such as 0.29
+			post[d] = pre[d] / preMult;
 		}
 	}
 
+	public double getMultiplyer() {
+		return preMult;
+	}
+
 }
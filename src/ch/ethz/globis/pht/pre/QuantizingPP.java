@@ -0,0 +1,128 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.pre;
+
+import java.util.Arrays;
+
+import ch.ethz.globis.pht.PhTreeConfig;
+import ch.ethz.globis.pht.pre.ColumnType.DoubleColumn;
+import ch.ethz.globis.pht.pre.ColumnType.FloatColumn;
+import ch.ethz.globis.pht.pre.ColumnType.IntColumn;
+import ch.ethz.globis.pht.pre.ColumnType.LongColumn;
+
+/**
+ * Preprocessor that maps every dimension from a fixed range [min, max] to the integers
+ * [0, (max-min)/precision]. Each dimension then only needs as many bits as are required
+ * to distinguish values at the requested precision.
+ * Use {@link #createConfig()} to create a tree with matching bit depths, for example
+ * {@code PhTreeF.create(pp.createConfig(), pp)}.
+ *
+ * Values are rounded to the nearest multiple of the precision, so keys that differ by less
+ * than the precision may be stored as the same key. Values outside the range are clamped
+ * to the range. Keys must therefore lie inside the range, whereas query boundaries may
+ * lie outside.
+ */
+public class QuantizingPP implements PreProcessorPointF {
+
+	private final double[] min;
+	private final double[] precision;
+	private final long[] maxQ;
+	private final int[] depth;
+
+	/**
+	 * @param min lower bound of each dimension
+	 * @param max upper bound of each dimension
+	 * @param precision distance between two distinguishable values in each dimension
+	 */
+	public QuantizingPP(double[] min, double[] max, double[] precision) {
+		int dims = min.length;
+		if (max.length != dims || precision.length != dims) {
+			throw new IllegalArgumentException("Dimensionality mismatch: " +
+					min.length + "/" + max.length + "/" + precision.length);
+		}
+		this.min = Arrays.copyOf(min, dims);
+		this.precision = Arrays.copyOf(precision, dims);
+		this.maxQ = new long[dims];
+		this.depth = new int[dims];
+		for (int d = 0; d < dims; d++) {
+			if (!(precision[d] > 0) || !(max[d] >= min[d])) {
+				throw new IllegalArgumentException("Invalid range or precision in dim=" + d +
+						": [" + min[d] + ", " + max[d] + "] / " + precision[d]);
+			}
+			double q = Math.ceil((max[d] - min[d]) / precision[d]);
+			if (q >= (double)(1L << 62)) {
+				throw new IllegalArgumentException("Precision too high for range in dim=" + d);
+			}
+			maxQ[d] = (long) q;
+			depth[d] = Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(maxQ[d]));
+		}
+	}
+
+	/**
+	 * Create a preprocessor from column types. The precision of {@link DoubleColumn} and
+	 * {@link FloatColumn} is 10^-digits, the precision of {@link IntColumn} and
+	 * {@link LongColumn} is 1.
+	 * @param types column type of each dimension
+	 * @param min lower bound of each dimension
+	 * @param max upper bound of each dimension
+	 */
+	public QuantizingPP(ColumnType[] types, double[] min, double[] max) {
+		this(min, max, toPrecision(types));
+	}
+
+	private static double[] toPrecision(ColumnType[] types) {
+		double[] precision = new double[types.length];
+		for (int d = 0; d < types.length; d++) {
+			if (types[d] instanceof DoubleColumn) {
+				precision[d] = Math.pow(10, -((DoubleColumn)types[d]).getDigits());
+			} else if (types[d] instanceof FloatColumn) {
+				precision[d] = Math.pow(10, -((FloatColumn)types[d]).getDigits());
+			} else if (types[d] instanceof LongColumn || types[d] instanceof IntColumn) {
+				precision[d] = 1;
+			} else {
+				throw new IllegalArgumentException("Unsupported ColumnType");
+			}
+		}
+		return precision;
+	}
+
+	@Override
+	public void pre(double[] raw, long[] pre) {
+		for (int d=0; d<raw.length; d++) {
+			long q = Math.round((raw[d] - min[d]) / precision[d]);
+			pre[d] = q < 0 ? 0 : (q > maxQ[d] ? maxQ[d] : q);
+		}
+	}
+
+	@Override
+	public void post(long[] pre, double[] post) {
+		for (int d=0; d<pre.length; d++) {
+			post[d] = min[d] + pre[d] * precision[d];
+		}
+	}
+
+	/**
+	 * @param dim
+	 * @return The number of bits that are required for the given dimension.
+	 */
+	public int getDepth(int dim) {
+		return depth[dim];
+	}
+
+	/**
+	 * @return A configuration with the bit depth of every dimension set to
+	 * {@link #getDepth(int)}.
+	 */
+	public PhTreeConfig createConfig() {
+		PhTreeConfig cfg = new PhTreeConfig(depth.length);
+		for (int d = 0; d < depth.length; d++) {
+			cfg.setDepth(d, depth[d]);
+		}
+		return cfg;
+	}
+
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.pre;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.util.PhTreeMemoryStats;
+
+
+/**
+ * Online analyzer for choosing a preprocessor while data is being inserted.
+ *
+ * In contrast to {@link ExponentPPAnalyzer}, the data does not need to be available up front.
+ * The analyzer keeps the exact minimum and maximum of every dimension and a fixed size
+ * random sample (reservoir sampling) of all points passed to {@link #add(double[])}.
+ *
+ * {@link #propose()} compares {@link EmptyPPF}, an {@link ExponentPP} for the observed
+ * ranges and, if all values have at most {@value #MAX_DIGITS} decimal digits, an 
+ * {@link IntegerPP}.
+ * Every candidate is evaluated by loading the sample into a temporary tree, the candidate
+ * with the smallest memory estimate wins. The estimate covers the number of nodes and
+ * the infix and postfix bits that the preprocessed keys do not share.
+ *
+ * {@link #hasDrifted()} reports whether the data added after the last proposal
+ * invalidates it.
+ */
+public class StreamingPPAnalyzer {
+
+	/** The largest number of decimal digits that is considered for IntegerPP. */
+	private static final int MAX_DIGITS = 6;
+	/** IntegerPP is only considered if all values fit into this range after scaling. */
+	private static final double MAX_INTEGER = (double)(1L << 52);
+	private static final double[] MULT = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6};
+
+	private final int dims;
+	private final double[][] sample;
+	private final double[] min;
+	private final double[] max;
+	private final Random rnd;
+	private long nAdded = 0;
+
+	//state of the last proposal
+	private Proposal proposal = null;
+	private double[] propMin;
+	private double[] propMax;
+	/** Decimal digits required by all points so far, MAX_DIGITS+1 if too many. */
+	private int digits = 0;
+	private int digitsAtProposal;
+	private long nAddedAtProposal;
+
+	/**
+	 * The result of {@link StreamingPPAnalyzer#propose()}.
+	 */
+	public static class Proposal {
+		private final PreProcessorPointF pre;
+		private final PhTreeMemoryStats stats;
+		private final PhTreeMemoryStats statsEmptyPP;
+		private final int sampleSize;
+
+		private Proposal(PreProcessorPointF pre, PhTreeMemoryStats stats, 
+				PhTreeMemoryStats statsEmptyPP, int sampleSize) {
+			this.pre = pre;
+			this.stats = stats;
+			this.statsEmptyPP = statsEmptyPP;
+			this.sampleSize = sampleSize;
+		}
+
+		/**
+		 * @return The proposed preprocessor.
+		 */
+		public PreProcessorPointF getPreprocessor() {
+			return pre;
+		}
+
+		/**
+		 * @return Statistics of a tree with the sample and the proposed preprocessor.
+		 */
+		public PhTreeMemoryStats getSampleStats() {
+			return stats;
+		}
+
+		/**
+		 * @return Statistics of a tree with the sample and {@link EmptyPPF}.
+		 */
+		public PhTreeMemoryStats getSampleStatsEmptyPP() {
+			return statsEmptyPP;
+		}
+
+		/**
+		 * @return Number of points that were used for the evaluation.
+		 */
+		public int getSampleSize() {
+			return sampleSize;
+		}
+
+		@Override
+		public String toString() {
+			return pre.getClass().getSimpleName() + 
+					" nodes=" + stats.nNodes + " bytes=" + stats.getTotalBytes() + 
+					" (EmptyPPF: nodes=" + statsEmptyPP.nNodes + 
+					" bytes=" + statsEmptyPP.getTotalBytes() + ") sample=" + sampleSize;
+		}
+	}
+
+	/**
+	 * @param dims dimensionality
+	 * @param sampleSize maximum number of points that are kept for evaluating candidates
+	 */
+	public StreamingPPAnalyzer(int dims, int sampleSize) {
+		this(dims, sampleSize, new Random(0));
+	}
+
+	/**
+	 * @param dims dimensionality
+	 * @param sampleSize maximum number of points that are kept for evaluating candidates
+	 * @param rnd random source for sampling
+	 */
+	public StreamingPPAnalyzer(int dims, int sampleSize, Random rnd) {
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException("sampleSize must be > 0: " + sampleSize);
+		}
+		this.dims = dims;
+		this.sample = new double[sampleSize][];
+		this.min = new double[dims];
+		this.max = new double[dims];
+		this.rnd = rnd;
+		Arrays.fill(min, Double.MAX_VALUE);
+		Arrays.fill(max, -Double.MAX_VALUE);
+	}
+
+	/**
+	 * Add a point to the analysis. The array is copied only if it ends up in the sample.
+	 * @param point
+	 */
+	public void add(double[] point) {
+		for (int d = 0; d < dims; d++) {
+			double v = point[d];
+			min[d] = v < min[d] ? v : min[d];
+			max[d] = v > max[d] ? v : max[d];
+		}
+		while (digits <= MAX_DIGITS && !isIntegral(point, MULT[digits])) {
+			digits++;
+		}
+		//reservoir sampling
+		if (nAdded < sample.length) {
+			sample[(int) nAdded] = point.clone();
+		} else {
+			long pos = (long) (rnd.nextDouble() * (nAdded + 1));
+			if (pos < sample.length) {
+				sample[(int) pos] = point.clone();
+			}
+		}
+		nAdded++;
+	}
+
+	/**
+	 * @return The number of points passed to {@link #add(double[])}.
+	 */
+	public long getCount() {
+		return nAdded;
+	}
+
+	/**
+	 * Propose a preprocessor for the data seen so far.
+	 * @return The proposal or {@code null} if no data has been added.
+	 */
+	public Proposal propose() {
+		int n = (int) Math.min(nAdded, sample.length);
+		if (n == 0) {
+			return null;
+		}
+		double[][] data = Arrays.copyOf(sample, n);
+
+		PreProcessorPointF empty = new EmptyPPF();
+		PhTreeMemoryStats sEmpty = evaluate(data, empty);
+		PreProcessorPointF best = empty;
+		PhTreeMemoryStats sBest = sEmpty;
+
+		ExponentPP exp = ExponentPPAnalyzer.analyze(data);
+		PhTreeMemoryStats sExp = evaluate(data, exp);
+		if (sExp.getTotalBytes() < sBest.getTotalBytes()) {
+			best = exp;
+			sBest = sExp;
+		}
+
+		if (digits <= MAX_DIGITS) {
+			IntegerPP ipp = new IntegerPP(MULT[digits]);
+			PhTreeMemoryStats sInt = evaluate(data, ipp);
+			if (sInt.getTotalBytes() < sBest.getTotalBytes()) {
+				best = ipp;
+				sBest = sInt;
+			}
+		}
+
+		proposal = new Proposal(best, sBest, sEmpty, n);
+		propMin = min.clone();
+		propMax = max.clone();
+		digitsAtProposal = digits;
+		nAddedAtProposal = nAdded;
+		return proposal;
+	}
+
+	/**
+	 * @return The result of the last call to {@link #propose()}, may be {@code null}.
+	 */
+	public Proposal getLastProposal() {
+		return proposal;
+	}
+
+	/**
+	 * Check whether the last proposal is still valid for the data seen since.
+	 * This is the case if:
+	 * <ul>
+	 * <li>for {@link ExponentPP}: the shifted extremes of all dimensions still have the
+	 * same sign and exponent as at the time of the proposal.</li>
+	 * <li>for {@link IntegerPP}: all added values still have at most the chosen number of
+	 * decimal digits and fit into the integer range.</li>
+	 * <li>for {@link EmptyPPF}: the number of points has less than doubled.</li>
+	 * </ul>
+	 * @return {@code true} if {@link #propose()} should be called again, also if it has
+	 * never been called.
+	 */
+	public boolean hasDrifted() {
+		if (proposal == null) {
+			return nAdded > 0;
+		}
+		if (proposal.pre instanceof IntegerPP) {
+			if (digits != digitsAtProposal) {
+				return true;
+			}
+			double mult = ((IntegerPP)proposal.pre).getMultiplyer();
+			for (int d = 0; d < dims; d++) {
+				if (Math.abs(min[d]*mult) >= MAX_INTEGER || Math.abs(max[d]*mult) >= MAX_INTEGER) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (proposal.pre instanceof ExponentPP) {
+			ExponentPP exp = (ExponentPP) proposal.pre;
+			for (int d = 0; d < dims; d++) {
+				double disp = exp.getDisplacement(d);
+				if (binade(min[d] + disp) != binade(propMin[d] + disp) || 
+						binade(max[d] + disp) != binade(propMax[d] + disp)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		//EmptyPPF: check again once the data has grown substantially
+		return nAdded >= 2 * nAddedAtProposal;
+	}
+
+	/**
+	 * @return The sign and exponent of a double, i.e. the leading bits of the sortable long.
+	 */
+	private static int binade(double v) {
+		return v < 0 ? -Math.getExponent(v) - 2000 : Math.getExponent(v);
+	}
+
+	/**
+	 * @param pre
+	 * @return {@code false} if {@code pre} is an {@link IntegerPP} that cannot represent all 
+	 * values seen so far, otherwise {@code true}.
+	 */
+	public boolean isLossless(PreProcessorPointF pre) {
+		if (pre instanceof IntegerPP) {
+			return digits <= MAX_DIGITS && ((IntegerPP)pre).getMultiplyer() >= MULT[digits];
+		}
+		return true;
+	}
+
+	/**
+	 * Evaluate a preprocessor with the current sample.
+	 * @param pre
+	 * @return The statistics of a tree that contains the sample.
+	 */
+	public PhTreeMemoryStats evaluate(PreProcessorPointF pre) {
+		int n = (int) Math.min(nAdded, sample.length);
+		return evaluate(Arrays.copyOf(sample, n), pre);
+	}
+
+	private PhTreeMemoryStats evaluate(double[][] data, PreProcessorPointF pre) {
+		PhTree<Object> tree = PhTree.create(dims);
+		long[] key = new long[dims];
+		for (double[] p: data) {
+			pre.pre(p, key);
+			tree.put(key, null);
+		}
+		return tree.getMemoryStats();
+	}
+
+	/**
+	 * @return {@code true} if {@link IntegerPP} with the given multiplyer maps the point
+	 * without loss of precision.
+	 */
+	private boolean isIntegral(double[] p, double mult) {
+		for (int d = 0; d < dims; d++) {
+			double v = p[d] * mult;
+			if (Math.abs(v) >= MAX_INTEGER || Math.round(v) / mult != p[d]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.util;
+
+import java.util.Arrays;
+
+/**
+ * Memory statistics that are updated whenever nodes are created, resized or removed.
+ * The byte counts are estimates based on compressed references, see
+ * {@link ch.ethz.globis.pht.PhTree#getStats()}.
+ */
+public final class PhTreeMemoryStats {
+	public int nNodes;
+	public int nHCP;
+	public int nHCS;
+	public int nNI;
+	/** Nodes that use the linearized representation for sub-nodes and posts. */
+	public int nLHC;
+	/** Node objects. */
+	public long bytesNodes;
+	/** Bit-streams of the nodes ('ba'). */
+	public long bytesBitArrays;
+	/** Arrays with references to sub-nodes and values. */
+	public long bytesRefArrays;
+	/** Node indexes, without entries. */
+	public long bytesNiIndex;
+	/** Node index entries, including their keys. */
+	public long bytesNiEntries;
+	public int[] infixHist = new int[64];  //prefix len
+
+	public PhTreeMemoryStats copy() {
+		PhTreeMemoryStats s = new PhTreeMemoryStats();
+		s.nNodes = nNodes;
+		s.nHCP = nHCP;
+		s.nHCS = nHCS;
+		s.nNI = nNI;
+		s.nLHC = nLHC;
+		s.bytesNodes = bytesNodes;
+		s.bytesBitArrays = bytesBitArrays;
+		s.bytesRefArrays = bytesRefArrays;
+		s.bytesNiIndex = bytesNiIndex;
+		s.bytesNiEntries = bytesNiEntries;
+		s.infixHist = infixHist.clone();
+		return s;
+	}
+
+	public void clear() {
+		nNodes = 0;
+		nHCP = 0;
+		nHCS = 0;
+		nNI = 0;
+		nLHC = 0;
+		bytesNodes = 0;
+		bytesBitArrays = 0;
+		bytesRefArrays = 0;
+		bytesNiIndex = 0;
+		bytesNiEntries = 0;
+		Arrays.fill(infixHist, 0);
+	}
+
+	/**
+	 * @return Total estimated memory usage in bytes.
+	 */
+	public long getTotalBytes() {
+		return bytesNodes + bytesBitArrays + bytesRefArrays + bytesNiIndex + bytesNiEntries;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilderLn r = new StringBuilderLn();
+		r.appendLn("  nNodes = " + nNodes);
+		r.appendLn("  postHC=" + nHCP + "  subHC=" + nHCS + "  NI=" + nNI + "  LHC=" + nLHC);
+		r.appendLn("  total=" + getTotalBytes() + "  nodes=" + bytesNodes +
+				"  bitArrays=" + bytesBitArrays + "  refArrays=" + bytesRefArrays +
+				"  niIndex=" + bytesNiIndex + "  niEntries=" + bytesNiEntries);
+		r.appendLn("  infixLen = " + Arrays.toString(infixHist));
+		return r.toString();
+	}
+}
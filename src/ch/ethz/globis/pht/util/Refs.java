@@ -180,4 +180,82 @@ public class Refs {
 			}
 		}
 	}
+
+	/**
+	 * Create a primitive value array, see {@link #arrayCreate(int)}.
+	 * @param size
+	 * @return new array
+	 */
+	public static long[] arrayCreateLong(int size) {
+		return new long[calcArraySize(size)];
+	}
+
+	public static long[] arrayEnsureSize(long[] oldA, int requiredSize) {
+		if (oldA.length >= requiredSize) {
+			return oldA;
+		}
+		long[] newA = arrayCreateLong(requiredSize);
+		System.arraycopy(oldA, 0, newA, 0, oldA.length);
+		return newA;
+	}
+
+	public static long[] arrayTrim(long[] oldA, int requiredSize) {
+		int reqSize = calcArraySize(requiredSize);
+		if (oldA.length == reqSize) {
+			return oldA;
+		}
+		long[] newA = new long[reqSize];
+		System.arraycopy(oldA, 0, newA, 0, reqSize);
+		return newA;
+	}
+
+	public static void insertAtPos(long[] values, int pos, long value) {
+		System.arraycopy(values, pos, values, pos+1, values.length-pos-1);
+		values[pos] = value;
+	}
+
+	public static void removeAtPos(long[] values, int pos) {
+		if (pos < values.length-1) {
+			System.arraycopy(values, pos+1, values, pos, values.length-pos-1);
+		}
+	}
+
+	/**
+	 * Create a primitive value array, see {@link #arrayCreate(int)}.
+	 * @param size
+	 * @return new array
+	 */
+	public static int[] arrayCreateInt(int size) {
+		return new int[calcArraySize(size)];
+	}
+
+	public static int[] arrayEnsureSize(int[] oldA, int requiredSize) {
+		if (oldA.length >= requiredSize) {
+			return oldA;
+		}
+		int[] newA = arrayCreateInt(requiredSize);
+		System.arraycopy(oldA, 0, newA, 0, oldA.length);
+		return newA;
+	}
+
+	public static int[] arrayTrim(int[] oldA, int requiredSize) {
+		int reqSize = calcArraySize(requiredSize);
+		if (oldA.length == reqSize) {
+			return oldA;
+		}
+		int[] newA = new int[reqSize];
+		System.arraycopy(oldA, 0, newA, 0, reqSize);
+		return newA;
+	}
+
+	public static void insertAtPos(int[] values, int pos, int value) {
+		System.arraycopy(values, pos, values, pos+1, values.length-pos-1);
+		values[pos] = value;
+	}
+
+	public static void removeAtPos(int[] values, int pos) {
+		if (pos < values.length-1) {
+			System.arraycopy(values, pos+1, values, pos, values.length-pos-1);
+		}
+	}
 }
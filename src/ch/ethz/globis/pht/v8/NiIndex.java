@@ -0,0 +1,153 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.v8;
+
+import java.util.Iterator;
+
+import ch.ethz.globis.pht.v8.PhTree8.NodeEntry;
+import ch.ethz.globis.pht.v8.PhTree8.NodeEntryLong;
+
+/**
+ * Node index (NI) of nodes with many entries. Maps hypercube addresses to sub-nodes
+ * and posts. Iteration returns the entries ordered by their (unsigned) hypercube address.
+ *
+ * <p>Implementations do not have to store {@link NodeEntry} objects. Entries returned by
+ * {@link #get(long)} may be created on demand, entries returned by iterators may be
+ * reused by the next call to {@code next()}. Changes to returned entries are therefore
+ * not written back, entries must be modified with the put and set methods.
+ *
+ * <p>Posts of nodes with primitive values (see {@link Node#isValuesPrimitive()}) use the
+ * {@code long} value arguments and are returned as {@link NodeEntryLong}, otherwise the
+ * {@code T} value arguments are used.
+ *
+ * @param <T>
+ */
+abstract class NiIndex<T> implements Iterable<NodeEntry<T>> {
+
+	final boolean isValuesPrimitive;
+	final boolean isValuesInt;
+
+	NiIndex(boolean isValuesPrimitive, boolean isValuesInt) {
+		this.isValuesPrimitive = isValuesPrimitive;
+		this.isValuesInt = isValuesInt;
+	}
+
+	abstract int size();
+
+	abstract boolean contains(long hcPos);
+
+	/**
+	 * @param hcPos
+	 * @return the entry or {@code null}
+	 */
+	abstract NodeEntry<T> get(long hcPos);
+
+	/**
+	 * @param hcPos
+	 * @return the sub-node or {@code null} if there is no entry or if the entry is a post
+	 */
+	abstract Node<T> getSub(long hcPos);
+
+	/**
+	 * Add or replace a post.
+	 * @param hcPos
+	 * @param key the postfix, this is copied
+	 * @param value
+	 * @param lValue
+	 */
+	abstract void putPost(long hcPos, long[] key, T value, long lValue);
+
+	/**
+	 * Add or replace a sub-node.
+	 * @param hcPos
+	 * @param sub
+	 */
+	abstract void putSub(long hcPos, Node<T> sub);
+
+	/**
+	 * Replace the value of an existing post, the postfix is not changed.
+	 * @param hcPos
+	 * @param value
+	 * @param lValue
+	 */
+	abstract void setValue(long hcPos, T value, long lValue);
+
+	/**
+	 * Move an existing post to an empty position.
+	 * @param hcPos
+	 * @param newPos
+	 * @param newKey the new postfix, this is copied
+	 */
+	abstract void movePost(long hcPos, long newPos, long[] newKey);
+
+	abstract void remove(long hcPos);
+
+	/**
+	 * @return a copy of the index, it may share entries with the original
+	 */
+	abstract NiIndex<T> copy();
+
+	/**
+	 * Release unused capacity.
+	 */
+	abstract void trim();
+
+	@Override
+	public NiIterator<T> iterator() {
+		return iterator(null);
+	}
+
+	/**
+	 * @param reuse an iterator that can be reset, may be {@code null}
+	 * @return an iterator over all entries
+	 */
+	abstract NiIterator<T> iterator(NiIterator<T> reuse);
+
+	/**
+	 * @param maskLower
+	 * @param maskUpper
+	 * @param reuse an iterator that can be reset, may be {@code null}
+	 * @return an iterator over all entries whose hypercube address matches the masks
+	 */
+	abstract NiIterator<T> query(long maskLower, long maskUpper, NiIterator<T> reuse);
+
+	/**
+	 * @return estimated memory usage in bytes of the index structure
+	 */
+	abstract int estimateSize();
+
+	/**
+	 * @param postCnt number of posts in the index
+	 * @param DIM
+	 * @return estimated memory usage in bytes of the entries, i.e. of postfixes and
+	 * of the objects that hold them
+	 */
+	abstract long estimateSizeEntries(int postCnt, int DIM);
+
+	/**
+	 * @param key the postfix, this is not copied
+	 * @return a new entry for a post
+	 */
+	NodeEntry<T> createEntry(long[] key, T value, long lValue, boolean useLock) {
+		if (isValuesPrimitive) {
+			return new NodeEntryLong<>(key, lValue, isValuesInt, useLock);
+		}
+		return new NodeEntry<>(key, value, useLock);
+	}
+
+	abstract static class NiIterator<T> implements Iterator<NodeEntry<T>> {
+		/**
+		 * @return the hypercube address of the entry returned by the last call to next()
+		 */
+		abstract long pos();
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
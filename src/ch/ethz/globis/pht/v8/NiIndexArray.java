@@ -0,0 +1,650 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.v8;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import ch.ethz.globis.pht.v8.PhTree8.NodeEntry;
+import ch.ethz.globis.pht.v8.PhTree8.NodeEntryLong;
+
+/**
+ * Node index based on sorted arrays of hypercube addresses. The entries are split into
+ * blocks of at most {@link #BLOCK_SIZE} entries, inserts and removals only shift the
+ * arrays of one block. A block stores the postfixes of its posts in one packed
+ * {@code long[]} and the values and sub-nodes in one {@code Object[]}.
+ * {@link NodeEntry} objects are only created when an entry is returned.
+ *
+ * <p>Lookups use binary search over the first addresses of the blocks and then inside
+ * a block. Range queries scan the blocks and use binary search to skip over addresses
+ * that do not match the query masks.
+ *
+ * <p>There are no entry objects that could carry a lock, nodes that lock their entries
+ * use {@link NiIndexCB}, see {@link NodeConfig#createIndex(int, boolean, boolean, boolean)}.
+ *
+ * @param <T>
+ */
+final class NiIndexArray<T> extends NiIndex<T> {
+
+	//maximum number of entries per block, this is the number of bits of Block.subs
+	static final int BLOCK_SIZE = 64;
+	//arrays grow by a fixed number of slots, slack is expensive for postfixes
+	private static final int GROW = 4;
+
+	private final int DIM;
+	//first hypercube address of each block, the value of block 0 is not used
+	private long[] mins;
+	private Block[] blocks;
+	private int nBlocks;
+	private int size = 0;
+	//sum of the entry capacities and of the post capacities of all blocks
+	private int capacity;
+	private int postCapacity;
+
+	NiIndexArray(int DIM, boolean isValuesPrimitive, boolean isValuesInt) {
+		super(isValuesPrimitive, isValuesInt);
+		this.DIM = DIM;
+		mins = new long[1];
+		blocks = new Block[] { new Block(GROW, GROW, DIM, isValuesPrimitive) };
+		nBlocks = 1;
+		capacity = GROW;
+		postCapacity = GROW;
+	}
+
+	private NiIndexArray(NiIndexArray<T> original) {
+		super(original.isValuesPrimitive, original.isValuesInt);
+		DIM = original.DIM;
+		mins = original.mins.clone();
+		blocks = new Block[original.blocks.length];
+		for (int b = 0; b < original.nBlocks; b++) {
+			blocks[b] = new Block(original.blocks[b]);
+		}
+		nBlocks = original.nBlocks;
+		size = original.size;
+		capacity = original.capacity;
+		postCapacity = original.postCapacity;
+	}
+
+	/**
+	 * A block of entries. Only the first block can be empty, and only if it is the
+	 * only block.
+	 * Sub-nodes have no postfix, the postfix of entry 'i' is post number
+	 * {@link #postIndex(int)}.
+	 */
+	private static final class Block {
+		//hypercube addresses, sorted as unsigned values
+		long[] keys;
+		//values and sub-nodes, only sub-nodes if values are primitive
+		Object[] refs;
+		//bit i is set if entry i is a sub-node
+		long subs;
+		int size;
+		//postfixes, DIM values per post
+		long[] posts;
+		//values if they are primitive, otherwise null
+		long[] lValues;
+		int nPosts;
+
+		Block(int capacity, int postCapacity, int DIM, boolean isValuesPrimitive) {
+			keys = new long[capacity];
+			refs = new Object[capacity];
+			posts = new long[postCapacity*DIM];
+			lValues = isValuesPrimitive ? new long[postCapacity] : null;
+		}
+
+		Block(Block original) {
+			keys = original.keys.clone();
+			refs = original.refs.clone();
+			subs = original.subs;
+			size = original.size;
+			posts = original.posts.clone();
+			lValues = original.lValues == null ? null : original.lValues.clone();
+			nPosts = original.nPosts;
+		}
+
+		boolean isSub(int i) {
+			return (subs & (1L << i)) != 0;
+		}
+
+		/**
+		 * @return the number of posts before entry 'i'
+		 */
+		int postIndex(int i) {
+			return i - Long.bitCount(subs & ((1L << i) - 1));
+		}
+
+		void resize(int newCapacity) {
+			keys = Arrays.copyOf(keys, newCapacity);
+			refs = Arrays.copyOf(refs, newCapacity);
+		}
+
+		void resizePosts(int newCapacity, int DIM) {
+			posts = Arrays.copyOf(posts, newCapacity*DIM);
+			if (lValues != null) {
+				lValues = Arrays.copyOf(lValues, newCapacity);
+			}
+		}
+
+		/**
+		 * Insert an entry at 'i', the new entry is an empty sub-node slot.
+		 * This requires size < capacity.
+		 */
+		void insertEntry(int i, long hcPos) {
+			int n = size - i;
+			System.arraycopy(keys, i, keys, i+1, n);
+			System.arraycopy(refs, i, refs, i+1, n);
+			long lowMask = (1L << i) - 1;
+			subs = (subs & lowMask) | ((subs & ~lowMask) << 1) | (1L << i);
+			keys[i] = hcPos;
+			refs[i] = null;
+			size++;
+		}
+
+		/**
+		 * Remove entry 'i', this requires that the entry has no postfix.
+		 */
+		void removeEntry(int i) {
+			int n = size - i - 1;
+			System.arraycopy(keys, i+1, keys, i, n);
+			System.arraycopy(refs, i+1, refs, i, n);
+			long lowMask = (1L << i) - 1;
+			subs = (subs & lowMask) | ((subs >>> 1) & ~lowMask);
+			size--;
+			refs[size] = null;
+		}
+
+		/**
+		 * Turn sub-node slot 'i' into a post, this requires nPosts < post capacity.
+		 */
+		void insertPost(int i, int DIM) {
+			int p = postIndex(i);
+			int n = nPosts - p;
+			System.arraycopy(posts, p*DIM, posts, (p+1)*DIM, n*DIM);
+			if (lValues != null) {
+				System.arraycopy(lValues, p, lValues, p+1, n);
+			}
+			subs &= ~(1L << i);
+			nPosts++;
+		}
+
+		/**
+		 * Turn post 'i' into a sub-node slot.
+		 */
+		void removePost(int i, int DIM) {
+			int p = postIndex(i);
+			int n = nPosts - p - 1;
+			System.arraycopy(posts, (p+1)*DIM, posts, p*DIM, n*DIM);
+			if (lValues != null) {
+				System.arraycopy(lValues, p+1, lValues, p, n);
+			}
+			subs |= 1L << i;
+			nPosts--;
+		}
+
+		void setPost(int i, long[] key, Object value, long lValue, int DIM) {
+			int p = postIndex(i);
+			System.arraycopy(key, 0, posts, p*DIM, DIM);
+			if (lValues != null) {
+				lValues[p] = lValue;
+			}
+			refs[i] = value;
+		}
+
+		/**
+		 * Append all entries of 'other', this requires sufficient capacity.
+		 */
+		void append(Block other, int DIM) {
+			System.arraycopy(other.keys, 0, keys, size, other.size);
+			System.arraycopy(other.refs, 0, refs, size, other.size);
+			subs |= other.subs << size;
+			size += other.size;
+			System.arraycopy(other.posts, 0, posts, nPosts*DIM, other.nPosts*DIM);
+			if (lValues != null) {
+				System.arraycopy(other.lValues, 0, lValues, nPosts, other.nPosts);
+			}
+			nPosts += other.nPosts;
+		}
+	}
+
+	@Override
+	int size() {
+		return size;
+	}
+
+	@Override
+	boolean contains(long hcPos) {
+		Block bl = blocks[findBlock(hcPos)];
+		return binarySearch(bl.keys, 0, bl.size, hcPos) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	NodeEntry<T> get(long hcPos) {
+		Block bl = blocks[findBlock(hcPos)];
+		int i = binarySearch(bl.keys, 0, bl.size, hcPos);
+		if (i < 0) {
+			return null;
+		}
+		if (bl.isSub(i)) {
+			return new NodeEntry<>((Node<T>) bl.refs[i], false);
+		}
+		int p = bl.postIndex(i);
+		long[] key = Arrays.copyOfRange(bl.posts, p*DIM, (p+1)*DIM);
+		return createEntry(key, (T) bl.refs[i], isValuesPrimitive ? bl.lValues[p] : 0, false);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	Node<T> getSub(long hcPos) {
+		Block bl = blocks[findBlock(hcPos)];
+		int i = binarySearch(bl.keys, 0, bl.size, hcPos);
+		return i >= 0 && bl.isSub(i) ? (Node<T>) bl.refs[i] : null;
+	}
+
+	@Override
+	void putPost(long hcPos, long[] key, T value, long lValue) {
+		put(hcPos, key, value, lValue);
+	}
+
+	@Override
+	void putSub(long hcPos, Node<T> sub) {
+		put(hcPos, null, sub, 0);
+	}
+
+	/**
+	 * @param key the postfix or {@code null} for a sub-node
+	 * @param ref value or sub-node
+	 */
+	private void put(long hcPos, long[] key, Object ref, long lValue) {
+		int b = findBlock(hcPos);
+		Block bl = blocks[b];
+		int i = binarySearch(bl.keys, 0, bl.size, hcPos);
+		if (i < 0) {
+			i = -(i+1);
+			if (bl.size == BLOCK_SIZE) {
+				split(b);
+				if (i > bl.size) {
+					i -= bl.size;
+					bl = blocks[b+1];
+				}
+			}
+			if (bl.size == bl.keys.length) {
+				resize(bl, Math.min(BLOCK_SIZE, bl.size + GROW));
+			}
+			bl.insertEntry(i, hcPos);
+			size++;
+		}
+		if (key == null) {
+			if (!bl.isSub(i)) {
+				removePost(bl, i);
+			}
+			bl.refs[i] = ref;
+			return;
+		}
+		if (bl.isSub(i)) {
+			if (bl.nPosts*DIM == bl.posts.length) {
+				resizePosts(bl, Math.min(BLOCK_SIZE, bl.nPosts + GROW));
+			}
+			bl.insertPost(i, DIM);
+		}
+		bl.setPost(i, key, ref, lValue, DIM);
+	}
+
+	@Override
+	void setValue(long hcPos, T value, long lValue) {
+		Block bl = blocks[findBlock(hcPos)];
+		int i = binarySearch(bl.keys, 0, bl.size, hcPos);
+		if (isValuesPrimitive) {
+			bl.lValues[bl.postIndex(i)] = lValue;
+		} else {
+			bl.refs[i] = value;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	void movePost(long hcPos, long newPos, long[] newKey) {
+		int b = findBlock(hcPos);
+		Block bl = blocks[b];
+		int i = binarySearch(bl.keys, 0, bl.size, hcPos);
+		T value = (T) bl.refs[i];
+		long lValue = isValuesPrimitive ? bl.lValues[bl.postIndex(i)] : 0;
+		remove(b, i);
+		put(newPos, newKey, value, lValue);
+	}
+
+	@Override
+	void remove(long hcPos) {
+		int b = findBlock(hcPos);
+		Block bl = blocks[b];
+		int i = binarySearch(bl.keys, 0, bl.size, hcPos);
+		if (i >= 0) {
+			remove(b, i);
+		}
+	}
+
+	/**
+	 * @return the block that contains the address, or the block where it would be inserted
+	 */
+	private int findBlock(long hcPos) {
+		int b = binarySearch(mins, 1, nBlocks, hcPos);
+		return b >= 0 ? b : -(b+1) - 1;
+	}
+
+	private void remove(int b, int i) {
+		Block bl = blocks[b];
+		if (!bl.isSub(i)) {
+			removePost(bl, i);
+		}
+		bl.removeEntry(i);
+		size--;
+		if (nBlocks > 1) {
+			if (bl.size == 0) {
+				removeBlock(b);
+				return;
+			}
+			if (b > 0 && i == 0) {
+				mins[b] = bl.keys[0];
+			}
+			if (bl.size < BLOCK_SIZE/4) {
+				//merge with a neighbour
+				int left = b > 0 ? b - 1 : b;
+				if (blocks[left].size + blocks[left+1].size <= BLOCK_SIZE/2) {
+					merge(left);
+					return;
+				}
+			}
+		}
+		if (bl.keys.length - bl.size >= 2*GROW) {
+			resize(bl, bl.size + GROW);
+		}
+	}
+
+	private void removePost(Block bl, int i) {
+		bl.removePost(i, DIM);
+		if (bl.posts.length - bl.nPosts*DIM >= 2*GROW*DIM) {
+			resizePosts(bl, bl.nPosts + GROW);
+		}
+	}
+
+	private void resize(Block bl, int newCapacity) {
+		capacity += newCapacity - bl.keys.length;
+		bl.resize(newCapacity);
+	}
+
+	private void resizePosts(Block bl, int newCapacity) {
+		postCapacity += newCapacity - bl.posts.length/DIM;
+		bl.resizePosts(newCapacity, DIM);
+	}
+
+	/**
+	 * Move the upper half of block 'b' into a new block.
+	 */
+	private void split(int b) {
+		Block bl = blocks[b];
+		int half = bl.size >> 1;
+		int n = bl.size - half;
+		int pHalf = bl.postIndex(half);
+		int nPosts = bl.nPosts - pHalf;
+		Block right = new Block(n + GROW, nPosts + GROW, DIM, isValuesPrimitive);
+		System.arraycopy(bl.keys, half, right.keys, 0, n);
+		System.arraycopy(bl.refs, half, right.refs, 0, n);
+		right.subs = bl.subs >>> half;
+		right.size = n;
+		System.arraycopy(bl.posts, pHalf*DIM, right.posts, 0, nPosts*DIM);
+		if (isValuesPrimitive) {
+			System.arraycopy(bl.lValues, pHalf, right.lValues, 0, nPosts);
+		}
+		right.nPosts = nPosts;
+		capacity += n + GROW;
+		postCapacity += nPosts + GROW;
+
+		Arrays.fill(bl.refs, half, bl.size, null);
+		bl.subs &= (1L << half) - 1;
+		bl.size = half;
+		bl.nPosts = pHalf;
+		resize(bl, half + GROW);
+		resizePosts(bl, pHalf + GROW);
+
+		if (nBlocks == blocks.length) {
+			int newSize = nBlocks + (nBlocks >> 1) + 1;
+			blocks = Arrays.copyOf(blocks, newSize);
+			mins = Arrays.copyOf(mins, newSize);
+		}
+		System.arraycopy(blocks, b+1, blocks, b+2, nBlocks-b-1);
+		System.arraycopy(mins, b+1, mins, b+2, nBlocks-b-1);
+		blocks[b+1] = right;
+		mins[b+1] = right.keys[0];
+		nBlocks++;
+	}
+
+	/**
+	 * Merge block 'b+1' into block 'b'.
+	 */
+	private void merge(int b) {
+		Block left = blocks[b];
+		Block right = blocks[b+1];
+		if (left.keys.length < left.size + right.size) {
+			resize(left, left.size + right.size + GROW);
+		}
+		if (left.posts.length < (left.nPosts + right.nPosts)*DIM) {
+			resizePosts(left, left.nPosts + right.nPosts + GROW);
+		}
+		left.append(right, DIM);
+		removeBlock(b+1);
+	}
+
+	private void removeBlock(int b) {
+		capacity -= blocks[b].keys.length;
+		postCapacity -= blocks[b].posts.length/DIM;
+		System.arraycopy(blocks, b+1, blocks, b, nBlocks-b-1);
+		System.arraycopy(mins, b+1, mins, b, nBlocks-b-1);
+		nBlocks--;
+		blocks[nBlocks] = null;
+		if (nBlocks < (blocks.length >> 2)) {
+			blocks = Arrays.copyOf(blocks, nBlocks << 1);
+			mins = Arrays.copyOf(mins, nBlocks << 1);
+		}
+	}
+
+	@Override
+	void trim() {
+		for (int b = 0; b < nBlocks; b++) {
+			Block bl = blocks[b];
+			if (bl.keys.length > bl.size) {
+				resize(bl, bl.size);
+			}
+			if (bl.posts.length > bl.nPosts*DIM) {
+				resizePosts(bl, bl.nPosts);
+			}
+		}
+		if (blocks.length > nBlocks) {
+			blocks = Arrays.copyOf(blocks, nBlocks);
+			mins = Arrays.copyOf(mins, nBlocks);
+		}
+	}
+
+	@Override
+	NiIndex<T> copy() {
+		return new NiIndexArray<>(this);
+	}
+
+	@Override
+	NiIterator<T> iterator(NiIterator<T> reuse) {
+		return query(0, -1L, reuse);
+	}
+
+	@Override
+	NiIterator<T> query(long maskLower, long maskUpper, NiIterator<T> reuse) {
+		ArrayIter<T> it = reuse instanceof ArrayIter ? (ArrayIter<T>) reuse : new ArrayIter<T>();
+		return it.reset(this, maskLower, maskUpper);
+	}
+
+	@Override
+	int estimateSize() {
+		final int REF = 4;//bytes for a reference
+		//block + array headers
+		int blockBytes = 48 + (isValuesPrimitive ? 4*16 : 3*16);
+		//this + mins + blocks + blocks + keys
+		return 48 + align8(16 + mins.length*8) + align8(16 + blocks.length*REF) +
+				nBlocks*blockBytes + capacity*8;
+	}
+
+	@Override
+	long estimateSizeEntries(int postCnt, int DIM) {
+		final int REF = 4;//bytes for a reference
+		//refs + postfixes + values
+		return capacity*REF + postCapacity*(DIM*8L + (isValuesPrimitive ? 8 : 0));
+	}
+
+	private static int align8(int n) {
+		return (n + 7) & ~7;
+	}
+
+	/**
+	 * Binary search with unsigned comparison.
+	 * @return index of the key or -(insertion point)-1 if the key was not found
+	 */
+	private static int binarySearch(long[] keys, int fromIndex, int toIndex, long key) {
+		final long k = key ^ Long.MIN_VALUE;
+		int low = fromIndex;
+		int high = toIndex - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long midVal = keys[mid] ^ Long.MIN_VALUE;
+			if (midVal < k) {
+				low = mid + 1;
+			} else if (midVal > k) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Iterator that returns the same entry object for all entries.
+	 */
+	private static final class ArrayIter<T> extends NiIterator<T> {
+		private NiIndexArray<T> ind;
+		private long maskLower;
+		private long maskUpper;
+		//the next entry is 'i' in block 'b', past the end if i == block.size
+		private int b;
+		private Block block;
+		private int i;
+		private long pos;
+		private NodeEntry<T> entry;
+		private long[] key;
+
+		ArrayIter<T> reset(NiIndexArray<T> ind, long maskLower, long maskUpper) {
+			if (entry == null || key.length != ind.DIM ||
+					entry instanceof NodeEntryLong != ind.isValuesPrimitive) {
+				key = new long[ind.DIM];
+				entry = ind.createEntry(key, null, 0, false);
+			}
+			this.ind = ind;
+			this.maskLower = maskLower;
+			this.maskUpper = maskUpper;
+			seek(maskLower);
+			findNext();
+			return this;
+		}
+
+		/**
+		 * Move to the first entry with an address that is equal to or larger than 'hcPos'.
+		 */
+		private void seek(long hcPos) {
+			b = ind.findBlock(hcPos);
+			block = ind.blocks[b];
+			int j = binarySearch(block.keys, 0, block.size, hcPos);
+			i = j >= 0 ? j : -(j+1);
+			if (i == block.size) {
+				nextBlock();
+			}
+		}
+
+		private void nextBlock() {
+			if (b + 1 < ind.nBlocks) {
+				block = ind.blocks[++b];
+				i = 0;
+			}
+		}
+
+		private void findNext() {
+			while (i < block.size) {
+				long k = block.keys[i];
+				//bits that are 1 but must be 0 or that are 0 but must be 1
+				long conflicts = (k & ~maskUpper) | (~k & maskLower);
+				if (conflicts == 0) {
+					return;
+				}
+				//skip to the first matching address that is larger than k
+				long lowBits = -1L >>> Long.numberOfLeadingZeros(conflicts);
+				long k2;
+				if ((Long.highestOneBit(conflicts) & maskLower) != 0) {
+					//keep the prefix and set the highest conflicting bit
+					k2 = (k & ~lowBits) | (maskLower & lowBits);
+				} else {
+					//the largest match with the same prefix is smaller than k, take the next one
+					long base = (k & ~lowBits) | (maskUpper & lowBits);
+					k2 = PhTree8.inc(base, maskLower, maskUpper);
+					if (Long.compareUnsigned(k2, base) <= 0) {
+						//overflow, there are no further matches
+						b = ind.nBlocks-1;
+						block = ind.blocks[b];
+						i = block.size;
+						return;
+					}
+				}
+				if (Long.compareUnsigned(k2, block.keys[block.size-1]) <= 0) {
+					int j = binarySearch(block.keys, i+1, block.size, k2);
+					i = j >= 0 ? j : -(j+1);
+				} else {
+					seek(k2);
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return i < block.size;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public NodeEntry<T> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final int DIM = ind.DIM;
+			pos = block.keys[i];
+			if (block.isSub(i)) {
+				entry.setNode((Node<T>) block.refs[i]);
+			} else {
+				int p = block.postIndex(i);
+				System.arraycopy(block.posts, p*DIM, key, 0, DIM);
+				if (ind.isValuesPrimitive) {
+					((NodeEntryLong<T>) entry).setPostLong(key, block.lValues[p]);
+				} else {
+					entry.setPost(key, (T) block.refs[i]);
+				}
+			}
+			if (++i == block.size) {
+				nextBlock();
+			}
+			findNext();
+			return entry;
+		}
+
+		@Override
+		long pos() {
+			return pos;
+		}
+	}
+}
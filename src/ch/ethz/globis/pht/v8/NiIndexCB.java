@@ -0,0 +1,172 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.v8;
+
+import org.zoodb.index.critbit.CritBit64.CBIterator;
+import org.zoodb.index.critbit.CritBit64.Entry;
+import org.zoodb.index.critbit.CritBit64.QueryIteratorMask;
+import org.zoodb.index.critbit.CritBit64COW;
+
+import ch.ethz.globis.pht.v8.PhTree8.NodeEntry;
+import ch.ethz.globis.pht.v8.PhTree8.NodeEntryLong;
+
+/**
+ * Node index based on a crit-bit tree. The entries are stored as {@link NodeEntry}
+ * objects, which can carry a lock.
+ *
+ * @param <T>
+ */
+final class NiIndexCB<T> extends NiIndex<T> {
+
+	private final CritBit64COW<NodeEntry<T>> cb;
+	private final boolean useLock;
+
+	NiIndexCB(boolean isValuesPrimitive, boolean isValuesInt, boolean useLock) {
+		this(CritBit64COW.<NodeEntry<T>>create(), isValuesPrimitive, isValuesInt, useLock);
+	}
+
+	private NiIndexCB(CritBit64COW<NodeEntry<T>> cb, boolean isValuesPrimitive,
+			boolean isValuesInt, boolean useLock) {
+		super(isValuesPrimitive, isValuesInt);
+		this.cb = cb;
+		this.useLock = useLock;
+	}
+
+	@Override
+	int size() {
+		return cb.size();
+	}
+
+	@Override
+	boolean contains(long hcPos) {
+		return cb.contains(hcPos);
+	}
+
+	@Override
+	NodeEntry<T> get(long hcPos) {
+		return cb.get(hcPos);
+	}
+
+	@Override
+	Node<T> getSub(long hcPos) {
+		NodeEntry<T> e = cb.get(hcPos);
+		return e == null ? null : e.node;
+	}
+
+	@Override
+	void putPost(long hcPos, long[] key, T value, long lValue) {
+		cb.put(hcPos, createEntry(key.clone(), value, lValue, useLock));
+	}
+
+	@Override
+	void putSub(long hcPos, Node<T> sub) {
+		cb.put(hcPos, new NodeEntry<>(sub, useLock));
+	}
+
+	@Override
+	void setValue(long hcPos, T value, long lValue) {
+		NodeEntry<T> e = cb.get(hcPos);
+		if (isValuesPrimitive) {
+			((NodeEntryLong<T>) e).setValueLong(lValue);
+		} else {
+			e.setValue(value);
+		}
+	}
+
+	@Override
+	void movePost(long hcPos, long newPos, long[] newKey) {
+		NodeEntry<T> e = cb.remove(hcPos);
+		//the key of the entry belongs to this index and can be overwritten
+		System.arraycopy(newKey, 0, e.getKey(), 0, newKey.length);
+		cb.put(newPos, e);
+	}
+
+	@Override
+	void remove(long hcPos) {
+		cb.remove(hcPos);
+	}
+
+	@Override
+	NiIndex<T> copy() {
+		return new NiIndexCB<>(cb.copy(), isValuesPrimitive, isValuesInt, useLock);
+	}
+
+	@Override
+	NiIterator<T> iterator(NiIterator<T> reuse) {
+		CBIter<T> it = reuse instanceof CBIter ? (CBIter<T>) reuse : new CBIter<T>();
+		it.it.reset(cb);
+		return it;
+	}
+
+	@Override
+	NiIterator<T> query(long maskLower, long maskUpper, NiIterator<T> reuse) {
+		CBIterMask<T> it =
+				reuse instanceof CBIterMask ? (CBIterMask<T>) reuse : new CBIterMask<T>();
+		it.it.reset(cb, maskLower, maskUpper);
+		return it;
+	}
+
+	@Override
+	void trim() {
+		//crit-bit trees have no slack
+	}
+
+	@Override
+	int estimateSize() {
+		return (cb.size()-1) * 48 + 40;
+	}
+
+	@Override
+	long estimateSizeEntries(int postCnt, int DIM) {
+		//entries and post-fixes
+		return cb.size() * 24L + postCnt * (16L + DIM*8);
+	}
+
+	private static final class CBIter<T> extends NiIterator<T> {
+		private final CBIterator<NodeEntry<T>> it = new CBIterator<>();
+		private long pos;
+
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+
+		@Override
+		public NodeEntry<T> next() {
+			Entry<NodeEntry<T>> e = it.nextEntry();
+			pos = e.key();
+			return e.value();
+		}
+
+		@Override
+		long pos() {
+			return pos;
+		}
+	}
+
+	private static final class CBIterMask<T> extends NiIterator<T> {
+		private final QueryIteratorMask<NodeEntry<T>> it = new QueryIteratorMask<>();
+		private long pos;
+
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+
+		@Override
+		public NodeEntry<T> next() {
+			Entry<NodeEntry<T>> e = it.nextEntry();
+			pos = e.key();
+			return e.value();
+		}
+
+		@Override
+		long pos() {
+			return pos;
+		}
+	}
+}
@@ -6,19 +6,19 @@
  */
 package ch.ethz.globis.pht.v8;
 
+import static ch.ethz.globis.pht.PhTreeHelper.align8;
 import static ch.ethz.globis.pht.PhTreeHelper.DEBUG;
 import static ch.ethz.globis.pht.PhTreeHelper.DEBUG_FULL;
 import static ch.ethz.globis.pht.PhTreeHelper.applyHcPos;
 
-import org.zoodb.index.critbit.CritBit64;
-import org.zoodb.index.critbit.CritBit64COW;
-import org.zoodb.index.critbit.CritBit64.CBIterator;
-import org.zoodb.index.critbit.CritBit64.Entry;
-
 import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhTreeConfig;
 import ch.ethz.globis.pht.PhTreeHelper;
+import ch.ethz.globis.pht.util.PhTreeMemoryStats;
 import ch.ethz.globis.pht.util.Refs;
+import ch.ethz.globis.pht.v8.NiIndex.NiIterator;
 import ch.ethz.globis.pht.v8.PhTree8.NodeEntry;
+import ch.ethz.globis.pht.v8.PhTree8.NodeEntryLong;
 
 
 /**
@@ -33,17 +33,23 @@ class Node<T> {
 	//size of references in bytes
 	private static final int REF_BITS = 4*8;
 
-	private static final boolean NI_THRESHOLD(int subCnt, int postCnt) {
-		return (subCnt > 500 || postCnt > 50);
-	}
+	//value returned by key-only nodes for existing entries
+	static final Object VALUE_PLACEHOLDER = new Object();
 
 	static final int HC_BITS = 0;  //number of bits required for storing current (HC)-representation
 	static final int PINN_HC_WIDTH = 1; //width of not-null flag for post-hc
 	static final int PIK_WIDTH(int DIM) { return DIM; };//DIM; //post index key width 
 	static final int SIK_WIDTH(int DIM) { return DIM; };//DIM; //sub index key width 
 
-	private Node<T>[] subNRef;
-	private T[] values;
+	//Sub-nodes followed by values. The first slots hold the sub-nodes (2^DIM for HC, 
+	//subCnt for LHC), the following slots hold the values (2^DIM for HC, postCnt for LHC).
+	//Trees with primitive values store only the sub-nodes here, see isValuesPrimitive(). 
+	//Key-only trees store only the sub-nodes here, see isValuesNone().
+	//Always null for NI nodes.
+	private Object[] refs;
+	//Values for trees with primitive values, long[] or int[], see isValuesPrimitive().
+	//NI nodes store primitive values in NodeEntryLong instead.
+	private Object pValues;
 	
 	private int subCnt = 0;
 	private int postCnt = 0;
@@ -72,17 +78,25 @@ class Node<T> {
 	private byte postLen = 0;
 	private byte infixLen = 0; //prefix size
 
-	private CritBit64<NodeEntry<T>> ind = null;
+	private NiIndex<T> ind = null;
+
+	//Lower bound of the expiry times of all entries in this sub-tree, see 
+	//PhExpirySweeper. Long.MIN_VALUE if unknown.
+	private long minExpiry = Long.MIN_VALUE;
+
+	//shared per tree
+	private final NodeConfig cfg;
+	private final PhTreeMemoryStats mem;
 
     @SuppressWarnings("unchecked")
 	protected Node(Node<T> original, int dim) {
-        if (original.subNRef != null) {
-            int size = original.subNRef.length;
-            this.subNRef = new Node[size];
-            System.arraycopy(original.subNRef, 0, this.subNRef, 0, size);
+        if (original.refs != null) {
+            this.refs = original.refs.clone();
         }
-        if (original.values != null) {
-            this.values = (T[]) original.values.clone();
+        if (original.pValues instanceof long[]) {
+            this.pValues = ((long[]) original.pValues).clone();
+        } else if (original.pValues != null) {
+            this.pValues = ((int[]) original.pValues).clone();
         }
         if (original.ba != null) {
             this.ba = new long[original.ba.length];
@@ -94,9 +108,12 @@ class Node<T> {
         this.isHC = original.isHC;
         this.postLen = original.postLen;
         this.infixLen = original.infixLen;
+        this.cfg = original.cfg;
+        this.mem = original.mem;
         if (original.ind != null) {
-            this.ind = ((CritBit64COW<PhTree8.NodeEntry<T>>)original.ind).copy();
+            this.ind = original.ind.copy();
         }
+        this.minExpiry = original.minExpiry;
         if (original.ba != null) {
             int nrBits = original.isPostNI() ? 
             		calcArraySizeTotalBitsNI(dim) 
@@ -109,11 +126,17 @@ class Node<T> {
 	protected Node(int infixLen, int postLen, int estimatedPostCount, PhTree8<T> tree) {
 		this.infixLen = (byte) infixLen;
 		this.postLen = (byte) postLen;
+		this.cfg = tree.getNodeConfig();
+		this.mem = tree.memoryStats();
+		setValuesLong(tree.getValueType() == PhTreeConfig.VALUES_LONG);
+		setValuesInt(tree.getValueType() == PhTreeConfig.VALUES_INT);
+		setValuesNone(tree.getValueType() == PhTreeConfig.VALUES_NONE);
 		tree.increaseNrNodes();
 		if (estimatedPostCount >= 0) {
 			int size = calcArraySizeTotalBits(estimatedPostCount, tree.getDim());
 			this.ba = Bits.arrayCreate(size);
 		}
+		account(1, tree.getDim());
 	}
 
 	static <T> Node<T> createNode(PhTree8<T> tree, int infixLen, int postLen, 
@@ -125,14 +148,18 @@ class Node<T> {
 		return new Node<T>(original, dim);
 	}
 
-	NodeEntry<T> createNodeEntry(Node<T> sub) {
-		return new NodeEntry<>(sub, this.getClass() != Node.class);
-	}
-	
 	NodeEntry<T> createNodeEntry(long[] key, T value) {
+		if (isValuesPrimitive()) {
+			return createNodeEntryLong(key, toLong(value, isValuesInt()));
+		}
 		return new NodeEntry<>(key, value, this.getClass() != Node.class);
 	}
 	
+	NodeEntry<T> createNodeEntryLong(long[] key, long value) {
+		return new NodeEntryLong<>(key, value, isValuesInt(), this.getClass() != Node.class);
+	}
+
+	
 	boolean hasInfixes() {
 		return infixLen > 0;
 	}
@@ -142,12 +169,12 @@ class Node<T> {
 		//post-fixes
 		if (isPostHC()) {
 			//hyper-cube
-			nBits += (PINN_HC_WIDTH + DIM * postLen) * (1 << DIM);
+			nBits += (PINN_HC_WIDTH + getPostBits(DIM)) * (1 << DIM);
 		} else if (isPostNI()) {
 			nBits += 0;
 		} else {
 			//hc-pos index
-			nBits += bufPostCnt * (PIK_WIDTH(DIM) + DIM * postLen);
+			nBits += bufPostCnt * (PIK_WIDTH(DIM) + getPostBits(DIM));
 		}
 		return nBits;
 	}
@@ -157,8 +184,8 @@ class Node<T> {
 	}
 
 	long getInfix(int dim) {
-		return Bits.readArray(this.ba, getBitPos_Infix()
-				+ dim*infixLen, infixLen) << (postLen+1);
+		return Bits.readArray(this.ba, getBitPos_Infix() + getInfixOffs(dim), 
+				getInfixWidth(dim)) << (postLen+1);
 	}
 
 
@@ -194,16 +221,44 @@ class Node<T> {
 	void writeInfix(long[] key) {
 		int pos = getBitPos_Infix();
 		int shift = postLen+1;
-		for (long k: key) {
-			Bits.writeArray(this.ba, pos, infixLen, k >>> shift);
-			pos += infixLen;
+		for (int d = 0; d < key.length; d++) {
+			int w = getInfixWidth(d);
+			Bits.writeArray(this.ba, pos, w, key[d] >>> shift);
+			pos += w;
 		}
 	}
 
 
 	long getInfixBit(int infId, final int infixInternalOffset) {
-		int startBitTotal = infId*infixLen + infixInternalOffset;
-		return Bits.getBit01(ba, getBitPos_Infix() + startBitTotal);
+		//offset 0 is the highest bit of the infix
+		return (getInfix(infId) >>> (postLen + infixLen - infixInternalOffset)) & 1L;
+	}
+
+	/**
+	 * @return Number of bits of a postfix. Dimensions with a depth of less than 64 bits
+	 * store only the bits below their depth, see {@link NodeConfig#bits(int, int)}.
+	 */
+	int getPostBits(final int DIM) {
+		return cfg.bits(DIM, postLen);
+	}
+
+	private int getPostWidth(int dim) {
+		return cfg.width(dim, postLen);
+	}
+
+	/**
+	 * @return Number of bits of the infix, see {@link #getPostBits(int)}.
+	 */
+	int getInfixBits(final int DIM) {
+		return getInfixOffs(DIM);
+	}
+
+	private int getInfixOffs(int dim) {
+		return cfg.bits(dim, postLen+1+infixLen) - cfg.bits(dim, postLen+1);
+	}
+
+	private int getInfixWidth(int dim) {
+		return cfg.width(dim, postLen+1+infixLen) - cfg.width(dim, postLen+1);
 	}
 
 	/**
@@ -222,24 +277,20 @@ class Node<T> {
 	 */
 	Node<T> getSubNode(long pos, final int DIM) {
 		if (ind != null) {
-			NodeEntry<T> e = niGet(pos);
-			if (e == null) {
-				return null;
-			}
-			return e.node; 
+			return ind.getSub(pos);
 		}
-		if (subNRef == null) {
+		if (refs == null) {
 			return null;
 		}
 		if (isSubHC()) {
-			return subNRef[(int) pos];
+			return subNRef((int) pos);
 		}
 		int subOffsBits = getBitPos_SubNodeIndex(DIM);
 		int p2 = Bits.binarySearch(ba, subOffsBits, getSubCount(), pos, SIK_WIDTH(DIM), 0);
 		if (p2 < 0) {
 			return null;
 		}
-		return subNRef[p2];
+		return subNRef(p2);
 	}
 
 
@@ -251,13 +302,13 @@ class Node<T> {
 	 */
 	Node<T> getSubNodeWithPos(long posHC, int posLHC) {
 		if (isSubNI()) {
-			return niGet(posHC).node;
+			return ind.getSub(posHC);
 		}
 		Node<T> ret;
 		if (isSubHC()) {
-			ret = subNRef[(int)posHC];
+			ret = subNRef((int)posHC);
 		} else {
-			ret = subNRef[posLHC];
+			ret = subNRef(posLHC);
 		}
 		return ret;
 	}
@@ -268,12 +319,17 @@ class Node<T> {
 	 * @param pos
 	 * @param sub
 	 */
-	@SuppressWarnings("unchecked")
 	void addSubNode(long pos, Node<T> sub, final int DIM) {
+		account(-1, DIM);
+		addSubNode0(pos, sub, DIM);
+		account(1, DIM);
+	}
+
+	private void addSubNode0(long pos, Node<T> sub, final int DIM) {
 		final int bufSubCount = getSubCount();
 		final int bufPostCount = getPostCount();
 
-		if (!isSubNI() && NI_THRESHOLD(bufSubCount, bufPostCount)) {
+		if (!isSubNI() && cfg.isNiRequired(bufSubCount, bufPostCount)) {
 			niBuild(bufSubCount, bufPostCount, DIM);
 		}
 		if (isSubNI()) {
@@ -282,13 +338,9 @@ class Node<T> {
 			return;
 		}
 
-		if (subNRef == null) {
-			subNRef = new Node[2];
-		}
-
 		//decide here whether to use hyper-cube or linear representation
 		if (isSubHC()) {
-			subNRef[(int) pos] = sub;
+			refs[(int) pos] = sub;
 			setSubCount(bufSubCount+1);
 			return;
 		}
@@ -296,17 +348,17 @@ class Node<T> {
 		int subOffsBits = getBitPos_SubNodeIndex(DIM);
 
 		//switch to normal array (full hyper-cube) if applicable.
-		if (DIM<=31 && (REF_BITS+SIK_WIDTH(DIM))*(subNRef.length+1L) >= REF_BITS*(1L<<DIM)) {
+		if (DIM<=31 && (REF_BITS+SIK_WIDTH(DIM))*(bufSubCount+1L) >= REF_BITS*(1L<<DIM)) {
 			//migrate to full array!
-			Node<T>[] na = new Node[1<<DIM];
+			Object[] na = new Object[1<<DIM];
 			for (int i = 0; i < bufSubCount; i++) {
 				int posOld = (int) Bits.readArray(ba, subOffsBits + i*SIK_WIDTH(DIM), SIK_WIDTH(DIM));
-				na[posOld] = subNRef[i];
+				na[posOld] = refs[i];
 			}
-			subNRef = na;
+			na[(int) pos] = sub;
+			setRefs(na, 1<<DIM, vArray(), vOffs(DIM), vSlots(DIM));
 			Bits.removeBits(ba, subOffsBits, bufSubCount*SIK_WIDTH(DIM));
 			setSubHC(true);
-			subNRef[(int) pos] = sub;
 			//subCount++;
 			setSubCount(bufSubCount+1);
 			int reqSize = calcArraySizeTotalBits(bufPostCount, DIM);
@@ -323,19 +375,8 @@ class Node<T> {
 		setSubCount(bufSubCount+1);
 
 		int start = -(p2+1);
-		int len = bufSubCount+1 - start-1;
-		// resize only if necessary (could be multiples of 2 to avoid copying)!
-		if (subNRef.length < bufSubCount+1) {
-			int newLen = bufSubCount+1;
-			newLen = (newLen&1)==0 ? newLen : newLen+1; //ensure multiples of two
-			Node<T>[] na2 = new Node[newLen];
-			System.arraycopy(subNRef, 0, na2, 0, start);
-			System.arraycopy(subNRef, start, na2, start+1, len);
-			subNRef = na2;
-		} else {
-			System.arraycopy(subNRef, start, subNRef, start+1, len);
-		}
-		subNRef[start] = sub;
+		//shifts the following sub-nodes and all values
+		refsInsert(start, bufSubCount + vRefSlots(DIM), sub);
 
 		//resize index array?
 		ba = Bits.arrayEnsureSize(ba, calcArraySizeTotalBits(bufPostCount, DIM));
@@ -348,12 +389,69 @@ class Node<T> {
 			niPut(pos, newKey, value);
 			return;
 		}
-		long[] ia = ba;
-		int offs = pob;
-		for (long key: newKey) {
-			Bits.writeArray(ia, offs, postLen, key);
-			offs += postLen;
+		postFromNI(ba, pob, newKey);
+	}
+
+	/**
+	 * Move a post to an empty position in the same node, for example during update().
+	 * In contrast to removing and adding the post, this does not change the node
+	 * representation and does not resize any arrays.
+	 * @param pos current HC position of the post
+	 * @param pob POB of the current post
+	 * @param newPos new HC position, this must be empty, i.e. contain neither post nor sub
+	 * @param newPob POB of the new position, as returned by getPostOffsetBits(newPos)
+	 * @param newKey
+	 * @param DIM
+	 */
+	void movePostPOB(long pos, int pob, long newPos, int newPob, long[] newKey, final int DIM) {
+		account(-1, DIM);
+		movePostPOB0(pos, pob, newPos, newPob, newKey, DIM);
+		account(1, DIM);
+	}
+
+	private void movePostPOB0(long pos, int pob, long newPos, int newPob, long[] newKey, 
+			final int DIM) {
+		if (isPostNI()) {
+			ind.movePost(pos, newPos, newKey);
+			return;
 		}
+		int newOffs = -(newPob+1);
+		if (isPostHC()) {
+			int offsNN = getBitPos_PostIndex(DIM);
+			Bits.setBit(ba, (int) (offsNN+PINN_HC_WIDTH*pos), false);
+			Bits.setBit(ba, (int) (offsNN+PINN_HC_WIDTH*newPos), true);
+			postFromNI(ba, newOffs, newKey);
+			int vOffs = vOffs(DIM);
+			vCopy(vArray(), vOffs + (int) pos, vArray(), vOffs + (int) newPos, 1);
+			vClear(vArray(), vOffs + (int) pos);
+			return;
+		}
+
+		//linearized cube: entries are ordered by their HC position
+		final int entryWidth = PIK_WIDTH(DIM) + getPostBits(DIM);
+		int valPos = offs2ValPos(pob, pos, DIM);
+		int newValPos = offs2ValPos(newOffs, newPos, DIM);
+		if (newValPos > valPos) {
+			//the old entry is removed first
+			newValPos--;
+		}
+		int offsInd = getBitPos_PostIndex(DIM);
+		Bits.removeBits(ba, offsInd + valPos*entryWidth, entryWidth);
+		int start = offsInd + newValPos*entryWidth;
+		Bits.insertBits(ba, start, entryWidth);
+		Bits.writeArray(ba, start, PIK_WIDTH(DIM), newPos);
+		postFromNI(ba, start + PIK_WIDTH(DIM), newKey);
+		Object va = vArray();
+		int vOffs = vOffs(DIM);
+		//only one of them is used
+		T value = isValuesPrimitive() ? null : vGet(va, vOffs + valPos);
+		long lValue = isValuesPrimitive() ? vGetLong(va, vOffs + valPos) : 0;
+		if (newValPos > valPos) {
+			vCopy(va, vOffs + valPos+1, va, vOffs + valPos, newValPos-valPos);
+		} else {
+			vCopy(va, vOffs + newValPos, va, vOffs + newValPos+1, valPos-newValPos);
+		}
+		vSet(va, vOffs + newValPos, value, lValue);
 	}
 
 	/**
@@ -366,7 +464,7 @@ class Node<T> {
 			return;
 		}
 		if (isSubHC()) {
-			subNRef[(int) pos] = newSub;
+			refs[(int) pos] = newSub;
 		} else {
 			//linearized cube
 			int subOffsBits = getBitPos_SubNodeIndex(DIM);
@@ -374,16 +472,21 @@ class Node<T> {
 			if (DEBUG &&  p2 < 0) {
 				throw new IllegalStateException("pos=" + pos);
 			}
-			subNRef[p2] = newSub;
+			refs[p2] = newSub;
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	void removeSub(long pos, final int DIM) {
+		account(-1, DIM);
+		removeSub0(pos, DIM);
+		account(1, DIM);
+	}
+
+	private void removeSub0(long pos, final int DIM) {
 		int bufSubCnt = getSubCount();
 		if (isSubNI()) {
 			final int bufPostCnt = getPostCount();
-			if (!NI_THRESHOLD(bufSubCnt, bufPostCnt)) {
+			if (cfg.isNiRemovable(bufSubCnt, bufPostCnt)) {
 				niDeconstruct(DIM, pos, true);
 				return;
 			}
@@ -398,40 +501,11 @@ class Node<T> {
 		//switch representation (HC <-> Linear)?
 		//+1 bit for null/not-null flag
 		long sizeHC = REF_BITS*(1L<<DIM); 
-		//+DIM assuming compressed IDs
-		long sizeLin = (REF_BITS+SIK_WIDTH(DIM))*(subNRef.length-1L);
+		//+DIM assuming compressed IDs, the HC array had 2^DIM slots
+		long sizeLin = (REF_BITS+SIK_WIDTH(DIM))*((1L<<DIM)-1L);
 		if (isSubHC() && (sizeLin < sizeHC)) {
 			//revert to linearized representation, if applicable
-			int prePostBits_SubHC = getBitPos_PostIndex(DIM);
-			setSubHC( false );
-			bufSubCnt--;
-			setSubCount(bufSubCnt);
-			int prePostBits_SubLHC = getBitPos_PostIndex(DIM);
-			int bia2Size = calcArraySizeTotalBits(bufPostCnt, DIM);
-			long[] bia2 = Bits.arrayCreate(bia2Size);
-			Node<T>[] sa2 = new Node[bufSubCnt];
-			int preSubBits = getBitPos_SubNodeIndex(DIM);
-			//Copy only bits that are relevant. Otherwise we might mess up the not-null table!
-			Bits.copyBitsLeft(ba, 0, bia2, 0, preSubBits);
-			int n=0;
-			for (int i = 0; i < (1L<<DIM); i++) {
-				if (i==pos) {
-					//skip the item that should be deleted.
-					continue;
-				}
-				if (subNRef[i] != null) {
-					sa2[n]= subNRef[i];
-					Bits.writeArray(bia2, preSubBits + n*SIK_WIDTH(DIM), SIK_WIDTH(DIM), i);
-					n++;
-				}
-			}
-			//length: we copy as many bits as fit into bia2, which is easiest to calculate
-			Bits.copyBitsLeft(
-					ba, prePostBits_SubHC, 
-					bia2, prePostBits_SubLHC,
-					bia2Size-prePostBits_SubLHC);  
-			ba = bia2;
-			subNRef = sa2;
+			subHcToLhc(pos, bufSubCnt-1, DIM);
 			return;
 		}			
 
@@ -439,7 +513,7 @@ class Node<T> {
 		if (isSubHC()) {
 			//hyper-cube
 			setSubCount(bufSubCnt-1);
-			subNRef[(int) pos] = null;
+			refs[(int) pos] = null;
 			//Nothing else to do.
 		} else {
 			//linearized cube
@@ -449,30 +523,12 @@ class Node<T> {
 				throw new IllegalStateException("pos=" + pos + "  p2=" + p2);
 			}
 
+			//remove sub-node, shifts the following sub-nodes and all values
+			refsRemove(p2, bufSubCnt + vRefSlots(DIM));
+
 			//subCount--;
 			setSubCount(bufSubCnt-1);
 
-			//remove value
-			int len = bufSubCnt - p2-1;
-			// resize only if necessary (could be multiples of 2 to avoid copying)!
-			// not -1 to allow being one larger than necessary.
-			if (subNRef.length > bufSubCnt) {
-				int newLen = bufSubCnt-1;
-				newLen = (newLen&1)==0 ? newLen : newLen+1; //ensure multiples of two
-				if (newLen > 0) {
-					Node<T>[] na2 = new Node[newLen];
-					System.arraycopy(subNRef, 0, na2, 0, p2);
-					System.arraycopy(subNRef, p2+1, na2, p2, len);
-					subNRef = na2;
-				} else {
-					subNRef = null;
-				}
-			} else {
-				if (p2+1 < subNRef.length) {
-					System.arraycopy(subNRef, p2+1, subNRef, p2, len);
-				}
-			}
-
 			//resize index array
 			int offsKey = getBitPos_SubNodeIndex(DIM) + SIK_WIDTH(DIM)*p2;
 			if (DEBUG && offsKey < 0) {
@@ -511,10 +567,12 @@ class Node<T> {
 		//Also, length can be expected to be equal
 		long mask = ~((-1L) << postLen);
 		for (int i = 0; i < key.length; i++) {
-			long l = Bits.readArray(ia, offs + i*postLen, postLen);
+			int w = getPostWidth(i);
+			long l = Bits.readArray(ia, offs, w);
 			if (l != (key[i] & mask)) {
 				return false;
 			}
+			offs += w;
 		}
 		return true;
 	}
@@ -527,22 +585,31 @@ class Node<T> {
 		return ind.get(hcPos);
 	}
 
-	NodeEntry<T> niPut(long hcPos, long[] key, T value) {
-		long[] copy = new long[key.length];
-		System.arraycopy(key, 0, copy, 0, key.length);
-		return ind.put(hcPos, createNodeEntry(copy, value));
+	void niPut(long hcPos, long[] key, T value) {
+		ind.putPost(hcPos, key, value, vToLong(value));
+	}
+
+	void niPutLong(long hcPos, long[] key, long value) {
+		ind.putPost(hcPos, key, null, value);
 	}
 
-	NodeEntry<T> niPutNoCopy(long hcPos, long[] key, T value) {
-		return ind.put(hcPos, createNodeEntry(key, value));
+	/**
+	 * Add the post with the value in slot 'vPos' of the value array 'va'.
+	 */
+	private void niPut(long hcPos, long[] key, Object va, int vPos) {
+		if (isValuesPrimitive()) {
+			ind.putPost(hcPos, key, null, vGetLong(va, vPos));
+		} else {
+			ind.putPost(hcPos, key, vGet(va, vPos), 0);
+		}
 	}
 
-	NodeEntry<T> niPut(long hcPos, Node<T> subNode) {
-		return ind.put(hcPos, createNodeEntry(subNode));
+	void niPut(long hcPos, Node<T> subNode) {
+		ind.putSub(hcPos, subNode);
 	}
 
-    NodeEntry<T> niRemove(long hcPos) {
-		return ind.remove(hcPos);
+	void niRemove(long hcPos) {
+		ind.remove(hcPos);
 	}
 
 	/**
@@ -565,9 +632,25 @@ class Node<T> {
 	}
 
 	void addPost(long pos, long[] key, T value) {
+		addPost(pos, key, value, vToLong(value));
+	}
+
+	/**
+	 * Primitive version of {@link #addPost(long, long[], Object)}, this requires
+	 * {@link #isValuesPrimitive()}.
+	 */
+	void addPostLong(long pos, long[] key, long value) {
+		addPost(pos, key, null, value);
+	}
+
+	/**
+	 * @param value the value, ignored if {@link #isValuesPrimitive()}
+	 * @param lValue the value if {@link #isValuesPrimitive()}, otherwise ignored
+	 */
+	void addPost(long pos, long[] key, T value, long lValue) {
 		final int DIM = key.length;
 		if (isPostNI()) {
-			addPostPOB(pos, -1, key, value);
+			addPostPOB(pos, -1, key, value, lValue);
 			return;
 		}
 
@@ -575,7 +658,7 @@ class Node<T> {
 		if (DEBUG && offsKey >= 0) {
 			throw new IllegalStateException("Element already exists: " + offsKey);
 		}
-		addPostPOB(pos, offsKey, key, value);
+		addPostPOB(pos, offsKey, key, value, lValue);
 	}
 
 	/**
@@ -585,6 +668,25 @@ class Node<T> {
 	 * @param key
 	 */
 	void addPostPOB(long pos, int offsPostKey, long[] key, T value) {
+		addPostPOB(pos, offsPostKey, key, value, vToLong(value));
+	}
+
+	/**
+	 * Primitive version of {@link #addPostPOB(long, int, long[], Object)}, this requires
+	 * {@link #isValuesPrimitive()}.
+	 */
+	void addPostLongPOB(long pos, int offsPostKey, long[] key, long value) {
+		addPostPOB(pos, offsPostKey, key, null, value);
+	}
+
+	private void addPostPOB(long pos, int offsPostKey, long[] key, T value, long lValue) {
+		final int DIM = key.length;
+		account(-1, DIM);
+		addPostPOB0(pos, offsPostKey, key, value, lValue);
+		account(1, DIM);
+	}
+
+	private void addPostPOB0(long pos, int offsPostKey, long[] key, T value, long lValue) {
 		final int DIM = key.length;
 		final int bufSubCnt = getSubCount();
 		final int bufPostCnt = getPostCount();
@@ -594,32 +696,33 @@ class Node<T> {
 		//    For one dimension, both need one additional bit to indicate either
 		//    null/not-null (hypercube, actually two bit) or to indicate the index. 
 
-		if (!isPostNI() && NI_THRESHOLD(bufSubCnt, bufPostCnt)) {
+		if (!isPostNI() && cfg.isNiRequired(bufSubCnt, bufPostCnt)) {
 			niBuild(bufSubCnt, bufPostCnt, DIM);
 		}
 		if (isPostNI()) {
-			niPut(pos, key, value);
+			if (isValuesPrimitive()) {
+				niPutLong(pos, key, lValue);
+			} else {
+				niPut(pos, key, value);
+			}
 			setPostCount(bufPostCnt+1);
 			return;
 		}
 
-		if (values == null) {
-			values = Refs.arrayCreate(1);
-		}
-
 		//switch representation (HC <-> Linear)?
 		//+1 bit for null/not-null flag
-		long sizeHC = (long) ((DIM * postLen + PINN_HC_WIDTH) * (1L << DIM)); 
+		long sizeHC = (long) ((getPostBits(DIM) + PINN_HC_WIDTH) * (1L << DIM)); 
 		//+DIM because every index entry needs DIM bits
-		long sizeLin = (DIM * postLen + PIK_WIDTH(DIM)) * (bufPostCnt+1L);
+		long sizeLin = (getPostBits(DIM) + PIK_WIDTH(DIM)) * (bufPostCnt+1L);
 		if (!isPostHC() && (DIM<=31) && (sizeLin >= sizeHC)) {
 			int prePostBits = getBitPos_PostIndex(DIM);
 			setPostHC( true );
 			long[] bia2 = Bits.arrayCreate(calcArraySizeTotalBits(bufPostCnt+1, DIM));
-			T [] v2 = Refs.arrayCreate(1<<DIM);
+			Object v2 = vCreate(1<<DIM);
 			//Copy only bits that are relevant. Otherwise we might mess up the not-null table!
 			Bits.copyBitsLeft(ba, 0, bia2, 0, prePostBits);
-			int postLenTotal = DIM*postLen; 
+			int postLenTotal = getPostBits(DIM); 
+			int vOffs = vOffs(DIM);
 			for (int i = 0; i < bufPostCnt; i++) {
 				int entryPosLHC = prePostBits + i*(PIK_WIDTH(DIM)+postLenTotal);
 				int p2 = (int)Bits.readArray(ba, entryPosLHC, PIK_WIDTH(DIM));
@@ -627,10 +730,10 @@ class Node<T> {
 				Bits.copyBitsLeft(ba, entryPosLHC+PIK_WIDTH(DIM),
 						bia2, prePostBits + (1<<DIM)*PINN_HC_WIDTH + postLenTotal*p2, 
 						postLenTotal);
-				v2[p2] = values[i];
+				vCopy(vArray(), vOffs + i, v2, p2, 1);
 			}
 			ba = bia2;
-			values = v2;
+			setRefs(refs, getSubSlotCount(DIM), v2, 0, 1<<DIM);
 			offsPostKey = getPostOffsetBits(pos, DIM);
 		}
 
@@ -643,12 +746,10 @@ class Node<T> {
 
 		if (isPostHC()) {
 			//hyper-cube
-			for (int i = 0; i < key.length; i++) {
-				Bits.writeArray(ba, offsPostKey + postLen * i, postLen, key[i]);
-			}
+			postFromNI(ba, offsPostKey, key);
 			int offsNN = getBitPos_PostIndex(DIM);
 			Bits.setBit(ba, (int) (offsNN+PINN_HC_WIDTH*pos), true);
-			values[(int) pos] = value;
+			vSet(vArray(), vOffs(DIM) + (int) pos, value, lValue);
 		} else {
 			long[] ia;
 			int offs;
@@ -657,15 +758,12 @@ class Node<T> {
 				ba = Bits.arrayEnsureSize(ba, calcArraySizeTotalBits(bufPostCnt+1, DIM));
 				ia = ba;
 				offs = offsPostKey;
-				Bits.insertBits(ia, offs-PIK_WIDTH(DIM), PIK_WIDTH(DIM) + DIM*postLen);
+				Bits.insertBits(ia, offs-PIK_WIDTH(DIM), PIK_WIDTH(DIM) + getPostBits(DIM));
 				//insert key
 				Bits.writeArray(ia, offs-PIK_WIDTH(DIM), PIK_WIDTH(DIM), pos);
 				//insert value:
-				for (int i = 0; i < DIM; i++) {
-					Bits.writeArray(ia, offs + postLen * i, postLen, key[i]);
-				}
-				values = Refs.arrayEnsureSize(values, bufPostCnt+1);
-				Refs.insertAtPos(values, offs2ValPos(offs, pos, DIM), value);
+				postFromNI(ia, offs, key);
+				vInsert(offs2ValPos(offs, pos, DIM), bufPostCnt, value, lValue, DIM);
 			} else {
 				throw new IllegalStateException();
 			}
@@ -673,19 +771,20 @@ class Node<T> {
 		}
 	}
 
-	long[] postToNI(int startBit, int postLen, int DIM) {
-		long[] key = new long[DIM];
+	void postToNI(int startBit, long[] key) {
 		for (int d = 0; d < key.length; d++) {
-			key[d] |= Bits.readArray(ba, startBit, postLen);
-			startBit += postLen;
+			int w = getPostWidth(d);
+			key[d] = Bits.readArray(ba, startBit, w);
+			startBit += w;
 		}
-		return key;
 	}
 
-	void postFromNI(long[] ia, int startBit, long key[], int postLen) {
+	void postFromNI(long[] ia, int startBit, long key[]) {
 		//insert value:
 		for (int d = 0; d < key.length; d++) {
-			Bits.writeArray(ia, startBit + postLen * d, postLen, key[d]);
+			int w = getPostWidth(d);
+			Bits.writeArray(ia, startBit, w, key[d]);
+			startBit += w;
 		}
 	}
 
@@ -693,8 +792,9 @@ class Node<T> {
 	 * WARNING: This is overloaded in subclasses of Node.
 	 * @return Index.
 	 */
-	CritBit64<NodeEntry<T>> createNiIndex() {
-		return CritBit64COW.create();
+	NiIndex<T> createNiIndex(int DIM) {
+		return cfg.createIndex(DIM, isValuesPrimitive(), isValuesInt(), 
+				this.getClass() != Node.class);
 	}
 	
 	void niBuild(int bufSubCnt, int bufPostCnt, int DIM) {
@@ -702,13 +802,15 @@ class Node<T> {
 		if (ind != null || isPostNI() || isSubNI()) {
 			throw new IllegalStateException();
 		}
-		ind = createNiIndex();
+		ind = createNiIndex(DIM);
+		//the index copies the postfixes
+		long[] key = new long[DIM];
 
 		//read posts 
 		if (isPostHC()) {
 			int prePostBitsKey = getBitPos_PostIndex(DIM);
 			int prePostBitsVal = prePostBitsKey + (1<<DIM)*PINN_HC_WIDTH;
-			int postLenTotal = DIM*postLen;
+			int postLenTotal = getPostBits(DIM);
 			for (int i = 0; i < (1L<<DIM); i++) {
 				if (Bits.getBit(ba, prePostBitsKey + PINN_HC_WIDTH*i)) {
 					int postPosLHC = prePostBitsVal + i*postLenTotal;
@@ -717,9 +819,8 @@ class Node<T> {
 					//		ba, prePostBits + (1<<DIM)*PINN_HC_WIDTH + postLenTotal*i, 
 					//		bia2, entryPosLHC+PIK_WIDTH(DIM),
 					//		postLenTotal);
-					long[] key = postToNI(postPosLHC, postLen, DIM);
-					postPosLHC += DIM*postLen;
-					niPutNoCopy(i, key, values[i]);
+					postToNI(postPosLHC, key);
+					niPut(i, key, vArray(), vOffs(DIM) + i);
 				}
 			}
 		} else {
@@ -734,18 +835,18 @@ class Node<T> {
 				//	Bits.copyBitsLeft(ba, entryPosLHC+PIK_WIDTH(DIM),
 				//			bia2, prePostBits + (1<<DIM)*PINN_HC_WIDTH + postLenTotal*p2, 
 				//			postLenTotal);
-				long[] key = postToNI(postPosLHC, postLen, DIM);
-				postPosLHC += DIM*postLen;
+				postToNI(postPosLHC, key);
+				postPosLHC += getPostBits(DIM);
 
-				niPutNoCopy(p2, key, values[i]);
+				niPut(p2, key, vArray(), vOffs(DIM) + i);
 			}
 		}
 
 		//sub nodes
 		if (isSubHC()) {
 			for (int i = 0; i < (1L<<DIM); i++) {
-				if (subNRef[i] != null) {
-					niPut(i, subNRef[i]);
+				if (refs[i] != null) {
+					niPut(i, subNRef(i));
 				}
 			}
 		} else {
@@ -753,7 +854,7 @@ class Node<T> {
 			for (int i = 0; i < bufSubCnt; i++) {
 				long posOld = Bits.readArray(ba, subOffsBits, SIK_WIDTH(DIM));
 				subOffsBits += SIK_WIDTH(DIM);
-				niPut(posOld, subNRef[i]);
+				niPut(posOld, subNRef(i));
 			}
 		}
 
@@ -762,8 +863,8 @@ class Node<T> {
 		setPostNI(true);
 		setSubNI(true);
 		ba = Bits.arrayTrim(ba, calcArraySizeTotalBitsNI(DIM));
-		subNRef = null;
-		values = null; 
+		refs = null;
+		pValues = null; 
 	}
 
 	/**
@@ -773,10 +874,19 @@ class Node<T> {
 	 * @param DIM
 	 * @param posToRemove
 	 * @param removeSub Remove sub or post?
-	 * @return Previous value if post was removed
 	 */
-	@SuppressWarnings("unchecked")
-	T niDeconstruct(int DIM, long posToRemove, boolean removeSub) {
+	void niDeconstruct(int DIM, long posToRemove, boolean removeSub) {
+		niDeconstruct(DIM, posToRemove, removeSub, true);
+	}
+
+	/**
+	 * 
+	 * @param DIM
+	 * @param posToRemove
+	 * @param removeSub Remove sub or post?
+	 * @param doRemove Whether an entry should be removed at all
+	 */
+	private void niDeconstruct(int DIM, long posToRemove, boolean removeSub, boolean doRemove) {
 		//Migrate node to node-index representation
 		if (ind == null || !isPostNI() || !isSubNI()) {
 			throw new IllegalStateException();
@@ -786,7 +896,10 @@ class Node<T> {
 		setSubNI(false);
 		final int newSubCnt;
 		final int newPostCnt;
-		if (removeSub) {
+		if (!doRemove) {
+			newSubCnt = getSubCount();
+			newPostCnt = getPostCount();
+		} else if (removeSub) {
 			newSubCnt = getSubCount()-1;
 			newPostCnt = getPostCount();
 			setSubCount(newSubCnt);
@@ -798,125 +911,119 @@ class Node<T> {
 
 		//calc post mode.
 		//+1 bit for null/not-null flag
-		long sizePostHC = (DIM * postLen + PINN_HC_WIDTH) * (1L << DIM); 
+		long sizePostHC = (getPostBits(DIM) + PINN_HC_WIDTH) * (1L << DIM); 
 		//+DIM because every index entry needs DIM bits
-		long sizePostLin = (DIM * postLen + PIK_WIDTH(DIM)) * newPostCnt;
+		long sizePostLin = (getPostBits(DIM) + PIK_WIDTH(DIM)) * newPostCnt;
 		boolean isPostHC = (DIM<=31) && (sizePostLin >= sizePostHC);
 		setPostHC(isPostHC);
 
 
 
 		//sub-nodes:
+		final Object[] subs;
 		//switch to normal array (full hyper-cube) if applicable.
 		if (DIM<=31 && (REF_BITS+SIK_WIDTH(DIM))*newSubCnt >= REF_BITS*(1L<<DIM)) {
 			//migrate to full HC array
-			Node<T>[] na = new Node[1<<DIM];
-			CBIterator<NodeEntry<T>> it = ind.iterator();
+			Object[] na = new Object[1<<DIM];
+			NiIterator<T> it = ind.iterator();
 			while (it.hasNext()) {
-				Entry<NodeEntry<T>> e = it.nextEntry();
-				if (e.value().node != null && e.key() != posToRemove) {
-					na[(int) e.key()] = e.value().node;
+				NodeEntry<T> e = it.next();
+				if (e.node != null && (!doRemove || it.pos() != posToRemove)) {
+					na[(int) it.pos()] = e.node;
 				}
 			}
-			subNRef = na;
+			subs = na;
 			setSubHC(true);
 		} else {
 			//migrate to LHC
 			setSubHC( false );
 			int bia2Size = calcArraySizeTotalBits(newPostCnt, DIM);
 			long[] bia2 = Bits.arrayCreate(bia2Size);
-			Node<T>[] sa2 = new Node[newSubCnt];
+			Object[] sa2 = new Object[newSubCnt];
 			int preSubBits = getBitPos_SubNodeIndex(DIM);
 			//Copy only bits that are relevant. Otherwise we might mess up the not-null table!
 			Bits.copyBitsLeft(ba, 0, bia2, 0, preSubBits);
 			int n=0;
-			CBIterator<NodeEntry<T>> it = ind.iterator();
+			NiIterator<T> it = ind.iterator();
 			while (it.hasNext()) {
-				Entry<NodeEntry<T>> e = it.nextEntry();
-				if (e.value().node != null) {
-					long pos = e.key();
-					if (pos == posToRemove) {
+				NodeEntry<T> e = it.next();
+				if (e.node != null) {
+					long pos = it.pos();
+					if (doRemove && pos == posToRemove) {
 						//skip the item that should be deleted.
 						if (DEBUG && !removeSub) {
 							throw new IllegalStateException();
 						}
 						continue;
 					}
-					sa2[n] = e.value().node;
+					sa2[n] = e.node;
 					Bits.writeArray(bia2, preSubBits + n*SIK_WIDTH(DIM), SIK_WIDTH(DIM), pos);
 					n++;
 				}
 			}
 			ba = bia2;
-			subNRef = sa2;
+			subs = sa2;
 		}
 
 		//post-data:
-		T oldValue = null;
 		int prePostBits = getBitPos_PostIndex(DIM);
 		long[] bia2 = Bits.arrayCreate(calcArraySizeTotalBits(newPostCnt, DIM));
 		//Copy only bits that are relevant. Otherwise we might mess up the not-null table!
 		Bits.copyBitsLeft(ba, 0, bia2, 0, prePostBits);
-		int postLenTotal = DIM*postLen;
+		int postLenTotal = getPostBits(DIM);
+		final Object v2;
 		if (isPostHC) {
 			//HC mode
-			T [] v2 = Refs.arrayCreate(1<<DIM);
+			v2 = vCreate(1<<DIM);
 			int startBitBase = prePostBits + (1<<DIM)*PINN_HC_WIDTH;
-			CBIterator<NodeEntry<T>> it = ind.iterator();
+			NiIterator<T> it = ind.iterator();
 			while (it.hasNext()) {
-				Entry<NodeEntry<T>> e = it.nextEntry();
-				if (e.value().getKey() != null) {
-					if (e.key() == posToRemove) {
-						oldValue = e.value().getValue();
+				NodeEntry<T> e = it.next();
+				if (e.getKey() != null) {
+					if (doRemove && it.pos() == posToRemove) {
 						if (DEBUG && removeSub) {
 							throw new IllegalStateException();
 						}
 						continue;
 					}
-					int p2 = (int) e.key();
+					int p2 = (int) it.pos();
 					Bits.setBit(bia2, prePostBits+PINN_HC_WIDTH*p2, true);
 					int startBit = startBitBase + postLenTotal*p2;
-					postFromNI(bia2, startBit, e.value().getKey(), postLen);
-					v2[p2] = e.value().getValue();
+					postFromNI(bia2, startBit, e.getKey());
+					vSet(v2, p2, e);
 				}
 			}
 			ba = bia2;
-			values = v2;
 		} else {
 			//LHC mode
-			T[] v2 = Refs.arrayCreate(newPostCnt);
+			v2 = vCreate(newPostCnt);
 			int n=0;
-			CBIterator<NodeEntry<T>> it = ind.iterator();
+			NiIterator<T> it = ind.iterator();
 			int entryPosLHC = prePostBits;
 			while (it.hasNext()) {
-				Entry<NodeEntry<T>> e = it.nextEntry();
-				long pos = e.key();
-				if (e.value().getKey() != null) {
-					if (pos == posToRemove) {
+				NodeEntry<T> e = it.next();
+				long pos = it.pos();
+				if (e.getKey() != null) {
+					if (doRemove && pos == posToRemove) {
 						if (DEBUG && removeSub) {
 							throw new IllegalStateException();
 						}
 						//skip the item that should be deleted.
-						oldValue = e.value().getValue();
 						continue;
 					}
-					v2[n] = e.value().getValue();
+					vSet(v2, n, e);
 					Bits.writeArray(bia2, entryPosLHC, PIK_WIDTH(DIM), pos);
 					entryPosLHC += PIK_WIDTH(DIM);
-					postFromNI(bia2, entryPosLHC, e.value().getKey(), postLen);
+					postFromNI(bia2, entryPosLHC, e.getKey());
 					entryPosLHC += postLenTotal;
 					n++;
 				}
 			}
 			ba = bia2;
-			values = v2;
 		}			
 
-		if (newPostCnt == 0) {
-			values = null;
-		}
+		setRefs(subs, getSubSlotCount(DIM), v2, 0, vSlots(DIM));
 		ind = null;
-		return oldValue;
 	}
 
 
@@ -939,11 +1046,39 @@ class Node<T> {
 		int valPos = offs2ValPos(offs, pos, key.length);
 		final long mask = (~0L)<<postLen;
 		for (int i = 0; i < key.length; i++) {
+			int w = getPostWidth(i);
+			key[i] &= mask;
+			key[i] |= Bits.readArray(ia, offs, w);
+			offs += w;
+		}
+		return vGetPos(valPos, key.length);
+	}
+
+
+	/**
+	 * Primitive version of {@link #getPostPOB(int, long, long[])}, this requires
+	 * {@link #isValuesPrimitive()}.
+	 */
+	long getPostLongPOB(int offsPostKey, long pos, long[] key) {
+		final long mask = (~0L)<<postLen;
+		if (isPostNI()) {
+			NodeEntry<T> e = niGet(pos);
+			long[] eKey = e.getKey();
+			for (int i = 0; i < key.length; i++) {
+				key[i] &= mask;
+				key[i] |= eKey[i];
+			}
+			return e.getValueLong();
+		}
+
+		int offs = offsPostKey;
+		for (int i = 0; i < key.length; i++) {
+			int w = getPostWidth(i);
 			key[i] &= mask;
-			key[i] |= Bits.readArray(ia, offs, postLen);
-			offs += postLen;
+			key[i] |= Bits.readArray(ba, offs, w);
+			offs += w;
 		}
-		return values[valPos];   
+		return vGetLong(pValues, offs2ValPos(offsPostKey, pos, key.length));
 	}
 
 
@@ -966,15 +1101,16 @@ class Node<T> {
 		int offs = offsPostKey;
 		final long mask = (~0L)<<postLen;
 		for (int i = 0; i < key.length; i++) {
+			int w = getPostWidth(i);
 			key[i] &= mask;
-			key[i] |= Bits.readArray(ia, offs, postLen);
+			key[i] |= Bits.readArray(ia, offs, w);
 			if (key[i] < rangeMin[i] || key[i] > rangeMax[i]) {
 				return null;
 			}
-			offs += postLen;
+			offs += w;
 		}
 		int valPos = offs2ValPos(offsPostKey, hcPos, key.length);
-		return createNodeEntry(key, values[valPos]);
+		return createNodeEntry(key, vGetPos(valPos, key.length));
 	}
 
 
@@ -988,24 +1124,41 @@ class Node<T> {
 	 */
 	boolean getPostPOB(int offsPostKey, long hcPos, PhEntry<T> e, 
 			long[] rangeMin, long[] rangeMax) {
+		long[] key = e.getKey();
+		if (!getPostKeyPOB(offsPostKey, key, rangeMin, rangeMax)) {
+			return false;
+		}
+		int valPos = offs2ValPos(offsPostKey, hcPos, key.length);
+		e.setValue(vGetPos(valPos, key.length));
+		return true;
+	}
+
+
+	/**
+	 * Get post-fix without the value, see {@link #getPostValueLongPOB(int, long, int)}.
+	 * @param offsPostKey
+	 * @param key
+	 * @param rangeMin
+	 * @param rangeMax
+	 * @return false if the postfix does not match the range, otherwise true.
+	 */
+	boolean getPostKeyPOB(int offsPostKey, long[] key, long[] rangeMin, long[] rangeMax) {
 		if (DEBUG && ind != null) {
 			throw new IllegalStateException();
 		}
 
 		long[] ia = ba;
 		int offs = offsPostKey;
-		long[] key = e.getKey();
 		final long mask = (~0L)<<postLen;
 		for (int i = 0; i < key.length; i++) {
+			int w = getPostWidth(i);
 			key[i] &= mask;
-			key[i] |= Bits.readArray(ia, offs, postLen);
+			key[i] |= Bits.readArray(ia, offs, w);
 			if (key[i] < rangeMin[i] || key[i] > rangeMax[i]) {
 				return false;
 			}
-			offs += postLen;
+			offs += w;
 		}
-		int valPos = offs2ValPos(offsPostKey, hcPos, key.length);
-		e.setValue(values[valPos]);
 		return true;
 	}
 
@@ -1026,12 +1179,13 @@ class Node<T> {
 		int offs = offsPostKey;
 		final long mask = (~0L)<<postLen;
 		for (int i = 0; i < key.length; i++) {
+			int w = getPostWidth(i);
 			key[i] &= mask;
-			key[i] |= Bits.readArray(ia, offs, postLen);
-			offs += postLen;
+			key[i] |= Bits.readArray(ia, offs, w);
+			offs += w;
 		}
 		int valPos = offs2ValPos(offsPostKey, hcPos, key.length);
-		return createNodeEntry(key, values[valPos]);
+		return createNodeEntry(key, vGetPos(valPos, key.length));
 	}
 
 
@@ -1052,7 +1206,7 @@ class Node<T> {
 		long[] ia = ba;
 
 		int valPos = offs2ValPos(offsPostKey, hcPos, DIM);
-		T val = values[valPos];
+		T val = vGetPos(valPos, DIM);
 		if (val instanceof PhEntry) {
 			long[] key = ((PhEntry<T>)val).getKey(); 
 			for (int i: minToCheck) {
@@ -1086,14 +1240,14 @@ class Node<T> {
 		final long mask = (~0L)<<postLen;
 		for (int i: minToCheck) {
 			key[i] &= mask;
-			key[i] |= Bits.readArray(ia, offsPostKey+i*postLen, postLen);
+			key[i] |= Bits.readArray(ia, offsPostKey + cfg.bits(i, postLen), getPostWidth(i));
 			if (key[i] < rangeMin[i]) {
 				return null;
 			}
 		}
 		for (int i: maxToCheck) {
 			key[i] &= mask;
-			key[i] |= Bits.readArray(ia, offsPostKey+i*postLen, postLen);
+			key[i] |= Bits.readArray(ia, offsPostKey + cfg.bits(i, postLen), getPostWidth(i));
 			if (key[i] > rangeMax[i]) {
 				return null;
 			}
@@ -1102,12 +1256,13 @@ class Node<T> {
 		
 		int offs = offsPostKey;
 		for (int i = 0; i < key.length; i++) {
+			int w = getPostWidth(i);
 			key[i] &= mask;
-			key[i] |= Bits.readArray(ia, offs, postLen);
+			key[i] |= Bits.readArray(ia, offs, w);
 //			if (key[i] < rangeMin[i] || key[i] > rangeMax[i]) {
 //				return null;
 //			}
-			offs += postLen;
+			offs += w;
 		}
 		return createNodeEntry(key, val);
 	}
@@ -1122,7 +1277,7 @@ class Node<T> {
 		}
 
 		int valPos = offs2ValPos(offsPostKey, hcPos, DIM);
-		T val = values[valPos];
+		T val = vGetPos(valPos, DIM);
 		if (val instanceof PhEntry) {
 			return (PhEntry<T>) val;
 		}
@@ -1146,9 +1301,10 @@ class Node<T> {
 		int offs = offsPostKey;
 		final long mask = (~0L)<<postLen;
 		for (int i = 0; i < key.length; i++) {
+			int w = getPostWidth(i);
 			key[i] &= mask;
-			key[i] |= Bits.readArray(ia, offs, postLen);
-			offs += postLen;
+			key[i] |= Bits.readArray(ia, offs, w);
+			offs += w;
 		}
 		return new PhEntry<T>(key, val);
 	}
@@ -1156,28 +1312,63 @@ class Node<T> {
 	T getPostValuePOB(int offs, long pos, int DIM) {
 		if (!isPostNI()) {
 			int valPos = offs2ValPos(offs, pos, DIM);
-			return values[valPos];
+			return vGetPos(valPos, DIM);
 		} 
 
 		return niGet(pos).getValue();
 	}
 
 
+	/**
+	 * Primitive version of {@link #getPostValuePOB(int, long, int)}, this requires
+	 * {@link #isValuesPrimitive()}.
+	 */
+	long getPostValueLongPOB(int offs, long pos, int DIM) {
+		if (!isPostNI()) {
+			return vGetLong(pValues, offs2ValPos(offs, pos, DIM));
+		} 
+
+		return niGet(pos).getValueLong();
+	}
+
+
 	T updatePostValuePOB(int offs, long pos, long[] key, int DIM, T value) {
 		if (!isPostNI()) {
 			int valPos = offs2ValPos(offs, pos, DIM);
-			T old = values[valPos];
-			values[valPos] = value;
+			T old = vGetPos(valPos, DIM);
+			vSet(vArray(), vOffs(DIM) + valPos, value, vToLong(value));
 			return old;
 		} 
 
-		return niPutNoCopy(pos, key, value).getValue(); 
+		//Keep the existing postfix, the caller's key may be a reused buffer
+		T old = niGet(pos).getValue();
+		ind.setValue(pos, value, vToLong(value));
+		return old;
+	}
+
+
+	/**
+	 * Primitive version of {@link #updatePostValuePOB(int, long, long[], int, Object)}, 
+	 * this requires {@link #isValuesPrimitive()}.
+	 * @return the previous value
+	 */
+	long updatePostValueLongPOB(int offs, long pos, int DIM, long value) {
+		if (!isPostNI()) {
+			int valPos = offs2ValPos(offs, pos, DIM);
+			long old = vGetLong(pValues, valPos);
+			vSetLong(pValues, valPos, value);
+			return old;
+		} 
+
+		long old = niGet(pos).getValueLong();
+		ind.setValue(pos, null, value);
+		return old;
 	}
 
 
 	T getPostValue(long pos, int DIM) {
 		if (isPostHC()) {
-			return getPostValuePOB(PhTree8.UNKNOWN, pos, PhTree8.UNKNOWN); 
+			return getPostValuePOB(PhTree8.UNKNOWN, pos, DIM); 
 		}
 		int offs = getPostOffsetBits(pos, DIM);
 		if (DEBUG && offs < 0) {
@@ -1202,64 +1393,292 @@ class Node<T> {
 	}
 
 
-	T removePostPOB(long pos, int offsPostKey, final int DIM) {
+	/**
+	 * Primitive version of {@link #getPost(long, long[])}, this requires
+	 * {@link #isValuesPrimitive()}.
+	 */
+	long getPostLong(long pos, long[] key) {
+		if (isPostNI()) {
+			return getPostLongPOB(-1, pos, key);
+		}
+		final int DIM = key.length;
+		int offs = getPostOffsetBits(pos, DIM);
+		if (DEBUG && offs < 0) {
+			throw new IllegalStateException("Element does not exist.");
+		}
+
+		return getPostLongPOB(offs, pos, key);
+	}
+
+
+	/**
+	 * Switch the posts from hypercube to linearized representation.
+	 * @param posToRemove HC position of a post that is removed during the switch, or -1
+	 * @param newPostCnt number of posts after the switch
+	 * @param DIM
+	 */
+	private void postHcToLhc(long posToRemove, int newPostCnt, final int DIM) {
+		final Object va = vArray();
+		final int vOffs = vOffs(DIM);
+		setPostHC( false );
+		long[] bia2 = Bits.arrayCreate(calcArraySizeTotalBits(newPostCnt, DIM));
+		Object v2 = vCreate(newPostCnt);
+		int prePostBits = getBitPos_PostIndex(DIM);
+		int prePostBitsVal = prePostBits + (1<<DIM)*PINN_HC_WIDTH;
+		//Copy only bits that are relevant. Otherwise we might mess up the not-null table!
+		Bits.copyBitsLeft(ba, 0, bia2, 0, prePostBits);
+		int postLenTotal = getPostBits(DIM);
+		int n=0;
+		for (int i = 0; i < (1L<<DIM); i++) {
+			if (i==posToRemove) {
+				//skip the item that should be deleted.
+				continue;
+			}
+			if (Bits.getBit(ba, prePostBits + PINN_HC_WIDTH*i)) {
+				int entryPosLHC = prePostBits + n*(PIK_WIDTH(DIM)+postLenTotal);
+				Bits.writeArray(bia2, entryPosLHC, PIK_WIDTH(DIM), i);
+				Bits.copyBitsLeft(
+						ba, prePostBitsVal + postLenTotal*i, 
+						bia2, entryPosLHC+PIK_WIDTH(DIM),
+						postLenTotal);
+				vCopy(va, vOffs + i, v2, n, 1);
+				n++;
+			}
+		}
+		ba = bia2;
+		setPostCount(newPostCnt);
+		setRefs(refs, getSubSlotCount(DIM), v2, 0, newPostCnt);
+	}
+
+	/**
+	 * Switch the sub-nodes from hypercube to linearized representation.
+	 * @param posToRemove HC position of a sub-node that is removed during the switch, or -1
+	 * @param newSubCnt number of sub-nodes after the switch
+	 * @param DIM
+	 */
+	private void subHcToLhc(long posToRemove, int newSubCnt, final int DIM) {
+		final Object va = vArray();
+		final int vOffs = vOffs(DIM);
+		int prePostBits_SubHC = getBitPos_PostIndex(DIM);
+		setSubHC( false );
+		setSubCount(newSubCnt);
+		int prePostBits_SubLHC = getBitPos_PostIndex(DIM);
+		int bia2Size = calcArraySizeTotalBits(getPostCount(), DIM);
+		long[] bia2 = Bits.arrayCreate(bia2Size);
+		Object[] sa2 = new Object[newSubCnt];
+		int preSubBits = getBitPos_SubNodeIndex(DIM);
+		//Copy only bits that are relevant. Otherwise we might mess up the not-null table!
+		Bits.copyBitsLeft(ba, 0, bia2, 0, preSubBits);
+		int n=0;
+		for (int i = 0; i < (1L<<DIM); i++) {
+			if (i==posToRemove) {
+				//skip the item that should be deleted.
+				continue;
+			}
+			if (refs[i] != null) {
+				sa2[n]= refs[i];
+				Bits.writeArray(bia2, preSubBits + n*SIK_WIDTH(DIM), SIK_WIDTH(DIM), i);
+				n++;
+			}
+		}
+		//length: we copy as many bits as fit into bia2, which is easiest to calculate
+		Bits.copyBitsLeft(
+				ba, prePostBits_SubHC, 
+				bia2, prePostBits_SubLHC,
+				bia2Size-prePostBits_SubLHC);  
+		ba = bia2;
+		setRefs(sa2, newSubCnt, va, vOffs, vSlots(DIM));
+	}
+
+	/**
+	 * Trim all arrays to the size required by the current entries and switch to
+	 * a more compact representation (HC, LHC, NI) if possible. 
+	 * This is useful after removing many entries.
+	 * @param DIM
+	 * @return the estimated number of bytes that were reclaimed
+	 */
+	long compact(final int DIM) {
+		account(-1, DIM);
+		long reclaimed = compact0(DIM);
+		account(1, DIM);
+		return reclaimed;
+	}
+
+	private long compact0(final int DIM) {
+		final long sizeBefore = estimateSize(DIM);
+		final int bufSubCnt = getSubCount();
+		final int bufPostCnt = getPostCount();
+
+		if (isPostNI()) {
+			if (!cfg.isNiRequired(bufSubCnt, bufPostCnt)) {
+				niDeconstruct(DIM, -1, false, false);
+			} else {
+				ind.trim();
+			}
+		}
+
+		if (isSubHC() && 
+				(REF_BITS+SIK_WIDTH(DIM))*(long)bufSubCnt < REF_BITS*(1L<<DIM)) {
+			subHcToLhc(-1, bufSubCnt, DIM);
+		}
+		if (isPostHC() && (getPostBits(DIM) + PIK_WIDTH(DIM)) * (long)bufPostCnt < 
+				(getPostBits(DIM) + PINN_HC_WIDTH) * (1L << DIM)) {
+			postHcToLhc(-1, bufPostCnt, DIM);
+		}
+
+		ba = Bits.arrayTrim(ba, calcArraySizeTotalBits(bufPostCnt, DIM));
+		if (!isPostNI()) {
+			refsTrim(getSubSlotCount(DIM) + vRefSlots(DIM));
+			if (bufPostCnt == 0) {
+				pValues = null;
+			} else if (pValues instanceof long[]) {
+				pValues = Refs.arrayTrim((long[]) pValues, vSlots(DIM));
+			} else if (pValues != null) {
+				pValues = Refs.arrayTrim((int[]) pValues, vSlots(DIM));
+			}
+		}
+		return sizeBefore - estimateSize(DIM);
+	}
+
+	/**
+	 * @param DIM
+	 * @return Estimated memory usage of this node in bytes, including node index
+	 * entries but excluding sub-nodes.
+	 */
+	long estimateSize(final int DIM) {
+		long size = NODE_BYTES + estimateSizeBitArray() + estimateSizeRefArrays();
+		if (isPostNI()) {
+			size += ind.estimateSize() + estimateSizeNiEntries(DIM);
+		}
+		return size;
+	}
+
+	// this +  ref-SubNRef[] + ref-subB[] + refInd + refVal[] + infLen + infOffs + minExpiry
+	private static final int NODE_BYTES = align8(12 + 4 + 4 + 4 +  4 + 1 + 1 + 1 + 1 + 8);
+
+	private int estimateSizeBitArray() {
+		return ba == null ? 0 : 16 + align8(Bits.arraySizeInByte(ba));
+	}
+
+	private int estimateSizeRefArrays() {
+		final int REF = 4;//bytes for a reference
+		int size = 0;
+		if (refs != null) {
+			size += 16 + align8(refs.length * REF);
+		}
+		if (pValues instanceof long[]) {
+			size += 16 + ((long[]) pValues).length * 8;
+		} else if (pValues != null) {
+			size += 16 + align8(((int[]) pValues).length * 4);
+		}
+		return size;
+	}
+
+	private long estimateSizeNiEntries(final int DIM) {
+		return ind.estimateSizeEntries(getPostCount(), DIM);
+	}
+
+	/**
+	 * Add (sign=1) or subtract (sign=-1) this node to/from the memory statistics of the tree.
+	 * Mutators subtract the node before and add it after the modification.
+	 */
+	private void account(int sign, final int DIM) {
+		final PhTreeMemoryStats m = mem;
+		m.nNodes += sign;
+		if (isPostNI()) {
+			m.nNI += sign;
+			m.bytesNiIndex += sign * ind.estimateSize();
+			m.bytesNiEntries += sign * estimateSizeNiEntries(DIM);
+		} else if (isPostHC() || isSubHC()) {
+			m.nHCP += isPostHC() ? sign : 0;
+			m.nHCS += isSubHC() ? sign : 0;
+		} else {
+			m.nLHC += sign;
+		}
+		m.infixHist[infixLen] += sign;
+		m.bytesNodes += sign * NODE_BYTES;
+		m.bytesBitArrays += sign * estimateSizeBitArray();
+		m.bytesRefArrays += sign * estimateSizeRefArrays();
+	}
+
+	/**
+	 * Remove the node from the memory statistics, this should be called when the node
+	 * is removed from the tree.
+	 * @param DIM
+	 */
+	void discard(final int DIM) {
+		account(-1, DIM);
+		setRemoved(true);
+	}
+
+	/**
+	 * Replace a post in a NI node with a new sub-node.
+	 * @param pos the HC position of the post
+	 * @param sub the new sub-node
+	 * @param DIM
+	 */
+	void niReplacePostWithSub(long pos, Node<T> sub, final int DIM) {
+		account(-1, DIM);
+		setPostCount(getPostCount()-1);
+		setSubCount(getSubCount()+1);
+		niPut(pos, sub);
+		account(1, DIM);
+	}
+
+	/**
+	 * Shorten the infix, for example when a new parent node is inserted during a split.
+	 * @param newInfLen
+	 * @param infix
+	 * @param DIM
+	 */
+	void truncateInfix(int newInfLen, long[] infix, final int DIM) {
+		account(-1, DIM);
+		int oldInfBits = getInfixBits(DIM);
+		setInfixLen(newInfLen);
+
+		//cut off existing prefixes in sub-node
+		Bits.removeBits(ba, getBitPos_Infix(), oldInfBits-getInfixBits(DIM));
+		writeInfix(infix);
+		//ensure that subNode has correct byte[] size
+		ba = Bits.arrayTrim(ba, calcArraySizeTotalBits(getPostCount(), DIM));
+		account(1, DIM);
+	}
+
+	/**
+	 * Remove a post. This does not return the value, callers read it beforehand, for
+	 * example with {@link #getPostValuePOB(int, long, int)}.
+	 */
+	void removePostPOB(long pos, int offsPostKey, final int DIM) {
+		account(-1, DIM);
+		removePostPOB0(pos, offsPostKey, DIM);
+		account(1, DIM);
+	}
+
+	private void removePostPOB0(long pos, int offsPostKey, final int DIM) {
 		final int bufPostCnt = getPostCount();
 		final int bufSubCnt = getSubCount();
 
 		if (isPostNI()) {
-			if (!NI_THRESHOLD(bufSubCnt, bufPostCnt)) {
-				T v = niDeconstruct(DIM, pos, false);
-				return v;
+			if (cfg.isNiRemovable(bufSubCnt, bufPostCnt)) {
+				niDeconstruct(DIM, pos, false);
+				return;
 			}
 		}
 		if (isPostNI()) {
 			setPostCount(bufPostCnt-1);
-			return niRemove(pos).getValue();
+			niRemove(pos);
+			return;
 		}
 
-		T oldVal = null;
-
 		//switch representation (HC <-> Linear)?
 		//+1 bit for null/not-null flag
-		long sizeHC = (DIM * postLen + PINN_HC_WIDTH) * (1L << DIM); 
+		long sizeHC = (getPostBits(DIM) + PINN_HC_WIDTH) * (1L << DIM); 
 		//+DIM assuming compressed IDs
-		long sizeLin = (DIM * postLen + PIK_WIDTH(DIM)) * (bufPostCnt-1L);
+		long sizeLin = (getPostBits(DIM) + PIK_WIDTH(DIM)) * (bufPostCnt-1L);
 		if (isPostHC() && (sizeLin < sizeHC)) {
 			//revert to linearized representation, if applicable
-			setPostHC( false );
-			long[] bia2 = Bits.arrayCreate(calcArraySizeTotalBits(bufPostCnt-1, DIM));
-			T[] v2 = Refs.arrayCreate(bufPostCnt);
-			int prePostBits = getBitPos_PostIndex(DIM);
-			int prePostBitsVal = prePostBits + (1<<DIM)*PINN_HC_WIDTH;
-			//Copy only bits that are relevant. Otherwise we might mess up the not-null table!
-			Bits.copyBitsLeft(ba, 0, bia2, 0, prePostBits);
-			int postLenTotal = DIM*postLen;
-			int n=0;
-			for (int i = 0; i < (1L<<DIM); i++) {
-				if (i==pos) {
-					//skip the item that should be deleted.
-					oldVal = values[i];
-					continue;
-				}
-				if (Bits.getBit(ba, prePostBits + PINN_HC_WIDTH*i)) {
-					int entryPosLHC = prePostBits + n*(PIK_WIDTH(DIM)+postLenTotal);
-					Bits.writeArray(bia2, entryPosLHC, PIK_WIDTH(DIM), i);
-					Bits.copyBitsLeft(
-							ba, prePostBitsVal + postLenTotal*i, 
-							bia2, entryPosLHC+PIK_WIDTH(DIM),
-							postLenTotal);
-					v2[n] = values[i];
-					n++;
-				}
-			}
-			ba = bia2;
-			values = v2;
-			//subBcnt--;
-			setPostCount(bufPostCnt-1);
-			if (bufPostCnt-1 == 0) {
-				values = null;
-			}
-			return oldVal;
+			postHcToLhc(pos, bufPostCnt-1, DIM);
+			return;
 		}			
 
 		//subBcnt--;
@@ -1269,29 +1688,25 @@ class Node<T> {
 			//hyper-cube
 			int offsNN = getBitPos_PostIndex(DIM);
 			Bits.setBit(ba, (int) (offsNN+PINN_HC_WIDTH*pos), false);
-			oldVal = values[(int) pos]; 
-			values[(int) pos] = null;
+			vClear(vArray(), vOffs(DIM) + (int) pos);
 			//Nothing else to do, values can just stay where they are
 		} else {
 			if (!isPostNI()) {
 				//linearized cube:
 				//remove key and value
-				Bits.removeBits(ba, offsPostKey-PIK_WIDTH(DIM), PIK_WIDTH(DIM) + DIM*postLen);
+				Bits.removeBits(ba, offsPostKey-PIK_WIDTH(DIM), PIK_WIDTH(DIM) + getPostBits(DIM));
 				//shrink array
 				ba = Bits.arrayTrim(ba, calcArraySizeTotalBits(bufPostCnt-1, DIM));
 				//values:
 				int valPos = offs2ValPos(offsPostKey, pos, DIM);
-				oldVal = values[valPos]; 
-				Refs.removeAtPos(values, valPos);
-				values = Refs.arrayTrim(values, bufPostCnt-1);
+				vRemove(valPos, bufPostCnt, DIM);
 			} else {
 				throw new IllegalStateException();
 			}
 		}
 		if (bufPostCnt-1 == 0) {
-			values = null;
+			pValues = null;
 		}
-		return oldVal;
 	}
 
 
@@ -1355,6 +1770,328 @@ class Node<T> {
 	}
 
 
+	/**
+	 * @return True if the values are stored in a primitive long[] instead of T[].
+	 */
+	boolean isValuesLong() {
+		return (isHC & 0b1000) != 0;
+	}
+
+
+	void setValuesLong(boolean b) {
+		isHC = (byte) (b ? (isHC | 0b1000) : (isHC & (~0b1000)));
+	}
+
+
+	/**
+	 * @return True if the values are stored in a primitive int[] instead of T[].
+	 */
+	boolean isValuesInt() {
+		return (isHC & 0b100000) != 0;
+	}
+
+
+	void setValuesInt(boolean b) {
+		isHC = (byte) (b ? (isHC | 0b100000) : (isHC & (~0b100000)));
+	}
+
+
+	/**
+	 * @return True if the values are stored in a primitive long[] or int[].
+	 */
+	boolean isValuesPrimitive() {
+		return (isHC & 0b101000) != 0;
+	}
+
+
+	/**
+	 * @return True if the node does not store values.
+	 */
+	boolean isValuesNone() {
+		return (isHC & 0b10000) != 0;
+	}
+
+
+	void setValuesNone(boolean b) {
+		isHC = (byte) (b ? (isHC | 0b10000) : (isHC & (~0b10000)));
+	}
+
+
+	private Object vCreate(int size) {
+		if (isValuesNone()) {
+			return null;
+		}
+		if (isValuesLong()) {
+			return Refs.arrayCreateLong(size);
+		}
+		return isValuesInt() ? Refs.arrayCreateInt(size) : Refs.arrayCreate(size);
+	}
+
+
+	private void vCopy(Object src, int srcPos, Object dst, int dstPos, int len) {
+		if (!isValuesNone()) {
+			System.arraycopy(src, srcPos, dst, dstPos, len);
+		}
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private T vGet(Object a, int pos) {
+		if (isValuesNone()) {
+			return (T) VALUE_PLACEHOLDER;
+		}
+		if (isValuesPrimitive()) {
+			return (T) toValue(vGetLong(a, pos), isValuesInt());
+		}
+		return ((T[]) a)[pos];
+	}
+
+
+	/**
+	 * @return The value in a primitive value array, this requires 
+	 * {@link #isValuesPrimitive()}.
+	 */
+	private long vGetLong(Object a, int pos) {
+		return isValuesLong() ? ((long[]) a)[pos] : ((int[]) a)[pos];
+	}
+
+
+	/**
+	 * @param value the value, ignored if {@link #isValuesPrimitive()}
+	 * @param lValue the value if {@link #isValuesPrimitive()}, otherwise ignored
+	 */
+	@SuppressWarnings("unchecked")
+	private void vSet(Object a, int pos, T value, long lValue) {
+		if (isValuesNone()) {
+			return;
+		}
+		if (isValuesPrimitive()) {
+			vSetLong(a, pos, lValue);
+		} else {
+			((T[]) a)[pos] = value;
+		}
+	}
+
+
+	/**
+	 * Set a value slot to the value of a post of an NI node.
+	 */
+	private void vSet(Object a, int pos, NodeEntry<T> e) {
+		if (isValuesPrimitive()) {
+			vSetLong(a, pos, e.getValueLong());
+		} else {
+			vSet(a, pos, e.getValue(), 0);
+		}
+	}
+
+
+	private void vSetLong(Object a, int pos, long value) {
+		if (isValuesLong()) {
+			((long[]) a)[pos] = value;
+		} else {
+			((int[]) a)[pos] = (int) value;
+		}
+	}
+
+
+	/**
+	 * Clear a value slot, primitive values can just stay where they are.
+	 */
+	private void vClear(Object a, int pos) {
+		if (!isValuesNone() && !isValuesPrimitive()) {
+			((Object[]) a)[pos] = null;
+		}
+	}
+
+
+	/**
+	 * @return The primitive representation of a value, or 0 if the values are not
+	 * stored in primitive arrays.
+	 */
+	private long vToLong(T value) {
+		return isValuesPrimitive() ? toLong(value, isValuesInt()) : 0;
+	}
+
+
+	/**
+	 * @param value a {@code Long}, or an {@code Integer} if 'isInt' is set
+	 * @return The primitive representation of the value of a tree with primitive values.
+	 * @throws IllegalArgumentException if the value is {@code null}
+	 */
+	static long toLong(Object value, boolean isInt) {
+		if (value == null) {
+			throw new IllegalArgumentException("Primitive values can not be null.");
+		}
+		return isInt ? (Integer) value : (Long) value;
+	}
+
+
+	/**
+	 * @return The boxed value, a {@code Long} or an {@code Integer} if 'isInt' is set.
+	 */
+	static Object toValue(long value, boolean isInt) {
+		if (isInt) {
+			return Integer.valueOf((int) value);
+		}
+		return Long.valueOf(value);
+	}
+
+
+	/**
+	 * @return The array that holds the values, see {@link #vOffs(int)}.
+	 */
+	private Object vArray() {
+		return isValuesPrimitive() ? pValues : refs;
+	}
+
+
+	/**
+	 * @return The position of the first value in {@link #vArray()}.
+	 */
+	private int vOffs(final int DIM) {
+		return isValuesPrimitive() ? 0 : getSubSlotCount(DIM);
+	}
+
+
+	/**
+	 * @return The number of value slots, 2^DIM for HC and postCnt for LHC.
+	 */
+	private int vSlots(final int DIM) {
+		return isPostHC() ? 1<<DIM : getPostCount();
+	}
+
+
+	/**
+	 * @return The number of value slots in 'refs'.
+	 */
+	private int vRefSlots(final int DIM) {
+		return (isValuesPrimitive() || isValuesNone()) ? 0 : vSlots(DIM);
+	}
+
+
+	private T vGetPos(int valPos, final int DIM) {
+		return vGet(vArray(), vOffs(DIM) + valPos);
+	}
+
+
+	/**
+	 * Insert a value into the LHC value slots.
+	 * @param pos
+	 * @param postCnt number of posts before the insertion
+	 * @param value the value, ignored if {@link #isValuesPrimitive()}
+	 * @param lValue the value if {@link #isValuesPrimitive()}, otherwise ignored
+	 * @param DIM
+	 */
+	private void vInsert(int pos, int postCnt, T value, long lValue, final int DIM) {
+		if (isValuesNone()) {
+			return;
+		}
+		if (isValuesLong()) {
+			long[] a = pValues == null ? Refs.arrayCreateLong(postCnt+1) 
+					: Refs.arrayEnsureSize((long[]) pValues, postCnt+1);
+			Refs.insertAtPos(a, pos, lValue);
+			pValues = a;
+		} else if (isValuesInt()) {
+			int[] a = pValues == null ? Refs.arrayCreateInt(postCnt+1) 
+					: Refs.arrayEnsureSize((int[]) pValues, postCnt+1);
+			Refs.insertAtPos(a, pos, (int) lValue);
+			pValues = a;
+		} else {
+			int vOffs = getSubSlotCount(DIM);
+			refsInsert(vOffs + pos, vOffs + postCnt, value);
+		}
+	}
+
+
+	/**
+	 * Remove a value from the LHC value slots.
+	 * @param pos
+	 * @param postCnt number of posts before the removal
+	 * @param DIM
+	 */
+	private void vRemove(int pos, int postCnt, final int DIM) {
+		if (isValuesNone()) {
+			return;
+		}
+		if (isValuesLong()) {
+			Refs.removeAtPos((long[]) pValues, pos);
+			pValues = Refs.arrayTrim((long[]) pValues, postCnt-1);
+		} else if (isValuesInt()) {
+			Refs.removeAtPos((int[]) pValues, pos);
+			pValues = Refs.arrayTrim((int[]) pValues, postCnt-1);
+		} else {
+			int vOffs = getSubSlotCount(DIM);
+			refsRemove(vOffs + pos, vOffs + postCnt);
+		}
+	}
+
+
+	/**
+	 * Insert a slot into 'refs', this shifts all following slots.
+	 * @param pos
+	 * @param len number of used slots before the insertion
+	 * @param o
+	 */
+	private void refsInsert(int pos, int len, Object o) {
+		if (refs == null) {
+			refs = Refs.arrayCreate(len+1);
+		} else {
+			refs = Refs.arrayEnsureSize(refs, len+1);
+		}
+		System.arraycopy(refs, pos, refs, pos+1, len-pos);
+		refs[pos] = o;
+	}
+
+
+	/**
+	 * Remove a slot from 'refs', this shifts all following slots.
+	 * @param pos
+	 * @param len number of used slots before the removal
+	 */
+	private void refsRemove(int pos, int len) {
+		System.arraycopy(refs, pos+1, refs, pos, len-pos-1);
+		//avoid keeping the removed sub-tree or value reachable
+		refs[len-1] = null;
+		refsTrim(len-1);
+	}
+
+
+	private void refsTrim(int len) {
+		if (refs != null) {
+			refs = len == 0 ? null : Refs.arrayTrim(refs, len);
+		}
+	}
+
+
+	/**
+	 * Replace 'refs' (and the primitive values) with new sub-node and value slots.
+	 * @param subs source of the sub-node slots, may be 'refs'
+	 * @param nSubs number of sub-node slots
+	 * @param vals source of the value slots, may be 'refs' or 'pValues'
+	 * @param valOffs position of the first value slot in 'vals'
+	 * @param nVals number of value slots
+	 */
+	private void setRefs(Object[] subs, int nSubs, Object vals, int valOffs, int nVals) {
+		if (isValuesPrimitive()) {
+			pValues = nVals == 0 ? null : vals;
+			if (DEBUG && valOffs != 0) {
+				throw new IllegalStateException();
+			}
+		}
+		int nRefVals = (isValuesPrimitive() || isValuesNone()) ? 0 : nVals;
+		if (nSubs + nRefVals == 0) {
+			refs = null;
+			return;
+		}
+		Object[] r2 = Refs.arrayCreate(nSubs + nRefVals);
+		System.arraycopy(subs, 0, r2, 0, nSubs);
+		if (nRefVals > 0) {
+			System.arraycopy(vals, valOffs, r2, nSubs, nRefVals);
+		}
+		refs = r2;
+	}
+
+
 	boolean isSubNI() {
 		return isPostNI();
 	}
@@ -1413,7 +2150,7 @@ class Node<T> {
 	}
 
 	int getBitPos_SubNodeIndex(final int DIM) {
-		return getBitPos_Infix() + (infixLen*DIM);
+		return getBitPos_Infix() + getInfixBits(DIM);
 	}
 
 	int getBitPos_Infix() {
@@ -1436,7 +2173,7 @@ class Node<T> {
 			int offsInd = getBitPos_PostIndex(DIM);
 			//get p2 of:
 			//return p2 * (PIK_WIDTH(DIM) + postLen * DIM) + offsInd + PIK_WIDTH(DIM);
-			int valPos = (offs - PIK_WIDTH(DIM) - offsInd) / (postLen*DIM+PIK_WIDTH(DIM)); 
+			int valPos = (offs - PIK_WIDTH(DIM) - offsInd) / (getPostBits(DIM)+PIK_WIDTH(DIM)); 
 			return valPos;
 		}
 	}
@@ -1457,30 +2194,29 @@ class Node<T> {
 			boolean notNull = Bits.getBit(ba, offsInd+PINN_HC_WIDTH*posInt);
 			offsInd += PINN_HC_WIDTH*(1<<DIM);
 			if (!notNull) {
-				return -(posInt * postLen * DIM + offsInd)-1;
+				return -(posInt * getPostBits(DIM) + offsInd)-1;
 			}
-			return posInt * postLen * DIM + offsInd;
+			return posInt * getPostBits(DIM) + offsInd;
 		} else {
 			if (!isPostNI()) {
 				//linearized cube
 				int p2 = Bits.binarySearch(ba, offsInd, getPostCount(), pos, PIK_WIDTH(DIM), 
-						DIM * postLen);
+						getPostBits(DIM));
 				if (p2 < 0) {
 					p2 = -(p2+1);
-					p2 *= (PIK_WIDTH(DIM) + postLen * DIM);
+					p2 *= (PIK_WIDTH(DIM) + getPostBits(DIM));
 					p2 += PIK_WIDTH(DIM);
 					return -(p2 + offsInd) -1;
 				}
-				return p2 * (PIK_WIDTH(DIM) + postLen * DIM) + offsInd + PIK_WIDTH(DIM);
+				return p2 * (PIK_WIDTH(DIM) + getPostBits(DIM)) + offsInd + PIK_WIDTH(DIM);
 			} else {
-				if (DEBUG && pos > Integer.MAX_VALUE) {
-					throw new UnsupportedOperationException();
-				}
+				//NI nodes have no bit offsets, only the sign is used. Returning 'pos'
+				//would overflow the int for DIM >= 32.
 				NodeEntry<T> e = niGet(pos);
 				if (e != null && e.getKey() != null) {
-					return (int)pos;
+					return 0;
 				}
-				return (int) (-pos -1);
+				return -1;
 			}
 		}
 	}
@@ -1502,19 +2238,30 @@ class Node<T> {
 	 * @param infix
 	 */
 	public void adjustInfix(long[] prefix, int infixLenOfParent, int postLenOfParent, long hcPos) {
+		int DIM = prefix.length;
+		account(-1, DIM);
         applyHcPos(hcPos, postLenOfParent, prefix);
         getInfixNoOverwrite(prefix);
-		int DIM = prefix.length;
         // update infix-len and resize array
         int infOffs = getBitPos_Infix();
+        int oldInfixBits = getInfixBits(DIM);
         int newInfixLen = infixLenOfParent + 1 + getInfixLen();
         setInfixLen(newInfixLen);
         ba = Bits.arrayEnsureSize(ba, calcArraySizeTotalBits(
                 getPostCount(), DIM));
-        Bits.insertBits(ba, infOffs, DIM*(infixLenOfParent+1));
+        Bits.insertBits(ba, infOffs, getInfixBits(DIM)-oldInfixBits);
 
         // update infix
         writeInfix(prefix);
+        account(1, DIM);
+	}
+
+	long getMinExpiry() {
+		return minExpiry;
+	}
+
+	void setMinExpiry(long minExpiry) {
+		this.minExpiry = minExpiry;
 	}
 
 	int getInfixLen() {
@@ -1528,21 +2275,30 @@ class Node<T> {
 	int getPostLen() {
 		return postLen;
 	}
+	@SuppressWarnings("unchecked")
 	Node<T> subNRef(int pos) {
-		return subNRef[pos];
+		return (Node<T>) refs[pos];
+	}
+
+	/**
+	 * @param DIM
+	 * @return The number of sub-node slots in this node, 2^DIM for HC, the number of 
+	 * sub-nodes for LHC and 0 for NI. Empty HC slots are null, see {@link #subNRef(int)}.
+	 */
+	int getSubSlotCount(final int DIM) {
+		if (isSubNI()) {
+			return 0;
+		}
+		return isSubHC() ? 1<<DIM : getSubCount();
 	}
-	CritBit64<NodeEntry<T>> ind() {
+	NiIndex<T> ind() {
 		return ind;
 	}
 
-    CBIterator<NodeEntry<T>> niIterator() {
+    NiIterator<T> niIterator() {
         return ind.iterator();
     }
 
-    Node<T>[] subNRef() {
-		return subNRef;
-	}
-    
     boolean isRemoved() {
     	//this is properly implemented in the sub-classes
     	throw new UnsupportedOperationException();
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.v8;
+
+import ch.ethz.globis.pht.PhTreeConfig;
+
+/**
+ * Node configuration, this is shared by all nodes of a tree.
+ *
+ * <p>NI (node index) representation:
+ * A node is converted to NI if it has more than {@code subEnter} sub-nodes or more than
+ * {@code postEnter} posts. It is converted back only once both counts have dropped to
+ * {@code subExit} and {@code postExit}. The gap between the two avoids repeated
+ * conversions when entries are inserted and removed around the threshold.
+ *
+ * <p>Bit depth:
+ * Dimensions with a depth of less than 64 bits only store the bits below their depth in
+ * infixes and postfixes, see {@link PhTreeConfig#setDepth(int, int)}. The number of bits
+ * stored for a range of dimensions is looked up in a table, see {@link #bits(int, int)}.
+ */
+final class NodeConfig {
+
+	static final NodeConfig DEFAULT = create(new PhTreeConfig(1), 1);
+
+	final int subEnter;
+	final int postEnter;
+	final int subExit;
+	final int postExit;
+	private final int indexType;
+	//bits per dimension, null if all dimensions have 64 bits
+	private final int[] depth;
+	//bitsBelow[d*65 + len] = sum of width(i, len) for all dimensions i < d
+	private final int[] bitsBelow;
+
+	private NodeConfig(int subEnter, int postEnter, double hysteresis, int indexType,
+			int[] depth) {
+		this.subEnter = subEnter;
+		this.postEnter = postEnter;
+		this.subExit = (int) (subEnter*hysteresis);
+		this.postExit = (int) (postEnter*hysteresis);
+		this.indexType = indexType;
+		this.depth = depth;
+		if (depth != null) {
+			bitsBelow = new int[(depth.length+1)*65];
+			for (int d = 0; d < depth.length; d++) {
+				for (int len = 0; len <= 64; len++) {
+					bitsBelow[(d+1)*65 + len] = bitsBelow[d*65 + len] + width(d, len);
+				}
+			}
+		} else {
+			bitsBelow = null;
+		}
+	}
+
+	static NodeConfig create(PhTreeConfig cfg, int DIM) {
+		int[] depth = null;
+		for (int d = 0; d < DIM; d++) {
+			if (cfg.getDepth(d) < 64) {
+				depth = new int[DIM];
+				for (int d2 = 0; d2 < DIM; d2++) {
+					depth[d2] = cfg.getDepth(d2);
+				}
+				break;
+			}
+		}
+		if (cfg.isNiAutoTune()) {
+			int post = autoPostThreshold(DIM);
+			return new NodeConfig(10*post, post, cfg.getNiHysteresis(), cfg.getNiIndexType(),
+					depth);
+		}
+		return new NodeConfig(cfg.getNiSubThreshold(), cfg.getNiPostThreshold(),
+				cfg.getNiHysteresis(), cfg.getNiIndexType(), depth);
+	}
+
+	/**
+	 * Post thresholds by dimensionality, as measured with TestNiThresholdPerf.
+	 */
+	private static int autoPostThreshold(int DIM) {
+		//Up to DIM=8, hypercube nodes are faster than NI for lookups, iteration and inserts.
+		//For larger DIM, the remaining alternative are large LHC nodes. These give faster
+		//lookups but much slower inserts than NI.
+		return DIM <= 8 ? 1 << DIM : 50;
+	}
+
+	/**
+	 * @return true if a node with the given counts should be converted to NI
+	 */
+	boolean isNiRequired(int subCnt, int postCnt) {
+		return subCnt > subEnter || postCnt > postEnter;
+	}
+
+	/**
+	 * @return true if an NI node with the given counts should be converted back
+	 */
+	boolean isNiRemovable(int subCnt, int postCnt) {
+		return subCnt <= subExit && postCnt <= postExit;
+	}
+
+	/**
+	 * @param DIM
+	 * @param isValuesPrimitive see {@link Node#isValuesPrimitive()}
+	 * @param isValuesInt see {@link Node#isValuesInt()}
+	 * @param useLock whether the entries need a lock. The array index has no entry objects,
+	 * the crit-bit index is used instead.
+	 * @return a new node index
+	 */
+	<T> NiIndex<T> createIndex(int DIM, boolean isValuesPrimitive, boolean isValuesInt,
+			boolean useLock) {
+		if (indexType == PhTreeConfig.NI_INDEX_ARRAY && !useLock) {
+			return new NiIndexArray<>(DIM, isValuesPrimitive, isValuesInt);
+		}
+		return new NiIndexCB<>(isValuesPrimitive, isValuesInt, useLock);
+	}
+
+	/**
+	 * @param d dimension
+	 * @param len number of bits, counted from the lowest bit
+	 * @return The number of bits that are stored for the lowest 'len' bits of dimension 'd'.
+	 */
+	int width(int d, int len) {
+		return depth == null || len < depth[d] ? len : depth[d];
+	}
+
+	/**
+	 * @param d number of dimensions
+	 * @param len number of bits, counted from the lowest bit
+	 * @return The sum of {@link #width(int, int)} of the dimensions 0 to d-1.
+	 */
+	int bits(int d, int len) {
+		return depth == null ? d*len : bitsBelow[d*65 + len];
+	}
+
+	/**
+	 * @param key
+	 * @throws IllegalArgumentException if the key has bits above the depth of a dimension
+	 */
+	void checkKey(long[] key) {
+		if (depth == null) {
+			return;
+		}
+		for (int d = 0; d < key.length; d++) {
+			if (depth[d] < 64 && (key[d] >>> depth[d]) != 0) {
+				throw new IllegalArgumentException("Key exceeds depth of dimension " + d +
+						": " + key[d] + " depth=" + depth[d]);
+			}
+		}
+	}
+}
@@ -10,8 +10,7 @@ import static ch.ethz.globis.pht.PhTreeHelper.applyHcPos;
 
 import java.util.NoSuchElementException;
 
-import org.zoodb.index.critbit.CritBit64.CBIterator;
-import org.zoodb.index.critbit.CritBit64.Entry;
+import ch.ethz.globis.pht.v8.NiIndex.NiIterator;
 
 /**
  * An iterator for full iteration of the the PH-tree. It does not use
@@ -34,7 +33,7 @@ class NodeIteratorFull<T> {
 	private int currentOffsetPostKey;
 	private int currentOffsetPostVal;
 	private int currentOffsetSub;
-	private CBIterator<PhTree8.NodeEntry<T>> niIterator;
+	private NiIterator<T> niIterator;
 	private final int nMaxPost;
 	private final int nMaxSub;
 	private int postsFound = 0;
@@ -73,12 +72,12 @@ class NodeIteratorFull<T> {
 			// -set value offset to first element
 			if (node.isPostHC()) {
 				//length of post-fix WITHOUT key
-				postEntryLen = DIM*postLen;
+				postEntryLen = node.getPostBits(DIM);
 				currentOffsetPostVal = currentOffsetPostKey + (1<<DIM)*Node.PINN_HC_WIDTH;  
 				currentOffsetPostKey -= Node.PINN_HC_WIDTH;
 			} else {
 				//length of post-fix WITH key
-				postEntryLen = Node.PIK_WIDTH(DIM)+DIM*postLen;
+				postEntryLen = Node.PIK_WIDTH(DIM)+node.getPostBits(DIM);
 				currentOffsetPostVal = currentOffsetPostKey + Node.PIK_WIDTH(DIM);  
 				currentOffsetPostKey -= postEntryLen;
 			}
@@ -143,7 +142,7 @@ class NodeIteratorFull<T> {
 				buf[i] &= mask;  
 				buf[i] |= eKey[i];
 			}
-			nextPostKey = e.getKey();
+			nextPostKey = buf;
 		}
 		nextPostVal = e.getValue();
 		nextSubNode = null;
@@ -247,12 +246,12 @@ class NodeIteratorFull<T> {
 
 	private void niFindNext() {
 		if (niIterator.hasNext()) {
-			Entry<PhTree8.NodeEntry<T>> e = niIterator.nextEntry();
-			long pos = e.key();
+			PhTree8.NodeEntry<T> e = niIterator.next();
+			long pos = niIterator.pos();
 			next = pos;
-			nextSubNode = e.value().node;
+			nextSubNode = e.node;
 			if (nextSubNode == null) {
-				readValue(e.key(), e.value());
+				readValue(pos, e);
 			} else {
 				nextPostVal = null;
 				nextPostKey = null;
@@ -6,13 +6,10 @@
  */
 package ch.ethz.globis.pht.v8;
 
-import org.zoodb.index.critbit.CritBit64;
-import org.zoodb.index.critbit.CritBit64.CBIterator;
-import org.zoodb.index.critbit.CritBit64.Entry;
-
 import ch.ethz.globis.pht.PhEntry;
 import ch.ethz.globis.pht.PhFilter;
 import ch.ethz.globis.pht.PhTreeHelper;
+import ch.ethz.globis.pht.v8.NiIndex.NiIterator;
 import ch.ethz.globis.pht.v8.PhTree8.NodeEntry;
 
 
@@ -42,7 +39,7 @@ public class NodeIteratorFullNoGC<T> {
 	private int currentOffsetPostKey;
 	private int currentOffsetPostVal;
 	private int currentOffsetSub;
-	private CBIterator<NodeEntry<T>> niIterator;
+	private NiIterator<T> niIterator;
 	private int nMaxPost;
 	private int nMaxSub;
 	private int nPostsFound = 0;
@@ -102,21 +99,18 @@ public class NodeIteratorFullNoGC<T> {
 		currentOffsetSub = node.getBitPos_SubNodeIndex(DIM);
 		if (isPostNI) {
 			postEntryLen = -1; //not used
-			if (niIterator == null) {
-				niIterator = new CritBit64.CBIterator<>();
-			}
-			niIterator.reset(node.ind());
+			niIterator = node.ind().iterator(niIterator);
 		} else {
 			currentOffsetPostKey = node.getBitPos_PostIndex(DIM);
 			// -set key offset to position before first element
 			// -set value offset to first element
 			if (isPostHC) {
 				//length of post-fix WITHOUT key
-				postEntryLen = DIM*postLen;
+				postEntryLen = node.getPostBits(DIM);
 				currentOffsetPostVal = currentOffsetPostKey + (1<<DIM)*Node.PINN_HC_WIDTH;  
 			} else {
 				//length of post-fix WITH key
-				postEntryLen = Node.PIK_WIDTH(DIM)+DIM*postLen;
+				postEntryLen = Node.PIK_WIDTH(DIM)+node.getPostBits(DIM);
 				currentOffsetPostVal = currentOffsetPostKey + Node.PIK_WIDTH(DIM);  
 			}
 		}
@@ -308,15 +302,15 @@ public class NodeIteratorFullNoGC<T> {
 
 	private void niFindNext(PhEntry<T> result) {
 		while (niIterator.hasNext()) {
-			Entry<NodeEntry<T>> e = niIterator.nextEntry();
-			next = e.key();
-			nextSubNode = e.value().node;
+			NodeEntry<T> e = niIterator.next();
+			next = niIterator.pos();
+			nextSubNode = e.node;
 			if (nextSubNode == null) {
-				if (!readValue(e.key(), e.value(), result)) {
+				if (!readValue(next, e, result)) {
 					continue;
 				}
 			} else {
-				if (!readSub(e.key(), nextSubNode)) {
+				if (!readSub(next, nextSubNode)) {
 					continue;
 				}
 			}
@@ -8,12 +8,10 @@ package ch.ethz.globis.pht.v8;
 
 import java.util.ArrayList;
 
-import org.zoodb.index.critbit.CritBit64.Entry;
-import org.zoodb.index.critbit.CritBit64.QueryIteratorMask;
-
 import ch.ethz.globis.pht.PhPredicate;
 import ch.ethz.globis.pht.PhTreeHelper;
 import ch.ethz.globis.pht.util.PhMapper;
+import ch.ethz.globis.pht.v8.NiIndex.NiIterator;
 import ch.ethz.globis.pht.v8.PhTree8.NodeEntry;
 
 /**
@@ -79,7 +77,7 @@ public class NodeIteratorListReuse<T, R> {
 		private int currentOffsetPostKey;
 		private int currentOffsetPostVal;
 		private int currentOffsetSub;
-		private QueryIteratorMask<NodeEntry<T>> niIterator;
+		private NiIterator<T> niIterator;
 		private int nMaxPost;
 		private int nMaxSub;
 		private int nPostsFound = 0;
@@ -134,11 +132,11 @@ public class NodeIteratorListReuse<T, R> {
 				// -set value offset to first element
 				if (isPostHC) {
 					//length of post-fix WITHOUT key
-					postEntryLen = DIM*postLen;
+					postEntryLen = node.getPostBits(DIM);
 					currentOffsetPostVal = currentOffsetPostKey + (1<<DIM)*Node.PINN_HC_WIDTH;  
 				} else {
 					//length of post-fix WITH key
-					postEntryLen = Node.PIK_WIDTH(DIM)+DIM*postLen;
+					postEntryLen = Node.PIK_WIDTH(DIM)+node.getPostBits(DIM);
 					currentOffsetPostVal = currentOffsetPostKey + Node.PIK_WIDTH(DIM);  
 				}
 			}
@@ -162,7 +160,7 @@ public class NodeIteratorListReuse<T, R> {
 					if (useHcIncrementer && PhTree8.HCI_ENABLED && DIM < 50) {
 						niIterator = null;
 					} else {
-						niIterator = node.ind().queryWithMask(maskLower, maskUpper);
+						niIterator = node.ind().query(maskLower, maskUpper, null);
 					}
 				} else if (PhTree8.HCI_ENABLED){
 					if (isPostHC) {
@@ -217,9 +215,9 @@ public class NodeIteratorListReuse<T, R> {
 		}
 
 		private boolean readValue(long pos, NodeEntry<T> e) {
-			//extract postfix
+			//extract postfix, the entry may be reused by the NI iterator
 			final long mask = postLen < 63 ? (~0L)<<postLen+1 : 0;
-			long[] eKey = e.getKey();
+			long[] eKey = e.getKey().clone();
 			PhTreeHelper.applyHcPos(pos, postLen, eKey);
 			for (int i = 0; i < eKey.length; i++) {
 				eKey[i] |= (valTemplate[i] & mask);
@@ -227,7 +225,7 @@ public class NodeIteratorListReuse<T, R> {
 					return false;
 				}
 			}
-			return checkAndAddResult(e);
+			return checkAndAddResult(node.createNodeEntry(eKey, e.getValue()));
 		}
 
 		private long getNextPostHCI(long currentPos) {
@@ -457,15 +455,15 @@ public class NodeIteratorListReuse<T, R> {
 			//iterator?
 			if (niIterator != null) {
 				while (niIterator.hasNext()) {
-					Entry<NodeEntry<T>> e = niIterator.nextEntry();
-					next = e.key();
-					Node<T> nextSubNode = e.value().node;
+					NodeEntry<T> e = niIterator.next();
+					next = niIterator.pos();
+					Node<T> nextSubNode = e.node;
 					if (nextSubNode == null) {
-						if (!readValue(e.key(), e.value())) {
+						if (!readValue(next, e)) {
 							continue;
 						}
 					} else {
-						traverseNode(nextSubNode, e.key());
+						traverseNode(nextSubNode, next);
 					}
 					return;
 				}
@@ -6,12 +6,10 @@
  */
 package ch.ethz.globis.pht.v8;
 
-import org.zoodb.index.critbit.CritBit64.Entry;
-import org.zoodb.index.critbit.CritBit64.QueryIteratorMask;
-
 import ch.ethz.globis.pht.PhEntry;
 import ch.ethz.globis.pht.PhFilter;
 import ch.ethz.globis.pht.PhTreeHelper;
+import ch.ethz.globis.pht.v8.NiIndex.NiIterator;
 import ch.ethz.globis.pht.v8.PhTree8.NodeEntry;
 
 
@@ -41,7 +39,7 @@ public class NodeIteratorNoGC<T> {
 	private int currentOffsetPostKey;
 	private int currentOffsetPostVal;
 	private int currentOffsetSub;
-	private QueryIteratorMask<NodeEntry<T>> niIterator;
+	private NiIterator<T> niIterator;
 	private int nMaxPost;
 	private int nMaxSub;
 	private int nPostsFound = 0;
@@ -61,6 +59,10 @@ public class NodeIteratorNoGC<T> {
 	private final PhEntry<T> nextPost1;
 	private final PhEntry<T> nextPost2;
 	private boolean isNextPost1free;
+	//Primitive values are not stored in nextPost1/2 but here, see isValuesLong
+	private final boolean isValuesLong;
+	private long nextPostLong1;
+	private long nextPostLong2;
 
 
 	/**
@@ -69,8 +71,20 @@ public class NodeIteratorNoGC<T> {
 	 * @param valTemplate A null indicates that no values are to be extracted.
 	 */
 	public NodeIteratorNoGC(int DIM, long[] valTemplate) {
+		this(DIM, valTemplate, false);
+	}
+
+	/**
+	 * 
+	 * @param DIM
+	 * @param valTemplate A null indicates that no values are to be extracted.
+	 * @param isValuesLong If true, the values of a tree with primitive values are only
+	 * available via {@link #getCurrentPostLong()}, the value of the entry is not set.
+	 */
+	NodeIteratorNoGC(int DIM, long[] valTemplate, boolean isValuesLong) {
 		this.DIM = DIM;
 		this.valTemplate = valTemplate;
+		this.isValuesLong = isValuesLong;
 		this.nextPost1 = new PhEntry<T>(new long[DIM], null);
 		this.nextPost2 = new PhEntry<T>(new long[DIM], null);
 	}
@@ -127,11 +141,11 @@ public class NodeIteratorNoGC<T> {
 			// -set value offset to first element
 			if (isPostHC) {
 				//length of post-fix WITHOUT key
-				postEntryLen = DIM*postLen;
+				postEntryLen = node.getPostBits(DIM);
 				currentOffsetPostVal = currentOffsetPostKey + (1<<DIM)*Node.PINN_HC_WIDTH;  
 			} else {
 				//length of post-fix WITH key
-				postEntryLen = Node.PIK_WIDTH(DIM)+DIM*postLen;
+				postEntryLen = Node.PIK_WIDTH(DIM)+node.getPostBits(DIM);
 				currentOffsetPostVal = currentOffsetPostKey + Node.PIK_WIDTH(DIM);  
 			}
 		}
@@ -176,10 +190,7 @@ public class NodeIteratorNoGC<T> {
 		}
 		
 		if (isPostNI && !useNiHcIncrementer) {
-			if (niIterator == null) {
-				niIterator = new QueryIteratorMask<>();
-			}
-			niIterator.reset(node.ind(), maskLower, maskUpper);
+			niIterator = node.ind().query(maskLower, maskUpper, niIterator);
 		}
 	}
 
@@ -208,6 +219,21 @@ public class NodeIteratorNoGC<T> {
 		return isNextPost1free ? nextPost2 : nextPost1;
 	}
 
+	/**
+	 * @return The primitive value of the current post, this requires isValuesLong.
+	 */
+	long getCurrentPostLong() {
+		return isNextPost1free ? nextPostLong2 : nextPostLong1;
+	}
+
+	private void setPostLong(long value) {
+		if (isNextPost1free) {
+			nextPostLong1 = value;
+		} else {
+			nextPostLong2 = value;
+		}
+	}
+
 	/**
 	 * Return whether the next value returned by next() is a sub-node or not.
 	 * 
@@ -226,13 +252,20 @@ public class NodeIteratorNoGC<T> {
 		long[] key = result.getKey();
 		System.arraycopy(valTemplate, 0, key, 0, DIM);
 		PhTreeHelper.applyHcPos(pos, postLen, key);
-		if (!node.getPostPOB(offsPostKey, pos, result, rangeMin, rangeMax)) {
+		if (isValuesLong) {
+			if (!node.getPostKeyPOB(offsPostKey, key, rangeMin, rangeMax)) {
+				return false;
+			}
+		} else if (!node.getPostPOB(offsPostKey, pos, result, rangeMin, rangeMax)) {
 			return false;
 		}
 
 		if (checker != null && !checker.isValid(key)) {
 			return false;
 		}
+		if (isValuesLong) {
+			setPostLong(node.getPostValueLongPOB(offsPostKey, pos, DIM));
+		}
 		
 		//Don't set to 'null' here, that interferes with parallel iteration over post/sub 
 		//nextSubNode = null;
@@ -255,7 +288,11 @@ public class NodeIteratorNoGC<T> {
 			return false;
 		}
 		System.arraycopy(eKey, 0, result.getKey(), 0, DIM);
-		result.setValue(e.getValue());
+		if (isValuesLong) {
+			setPostLong(e.getValueLong());
+		} else {
+			result.setValue(e.getValue());
+		}
 		nextSubNode = null;
 		isNextPost1free = !isNextPost1free;
 		return true;
@@ -479,11 +516,11 @@ public class NodeIteratorNoGC<T> {
 		//iterator?
 		if (!useNiHcIncrementer) {
 			while (niIterator.hasNext()) {
-				Entry<NodeEntry<T>> e = niIterator.nextEntry();
-				next = e.key();
-				nextSubNode = e.value().node;
+				NodeEntry<T> e = niIterator.next();
+				next = niIterator.pos();
+				nextSubNode = e.node;
 				if (nextSubNode == null) {
-					if (!readValue(e.key(), e.value(), result)) {
+					if (!readValue(next, e, result)) {
 						continue;
 					}
 				}
@@ -547,6 +584,13 @@ public class NodeIteratorNoGC<T> {
 		return node;
 	}
 
+	/**
+	 * @return The filter for this node or {@code null} if entries need no further checking.
+	 */
+	PhFilter getChecker() {
+		return checker;
+	}
+
 	void init(long[] rangeMin, long[] rangeMax, 
 			long[] valTemplate, Node<T> node, PhFilter checker) {
 		//create limits for the local node. there is a lower and an upper limit. Each limit
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.v8;
+
+import static ch.ethz.globis.pht.PhTreeHelper.getMaxConflictingBits;
+import static ch.ethz.globis.pht.PhTreeHelper.posInArray;
+
+import java.util.Arrays;
+
+import ch.ethz.globis.pht.PhCursor;
+
+/**
+ * Point operations that reuse the path of the previous operation.
+ *
+ * The nodes that were traversed for the previous key are kept on a stack. An operation starts
+ * with the deepest node on the stack whose prefix is shared by the previous and the
+ * current key. For keys that are close on the z-curve, for example sorted keys, most of
+ * the descent from the root can be skipped.
+ *
+ * The path is discarded when the tree is modified other than via this cursor.
+ *
+ * @param <T>
+ */
+class PhCursor8<T> implements PhCursor<T> {
+
+	private final PhTree8<T> pht;
+	private final int DIM;
+	private final Node<T>[] path;
+	private int depth = 0;
+	private long[] prevKey;
+	private int modCount;
+	private T value;
+
+	@SuppressWarnings("unchecked")
+	PhCursor8(PhTree8<T> pht) {
+		this.pht = pht;
+		this.DIM = pht.getDim();
+		this.path = (Node<T>[]) new Node<?>[PhTree8.DEPTH_64 + 1];
+		this.modCount = pht.getModCount();
+	}
+
+	@Override
+	public void reset() {
+		depth = 0;
+		prevKey = null;
+	}
+
+	@Override
+	public T get(long... key) {
+		return lookup(key) ? value : null;
+	}
+
+	@Override
+	public boolean contains(long... key) {
+		return lookup(key);
+	}
+
+	@Override
+	public T put(long[] key, T value) {
+		checkKey(key);
+		pht.getNodeConfig().checkKey(key);
+		if (!seek(key, key)) {
+			pht.put(key, value);
+			modCount = pht.getModCount();
+			return null;
+		}
+		int start = depth;
+		Node<T> node = path[start-1];
+		Node<T> parent = start > 1 ? path[start-2] : null;
+		T ret = pht.getOperations().putFrom(key, value, node, parent, posInParent(key, parent));
+		modified();
+		//'node' still exists, but its sub-nodes may have been replaced
+		descend(key, node, false);
+		return ret;
+	}
+
+	@Override
+	public T remove(long... key) {
+		checkKey(key);
+		if (!seek(key, key)) {
+			return null;
+		}
+		int start = depth;
+		Node<T> node = path[start-1];
+		Node<T> parent = start > 1 ? path[start-2] : null;
+		long posInParent = posInParent(key, parent);
+		T ret = pht.getOperations().removeFrom(key, node, parent, posInParent);
+		modified();
+		if (!isInParent(node, parent, posInParent)) {
+			depth--;
+		}
+		return ret;
+	}
+
+	@Override
+	public T update(long[] oldKey, long[] newKey) {
+		checkKey(oldKey);
+		checkKey(newKey);
+		pht.getNodeConfig().checkKey(newKey);
+		if (!seek(oldKey, newKey)) {
+			return null;
+		}
+		int start = depth;
+		Node<T> node = path[start-1];
+		Node<T> parent = start > 1 ? path[start-2] : null;
+		long posInParent = posInParent(oldKey, parent);
+		T ret = pht.getOperations().updateFrom(oldKey, newKey, node, parent, posInParent);
+		modified();
+		if (!isInParent(node, parent, posInParent)) {
+			depth--;
+		}
+		prevKey = newKey;
+		descend(newKey, path[depth-1], false);
+		return ret;
+	}
+
+	private void checkKey(long[] key) {
+		if (key.length != DIM) {
+			throw new IllegalArgumentException("Invalid number of arguments: " + 
+					key.length + " / " + DIM);
+		}
+	}
+
+	private long posInParent(long[] key, Node<T> parent) {
+		return parent == null ? PhTree8.UNKNOWN : posInArray(key, parent.getPostLen());
+	}
+
+	private boolean isInParent(Node<T> node, Node<T> parent, long posInParent) {
+		return parent == null || parent.getSubNode(posInParent, DIM) == node;
+	}
+
+	private void modified() {
+		pht.incModCount();
+		modCount = pht.getModCount();
+	}
+
+	/**
+	 * Truncate the path to the deepest node whose prefix matches both keys. The
+	 * infix of this node is known to match the keys.
+	 * @param key1
+	 * @param key2
+	 * @return {@code false} if the tree is empty
+	 */
+	private boolean seek(long[] key1, long[] key2) {
+		if (modCount != pht.getModCount()) {
+			reset();
+			modCount = pht.getModCount();
+		}
+		if (depth > 0) {
+			//all nodes whose prefix is longer than the common prefix of the keys are invalid
+			int diffBits = Math.max(
+					getMaxConflictingBits(prevKey, key1, PhTree8.DEPTH_64),
+					getMaxConflictingBits(prevKey, key2, PhTree8.DEPTH_64));
+			while (depth > 1 && path[depth-1].getPostLen() + 1 < diffBits) {
+				depth--;
+			}
+		} else {
+			Node<T> root = pht.getRoot();
+			if (root == null) {
+				return false;
+			}
+			//the root has no infix
+			path[depth++] = root;
+		}
+		prevKey = key1;
+		return true;
+	}
+
+	private boolean lookup(long[] key) {
+		checkKey(key);
+		if (!seek(key, key)) {
+			return false;
+		}
+		return descend(key, path[depth-1], false);
+	}
+
+	/**
+	 * Descend from the given node, which must be the last node on the path, and add 
+	 * all nodes with matching infix to the path.
+	 * @param key
+	 * @param node
+	 * @param checkInfix whether the infix of 'node' has to be checked
+	 * @return {@code true} if the key was found, the value is stored in 'value'
+	 */
+	private boolean descend(long[] key, Node<T> node, boolean checkInfix) {
+		while (true) {
+			if (checkInfix) {
+				if (!infixMatches(node, key)) {
+					return false;
+				}
+				path[depth++] = node;
+			}
+			checkInfix = true;
+
+			long pos = posInArray(key, node.getPostLen());
+
+			//check sub-node (more likely than postfix, because there can be more than one value)
+			Node<T> sub = node.getSubNode(pos, DIM);
+			if (sub != null) {
+				node = sub;
+				continue;
+			}
+
+			//check postfix
+			int pob = node.getPostOffsetBits(pos, DIM);
+			if (pob >= 0 && node.postEqualsPOB(pob, pos, key)) {
+				value = node.getPostValuePOB(pob, pos, DIM);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Computes the order of the keys on the z-curve. For efficiency, the keys are 
+	 * only sorted by the leading bits of their z-address, ignoring bits that are 
+	 * equal in all keys. Each entry of the sort array consists of the leading bits of 
+	 * the z-address followed by the index of the key.
+	 * @param keys
+	 * @return the key indexes in z-order
+	 */
+	static int[] sortByZOrder(long[][] keys) {
+		return sortByZOrder(keys, null);
+	}
+
+	/**
+	 * @param keys
+	 * @param exactPostLen optional output, may be {@code null}: the order is exact for
+	 * the HC positions of all nodes with {@code postLen >= exactPostLen[0]}, i.e. the keys 
+	 * of each sub-node of such a node are consecutive. 
+	 * @return the key indexes in z-order
+	 * @see #sortByZOrder(long[][])
+	 */
+	static int[] sortByZOrder(long[][] keys, int[] exactPostLen) {
+		final int N = keys.length;
+		if (N == 0) {
+			return new int[0];
+		}
+		final int DIM = keys[0].length;
+		final int idBits = Long.SIZE - Long.numberOfLeadingZeros(N);
+		final int zBits = Long.SIZE - idBits;
+		//skip leading bits that are equal for all keys
+		long diff = 0;
+		for (int i = 1; i < N; i++) {
+			for (int d = 0; d < DIM; d++) {
+				diff |= keys[i][d] ^ keys[0][d];
+			}
+		}
+		final int topBit = Long.SIZE - Long.numberOfLeadingZeros(diff) - 1;
+		if (exactPostLen != null) {
+			//the leading 'zBits' bits of the z-address are sorted exactly
+			exactPostLen[0] = topBit + 1 - zBits / DIM;
+		}
+		long[] sort = new long[N];
+		for (int i = 0; i < N; i++) {
+			long[] key = keys[i];
+			long z = 0;
+			int n = 0;
+			for (int bit = topBit; bit >= 0 && n < zBits; bit--) {
+				long mask = 1L << bit;
+				for (int d = 0; d < DIM && n < zBits; d++) {
+					z <<= 1;
+					if ((key[d] & mask) != 0) {
+						z |= 1;
+					}
+					n++;
+				}
+			}
+			z <<= zBits - n;
+			//flip the sign bit for unsigned ordering
+			sort[i] = ((z << idBits) | i) ^ Long.MIN_VALUE;
+		}
+		Arrays.sort(sort);
+		int[] order = new int[N];
+		long idMask = ~((-1L) << idBits);
+		for (int i = 0; i < N; i++) {
+			order[i] = (int) (sort[i] & idMask);
+		}
+		return order;
+	}
+
+	private static boolean infixMatches(Node<?> node, long[] key) {
+		if (node.getInfixLen() == 0) {
+			return true;
+		}
+		long mask = (1l<<node.getInfixLen()) - 1l;
+		int shiftMask = node.getPostLen()+1;
+		mask = shiftMask==64 ? 0 : mask<<shiftMask;
+		for (int i = 0; i < key.length; i++) {
+			if (((key[i] ^ node.getInfix(i)) & mask) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.v8;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhTreeHelper;
+
+/**
+ * Finds expired entries in a tree whose values carry an expiry time, see
+ * {@link ch.ethz.globis.pht.PhTreeTTL}.
+ *
+ * Every node stores a lower bound of the expiry times of all entries in its sub-tree.
+ * New nodes start with {@link Long#MIN_VALUE}, which means that the bound is unknown.
+ * {@link #onPut(long[], long)} lowers the bounds on the path of a new entry. Removing
+ * entries or restructuring the tree keeps all bounds valid, because no node gains entries
+ * from outside its sub-tree. The bounds are tightened whenever a node is scanned
+ * completely, so sub-trees without expired entries are skipped by later calls.
+ *
+ * @param <T> The value type of the tree
+ */
+public class PhExpirySweeper<T> {
+
+	private final PhTree8<T> pht;
+	private final ToLongFunction<T> expiryOf;
+	private final int DIM;
+	private final long[] rangeMin;
+	private final long[] rangeMax;
+	private final long[] prefix;
+	//one iterator per level of the recursion
+	private final NodeIteratorNoGC<T>[] iters;
+
+	/**
+	 * @param pht the tree
+	 * @param expiryOf returns the expiry time of a value
+	 */
+	@SuppressWarnings("unchecked")
+	public PhExpirySweeper(PhTree8<T> pht, ToLongFunction<T> expiryOf) {
+		this.pht = pht;
+		this.expiryOf = expiryOf;
+		this.DIM = pht.getDim();
+		this.rangeMin = new long[DIM];
+		this.rangeMax = new long[DIM];
+		Arrays.fill(rangeMin, Long.MIN_VALUE);
+		Arrays.fill(rangeMax, Long.MAX_VALUE);
+		this.prefix = new long[DIM];
+		this.iters = (NodeIteratorNoGC<T>[]) new NodeIteratorNoGC<?>[PhTree8.DEPTH_64 + 1];
+	}
+
+	/**
+	 * Update the bounds after an entry has been inserted or overwritten.
+	 * @param key the key of the entry, it must exist in the tree
+	 * @param expiry the expiry time of the entry
+	 */
+	public void onPut(long[] key, long expiry) {
+		Node<T> node = pht.getRoot();
+		while (node != null) {
+			if (expiry < node.getMinExpiry()) {
+				node.setMinExpiry(expiry);
+			}
+			node = node.getSubNode(PhTreeHelper.posInArray(key, node.getPostLen()), DIM);
+		}
+	}
+
+	/**
+	 * Collect the keys of expired entries. The caller must remove all collected entries
+	 * from the tree, the bounds of the scanned nodes do not include them anymore.
+	 * @param now the current time, entries with an expiry time {@code <= now} are expired
+	 * @param maxResults maximum number of keys to collect
+	 * @param out the keys are added to this list
+	 */
+	public void collectExpired(long now, int maxResults, List<long[]> out) {
+		Node<T> root = pht.getRoot();
+		if (root != null && root.getMinExpiry() <= now && maxResults > 0) {
+			collect(root, 0, now, maxResults, out);
+		}
+	}
+
+	/**
+	 * @return {@code true} if the node has been scanned completely
+	 */
+	private boolean collect(Node<T> node, int level, long now, int maxResults,
+			List<long[]> out) {
+		NodeIteratorNoGC<T> iter = iterator(node, level);
+		boolean isComplete = true;
+		long min = Long.MAX_VALUE;
+		while (iter.increment()) {
+			if (iter.isNextSub()) {
+				Node<T> sub = iter.getCurrentSubNode();
+				if (sub.getMinExpiry() <= now) {
+					if (out.size() < maxResults) {
+						PhTreeHelper.applyHcPos(iter.getCurrentPos(), node.getPostLen(), prefix);
+						isComplete &= collect(sub, level + 1, now, maxResults, out);
+					} else {
+						isComplete = false;
+					}
+				}
+				min = Math.min(min, sub.getMinExpiry());
+			} else {
+				PhEntry<T> e = iter.getCurrentPost();
+				long expiry = expiryOf.applyAsLong(e.getValue());
+				if (expiry > now) {
+					min = Math.min(min, expiry);
+				} else if (out.size() < maxResults) {
+					//the caller removes this entry
+					out.add(e.getKey().clone());
+				} else {
+					isComplete = false;
+					break;
+				}
+			}
+		}
+		if (isComplete) {
+			node.setMinExpiry(min);
+		}
+		return isComplete;
+	}
+
+	/**
+	 * @return the earliest expiry time of all entries, or {@link Long#MAX_VALUE} if the
+	 * tree is empty.
+	 */
+	public long getNextExpiry() {
+		Node<T> root = pht.getRoot();
+		return root == null ? Long.MAX_VALUE : nextExpiry(root, 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param bound sub-trees that cannot contain an entry before 'bound' are skipped
+	 * @return a lower bound of the expiry times in the sub-tree, this is exact if it is
+	 * smaller than 'bound'.
+	 */
+	private long nextExpiry(Node<T> node, int level, long bound) {
+		if (node.getMinExpiry() >= bound) {
+			return node.getMinExpiry();
+		}
+		NodeIteratorNoGC<T> iter = iterator(node, level);
+		long min = Long.MAX_VALUE;
+		while (iter.increment()) {
+			if (iter.isNextSub()) {
+				Node<T> sub = iter.getCurrentSubNode();
+				PhTreeHelper.applyHcPos(iter.getCurrentPos(), node.getPostLen(), prefix);
+				min = Math.min(min, nextExpiry(sub, level + 1, Math.min(bound, min)));
+			} else {
+				min = Math.min(min, expiryOf.applyAsLong(iter.getCurrentPost().getValue()));
+			}
+		}
+		node.setMinExpiry(min);
+		return min;
+	}
+
+	private NodeIteratorNoGC<T> iterator(Node<T> node, int level) {
+		NodeIteratorNoGC<T> iter = iters[level];
+		if (iter == null) {
+			iter = new NodeIteratorNoGC<>(DIM, prefix);
+			iters[level] = iter;
+		}
+		PhTree8.checkAndApplyInfix(node, prefix, rangeMin, rangeMax);
+		iter.init(rangeMin, rangeMax, prefix, node, null);
+		return iter;
+	}
+}
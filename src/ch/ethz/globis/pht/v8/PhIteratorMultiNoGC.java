@@ -0,0 +1,360 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.v8;
+
+import java.util.NoSuchElementException;
+
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhFilter;
+import ch.ethz.globis.pht.PhTree.PhQueryMulti;
+import ch.ethz.globis.pht.PhTreeHelper;
+
+/**
+ * Query iterator for the union of several rectangular windows.
+ *
+ * The tree is traversed only once. For every node, the iterator determines which of the
+ * windows of the parent node still overlap with the prefix box of the node. Only these
+ * windows are passed on to sub-nodes, nodes without overlapping windows are skipped.
+ * Within a node, the bounding box of all remaining windows is used for HC-address masking.
+ * Every matching entry is returned exactly once, even if it is contained in several windows.
+ *
+ * Like {@link PhIteratorNoGC}, this iterator reuses PhEntry objects, see
+ * {@link #nextEntryReuse()}.
+ *
+ * @param <T>
+ */
+public final class PhIteratorMultiNoGC<T> implements PhQueryMulti<T> {
+
+	/**
+	 * Windows that are relevant for a given node and their bounding box.
+	 */
+	private static final class Level {
+		private int[] active;
+		private int nActive;
+		private final long[] min;
+		private final long[] max;
+		//filter for the entries of the node, see WindowFilter
+		private PhFilter filter;
+
+		Level(int DIM) {
+			min = new long[DIM];
+			max = new long[DIM];
+		}
+
+		void ensureCapacity(int n) {
+			if (active == null || active.length < n) {
+				active = new int[n];
+			}
+		}
+	}
+
+	/**
+	 * Accepts keys that are inside any of the windows of a level. This is used as filter 
+	 * for the entries of a node, unless there is only one window left.
+	 */
+	private final class WindowFilter implements PhFilter {
+		private final Level level;
+
+		WindowFilter(Level level) {
+			this.level = level;
+		}
+
+		@Override
+		public boolean isValid(long[] key) {
+			for (int i = 0; i < level.nActive; i++) {
+				if (isInside(level.active[i], key)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean isValid(int bitsToIgnore, long[] prefix) {
+			long maskMin = bitsToIgnore >= 64 ? 0 : (-1L) << bitsToIgnore;
+			for (int i = 0; i < level.nActive; i++) {
+				long[] min = mins[level.active[i]];
+				long[] max = maxs[level.active[i]];
+				boolean overlaps = true;
+				for (int d = 0; d < DIM && overlaps; d++) {
+					overlaps = min[d] <= (prefix[d] | ~maskMin) && max[d] >= (prefix[d] & maskMin);
+				}
+				if (overlaps) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private final int DIM;
+	private final NodeIteratorNoGC<T>[] stack;
+	private final Level[] levels;
+	private int size = 0;
+	private final long[] valTemplate;
+	private long[][] mins;
+	private long[][] maxs;
+	private final PhTree8<T> pht;
+	private final long[] nodeMin;
+	private final long[] nodeMax;
+
+	private PhEntry<T> result;
+	boolean isFinished = false;
+	//the entry returned by the last call to next(), for remove()
+	private PhEntry<T> lastReturned;
+	//after remove(), all entries before 'seekKey' are skipped
+	private boolean isSeeking = false;
+	private final long[] seekKey;
+
+	@SuppressWarnings("unchecked")
+	public PhIteratorMultiNoGC(PhTree8<T> pht) {
+		this.DIM = pht.getDim();
+		this.stack = (NodeIteratorNoGC<T>[]) new NodeIteratorNoGC<?>[PhTree8.DEPTH_64];
+		this.levels = new Level[PhTree8.DEPTH_64];
+		this.valTemplate = new long[DIM];
+		this.seekKey = new long[DIM];
+		this.nodeMin = new long[DIM];
+		this.nodeMax = new long[DIM];
+		this.pht = pht;
+	}
+
+	@Override
+	public void reset(long[] min, long[] max) {
+		reset(new long[][]{min}, new long[][]{max});
+	}
+
+	@Override
+	public void reset(long[][] mins, long[][] maxs) {
+		if (mins.length != maxs.length) {
+			throw new IllegalArgumentException("Invalid number of windows: " + mins.length +
+					" / " + maxs.length);
+		}
+		for (int i = 0; i < mins.length; i++) {
+			if (mins[i].length != DIM || maxs[i].length != DIM) {
+				throw new IllegalArgumentException("Invalid number of arguments: " +
+						mins[i].length + " / " + maxs[i].length + "  DIM=" + DIM);
+			}
+		}
+		this.mins = mins;
+		this.maxs = maxs;
+		this.isSeeking = false;
+		this.lastReturned = null;
+		restart();
+	}
+
+	private void restart() {
+		this.size = 0;
+		this.isFinished = false;
+
+		if (pht.getRoot() == null || mins.length == 0) {
+			//empty index or empty query
+			isFinished = true;
+			return;
+		}
+
+		if (prepare(pht.getRoot())) {
+			findNextElement();
+		} else {
+			isFinished = true;
+		}
+	}
+
+	private boolean isInside(int window, long[] key) {
+		long[] min = mins[window];
+		long[] max = maxs[window];
+		for (int d = 0; d < DIM; d++) {
+			if (key[d] < min[d] || key[d] > max[d]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean overlaps(int window) {
+		long[] min = mins[window];
+		long[] max = maxs[window];
+		for (int d = 0; d < DIM; d++) {
+			if (min[d] > nodeMax[d] || max[d] < nodeMin[d]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean prepare(Node<T> node) {
+		Level parent = size == 0 ? null : levels[size-1];
+		if (parent == null) {
+			node.getInfix(valTemplate);
+		} else if (!PhTree8.checkAndApplyInfix(node, valTemplate, parent.min, parent.max)) {
+			return false;
+		}
+
+		//prefix box of the node
+		int bitsToIgnore = node.getPostLen() + 1;
+		if (bitsToIgnore >= PhTree8.DEPTH_64) {
+			for (int d = 0; d < DIM; d++) {
+				nodeMin[d] = Long.MIN_VALUE;
+				nodeMax[d] = Long.MAX_VALUE;
+			}
+		} else {
+			long maskMin = (-1L) << bitsToIgnore;
+			for (int d = 0; d < DIM; d++) {
+				nodeMin[d] = valTemplate[d] & maskMin;
+				nodeMax[d] = valTemplate[d] | ~maskMin;
+			}
+		}
+
+		Level level = levels[size];
+		if (level == null) {
+			level = new Level(DIM);
+			level.filter = new WindowFilter(level);
+			levels[size] = level;
+		}
+		//remove windows that do not overlap with the node
+		int nActive = 0;
+		if (parent == null) {
+			level.ensureCapacity(mins.length);
+			for (int i = 0; i < mins.length; i++) {
+				if (overlaps(i)) {
+					level.active[nActive++] = i;
+				}
+			}
+		} else {
+			level.ensureCapacity(parent.nActive);
+			for (int i = 0; i < parent.nActive; i++) {
+				int w = parent.active[i];
+				if (overlaps(w)) {
+					level.active[nActive++] = w;
+				}
+			}
+		}
+		if (nActive == 0) {
+			return false;
+		}
+		level.nActive = nActive;
+
+		//bounding box of the remaining windows
+		System.arraycopy(mins[level.active[0]], 0, level.min, 0, DIM);
+		System.arraycopy(maxs[level.active[0]], 0, level.max, 0, DIM);
+		for (int i = 1; i < nActive; i++) {
+			long[] min = mins[level.active[i]];
+			long[] max = maxs[level.active[i]];
+			for (int d = 0; d < DIM; d++) {
+				level.min[d] = min[d] < level.min[d] ? min[d] : level.min[d];
+				level.max[d] = max[d] > level.max[d] ? max[d] : level.max[d];
+			}
+		}
+
+		NodeIteratorNoGC<T> ni = stack[size];
+		if (ni == null)  {
+			ni = new NodeIteratorNoGC<>(DIM, valTemplate);
+			stack[size] = ni;
+		}
+		size++;
+
+		//with only one window, the range check of the node iterator is sufficient
+		ni.init(level.min, level.max, valTemplate, node, nActive > 1 ? level.filter : null);
+		return true;
+	}
+
+	private void findNextElement() {
+		stackLoop:
+		while (size > 0) {
+			NodeIteratorNoGC<T> p = stack[size-1];
+			while (p.increment()) {
+				if (p.isNextSub()) {
+					PhTreeHelper.applyHcPos(p.getCurrentPos(), p.node().getPostLen(), valTemplate);
+					if (isSeeking && PhIteratorNoGC.isBeforeSeekKey(
+							valTemplate, seekKey, p.node().getPostLen())) {
+						continue;
+					}
+					if (prepare(p.getCurrentSubNode())) {
+						continue stackLoop;
+					} else {
+						// infix comparison failed or node has no matching entries
+						continue;
+					}
+				} else {
+					result = p.getCurrentPost();
+					if (isSeeking) {
+						if (PhIteratorNoGC.isBeforeSeekKey(result.getKey(), seekKey, 0)) {
+							continue;
+						}
+						isSeeking = false;
+					}
+					return;
+				}
+			}
+			// no matching (more) elements found
+			size--;
+		}
+		//finished
+		isFinished = true;
+	}
+
+	@Override
+	public long[] nextKey() {
+		long[] key = nextEntryReuse().getKey();
+		long[] ret = new long[key.length];
+		System.arraycopy(key, 0, ret, 0, key.length);
+		return ret;
+	}
+
+	@Override
+	public T nextValue() {
+		return nextEntryReuse().getValue();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !isFinished;
+	}
+
+	@Override
+	public PhEntry<T> nextEntry() {
+		return new PhEntry<T>(nextEntryReuse());
+	}
+
+	@Override
+	public T next() {
+		return nextEntryReuse().getValue();
+	}
+
+	@Override
+	public PhEntry<T> nextEntryReuse() {
+		if (isFinished) {
+			throw new NoSuchElementException();
+		}
+		PhEntry<T> ret = result;
+		findNextElement();
+		lastReturned = ret;
+		return ret;
+	}
+
+	/**
+	 * Removes the entry that was returned by the last call to next() from the tree.
+	 * As in {@link PhIteratorNoGC#remove()}, the traversal is restarted and skips all
+	 * entries that precede the next entry in z-order.
+	 */
+	@Override
+	public void remove() {
+		if (lastReturned == null) {
+			throw new IllegalStateException();
+		}
+		long[] key = lastReturned.getKey();
+		lastReturned = null;
+		if (isFinished) {
+			pht.remove(key);
+			return;
+		}
+		System.arraycopy(result.getKey(), 0, seekKey, 0, DIM);
+		pht.remove(key);
+		isSeeking = true;
+		restart();
+	}
+
+}
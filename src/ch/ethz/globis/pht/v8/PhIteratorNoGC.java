@@ -10,7 +10,9 @@ import java.util.NoSuchElementException;
 
 import ch.ethz.globis.pht.PhEntry;
 import ch.ethz.globis.pht.PhFilter;
+import ch.ethz.globis.pht.PhFilterRegion;
 import ch.ethz.globis.pht.PhTree.PhQuery;
+import ch.ethz.globis.pht.PhTreeConfig;
 import ch.ethz.globis.pht.PhTreeHelper;
 
 /**
@@ -45,24 +47,36 @@ public final class PhIteratorNoGC<T> implements PhQuery<T> {
 				return false;
 			}
 
-			if (checker != null) {
+			//The parent node may have found that the filter is not required anymore
+			PhFilter nodeChecker = size == 0 ? checker : stack[size-1].getChecker();
+			if (nodeChecker != null) {
 				long mask = (-1L) << (node.getPostLen() + 1);
 				for (int i = 0; i < valTemplate.length; i++) {
 					valTemplate[i] &= mask;  //TODO do somewhere else??
 				}
 				//skip this for postLen>=63
-				if (node.getPostLen() < (PhTree8.DEPTH_64-1) &&
-						!checker.isValid(node.getPostLen()+1, valTemplate)) {
-					return false;
+				if (node.getPostLen() < (PhTree8.DEPTH_64-1)) {
+					if (region != null) {
+						int r = region.classify(node.getPostLen()+1, valTemplate);
+						if (r == PhFilterRegion.OUTSIDE) {
+							return false;
+						}
+						if (r == PhFilterRegion.INSIDE) {
+							//all entries in this node and its sub-nodes pass the filter
+							nodeChecker = null;
+						}
+					} else if (!nodeChecker.isValid(node.getPostLen()+1, valTemplate)) {
+						return false;
+					}
 				}
 			}
 			NodeIteratorNoGC<T> ni = stack[size++];
 			if (ni == null)  {
-				ni = new NodeIteratorNoGC<>(DIM, valTemplate);
+				ni = new NodeIteratorNoGC<>(DIM, valTemplate, isValuesLong);
 				stack[size-1] = ni;
 			}
 			
-			ni.init(rangeMin, rangeMax, valTemplate, node, checker);
+			ni.init(rangeMin, rangeMax, valTemplate, node, nodeChecker);
 			return true;
 		}
 
@@ -81,21 +95,41 @@ public final class PhIteratorNoGC<T> implements PhQuery<T> {
 	private long[] rangeMin;
 	private long[] rangeMax;
 	private PhFilter checker;
+	private PhFilterRegion region;
 	private final PhTree8<T> pht;
 	
 	private PhEntry<T> result;
+	//for trees with VALUES_LONG/INT the value of 'result' is only set when it is requested
+	private final boolean isValuesLong;
+	private final boolean isValuesInt;
+	private long resultLong;
 	boolean isFinished = false;
+	//the entry returned by the last call to next(), for remove()
+	private PhEntry<T> lastReturned;
+	//after remove(), all entries before 'seekKey' are skipped
+	private boolean isSeeking = false;
+	private final long[] seekKey;
 	
 	public PhIteratorNoGC(PhTree8<T> pht, PhFilter checker) {
 		this.DIM = pht.getDim();
 		this.checker = checker;
+		this.region = (checker instanceof PhFilterRegion) ? (PhFilterRegion) checker : null;
 		this.stack = new PhIteratorStack();
 		this.valTemplate = new long[DIM];
+		this.seekKey = new long[DIM];
 		this.pht = pht;
+		this.isValuesLong = pht.isValuesPrimitive();
+		this.isValuesInt = pht.getValueType() == PhTreeConfig.VALUES_INT;
 	}	
 		
 	@Override
 	public void reset(long[] rangeMin, long[] rangeMax) {	
+		this.isSeeking = false;
+		this.lastReturned = null;
+		restart(rangeMin, rangeMax);
+	}
+
+	private void restart(long[] rangeMin, long[] rangeMax) {	
 		this.rangeMin = rangeMin;
 		this.rangeMax = rangeMax;
 		this.stack.size = 0;
@@ -124,6 +158,9 @@ public final class PhIteratorNoGC<T> implements PhQuery<T> {
 					//take care that it is only applied AFTER the previous subNodes has been traversed,
 					//otherwise we may mess up the valTemplate which is used in the previous Subnode.
 					PhTreeHelper.applyHcPos(p.getCurrentPos(), p.node().getPostLen(), valTemplate);
+					if (isSeeking && isBeforeSeekKey(valTemplate, seekKey, p.node().getPostLen())) {
+						continue;
+					}
 					if (stack.prepare(p.getCurrentSubNode())) {
 						continue stackLoop;
 					} else {
@@ -132,6 +169,15 @@ public final class PhIteratorNoGC<T> implements PhQuery<T> {
 					}
 				} else {
 					result = p.getCurrentPost();
+					if (isValuesLong) {
+						resultLong = p.getCurrentPostLong();
+					}
+					if (isSeeking) {
+						if (isBeforeSeekKey(result.getKey(), seekKey, 0)) {
+							continue;
+						}
+						isSeeking = false;
+					}
 					return;
 				}
 			}
@@ -177,19 +223,83 @@ public final class PhIteratorNoGC<T> implements PhQuery<T> {
 	 * next call to next(). After that they may change state.
 	 * @return The next entry
 	 */
+	@SuppressWarnings("unchecked")
 	@Override
 	public PhEntry<T> nextEntryReuse() {
 		if (isFinished) {
 			throw new NoSuchElementException();
 		}
 		PhEntry<T> ret = result;
+		if (isValuesLong) {
+			ret.setValue((T) Node.toValue(resultLong, isValuesInt));
+		}
 		findNextElement();
+		lastReturned = ret;
 		return ret;
 	}
 
+	/**
+	 * Primitive version of {@link #nextValue()} for trees with 
+	 * {@link PhTreeConfig#VALUES_LONG} or {@link PhTreeConfig#VALUES_INT}, the value is
+	 * not boxed.
+	 * @param keyOut If not {@code null}, the key of the entry is copied into this array.
+	 * @return The next value
+	 */
+	public long nextValueLong(long[] keyOut) {
+		if (!isValuesLong) {
+			throw new UnsupportedOperationException();
+		}
+		if (isFinished) {
+			throw new NoSuchElementException();
+		}
+		PhEntry<T> ret = result;
+		long value = resultLong;
+		if (keyOut != null) {
+			System.arraycopy(ret.getKey(), 0, keyOut, 0, DIM);
+		}
+		findNextElement();
+		lastReturned = ret;
+		return value;
+	}
+
+	/**
+	 * Removes the entry that was returned by the last call to next() from the tree.
+	 * The removal may restructure the tree, so the traversal is restarted and skips
+	 * all sub-nodes and entries that precede the next entry in z-order.
+	 */
 	@Override
 	public void remove() {
-		throw new UnsupportedOperationException();
+		if (lastReturned == null) {
+			throw new IllegalStateException();
+		}
+		long[] key = lastReturned.getKey();
+		lastReturned = null;
+		if (isFinished) {
+			pht.remove(key);
+			return;
+		}
+		System.arraycopy(result.getKey(), 0, seekKey, 0, DIM);
+		pht.remove(key);
+		isSeeking = true;
+		restart(rangeMin, rangeMax);
+	}
+
+	/**
+	 * Compares the bits of 'key' above 'postLen' with those of 'seekKey' in z-order.
+	 * @return {@code true} if all keys with this prefix precede 'seekKey'
+	 */
+	static boolean isBeforeSeekKey(long[] key, long[] seekKey, int postLen) {
+		long mask = (-1L) << postLen;
+		int dMax = 0;
+		long xMax = (key[0] ^ seekKey[0]) & mask;
+		for (int d = 1; d < key.length; d++) {
+			long x = (key[d] ^ seekKey[d]) & mask;
+			if (Long.compareUnsigned(xMax, x) < 0 && Long.compareUnsigned(xMax, xMax ^ x) < 0) {
+				dMax = d;
+				xMax = x;
+			}
+		}
+		return Long.compareUnsigned(key[dMax] & mask, seekKey[dMax] & mask) < 0;
 	}
 	
 }
\ No newline at end of file
@@ -6,6 +6,7 @@
  */
 package ch.ethz.globis.pht.v8;
 
+import java.util.function.BiFunction;
 
 public interface PhOperations<T> {
 	
@@ -18,5 +19,12 @@ public interface PhOperations<T> {
 
     public T remove(long... key);
 
+    public long putLong(long[] key, long value, long notFound);
+
+    public long removeLong(long[] key, long notFound);
+
     public T update(long[] oldKey, long[] newKey);
+
+    public T compute(long[] key, boolean doIfAbsent, boolean doIfPresent, 
+    		BiFunction<long[], ? super T, ? extends T> f);
 }
\ No newline at end of file
@@ -10,9 +10,10 @@ import static ch.ethz.globis.pht.PhTreeHelper.applyHcPos;
 import static ch.ethz.globis.pht.PhTreeHelper.getMaxConflictingBits;
 import static ch.ethz.globis.pht.PhTreeHelper.posInArray;
 
-import org.zoodb.index.critbit.CritBit64.CBIterator;
-import org.zoodb.index.critbit.CritBit64.Entry;
+import java.util.function.BiFunction;
 
+import ch.ethz.globis.pht.PhTreeConfig;
+import ch.ethz.globis.pht.v8.NiIndex.NiIterator;
 import ch.ethz.globis.pht.v8.PhTree8.NodeEntry;
 
 /**
@@ -52,6 +53,7 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
 
     @Override
     public T put(long[] key, T value) {
+        value = placeholder(value);
         if (tree.getRoot() == null) {
             tree.insertRoot(key, value);
             return null;
@@ -59,6 +61,73 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
         return insert(key, value, tree.getRoot(), null, -1);
     }
 
+    /**
+     * Primitive version of {@link #put(long[], Object)} for trees with primitive values. 
+     * This follows the same steps as insert(), but never creates a boxed value.
+     */
+    @Override
+    public long putLong(long[] key, long value, long notFound) {
+        if (tree.getRoot() == null) {
+            tree.insertRootLong(key, value);
+            return notFound;
+        }
+        final int DIM = key.length;
+        Node<T> node = tree.getRoot();
+        while (true) {
+            long pos = posInArray(key, node.getPostLen());
+            NodeEntry<T> e = null;
+            Node<T> sub;
+            if (node.isPostNI()) {
+                e = node.getChildNI(pos);
+                sub = e != null ? e.node : null;
+            } else {
+                sub = node.getPostLen() > 0 ? node.getSubNode(pos, DIM) : null;
+            }
+            if (sub != null) {
+                if (sub.hasInfixes() && conflictingInfix(sub, key)) {
+                    //splitting may be required, the node has infixes
+                    Node<T> newNode = split(key, sub, node, pos);
+                    newNode.addPostLong(posInArray(key, newNode.getPostLen()), key, value);
+                    tree.increaseNrEntries();
+                    return notFound;
+                }
+                node = sub;
+                continue;
+            }
+
+            if (node.isPostNI()) {
+                if (e == null) {
+                    node.addPostLongPOB(pos, -1, key, value);
+                } else if (node.postEquals(e.getKey(), key)) {
+                    //value exists
+                    return node.updatePostValueLongPOB(-1, pos, DIM, value);
+                } else {
+                    Node<T> sub2 = calcPostfixesLong(key, value, e.getKey(), e.getValueLong(), 
+                    		node.getPostLen());
+                    node.niReplacePostWithSub(pos, sub2, DIM);
+                }
+                tree.increaseNrEntries();
+                return notFound;
+            }
+
+            int pob = node.getPostOffsetBits(pos, DIM);
+            if (pob < 0) {
+                node.addPostLongPOB(pos, pob, key, value);
+            } else if (node.postEqualsPOB(pob, pos, key)) {
+                //value exists, this is always the case for leaf nodes
+                return node.updatePostValueLongPOB(pob, pos, DIM, value);
+            } else {
+                long[] prevKey = new long[DIM];
+                long prevVal = node.getPostLongPOB(pob, pos, prevKey);
+                Node<T> sub2 = calcPostfixesLong(key, value, prevKey, prevVal, node.getPostLen());
+                node.removePostPOB(pos, pob, DIM);
+                node.addSubNode(pos, sub2, DIM);
+            }
+            tree.increaseNrEntries();
+            return notFound;
+        }
+    }
+
     /*
             Insertion navigation methods.
      */
@@ -124,7 +193,7 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
             //maybe it's the same value that we want to add?
             if (node.postEquals(e.getKey(), key)) {
                 //value exists
-                e.setPost(e.getKey(), value);
+                node.updatePostValuePOB(-1, pos, key, key.length, value);
                 return prevVal;
             }
 
@@ -133,9 +202,7 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
             Node<T> sub = calcPostfixes(key, value, e.getKey(), prevVal, node.getPostLen());
 
             //replace value with new leaf
-            node.setPostCount(node.getPostCount()-1);
-            node.setSubCount(node.getSubCount()+1);
-            e.setNode(sub);
+            node.niReplacePostWithSub(pos, sub, key.length);
             tree.increaseNrEntries();
             return null;
         }
@@ -154,6 +221,22 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
      */
     protected T insertSplit(long[] key, T value, Node<T> node, Node<T> parent,
                   long posInParent) {
+        Node<T> newNode = split(key, node, parent, posInParent);
+
+        //insert key into new node
+        long pos = posInArray(key, newNode.getPostLen());
+        newNode.addPost(pos, key, value);
+
+        tree.increaseNrEntries();
+        return null;
+    }
+
+    /**
+     * Insert a new node between 'parent' and 'node', see 
+     * {@link #insertSplit(long[], Object, Node, Node, long)}.
+     * @return The new node, the caller has to add the key to it.
+     */
+    private Node<T> split(long[] key, Node<T> node, Node<T> parent, long posInParent) {
         int DIM = key.length;
 
         //check if splitting is necessary
@@ -188,29 +271,16 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
             newNode.writeInfix(infix);
         }
 
-        int oldInfLen = node.getInfixLen();
-        node.setInfixLen(newSubInfLen);
-
         //cut off existing prefixes in sub-node
-        Bits.removeBits(node.ba, node.getBitPos_Infix(), (oldInfLen-newSubInfLen)*DIM);
-        node.writeInfix(infix);
-        //ensure that subNode has correct byte[] size
-        node.ba = Bits.arrayTrim(node.ba, node.calcArraySizeTotalBits(
-                node.getPostCount(), DIM));
+        node.truncateInfix(newSubInfLen, infix, DIM);
 
 
         //insert the sub into new node
         newNode.addSubNode(posOfNewSub, node, DIM);
 
-        //insert key into new node
-        long pos = posInArray(key, newPostLen);
-        newNode.addPost(pos, key, value);
-
-        tree.increaseNrEntries();
-
         parent.replaceSub(posInParent, newNode, DIM);
 
-        return null;
+        return newNode;
     }
 
     protected boolean conflictingInfix(Node<T> node, long[] key) {
@@ -286,6 +356,19 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
         return node;
     }
 
+    private Node<T> calcPostfixesLong(long[] key1, long val1, long[] key2, long val2, 
+    		int parentPostLen) {
+        int mcb = getMaxConflictingBits(key1, key2, parentPostLen);
+        int infLen = parentPostLen - mcb;
+        int postLen = mcb-1;
+        Node<T> node = createNode(tree, infLen, postLen, 2);
+
+        node.writeInfix(key1);
+        node.addPostLong(posInArray(key1, postLen), key1, val1);
+        node.addPostLong(posInArray(key2, postLen), key2, val2);
+        return node;
+    }
+
     @Override
     public T remove(long... key) {
         if (tree.getRoot() == null) {
@@ -294,6 +377,58 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
         return delete(key, tree.getRoot(), null, PhTree8.UNKNOWN, null, null);
     }
 
+    /**
+     * Primitive version of {@link #remove(long...)} for trees with primitive values. 
+     * This follows the same steps as delete(), but never creates a boxed value.
+     */
+    @Override
+    public long removeLong(long[] key, long notFound) {
+        final int DIM = key.length;
+        Node<T> node = tree.getRoot();
+        Node<T> parent = null;
+        long posInParent = PhTree8.UNKNOWN;
+        while (node != null) {
+            if (node.getInfixLen() > 0 && !checkInfixMatch(node, key)) {
+                return notFound;
+            }
+            final long pos = posInArray(key, node.getPostLen());
+            if (node.isPostNI()) {
+                NodeEntry<T> e = node.getChildNI(pos);
+                if (e == null) {
+                    return notFound;
+                }
+                if (e.node != null) {
+                    parent = node;
+                    posInParent = pos;
+                    node = e.node;
+                    continue;
+                }
+                if (!node.postEquals(e.getKey(), key)) {
+                    return notFound;
+                }
+                long oldValue = e.getValueLong();
+                removePostNI(node, parent, posInParent, pos, DIM);
+                return oldValue;
+            }
+
+            Node<T> sub = node.getSubNode(pos, DIM);
+            if (sub != null) {
+                parent = node;
+                posInParent = pos;
+                node = sub;
+                continue;
+            }
+            int pob = node.getPostOffsetBits(pos, DIM);
+            if (pob < 0 || !node.postEqualsPOB(pob, pos, key)) {
+                return notFound;
+            }
+            long oldValue = node.getPostValueLongPOB(pob, pos, DIM);
+            removePost(node, parent, posInParent, pos, pob, DIM);
+            return oldValue;
+        }
+        return notFound;
+    }
+
     /*
         Delete navigation methods.
 
@@ -392,16 +527,35 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
             int bitPosOfDiff = Long.SIZE-Long.numberOfLeadingZeros(diff);
             if (bitPosOfDiff <= node.getPostLen()) {
                 //replace
-                NodeEntry<T> ne = node.niGet(pos);
-                T oldValue = ne.getValue();
-                ne.setPost(newKey.clone(), oldValue);
+                T oldValue = e.getValue();
+                node.replacePost(-1, pos, newKey, oldValue);
                 return oldValue;
+            } else if (bitPosOfDiff == node.getPostLen()+1) {
+                //only the HC position changed, move it if the new slot is empty
+                long newPos = posInArray(newKey, node.getPostLen());
+                if (node.getChildNI(newPos) == null) {
+                    T oldValue = e.getValue();
+                    node.movePostPOB(pos, -1, newPos, -1, newKey, DIM);
+                    return oldValue;
+                }
+                insertRequired[0] = bitPosOfDiff;
             } else {
                 insertRequired[0] = bitPosOfDiff;
             }
         }
 
         //okay we have something to delete
+        T oldValue = e.getValue();
+        removePostNI(node, parent, posInParent, pos, DIM);
+        return oldValue;
+    }
+
+    /**
+     * Remove an existing post from an NI node, this removes the node if it has only
+     * one other entry.
+     */
+    protected void removePostNI(Node<T> node, Node<T> parent, long posInParent, long pos, 
+    		int DIM) {
         tree.decreaseNrEntries();
 
         //check if merging is necessary (check children count || isRootNode)
@@ -411,44 +565,42 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
             //no merging required
             //value exists --> remove it
             node.removePostPOB(pos, -1, DIM);  //do not call-NI directly, we may have to deconstruct
-            return e.getValue();
+            return;
         }
 
-        //The following code is never used because NI implies nP+nS > 50
+        //The following code is only used with very small NI thresholds
 
         //okay, at his point we have a post that matches and (since it matches) we need to remove
         //the local node because it contains at most one other entry and it is not the root node.
         tree.decreaseNrNodes();
 
-        T oldValue = e.getValue();
-
         //locate the other entry
-        CBIterator<NodeEntry<T>> iter = node.niIterator();
-        Entry<NodeEntry<T>> ie = iter.nextEntry();
-        if (ie.key() == pos) {
+        NiIterator<T> iter = node.niIterator();
+        NodeEntry<T> e = iter.next();
+        if (iter.pos() == pos) {
             //pos2 is the entry to be deleted, find the other entry for pos2
-            ie = iter.nextEntry();
+            e = iter.next();
         }
+        long pos2 = iter.pos();
 
-        e = ie.value();
         if (e.getKey() != null) {
             //this is also a post
             long[] newPost = e.getKey();
             node.getInfixNoOverwrite(newPost);
-            T val = e.getValue();
-            applyHcPos(ie.key(), node.getPostLen(), newPost);
+            //only one of them is used, see Node.isValuesPrimitive()
+            T val = node.isValuesPrimitive() ? null : e.getValue();
+            long lVal = node.isValuesPrimitive() ? e.getValueLong() : 0;
+            applyHcPos(pos2, node.getPostLen(), newPost);
             parent.removeSub(posInParent, DIM);
-            node.setRemoved(true);
-            parent.addPost(posInParent, newPost, val);
-            return oldValue;
+            node.discard(DIM);
+            parent.addPost(posInParent, newPost, val, lVal);
+            return;
         }
 
         //connect sub to parent
         Node<T> sub2 = e.node;
 
-        performDeletionWithSub(node, parent, posInParent, sub2, ie.key(), DIM);
-
-        return oldValue;
+        performDeletionWithSub(node, parent, posInParent, sub2, pos2, DIM);
     }
 
     T performDeletion(long[] key, Node<T> node, Node<T> parent, long posInParent,
@@ -482,12 +634,32 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
                 T oldValue = node.getPostValuePOB(pob, pos, DIM);
                 node.replacePost(pob, pos, newKey, oldValue);
                 return oldValue;
+            } else if (bitPosOfDiff == node.getPostLen()+1) {
+                //only the HC position changed, move it if the new slot is empty
+                long newPos = posInArray(newKey, node.getPostLen());
+                int newPob = node.getPostOffsetBits(newPos, DIM);
+                if (newPob < 0 && node.getSubNode(newPos, DIM) == null) {
+                    T oldValue = node.getPostValuePOB(pob, pos, DIM);
+                    node.movePostPOB(pos, pob, newPos, newPob, newKey, DIM);
+                    return oldValue;
+                }
+                insertRequired[0] = bitPosOfDiff;
             } else {
                 insertRequired[0] = bitPosOfDiff;
             }
         }
 
         //okay we have something to delete
+        T oldValue = node.getPostValuePOB(pob, pos, DIM);
+        removePost(node, parent, posInParent, pos, pob, DIM);
+        return oldValue;
+    }
+
+    /**
+     * Remove an existing post, this removes the node if it has only one other entry.
+     */
+    protected void removePost(Node<T> node, Node<T> parent, long posInParent, long pos, 
+    		int pob, int DIM) {
         tree.decreaseNrEntries();
 
         //check if merging is necessary (check children count || isRootNode)
@@ -496,17 +668,14 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
         if (parent == null || nP + nS > 2) {
             //no merging required
             //value exists --> remove it
-            T ret = node.getPostValuePOB(pob, pos, DIM);
             node.removePostPOB(pos, pob, DIM);
-            return ret;
+            return;
         }
 
         //okay, at his point we have a post that matches and (since it matches) we need to remove
         //the local node because it contains at most one other entry and it is not the root node.
         tree.decreaseNrNodes();
 
-        T oldValue = node.getPostValue(pos, DIM);
-
         //locate the other entry
         NodeIteratorFull<T> iter = new NodeIteratorFull<T>(node, DIM, null);
         long pos2 = iter.getCurrentPos();
@@ -522,20 +691,25 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
             //this is also a post
             long[] newPost = new long[DIM];
             node.getInfixNoOverwrite(newPost);
-            T val = node.getPost(pos2, newPost);
+            //only one of them is used, see Node.isValuesPrimitive()
+            T val = null;
+            long lVal = 0;
+            if (node.isValuesPrimitive()) {
+                lVal = node.getPostLong(pos2, newPost);
+            } else {
+                val = node.getPost(pos2, newPost);
+            }
             applyHcPos(pos2, node.getPostLen(), newPost);
             parent.removeSub(posInParent, DIM);
-            parent.addPost(posInParent, newPost, val);
-            node.setRemoved(true);
-            return oldValue;
+            parent.addPost(posInParent, newPost, val, lVal);
+            node.discard(DIM);
+            return;
         }
 
         //connect sub to parent
         Node<T> sub2 = getSubNode(node, pos2, posSubLHC,DIM);
 
         performDeletionWithSub(node, parent, posInParent, sub2, pos2, DIM);
-
-        return oldValue;
     }
 
     protected void performDeletionWithSub(Node<T> node, Node<T> parent, 
@@ -549,7 +723,7 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
         
         //update parent, the position is the same
         parent.replaceSub(posInParent, sub2, DIM);
-        node.setRemoved(true);
+        node.discard(DIM);
     }
 
     protected Node<T> getSubNode(Node<T> node, long pos2, int posSubLHC, int dim) {
@@ -572,6 +746,494 @@ public class PhOperationsSimple<T> implements PhOperations<T> {
         return v;
     }
 
+    /**
+     * Read-modify-write in a single descent. The function is called with the current value
+     * ({@code null} if the key is absent) if the key is absent and {@code doIfAbsent} is set,
+     * or if the key exists and {@code doIfPresent} is set. If the function returns
+     * {@code null}, an existing entry is removed, otherwise the value is inserted or
+     * replaced in place.
+     * @param key
+     * @param doIfAbsent
+     * @param doIfPresent
+     * @param f
+     * @return the new value, or the current value if the function was not called
+     */
+    @Override
+    public T compute(long[] key, boolean doIfAbsent, boolean doIfPresent, 
+    		BiFunction<long[], ? super T, ? extends T> f) {
+        if (tree.getRoot() == null) {
+            if (!doIfAbsent) {
+                return null;
+            }
+            T v = f.apply(key, null);
+            if (v != null) {
+                tree.insertRoot(key, v);
+            }
+            return v;
+        }
+        return compute(key, tree.getRoot(), null, PhTree8.UNKNOWN, doIfAbsent, doIfPresent, f);
+    }
+
+    protected T compute(long[] key, Node<T> node, Node<T> parent, long posInParent,
+    		boolean doIfAbsent, boolean doIfPresent, 
+    		BiFunction<long[], ? super T, ? extends T> f) {
+        int DIM = key.length;
+        long pos = posInArray(key, node.getPostLen());
+        if (node.isPostNI()) {
+            return computeNI(key, node, parent, posInParent, pos, doIfAbsent, doIfPresent, f);
+        }
+        Node<T> sub = node.getPostLen() > 0 ? node.getSubNode(pos, DIM) : null;
+        if (sub != null) {
+            if (sub.hasInfixes() && conflictingInfix(sub, key)) {
+                //key is absent, the new entry splits the infix of the sub-node 
+                if (!doIfAbsent) {
+                    return null;
+                }
+                T v = f.apply(key, null);
+                if (v != null) {
+                    insertSplit(key, v, sub, node, pos);
+                }
+                return v;
+            }
+            return compute(key, sub, node, pos, doIfAbsent, doIfPresent, f);
+        }
+
+        int pob = node.getPostOffsetBits(pos, DIM);
+        if (pob >= 0 && node.postEqualsPOB(pob, pos, key)) {
+            //key exists
+            T old = node.getPostValuePOB(pob, pos, DIM);
+            if (!doIfPresent) {
+                return old;
+            }
+            T v = f.apply(key, old);
+            if (v == null) {
+                performDeletion(key, node, parent, posInParent, null, null, pos);
+            } else {
+                node.updatePostValuePOB(pob, pos, key, DIM, v);
+            }
+            return v;
+        }
+
+        //key is absent
+        if (!doIfAbsent) {
+            return null;
+        }
+        T v = f.apply(key, null);
+        if (v != null) {
+            if (node.getPostLen() > 0) {
+                insertNoSub(key, v, node, pos, parent, posInParent);
+            } else {
+                insertLeaf(key, v, node, pos);
+            }
+        }
+        return v;
+    }
+
+    private T computeNI(long[] key, Node<T> node, Node<T> parent, long posInParent, long pos,
+    		boolean doIfAbsent, boolean doIfPresent, 
+    		BiFunction<long[], ? super T, ? extends T> f) {
+        NodeEntry<T> e = node.getChildNI(pos);
+        if (e != null && e.node != null) {
+            Node<T> sub = e.node;
+            if (sub.hasInfixes() && conflictingInfix(sub, key)) {
+                if (!doIfAbsent) {
+                    return null;
+                }
+                T v = f.apply(key, null);
+                if (v != null) {
+                    insertSplit(key, v, sub, node, pos);
+                }
+                return v;
+            }
+            return compute(key, sub, node, pos, doIfAbsent, doIfPresent, f);
+        }
+
+        if (e != null && node.postEquals(e.getKey(), key)) {
+            //key exists
+            T old = e.getValue();
+            if (!doIfPresent) {
+                return old;
+            }
+            T v = f.apply(key, old);
+            if (v == null) {
+                performDeletionNI(tree, key, e, node, parent, posInParent, null, null, pos);
+            } else {
+                node.updatePostValuePOB(-1, pos, key, key.length, v);
+            }
+            return v;
+        }
+
+        //key is absent
+        if (!doIfAbsent) {
+            return null;
+        }
+        T v = f.apply(key, null);
+        if (v != null) {
+            performInsertionNI(tree, key, v, node, e, pos);
+        }
+        return v;
+    }
+
+    /**
+     * Remove all entries inside the given rectangle. Sub-nodes that lie completely inside
+     * the rectangle are detached as a whole, their entries are not compared with the
+     * rectangle. discardSubTree() still traverses the detached sub-trees to update the
+     * entry count and the memory statistics.
+     * @param min
+     * @param max
+     * @return the number of removed entries
+     */
+    public int removeRange(long[] min, long[] max) {
+        if (tree.getRoot() == null) {
+            return 0;
+        }
+        int n0 = tree.size();
+        removeRange(tree.getRoot(), null, PhTree8.UNKNOWN, min, max, new long[min.length]);
+        return n0 - tree.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void removeRange(Node<T> node, Node<T> parent, long posInParent, 
+    		long[] min, long[] max, long[] prefix) {
+        final int DIM = min.length;
+
+        //first collect matching entries, the node is modified afterwards
+        long[] postPos = new long[node.getPostCount()];
+        long[] subPos = new long[node.getSubCount()];
+        Node<T>[] subs = (Node<T>[]) new Node<?>[node.getSubCount()];
+        int nPosts = 0;
+        int nSubs = 0;
+        NodeIteratorNoGC<T> iter = new NodeIteratorNoGC<>(DIM, prefix);
+        iter.init(min, max, prefix, node, null);
+        while (iter.increment()) {
+            if (iter.isNextSub()) {
+                subPos[nSubs] = iter.getCurrentPos();
+                subs[nSubs++] = iter.getCurrentSubNode();
+            } else {
+                postPos[nPosts++] = posInArray(iter.getCurrentPost().getKey(), node.getPostLen());
+            }
+        }
+
+        for (int i = 0; i < nSubs; i++) {
+            Node<T> sub = subs[i];
+            applyHcPos(subPos[i], node.getPostLen(), prefix);
+            if (!PhTree8.checkAndApplyInfix(sub, prefix, min, max)) {
+                continue;
+            }
+            if (isNodeInside(sub, prefix, min, max)) {
+                //drop the whole sub-tree
+                int[] counts = new int[2];
+                discardSubTree(sub, DIM, counts);
+                node.removeSub(subPos[i], DIM);
+                tree.adjustCounts(counts[0], counts[1]);
+            } else {
+                removeRange(sub, node, subPos[i], min, max, prefix);
+            }
+        }
+
+        for (int i = 0; i < nPosts; i++) {
+            int pob = node.getPostOffsetBits(postPos[i], DIM);
+            node.removePostPOB(postPos[i], pob, DIM);
+            tree.decreaseNrEntries();
+        }
+
+        if (parent != null) {
+            mergeIfRequired(node, parent, posInParent, DIM);
+        }
+    }
+
+    private static boolean isNodeInside(Node<?> node, long[] prefix, long[] min, long[] max) {
+        long maskMin = (-1L) << (node.getPostLen() + 1);
+        for (int d = 0; d < min.length; d++) {
+            if ((prefix[d] & maskMin) < min[d] || (prefix[d] | ~maskMin) > max[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Count the posts and nodes of a sub-tree that is about to be removed and discard its nodes.
+     */
+    private void discardSubTree(Node<T> node, int DIM, int[] counts) {
+        counts[0] += node.getPostCount();
+        counts[1]++;
+        if (node.getSubCount() > 0) {
+            for (NodeIteratorFull<T> it = new NodeIteratorFull<>(node, DIM, null); 
+            		it.hasNext(); it.increment()) {
+                if (it.isNextSub()) {
+                    discardSubTree(it.getCurrentSubNode(), DIM, counts);
+                }
+            }
+        }
+        node.discard(DIM);
+    }
+
+    /**
+     * Remove a node that has less than two entries left and move the remaining entry 
+     * to the parent.
+     */
+    private void mergeIfRequired(Node<T> node, Node<T> parent, long posInParent, int DIM) {
+        int nChildren = node.getPostCount() + node.getSubCount();
+        if (nChildren > 1) {
+            return;
+        }
+        tree.decreaseNrNodes();
+        if (nChildren == 0) {
+            parent.removeSub(posInParent, DIM);
+            node.discard(DIM);
+            return;
+        }
+
+        NodeIteratorFull<T> iter = new NodeIteratorFull<T>(node, DIM, null);
+        long pos2 = iter.getCurrentPos();
+        if (!iter.isNextSub()) {
+            //move the post to the parent
+            long[] newPost = new long[DIM];
+            node.getInfixNoOverwrite(newPost);
+            T val = node.getPost(pos2, newPost);
+            applyHcPos(pos2, node.getPostLen(), newPost);
+            parent.removeSub(posInParent, DIM);
+            parent.addPost(posInParent, newPost, val);
+            node.discard(DIM);
+            return;
+        }
+
+        //connect sub to parent
+        performDeletionWithSub(node, parent, posInParent, iter.getCurrentSubNode(), pos2, DIM);
+    }
+
+    /**
+     * State of a batch of updates, see {@link #updateAll(long[][], long[][], int[], int)}.
+     */
+    private static final class UpdateBatch {
+        final long[][] oldKeys;
+        final long[][] newKeys;
+        //update indexes in z-order of the old keys, also used to return removed entries
+        final int[] ids;
+        //highest bit in which the old and the new key differ, +1
+        final int[] diffBits;
+        //values of removed entries until they are inserted again
+        final Object[] values;
+        //the order of 'ids' is exact for nodes with at least this postLen
+        final int exactPostLen;
+        int nUpdated = 0;
+
+        UpdateBatch(long[][] oldKeys, long[][] newKeys, int[] ids, int exactPostLen) {
+            this.oldKeys = oldKeys;
+            this.newKeys = newKeys;
+            this.ids = ids;
+            this.exactPostLen = exactPostLen;
+            this.diffBits = new int[oldKeys.length];
+            this.values = new Object[oldKeys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                long diff = 0;
+                for (int d = 0; d < oldKeys[i].length; d++) {
+                    diff |= oldKeys[i][d] ^ newKeys[i][d];
+                }
+                diffBits[i] = Long.SIZE - Long.numberOfLeadingZeros(diff);
+            }
+        }
+    }
+
+    /**
+     * Update the keys of several entries in a single pass over the tree.
+     * 
+     * The updates are grouped by the nodes that contain their old keys, every group of
+     * updates descends only once from the root. Posts whose new key stays in the same node
+     * are changed in place, this includes moves to empty HC positions. All other posts 
+     * are removed and inserted again at the lowest node that contains the old and the 
+     * new key, after all updates below this node are done. 
+     * A node that has less than two entries left is merged into its parent only once, 
+     * after all updates below it are done and before entries are inserted again. 
+     * 
+     * @param oldKeys
+     * @param newKeys
+     * @param ids indexes of the updates in z-order of the old keys, the array is modified
+     * @param exactPostLen the z-order of 'ids' is exact for nodes with at least this
+     * postLen, see {@link PhCursor8#sortByZOrder(long[][], int[])}
+     * @return the number of updated entries
+     */
+    public int updateAll(long[][] oldKeys, long[][] newKeys, int[] ids, int exactPostLen) {
+        if (tree.getRoot() == null || ids.length == 0) {
+            return 0;
+        }
+        UpdateBatch b = new UpdateBatch(oldKeys, newKeys, ids, exactPostLen);
+        //the root contains all keys, so all removed entries are inserted again
+        updateAll(b, tree.getRoot(), null, PhTree8.UNKNOWN, 0, ids.length);
+        return b.nUpdated;
+    }
+
+    /**
+     * Apply the updates ids[from..to) whose old keys have the prefix of 'node'.
+     * @return the number of removed entries whose new key does not have the prefix 
+     * of 'node', their indexes are moved to ids[from..from+n)
+     */
+    @SuppressWarnings("unchecked")
+    private int updateAll(UpdateBatch b, Node<T> node, Node<T> parent, long posInParent,
+            int from, int to) {
+        final int DIM = tree.getDim();
+        final int postLen = node.getPostLen();
+        //ids[from..from+nRemoved) are removed entries, this never overtakes 'i'
+        int nRemoved = 0;
+        int i = from;
+        while (i < to) {
+            int id = b.ids[i];
+            long[] key = b.oldKeys[id];
+            if (node.getInfixLen() > 0 && !checkInfixMatch(node, key)) {
+                //the key does not exist
+                i++;
+                continue;
+            }
+            long pos = posInArray(key, postLen);
+            Node<T> sub = node.getSubNode(pos, DIM);
+            if (sub == null) {
+                if (updatePost(b, node, pos, id)) {
+                    b.ids[from + nRemoved++] = id;
+                }
+                i++;
+                continue;
+            }
+
+            int j = runEnd(b, node, pos, i, to);
+            int n = updateAll(b, sub, node, pos, i, j);
+            mergeIfRequired(sub, node, pos, DIM);
+            System.arraycopy(b.ids, i, b.ids, from + nRemoved, n);
+            nRemoved += n;
+            i = j;
+        }
+
+        //insert the entries whose new key has the prefix of this node
+        int nOut = 0;
+        for (int k = from; k < from + nRemoved; k++) {
+            int id = b.ids[k];
+            if (b.diffBits[id] <= postLen + 1) {
+                insert(b.newKeys[id], placeholder((T) b.values[id]), node, parent, posInParent);
+                b.values[id] = null;
+                b.nUpdated++;
+            } else {
+                b.ids[from + nOut++] = id;
+            }
+        }
+        return nOut;
+    }
+
+    /**
+     * @return the end of the run of updates ids[i..j) that continue in the same sub-node
+     * as ids[i]
+     */
+    private int runEnd(UpdateBatch b, Node<T> node, long pos, int i, int to) {
+        if (node.getPostLen() < b.exactPostLen) {
+            int j = i + 1;
+            while (j < to && isInSub(b, node, pos, b.ids[j])) {
+                j++;
+            }
+            return j;
+        }
+        //The run is consecutive, find its end with an exponential search. 
+        //Runs are usually short, this avoids reading all remaining keys.
+        int lo = i + 1;
+        int step = 1;
+        while (lo < to && isInSub(b, node, pos, b.ids[lo])) {
+            lo = i + 1 + step;
+            step <<= 1;
+        }
+        //ids[lo] is outside the run or lo>=to, ids[i+step/2] was inside
+        int hi = lo < to ? lo : to;
+        lo = i + 1 + (step >> 2);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (isInSub(b, node, pos, b.ids[mid])) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private boolean isInSub(UpdateBatch b, Node<T> node, long pos, int id) {
+        long[] key = b.oldKeys[id];
+        return posInArray(key, node.getPostLen()) == pos
+                && (node.getInfixLen() == 0 || checkInfixMatch(node, key));
+    }
+
+    /**
+     * Apply an update to a post of 'node'. The post is changed in place if the new key
+     * stays in the node and the new HC position is empty, otherwise it is removed without
+     * merging the node.
+     * @return {@code true} if the post was removed and has to be inserted again
+     */
+    private boolean updatePost(UpdateBatch b, Node<T> node, long pos, int id) {
+        final int DIM = tree.getDim();
+        long[] key = b.oldKeys[id];
+        long[] newKey = b.newKeys[id];
+        int pob = node.getPostOffsetBits(pos, DIM);
+        if (pob < 0 || !node.postEqualsPOB(pob, pos, key)) {
+            //the key does not exist
+            return false;
+        }
+        T value = node.getPostValuePOB(pob, pos, DIM);
+        int bitPosOfDiff = b.diffBits[id];
+        if (bitPosOfDiff <= node.getPostLen()) {
+            node.replacePost(pob, pos, newKey, value);
+            b.nUpdated++;
+            return false;
+        }
+        if (bitPosOfDiff == node.getPostLen()+1) {
+            long newPos = posInArray(newKey, node.getPostLen());
+            int newPob = node.getPostOffsetBits(newPos, DIM);
+            if (newPob < 0 && node.getSubNode(newPos, DIM) == null) {
+                node.movePostPOB(pos, pob, newPos, newPob, newKey, DIM);
+                b.nUpdated++;
+                return false;
+            }
+        }
+        b.values[id] = value;
+        node.removePostPOB(pos, pob, DIM);
+        tree.decreaseNrEntries();
+        return true;
+    }
+
+    /*
+        Operations that start at an inner node instead of the root, see PhCursor8.
+        The key(s) must match the prefix of the node.
+     */
+    T putFrom(long[] key, T value, Node<T> node, Node<T> parent, long posInParent) {
+        return insert(key, placeholder(value), node, parent, posInParent);
+    }
+
+    /**
+     * NI nodes store the value, for trees without values they store the placeholder.
+     * This makes them consistent with the other nodes.
+     */
+    @SuppressWarnings("unchecked")
+    private T placeholder(T value) {
+        if (tree.getValueType() == PhTreeConfig.VALUES_NONE) {
+            return (T) Node.VALUE_PLACEHOLDER;
+        }
+        return value;
+    }
+
+    T removeFrom(long[] key, Node<T> node, Node<T> parent, long posInParent) {
+        return delete(key, node, parent, posInParent, null, null);
+    }
+
+    T updateFrom(long[] oldKey, long[] newKey, Node<T> node, Node<T> parent, 
+    		long posInParent) {
+        final int[] insertRequired = new int[]{NO_INSERT_REQUIRED};
+        T v = delete(oldKey, node, parent, posInParent, newKey, insertRequired);
+        if (insertRequired[0] != NO_INSERT_REQUIRED) {
+            if (parent == null || parent.getSubNode(posInParent, tree.getDim()) == node) {
+                insert(newKey, v, node, parent, posInParent);
+            } else {
+                //the node was merged into the parent
+                put(newKey, v);
+            }
+        }
+        return v;
+    }
+
     protected Node<T> copyNodeAndReplaceInParent(Node<T> node, Node<T> parent, long posInParent) {
         if (parent != null) {
             node = createNode(node, tree.getDim());
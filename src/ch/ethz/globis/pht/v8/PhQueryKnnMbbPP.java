@@ -12,14 +12,12 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.NoSuchElementException;
 
-import org.zoodb.index.critbit.CritBit64.CBIterator;
-import org.zoodb.index.critbit.CritBit64.Entry;
-
 import ch.ethz.globis.pht.PhDistance;
 import ch.ethz.globis.pht.PhEntry;
 import ch.ethz.globis.pht.PhFilterDistance;
 import ch.ethz.globis.pht.PhTree.PhIterator;
 import ch.ethz.globis.pht.PhTree.PhKnnQuery;
+import ch.ethz.globis.pht.v8.NiIndex.NiIterator;
 import ch.ethz.globis.pht.v8.PhTree8.NodeEntry;
 
 /**
@@ -159,13 +157,11 @@ public class PhQueryKnnMbbPP<T> implements PhKnnQuery<T> {
 			if (nMin > 1 && distance.dist(key, e.getKey()) == 0) {
 				//Never return a perfect match if we look for nMin>1 keys!
 				//otherwise the distance is too small.
-				CBIterator<NodeEntry<T>> it = node.ind().iterator();
-				Entry<NodeEntry<T>> cbe = it.nextEntry();  //we know that there are at least two!
-				while (it.hasNext() && cbe.key()==pos) {
-					//TODO use entryReuse?
-					cbe = it.nextEntry();
+				NiIterator<T> it = node.ind().iterator();
+				e = it.next();  //we know that there are at least two!
+				while (it.hasNext() && it.pos()==pos) {
+					e = it.next();
 				}
-				e = cbe.value();
 				if (e.node != null) {
 					return findKnnCandidate(key, e.node, ret);
 				}
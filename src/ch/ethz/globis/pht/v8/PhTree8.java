@@ -12,16 +12,22 @@ import static ch.ethz.globis.pht.PhTreeHelper.debugCheck;
 import static ch.ethz.globis.pht.PhTreeHelper.getMaxConflictingBitsWithMask;
 import static ch.ethz.globis.pht.PhTreeHelper.posInArray;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
+import ch.ethz.globis.pht.PhCursor;
 import ch.ethz.globis.pht.PhDimFilter;
 import ch.ethz.globis.pht.PhDistance;
 import ch.ethz.globis.pht.PhDistanceL;
 import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhFilter;
 import ch.ethz.globis.pht.PhFilterDistance;
 import ch.ethz.globis.pht.PhPredicate;
 import ch.ethz.globis.pht.PhRangeQuery;
@@ -29,6 +35,7 @@ import ch.ethz.globis.pht.PhTree;
 import ch.ethz.globis.pht.PhTreeConfig;
 import ch.ethz.globis.pht.PhTreeHelper;
 import ch.ethz.globis.pht.util.PhMapper;
+import ch.ethz.globis.pht.util.PhTreeMemoryStats;
 import ch.ethz.globis.pht.util.PhTreeQStats;
 import ch.ethz.globis.pht.util.StringBuilderLn;
 
@@ -80,10 +87,26 @@ public class PhTree8<T> implements PhTree<T> {
 
     private PhOperations<T> operations = new PhOperationsSimple<>(this);
 
+    //number of modifications, used to detect outdated cursors 
+    private int modCount = 0;
+
+    //how values are stored, see PhTreeConfig.VALUES_*
+    private final int valueType;
+
+    //NI thresholds and bit depth, shared by all nodes
+    private final NodeConfig nodeConfig;
+
+    //updated by the nodes whenever they are created, resized or removed
+    private final PhTreeMemoryStats memStats = new PhTreeMemoryStats();
+
+    //nodes that remain to be processed by an incremental compaction, see compact(long)
+    private ArrayDeque<Node<T>> compactStack = null;
+    private int compactModCount;
+
     final long[] MIN;
     private final long[] MAX;
     
-	static final class NodeEntry<T> extends PhEntry<T> {
+	static class NodeEntry<T> extends PhEntry<T> {
         transient ReentrantLock lock;
 
 		Node<T> node;
@@ -106,6 +129,53 @@ public class PhTree8<T> implements PhTree<T> {
 			set(key, val);
 			this.node = null;
 		}
+		/**
+		 * @return The value of a post of a node with primitive values, see 
+		 * {@link NodeEntryLong}.
+		 */
+		long getValueLong() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Post of an NI node with primitive values ({@link PhTreeConfig#VALUES_LONG} or
+	 * {@link PhTreeConfig#VALUES_INT}). The value is only boxed if it is requested 
+	 * via {@link #getValue()}.
+	 */
+	static final class NodeEntryLong<T> extends NodeEntry<T> {
+		private long lValue;
+		private final boolean isInt;
+		NodeEntryLong(long[] key, long value, boolean isInt, boolean useLock) {
+			super(key, null, useLock);
+			this.lValue = value;
+			this.isInt = isInt;
+		}
+		@Override
+		long getValueLong() {
+			return lValue;
+		}
+		void setValueLong(long value) {
+			this.lValue = value;
+		}
+		@SuppressWarnings("unchecked")
+		@Override
+		public T getValue() {
+			return (T) Node.toValue(lValue, isInt);
+		}
+		@Override
+		public void setValue(T value) {
+			this.lValue = Node.toLong(value, isInt);
+		}
+		@Override
+		void setPost(long[] key, T val) {
+			super.setPost(key, null);
+			this.lValue = Node.toLong(val, isInt);
+		}
+		void setPostLong(long[] key, long value) {
+			super.setPost(key, null);
+			this.lValue = value;
+		}
 	}
 
 
@@ -120,23 +190,62 @@ public class PhTree8<T> implements PhTree<T> {
     }
 
 	public PhTree8(int dim) {
+		checkDim0(dim);
 		DIM = dim;
 		MIN = new long[DIM];
 		Arrays.fill(MIN, Long.MIN_VALUE);
 		MAX = new long[DIM];
 		Arrays.fill(MAX, Long.MAX_VALUE);
+		valueType = PhTreeConfig.VALUES_OBJECT;
+		nodeConfig = NodeConfig.DEFAULT;
 		debugCheck();
 	}
 
 	public PhTree8(PhTreeConfig cnf) {
+		checkDim0(cnf.getDimActual());
 		DIM = cnf.getDimActual();
 		MIN = new long[DIM];
 		MAX = new long[DIM];
 		Arrays.fill(MAX, Long.MAX_VALUE);
 		Arrays.fill(MIN, Long.MIN_VALUE);
+		valueType = cnf.getValueType();
+		nodeConfig = NodeConfig.create(cnf, DIM);
 		debugCheck();
 	}
 
+	private static void checkDim0(int dim) {
+		if (dim < 1 || dim > 64) {
+			throw new IllegalArgumentException("Invalid dimensionality: " + dim + 
+					", use PhTree.create() for more than 64 dimensions.");
+		}
+	}
+
+	int getValueType() {
+		return valueType;
+	}
+
+	/**
+	 * @return True if the nodes store the values in primitive arrays, see
+	 * {@link PhTreeConfig#VALUES_LONG} and {@link PhTreeConfig#VALUES_INT}.
+	 */
+	boolean isValuesPrimitive() {
+		return valueType == PhTreeConfig.VALUES_LONG || valueType == PhTreeConfig.VALUES_INT;
+	}
+
+	private void checkValuesPrimitive() {
+		if (!isValuesPrimitive()) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	NodeConfig getNodeConfig() {
+		return nodeConfig;
+	}
+
+	PhTreeMemoryStats memoryStats() {
+		return memStats;
+	}
+
 	void increaseNrNodes() {
 		nNodes.incrementAndGet();
 	}
@@ -163,6 +272,11 @@ public class PhTree8<T> implements PhTree<T> {
 		return nNodes.get();
 	}
 
+	@Override
+	public PhTreeMemoryStats getMemoryStats() {
+		return memStats.copy();
+	}
+
 	@Override
 	public PhTreeQStats getQuality() {
 		return getQuality(0, getRoot(), new PhTreeQStats(DEPTH_64));
@@ -187,8 +301,9 @@ public class PhTree8<T> implements PhTree<T> {
 		currentDepth += node.getInfixLen();
 		stats.q_totalDepth += currentDepth;
 
-		if (node.subNRef() != null) {
-			for (Node<T> sub: node.subNRef()) {
+		if (node.ind() == null) {
+			for (int i = 0; i < node.getSubSlotCount(DIM); i++) {
+				Node<T> sub = node.subNRef(i);
 				if (sub != null) {
 					getQuality(currentDepth + 1, sub, stats);
 				}
@@ -216,35 +331,29 @@ public class PhTree8<T> implements PhTree<T> {
 	}
 
 	private PhTreeHelper.Stats getStats(int currentDepth, Node<T> node, PhTreeHelper.Stats stats) {
-		final int REF = 4;//bytes for a reference
 		stats.nNodes++;
-		// this +  ref-SubNRef[] + ref-subB[] + refInd + refVal[] + infLen + infOffs
-		stats.size += align8(12 + REF + REF + REF +  REF + 1 + 1 + 1 + 1);
+		//same estimate as used for getMemoryStats()
+		stats.size += node.estimateSize(DIM);
 
 		currentDepth += node.getInfixLen();
 		int nChildren = 0;
 		if (node.isPostNI()) {
 			nChildren += node.ind().size();
-			stats.size += (node.ind().size()-1) * 48 + 40;
 			if (node.getSubCount() == 0) {
 				stats.nLeafNodes++;
 			} else {
 				stats.nInnerNodes++;
 			}
 			for (NodeEntry<T> e: node.ind()) {
-				stats.size += 24; //e
 				if (e.node != null) {
 					getStats(currentDepth + 1, e.node, stats);
-				} else {
-					//count post-fixes
-					stats.size += 16 + e.getKey().length*8;
 				}
 			}
 		} else {
-			if (node.subNRef() != null) {
-				stats.size += 16 + align8(node.subNRef().length * REF);
+			if (node.getSubCount() > 0) {
 				stats.nInnerNodes++;
-				for (Node<T> sub: node.subNRef()) {
+				for (int i = 0; i < node.getSubSlotCount(DIM); i++) {
+					Node<T> sub = node.subNRef(i);
 					if (sub != null) {
 						nChildren++;
 						getStats(currentDepth + 1, sub, stats);
@@ -255,8 +364,6 @@ public class PhTree8<T> implements PhTree<T> {
 				stats.nLeafNodes++;
 			}
 			nChildren += node.getPostCount();
-			//count post-fixes
-			stats.size += 16 + align8(Bits.arraySizeInByte(node.ba));
 		}
 
 
@@ -300,7 +407,7 @@ public class PhTree8<T> implements PhTree<T> {
 
 		if (node.isPostNI()) {
 			nChildren = node.ind().size();
-			stats.size += (nChildren-1) * 48 + 40;
+			stats.size += node.ind().estimateSize();
 			if (node.getSubCount() == 0) {
 				stats.nLeafNodes++;
 			} else {
@@ -319,11 +426,12 @@ public class PhTree8<T> implements PhTree<T> {
 			if (node.isSubHC()) {
 				stats.nHCS++;
 			}
-			if (node.subNRef() != null) {
+			if (node.getSubCount() > 0) {
 				//+ REF for the byte[]
 				stats.size += align8(node.getSubCount() * REF + REF);
 				stats.nInnerNodes++;
-				for (Node<T> sub: node.subNRef()) {
+				for (int i = 0; i < node.getSubSlotCount(DIM); i++) {
+					Node<T> sub = node.subNRef(i);
 					if (sub != null) {
 						nChildren++;
 						getStatsIdealNoNode(currentDepth + 1, sub, stats);
@@ -383,6 +491,8 @@ public class PhTree8<T> implements PhTree<T> {
 
 	@Override
 	public T put(long[] key, T value) {
+		nodeConfig.checkKey(key);
+		modCount++;
         return operations.put(key, value);
     }
 
@@ -394,6 +504,13 @@ public class PhTree8<T> implements PhTree<T> {
         increaseNrEntries();
     }
 
+    void insertRootLong(long[] key, long value) {
+        root = operations.createNode(this, 0, DEPTH_64-1, 1);
+        long pos = posInArray(key, root.getPostLen());
+        root.addPostLong(pos, key, value);
+        increaseNrEntries();
+    }
+
 	@Override
 	public boolean contains(long... key) {
 		if (getRoot() == null) {
@@ -445,6 +562,70 @@ public class PhTree8<T> implements PhTree<T> {
 		return false;
 	}
 
+	@Override
+	public void getAll(long[][] keys, T[] out) {
+		getAll(keys, out, false, false);
+	}
+
+	@Override
+	public void getAll(long[][] keys, T[] out, boolean isSorted, boolean parallel) {
+		if (out.length < keys.length) {
+			throw new IllegalArgumentException("Invalid number of arguments: " + 
+					keys.length + " / " + out.length);
+		}
+		lookupAll(keys, isSorted, parallel, (lp, pos) -> out[pos] = lp.get(keys[pos]));
+	}
+
+	@Override
+	public void containsAll(long[][] keys, boolean[] out) {
+		containsAll(keys, out, false, false);
+	}
+
+	@Override
+	public void containsAll(long[][] keys, boolean[] out, boolean isSorted, boolean parallel) {
+		if (out.length < keys.length) {
+			throw new IllegalArgumentException("Invalid number of arguments: " + 
+					keys.length + " / " + out.length);
+		}
+		lookupAll(keys, isSorted, parallel, (lp, pos) -> out[pos] = lp.contains(keys[pos]));
+	}
+
+	private interface BatchOp<T> {
+		void apply(PhCursor8<T> lp, int pos);
+	}
+
+	/** Minimum number of keys per thread for parallel batch lookups. */
+	private static final int BATCH_MIN_RUN = 1000;
+
+	private void lookupAll(long[][] keys, boolean isSorted, boolean parallel, BatchOp<T> op) {
+		for (long[] key: keys) {
+			if (key.length != DIM) {
+				throw new IllegalArgumentException("Invalid number of arguments: " + 
+						key.length + " / " + DIM);
+			}
+		}
+		final int[] order = isSorted ? null : PhCursor8.sortByZOrder(keys);
+
+		int nRuns = 1;
+		if (parallel) {
+			int nThreads = Runtime.getRuntime().availableProcessors();
+			nRuns = Math.max(1, Math.min(nThreads, keys.length / BATCH_MIN_RUN));
+		}
+		final int runLen = (keys.length + nRuns - 1) / nRuns;
+		//each run covers a disjoint interval of the z-curve and uses its own path 
+		IntStream runs = IntStream.range(0, nRuns);
+		if (nRuns > 1) {
+			runs = runs.parallel();
+		}
+		runs.forEach(r -> {
+			PhCursor8<T> lp = new PhCursor8<>(this);
+			int end = Math.min(keys.length, (r + 1) * runLen);
+			for (int i = r * runLen; i < end; i++) {
+				op.apply(lp, order == null ? i : order[i]);
+			}
+		});
+	}
+
 	@Override
 	public T get(long... key) {
 		if (getRoot() == null) {
@@ -487,6 +668,42 @@ public class PhTree8<T> implements PhTree<T> {
 		return null;
 	}
 
+	/**
+	 * Primitive lookup for trees with {@link PhTreeConfig#VALUES_LONG} or
+	 * {@link PhTreeConfig#VALUES_INT}. 
+	 * @param key
+	 * @param notFound the value that is returned if the key does not exist
+	 * @return the value associated with the key or {@code notFound}
+	 */
+	public long getLong(long[] key, long notFound) {
+		checkValuesPrimitive();
+		Node<T> node = getRoot();
+		while (node != null) {
+			if (node.getInfixLen() > 0) {
+				long mask = (1l<<node.getInfixLen()) - 1l;
+				int shiftMask = node.getPostLen()+1;
+				mask = shiftMask==64 ? 0 : mask<<shiftMask;
+				for (int i = 0; i < key.length; i++) {
+					if (((key[i] ^ node.getInfix(i)) & mask) != 0) {
+						return notFound;
+					}
+				}
+			}
+			long pos = posInArray(key, node.getPostLen());
+			Node<T> sub = node.getSubNode(pos, DIM);
+			if (sub != null) {
+				node = sub;
+				continue;
+			}
+			int pob = node.getPostOffsetBits(pos, DIM);
+			if (pob >= 0 && node.postEqualsPOB(pob, pos, key)) {
+				return node.getPostValueLongPOB(pob, pos, DIM);
+			}
+			return notFound;
+		}
+		return notFound;
+	}
+
 	/**
 	 * A value-set is an object with n=DIM values.
 	 * @param key
@@ -494,9 +711,102 @@ public class PhTree8<T> implements PhTree<T> {
 	 */
 	@Override
 	public T remove(long... key) {
+		modCount++;
         return operations.remove(key);
 	}
 
+	/**
+	 * Primitive version of {@link #put(long[], Object)} for trees with 
+	 * {@link PhTreeConfig#VALUES_LONG} or {@link PhTreeConfig#VALUES_INT}. 
+	 * @param key
+	 * @param value the value, this must be a valid {@code int} for {@code VALUES_INT}
+	 * @param notFound the value that is returned if the key did not exist
+	 * @return the previous value associated with the key or {@code notFound}
+	 */
+	public long putLong(long[] key, long value, long notFound) {
+		checkValuesPrimitive();
+		if (valueType == PhTreeConfig.VALUES_INT && (int) value != value) {
+			throw new IllegalArgumentException("Value exceeds int range: " + value);
+		}
+		nodeConfig.checkKey(key);
+		modCount++;
+		return operations.putLong(key, value, notFound);
+	}
+
+	/**
+	 * Primitive version of {@link #remove(long...)} for trees with 
+	 * {@link PhTreeConfig#VALUES_LONG} or {@link PhTreeConfig#VALUES_INT}. 
+	 * @param key
+	 * @param notFound the value that is returned if the key does not exist
+	 * @return the value associated with the key or {@code notFound}
+	 */
+	public long removeLong(long[] key, long notFound) {
+		checkValuesPrimitive();
+		modCount++;
+		return operations.removeLong(key, notFound);
+	}
+
+	@Override
+	public T putIfAbsent(long[] key, T value) {
+		checkDim(key);
+		modCount++;
+		boolean[] isAbsent = {false};
+		T v = operations.compute(key, true, false, (k, old) -> {
+			isAbsent[0] = true;
+			return value;
+		});
+		return isAbsent[0] ? null : v;
+	}
+
+	@Override
+	public T computeIfAbsent(long[] key, Function<long[], ? extends T> mappingFunction) {
+		checkDim(key);
+		modCount++;
+		return operations.compute(key, true, false, (k, old) -> mappingFunction.apply(k));
+	}
+
+	@Override
+	public T computeIfPresent(long[] key, 
+			BiFunction<long[], ? super T, ? extends T> remappingFunction) {
+		checkDim(key);
+		modCount++;
+		return operations.compute(key, false, true, remappingFunction);
+	}
+
+	@Override
+	public T compute(long[] key, BiFunction<long[], ? super T, ? extends T> remappingFunction) {
+		checkDim(key);
+		modCount++;
+		return operations.compute(key, true, true, remappingFunction);
+	}
+
+	@Override
+	public T merge(long[] key, T value, 
+			BiFunction<? super T, ? super T, ? extends T> remappingFunction) {
+		checkDim(key);
+		modCount++;
+		return operations.compute(key, true, true, 
+				(k, old) -> old == null ? value : remappingFunction.apply(old, value));
+	}
+
+	private void checkDim(long[] key) {
+		if (key.length != DIM) {
+			throw new IllegalArgumentException("Invalid number of arguments: " + key.length +  
+					" DIM=" + DIM);
+		}
+		nodeConfig.checkKey(key);
+	}
+
+	@Override
+	public int removeRange(long[] min, long[] max) {
+		if (min.length != DIM || max.length != DIM) {
+			throw new IllegalArgumentException("Invalid number of arguments: " + min.length + 
+					" / " + max.length + "  DIM=" + DIM);
+		}
+		modCount++;
+		return getOperations().removeRange(min, max);
+	}
+
 	int getConflictingInfixBits(long[] key, long[] infix, Node<T> node) {
 		if (node.getInfixLen() == 0) {
 			return 0;
@@ -623,17 +933,35 @@ public class PhTree8<T> implements PhTree<T> {
 	 * @return Result iterator.
 	 */
 	@Override
-	public PhQuery<T> query(long[] min, long[] max) {
+	public PhIteratorNoGC<T> query(long[] min, long[] max) {
 		if (min.length != DIM || max.length != DIM) {
 			throw new IllegalArgumentException("Invalid number of arguments: " + min.length +  
 					" / " + max.length + "  DIM=" + DIM);
 		}
 		//return new PhIteratorHighK<T>(getRoot(), min, max, DIM, DEPTH);
-		PhQuery<T> q = new PhIteratorNoGC<>(this, null);
+		PhIteratorNoGC<T> q = new PhIteratorNoGC<>(this, null);
+		q.reset(min, max);
+		return q;
+	}
+
+	@Override
+	public PhQuery<T> query(long[] min, long[] max, PhFilter filter) {
+		if (min.length != DIM || max.length != DIM) {
+			throw new IllegalArgumentException("Invalid number of arguments: " + min.length +  
+					" / " + max.length + "  DIM=" + DIM);
+		}
+		PhQuery<T> q = new PhIteratorNoGC<>(this, filter);
 		q.reset(min, max);
 		return q;
 	}
 
+	@Override
+	public PhQueryMulti<T> query(long[][] mins, long[][] maxs) {
+		PhQueryMulti<T> q = new PhIteratorMultiNoGC<>(this);
+		q.reset(mins, maxs);
+		return q;
+	}
+
 	/**
 	 * Performs a rectangular window query. The parameters are the min and max keys which 
 	 * contain the minimum respectively the maximum keys in every dimension.
@@ -760,8 +1088,112 @@ public class PhTree8<T> implements PhTree<T> {
 
 	@Override
 	public T update(long[] oldKey, long[] newKey) {
+		nodeConfig.checkKey(newKey);
+		modCount++;
         return operations.update(oldKey, newKey);
 	}
+
+	/**
+	 * The updates are applied in a single pass over the tree, see
+	 * {@link PhOperationsSimple#updateAll(long[][], long[][], int[], int)}.
+	 * 
+	 * Sub-trees are not updated in parallel, even if they are disjoint: every modification 
+	 * of a node also updates the memory statistics of the tree 
+	 * (see {@link #getMemoryStats()}), which are not synchronized.
+	 */
+	@Override
+	public int updateAll(long[][] oldKeys, long[][] newKeys) {
+		if (oldKeys.length != newKeys.length) {
+			throw new IllegalArgumentException("Invalid number of arguments: " + 
+					oldKeys.length + " / " + newKeys.length);
+		}
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i].length != DIM || newKeys[i].length != DIM) {
+				throw new IllegalArgumentException("Invalid number of arguments: " + 
+						oldKeys[i].length + " / " + newKeys[i].length + " / " + DIM);
+			}
+			nodeConfig.checkKey(newKeys[i]);
+		}
+		int[] exactPostLen = new int[1];
+		int[] order = PhCursor8.sortByZOrder(oldKeys, exactPostLen);
+		modCount++;
+		return getOperations().updateAll(oldKeys, newKeys, order, exactPostLen[0]);
+	}
+
+	@Override
+	public long compact() {
+		compactStack = null;
+		ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+		if (getRoot() != null) {
+			stack.push(getRoot());
+		}
+		long reclaimed = 0;
+		while (!stack.isEmpty()) {
+			reclaimed += compact(stack.pop(), stack);
+		}
+		modCount++;
+		return reclaimed;
+	}
+
+	@Override
+	public long compact(long maxNanos) {
+		final long end = System.nanoTime() + maxNanos;
+		if (compactStack == null || compactModCount != modCount) {
+			compactStack = new ArrayDeque<>();
+			if (getRoot() != null) {
+				compactStack.push(getRoot());
+			}
+		}
+		long reclaimed = 0;
+		while (!compactStack.isEmpty()) {
+			reclaimed += compact(compactStack.pop(), compactStack);
+			if (System.nanoTime() - end >= 0) {
+				break;
+			}
+		}
+		if (compactStack.isEmpty()) {
+			compactStack = null;
+		}
+		modCount++;
+		compactModCount = modCount;
+		return reclaimed;
+	}
+
+	private long compact(Node<T> node, ArrayDeque<Node<T>> stack) {
+		long reclaimed = node.compact(DIM);
+		if (node.isPostNI()) {
+			for (NodeEntry<T> e: node.ind()) {
+				if (e.node != null) {
+					stack.push(e.node);
+				}
+			}
+		} else {
+			for (int i = 0; i < node.getSubSlotCount(DIM); i++) {
+				Node<T> sub = node.subNRef(i);
+				if (sub != null) {
+					stack.push(sub);
+				}
+			}
+		}
+		return reclaimed;
+	}
+
+	@Override
+	public PhCursor<T> cursor() {
+		return new PhCursor8<>(this);
+	}
+
+	PhOperationsSimple<T> getOperations() {
+		return (PhOperationsSimple<T>) operations;
+	}
+
+	int getModCount() {
+		return modCount;
+	}
+
+	void incModCount() {
+		modCount++;
+	}
 	
 
 	/**
@@ -769,9 +1201,11 @@ public class PhTree8<T> implements PhTree<T> {
 	 */
 	@Override
 	public void clear() {
+		modCount++;
 		root = null;
 		nEntries.set(0);
 		nNodes.set(0);
+		memStats.clear();
 	}
 
 	void adjustCounts(int deletedPosts, int deletedNodes) {
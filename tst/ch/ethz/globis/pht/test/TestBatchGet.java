@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTreeHelper;
+import ch.ethz.globis.pht.test.util.TestUtil;
+
+public class TestBatchGet {
+
+	private long[][] createKeys(int N, int DIM, Random R, int range) {
+		long[][] keys = new long[N][DIM];
+		for (int i = 0; i < N; i++) {
+			for (int d = 0; d < DIM; d++) {
+				keys[i][d] = R.nextInt(range) - range/2;
+			}
+		}
+		return keys;
+	}
+
+	private void check(int DIM, int N, Random R) {
+		PhTree<Integer> tree = TestUtil.newTree(DIM, 64);
+		long[][] data = createKeys(N, DIM, R, 10000);
+		for (int i = 0; i < N; i++) {
+			tree.put(data[i], i);
+		}
+		//half of the keys exist
+		long[][] keys = createKeys(2*N, DIM, R, 10000);
+		System.arraycopy(data, 0, keys, 0, N);
+		shuffle(keys, R);
+
+		Integer[] expected = new Integer[keys.length];
+		boolean[] expectedC = new boolean[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			expected[i] = tree.get(keys[i]);
+			expectedC[i] = tree.contains(keys[i]);
+		}
+
+		for (boolean parallel: new boolean[]{false, true}) {
+			Integer[] out = new Integer[keys.length];
+			tree.getAll(keys, out, false, parallel);
+			assertArrayEquals(expected, out);
+			boolean[] outC = new boolean[keys.length];
+			tree.containsAll(keys, outC, false, parallel);
+			assertTrue(Arrays.equals(expectedC, outC));
+		}
+
+		//pre-sorted
+		long[][] sorted = keys.clone();
+		Arrays.sort(sorted, PhTreeHelper::compareZOrder);
+		Integer[] out = new Integer[sorted.length];
+		tree.getAll(sorted, out, true, true);
+		for (int i = 0; i < sorted.length; i++) {
+			assertEquals(tree.get(sorted[i]), out[i]);
+		}
+	}
+
+	@Test
+	public void testBatch2D() {
+		check(2, 10000, new Random(0));
+	}
+
+	@Test
+	public void testBatch3D() {
+		check(3, 20000, new Random(1));
+	}
+
+	@Test
+	public void testBatch10D() {
+		//large nodes with NI representation
+		check(10, 5000, new Random(2));
+	}
+
+	@Test
+	public void testEmpty() {
+		PhTree<Integer> tree = TestUtil.newTree(2, 64);
+		Integer[] out = new Integer[1];
+		tree.getAll(new long[][]{{1, 2}}, out);
+		assertEquals(null, out[0]);
+		tree.getAll(new long[0][], new Integer[0]);
+	}
+
+	@Test
+	public void testZOrder() {
+		assertTrue(PhTreeHelper.compareZOrder(new long[]{0, 1}, new long[]{1, 0}) < 0);
+		assertTrue(PhTreeHelper.compareZOrder(new long[]{1, 1}, new long[]{1, 0}) > 0);
+		assertTrue(PhTreeHelper.compareZOrder(new long[]{2, 0}, new long[]{1, 1}) > 0);
+		assertTrue(PhTreeHelper.compareZOrder(new long[]{0, 2}, new long[]{1, 1}) > 0);
+		assertTrue(PhTreeHelper.compareZOrder(new long[]{-1, 0}, new long[]{1, 1}) > 0);
+		assertEquals(0, PhTreeHelper.compareZOrder(new long[]{5, 7}, new long[]{5, 7}));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidOut() {
+		PhTree<Integer> tree = TestUtil.newTree(2, 64);
+		tree.getAll(new long[2][2], new Integer[1]);
+	}
+
+	private static void shuffle(long[][] a, Random R) {
+		for (int i = a.length - 1; i > 0; i--) {
+			int j = R.nextInt(i + 1);
+			long[] t = a[i];
+			a[i] = a[j];
+			a[j] = t;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import java.util.Random;
+
+import ch.ethz.globis.pht.PhTree;
+
+/**
+ * Compares batched lookups with a loop of single lookups.
+ */
+public class TestBatchGetPerf {
+
+	public static void main(String[] args) {
+		final int DIM = 3;
+		final int N = 1000000;
+		Random R = new Random(0);
+		PhTree<Integer> tree = PhTree.create(DIM);
+		long[][] keys = new long[N][DIM];
+		for (int i = 0; i < N; i++) {
+			for (int d = 0; d < DIM; d++) {
+				keys[i][d] = R.nextLong();
+			}
+			tree.put(keys[i], i);
+		}
+		Integer[] out = new Integer[N];
+		for (int r = 0; r < 5; r++) {
+			long t0 = System.currentTimeMillis();
+			for (int i = 0; i < N; i++) {
+				out[i] = tree.get(keys[i]);
+			}
+			long t1 = System.currentTimeMillis();
+			tree.getAll(keys, out);
+			long t2 = System.currentTimeMillis();
+			tree.getAll(keys, out, false, true);
+			long t3 = System.currentTimeMillis();
+			System.out.println("get(): " + (t1-t0) + "ms;  getAll(): " + (t2-t1) + 
+					"ms;  getAll(parallel): " + (t3-t2) + "ms");
+		}
+	}
+}
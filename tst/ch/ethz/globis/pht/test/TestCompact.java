@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTreeConfig;
+
+public class TestCompact {
+
+	private static PhTree<Integer> create(int DIM, int indexType, boolean smallNodes) {
+		PhTreeConfig cfg = new PhTreeConfig(DIM);
+		cfg.setNiIndexType(indexType);
+		if (smallNodes) {
+			cfg.setNiThresholds(8, 8);
+			cfg.setNiHysteresis(0.1);
+		}
+		return PhTree.create(cfg);
+	}
+
+	private static ArrayList<long[]> fill(PhTree<Integer> tree, int N, long range, Random R) {
+		ArrayList<long[]> keys = new ArrayList<>();
+		for (int i = 0; i < N; i++) {
+			long[] key = new long[tree.getDim()];
+			for (int d = 0; d < key.length; d++) {
+				key[d] = (long) (R.nextDouble() * range);
+			}
+			if (tree.put(key, i) == null) {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+
+	private static void removeMost(PhTree<Integer> tree, ArrayList<long[]> keys, Random R) {
+		int n = keys.size() * 7 / 10;
+		for (int i = 0; i < n; i++) {
+			long[] key = keys.remove(R.nextInt(keys.size()));
+			assertTrue(tree.remove(key) != null);
+		}
+	}
+
+	private void check(int DIM, int N, long range, int indexType, boolean smallNodes, 
+			boolean expectReclaim) {
+		Random R = new Random(DIM);
+		PhTree<Integer> tree = create(DIM, indexType, smallNodes);
+		ArrayList<long[]> keys = fill(tree, N, range, R);
+		removeMost(tree, keys, R);
+
+		String before = tree.toStringPlain();
+		long sizeBefore = tree.getStats().size;
+		long reclaimed = tree.compact();
+		assertTrue("reclaimed=" + reclaimed, expectReclaim ? reclaimed > 0 : reclaimed >= 0);
+		assertEquals(before, tree.toStringPlain());
+		assertTrue(expectReclaim ? tree.getStats().size < sizeBefore : tree.getStats().size <= sizeBefore);
+		assertEquals(0, tree.compact());
+
+		//continue using the tree
+		keys.addAll(fill(tree, N, range, R));
+		removeMost(tree, keys, R);
+		assertEquals(keys.size(), tree.size());
+		for (long[] key: keys) {
+			assertTrue(tree.contains(key));
+		}
+
+		//incremental
+		before = tree.toStringPlain();
+		reclaimed = 0;
+		int nNodes = tree.getStats().nNodes;
+		for (int i = 0; i < nNodes; i++) {
+			reclaimed += tree.compact(0);
+		}
+		assertTrue("reclaimed=" + reclaimed, expectReclaim ? reclaimed > 0 : reclaimed >= 0);
+		assertEquals(before, tree.toStringPlain());
+		assertEquals(0, tree.compact());
+
+		//remove everything
+		for (long[] key: keys) {
+			assertTrue(tree.remove(key) != null);
+		}
+		assertEquals(0, tree.size());
+		tree.compact();
+	}
+
+	@Test
+	public void test3D() {
+		check(3, 100000, 1L << 40, PhTreeConfig.NI_INDEX_CRITBIT, false, false);
+	}
+
+	@Test
+	public void test10D() {
+		check(10, 20000, 16, PhTreeConfig.NI_INDEX_CRITBIT, false, false);
+	}
+
+	@Test
+	public void test10DArray() {
+		check(10, 20000, 16, PhTreeConfig.NI_INDEX_ARRAY, false, false);
+	}
+
+	@Test
+	public void testSmallNodes() {
+		check(6, 50000, 64, PhTreeConfig.NI_INDEX_CRITBIT, true, true);
+	}
+
+	@Test
+	public void testSmallNodesArray() {
+		check(6, 50000, 64, PhTreeConfig.NI_INDEX_ARRAY, true, true);
+	}
+
+	@Test
+	public void testEmpty() {
+		PhTree<Integer> tree = create(3, PhTreeConfig.NI_INDEX_CRITBIT, false);
+		assertEquals(0, tree.compact());
+		assertEquals(0, tree.compact(1000));
+	}
+}
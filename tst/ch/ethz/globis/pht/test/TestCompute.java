@@ -0,0 +1,143 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTreeF;
+import ch.ethz.globis.pht.test.util.TestUtil;
+
+public class TestCompute {
+
+	private static List<Long> asList(long[] key) {
+		Long[] a = new Long[key.length];
+		for (int i = 0; i < key.length; i++) {
+			a[i] = key[i];
+		}
+		return Arrays.asList(a);
+	}
+
+	private void checkRandom(int DIM, int N, int range, Random R) {
+		PhTree<Integer> tree = TestUtil.newTree(DIM, 64);
+		HashMap<List<Long>, Integer> ref = new HashMap<>();
+		for (int i = 0; i < N; i++) {
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = R.nextInt(range) - range/2;
+			}
+			List<Long> rk = asList(key);
+			Integer v = R.nextInt(5) == 0 ? null : i;
+			switch (R.nextInt(5)) {
+			case 0: 
+				assertEquals(ref.putIfAbsent(rk, i), tree.putIfAbsent(key, i));
+				break;
+			case 1:
+				assertEquals(ref.computeIfAbsent(rk, k -> v), tree.computeIfAbsent(key, k -> v));
+				break;
+			case 2:
+				assertEquals(ref.computeIfPresent(rk, (k, x) -> v), 
+						tree.computeIfPresent(key, (k, x) -> v));
+				break;
+			case 3:
+				assertEquals(ref.compute(rk, (k, x) -> v), tree.compute(key, (k, x) -> v));
+				break;
+			case 4:
+				assertEquals(ref.merge(rk, i, (x, y) -> v == null ? null : x + y), 
+						tree.merge(key, i, (x, y) -> v == null ? null : x + y));
+				break;
+			}
+			assertEquals(ref.size(), tree.size());
+		}
+		for (List<Long> k: ref.keySet()) {
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = k.get(d);
+			}
+			assertEquals(ref.get(k), tree.get(key));
+		}
+		//the tree must be identical to a tree built with put()
+		PhTree<Integer> tree2 = TestUtil.newTree(DIM, 64);
+		for (List<Long> k: ref.keySet()) {
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = k.get(d);
+			}
+			tree2.put(key, ref.get(k));
+		}
+		assertEquals(tree2.getNodeCount(), tree.getNodeCount());
+		assertEquals(tree2.toStringPlain(), tree.toStringPlain());
+	}
+
+	@Test
+	public void testRandom2D() {
+		checkRandom(2, 100000, 500, new Random(0));
+	}
+
+	@Test
+	public void testRandom3D() {
+		checkRandom(3, 100000, 50, new Random(1));
+	}
+
+	@Test
+	public void testRandom10DNI() {
+		//few bits per dimension result in large nodes with NI representation
+		checkRandom(10, 50000, 4, new Random(2));
+	}
+
+	@Test
+	public void testCounter() {
+		PhTree<Integer> tree = TestUtil.newTree(2, 64);
+		for (int i = 0; i < 1000; i++) {
+			tree.merge(new long[]{i % 10, i % 7}, 1, Integer::sum);
+		}
+		assertEquals(70, tree.size());
+		int sum = 0;
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 7; j++) {
+				sum += tree.get(i, j);
+			}
+		}
+		assertEquals(1000, sum);
+	}
+
+	@Test
+	public void testFunctionNotCalled() {
+		PhTree<Integer> tree = TestUtil.newTree(2, 64);
+		assertNull(tree.computeIfPresent(new long[]{1, 2}, (k, v) -> { throw new AssertionError(); }));
+		assertEquals(0, tree.size());
+		assertNull(tree.putIfAbsent(new long[]{1, 2}, 5));
+		assertEquals(5, (int) tree.computeIfAbsent(new long[]{1, 2}, k -> { throw new AssertionError(); }));
+		assertEquals(5, (int) tree.putIfAbsent(new long[]{1, 2}, 6));
+		assertNull(tree.computeIfAbsent(new long[]{1, 3}, k -> null));
+		assertFalse(tree.contains(1, 3));
+		assertNull(tree.compute(new long[]{1, 2}, (k, v) -> null));
+		assertEquals(0, tree.size());
+	}
+
+	@Test
+	public void testDouble() {
+		PhTreeF<String> tree = PhTreeF.create(2);
+		double[] key = {1.5, -2.5};
+		assertEquals("a", tree.computeIfAbsent(key, k -> "a"));
+		assertEquals("ab", tree.merge(key, "b", String::concat));
+		assertEquals("ab!", tree.compute(key, (k, v) -> v + "!"));
+		assertTrue(tree.contains(key));
+		assertNull(tree.computeIfPresent(key, (k, v) -> null));
+		assertFalse(tree.contains(key));
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhCursor;
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+import ch.ethz.globis.pht.PhTreeConfig;
+import ch.ethz.globis.pht.test.util.TestUtil;
+
+public class TestCursor {
+
+	private void checkMovingObjects(int DIM, int N, int maxStep, Random R) {
+		PhTree<Integer> tree = TestUtil.newTree(DIM, 64);
+		PhTree<Integer> ref = TestUtil.newTree(DIM, 64);
+		PhCursor<Integer> c = tree.cursor();
+		long[][] pos = new long[N][DIM];
+		for (int i = 0; i < N; i++) {
+			for (int d = 0; d < DIM; d++) {
+				pos[i][d] = R.nextInt(100000) - 50000;
+			}
+			assertEquals(ref.put(pos[i], i), c.put(pos[i], i));
+		}
+		assertEquals(ref.size(), tree.size());
+
+		for (int r = 0; r < 5; r++) {
+			for (int i = 0; i < N; i++) {
+				long[] p2 = pos[i].clone();
+				for (int d = 0; d < DIM; d++) {
+					p2[d] += R.nextInt(2*maxStep+1) - maxStep;
+				}
+				assertEquals(ref.get(pos[i]), c.get(pos[i]));
+				Integer v = ref.update(pos[i], p2);
+				assertEquals(v, c.update(pos[i], p2));
+				if (v != null) {
+					pos[i] = p2;
+				}
+				assertTrue(c.contains(pos[i]));
+			}
+			assertEquals(ref.size(), tree.size());
+		}
+
+		//trajectories: consecutive updates of the same object
+		for (int i = 0; i < N; i += 10) {
+			for (int step = 0; step < 50; step++) {
+				long[] p2 = pos[i].clone();
+				for (int d = 0; d < DIM; d++) {
+					p2[d] += R.nextInt(2*maxStep+1) - maxStep;
+				}
+				Integer v = ref.update(pos[i], p2);
+				assertEquals(v, c.update(pos[i], p2));
+				if (v != null) {
+					pos[i] = p2;
+				}
+			}
+		}
+
+		for (int i = 0; i < N; i++) {
+			assertEquals(ref.get(pos[i]), tree.get(pos[i]));
+		}
+		for (int i = 0; i < N; i++) {
+			assertEquals(ref.remove(pos[i]), c.remove(pos[i]));
+			assertFalse(c.contains(pos[i]));
+		}
+		assertEquals(0, tree.size());
+	}
+
+	@Test
+	public void testMovingObjects2D() {
+		checkMovingObjects(2, 10000, 10, new Random(0));
+	}
+
+	@Test
+	public void testMovingObjects3DLargeSteps() {
+		checkMovingObjects(3, 5000, 10000, new Random(1));
+	}
+
+	@Test
+	public void testMovingObjects8D() {
+		checkMovingObjects(8, 5000, 100, new Random(2));
+	}
+
+	@Test
+	public void testExternalModification() {
+		PhTree<Integer> tree = TestUtil.newTree(2, 64);
+		PhCursor<Integer> c = tree.cursor();
+		assertNull(c.get(1, 1));
+		assertNull(c.remove(1, 1));
+		assertNull(c.update(new long[]{1, 1}, new long[]{2, 2}));
+		for (int i = 0; i < 1000; i++) {
+			c.put(new long[]{i, i}, i);
+		}
+		assertEquals(500, (int) c.get(500, 500));
+		//modify tree directly, the cursor path is outdated
+		for (int i = 0; i < 1000; i++) {
+			tree.remove(i, i);
+		}
+		assertFalse(c.contains(500, 500));
+		tree.put(new long[]{500, 500}, 7);
+		assertEquals(7, (int) c.get(500, 500));
+		tree.clear();
+		assertNull(c.get(500, 500));
+		c.put(new long[]{500, 500}, 8);
+		assertEquals(8, (int) tree.get(500, 500));
+	}
+
+	@Test
+	public void testSetTreeNI() {
+		PhTreeConfig cfg = new PhTreeConfig(4);
+		cfg.setValueType(PhTreeConfig.VALUES_NONE);
+		cfg.setNiThresholds(1, 1);
+		PhTree<Object> tree = PhTree.create(cfg);
+		PhCursor<Object> c = tree.cursor();
+		Random R = new Random(0);
+		long[][] keys = new long[139][4];
+		for (int i = 0; i < keys.length; i++) {
+			for (int d = 0; d < 4; d++) {
+				keys[i][d] = R.nextInt(16);
+			}
+			c.put(keys[i], null);
+		}
+		//existing keys return the placeholder, also in NI nodes
+		for (long[] k: keys) {
+			assertTrue(c.contains(k));
+			assertTrue(tree.contains(k));
+			assertNotNull(tree.get(k));
+			assertNotNull(c.get(k));
+			assertNotNull(c.put(k, null));
+		}
+		PhQuery<Object> q = tree.query(new long[4], new long[]{15, 15, 15, 15});
+		int n = 0;
+		while (q.hasNext()) {
+			q.nextKey();
+			n++;
+		}
+		assertEquals(tree.size(), n);
+		for (long[] k: keys) {
+			c.remove(k);
+			assertFalse(tree.contains(k));
+		}
+		assertEquals(0, tree.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidKey() {
+		PhTree<Integer> tree = TestUtil.newTree(2, 64);
+		tree.cursor().put(new long[3], 1);
+	}
+}
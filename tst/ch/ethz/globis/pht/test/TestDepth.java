@@ -0,0 +1,204 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhKnnQuery;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+import ch.ethz.globis.pht.PhTreeConfig;
+
+public class TestDepth {
+
+	private static PhTree<Integer> create(int[] depth, boolean smallNodes) {
+		PhTreeConfig cfg = new PhTreeConfig(depth.length);
+		for (int d = 0; d < depth.length; d++) {
+			cfg.setDepth(d, depth[d]);
+		}
+		if (smallNodes) {
+			cfg.setNiThresholds(8, 8);
+		}
+		return PhTree.create(cfg);
+	}
+
+	private static long[][] createKeys(int[] depth, int N, Random R) {
+		long[][] keys = new long[N][depth.length];
+		for (long[] key: keys) {
+			for (int d = 0; d < depth.length; d++) {
+				key[d] = R.nextLong() >>> (64 - depth[d]);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Compare a tree with reduced depth to a tree with 64 bit dimensions.
+	 */
+	private void check(int[] depth, int N, boolean smallNodes) {
+		Random R = new Random(0);
+		int DIM = depth.length;
+		PhTree<Integer> tree = create(depth, smallNodes);
+		PhTree<Integer> ref = create(depth64(DIM), false);
+		long[][] keys = createKeys(depth, N, R);
+		for (int i = 0; i < N; i++) {
+			assertEquals(ref.put(keys[i], i), tree.put(keys[i], i));
+		}
+		assertEquals(ref.size(), tree.size());
+		for (int i = 0; i < N; i++) {
+			assertEquals(ref.get(keys[i]), tree.get(keys[i]));
+		}
+
+		//window queries
+		for (int i = 0; i < 20; i++) {
+			long[] min = new long[DIM];
+			long[] max = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				long a = R.nextLong() >>> (64 - depth[d]);
+				long b = R.nextLong() >>> (64 - depth[d]);
+				min[d] = Math.min(a, b);
+				max[d] = Math.max(a, b);
+			}
+			assertEquals(ref.queryAll(min, max).size(), tree.queryAll(min, max).size());
+			PhQuery<Integer> q = tree.query(min, max);
+			while (q.hasNext()) {
+				long[] key = q.nextEntry().getKey();
+				assertEquals(ref.get(key), tree.get(key));
+			}
+		}
+
+		//kNN
+		for (int i = 0; i < 20; i++) {
+			long[] center = createKeys(depth, 1, R)[0];
+			PhKnnQuery<Integer> q1 = ref.nearestNeighbour(3, center);
+			PhKnnQuery<Integer> q2 = tree.nearestNeighbour(3, center);
+			while (q1.hasNext()) {
+				assertTrue(Arrays.equals(q1.nextKey(), q2.nextKey()));
+			}
+			assertFalse(q2.hasNext());
+		}
+
+		//update and remove
+		for (int i = 0; i < N; i += 2) {
+			long[] newKey = createKeys(depth, 1, R)[0];
+			if (ref.contains(newKey)) {
+				continue;
+			}
+			assertEquals(ref.update(keys[i], newKey), tree.update(keys[i], newKey));
+			keys[i] = newKey;
+		}
+		long[] min = fill(DIM, Long.MIN_VALUE);
+		long[] max = fill(DIM, Long.MAX_VALUE);
+		ArrayList<PhEntry<Integer>> all = new ArrayList<>(ref.queryAll(min, max));
+		assertEquals(all.size(), tree.queryAll(min, max).size());
+		for (PhEntry<Integer> e: all) {
+			assertEquals(e.getValue(), tree.remove(e.getKey()));
+			assertNull(tree.remove(e.getKey()));
+		}
+		assertEquals(0, tree.size());
+	}
+
+	private static int[] depth64(int DIM) {
+		int[] depth = new int[DIM];
+		Arrays.fill(depth, 64);
+		return depth;
+	}
+
+	private static long[] fill(int DIM, long v) {
+		long[] a = new long[DIM];
+		Arrays.fill(a, v);
+		return a;
+	}
+
+	@Test
+	public void testMixed() {
+		check(new int[]{16, 32, 32}, 20000, false);
+		check(new int[]{8, 16, 32, 64}, 20000, false);
+		check(new int[]{1, 64, 3}, 20000, false);
+	}
+
+	@Test
+	public void testMixedNI() {
+		check(new int[]{16, 32, 32}, 20000, true);
+		check(new int[]{8, 16, 32, 64}, 20000, true);
+	}
+
+	@Test
+	public void testSameDepth() {
+		check(new int[]{16, 16, 16, 16, 16}, 20000, false);
+		check(new int[]{5, 5}, 1000, false);
+	}
+
+	@Test
+	public void testHighDim() {
+		int[] depth = new int[20];
+		for (int d = 0; d < depth.length; d++) {
+			depth[d] = 4 + 3*d;
+		}
+		check(depth, 20000, false);
+	}
+
+	@Test
+	public void testMemory() {
+		int[] depth = {8, 16, 32, 64};
+		Random R = new Random(0);
+		long[][] keys = createKeys(depth, 100000, R);
+		PhTree<Integer> tree = create(depth, false);
+		PhTree<Integer> ref = create(depth64(depth.length), false);
+		for (int i = 0; i < keys.length; i++) {
+			tree.put(keys[i], i);
+			ref.put(keys[i], i);
+		}
+		long size = tree.getMemoryStats().getTotalBytes();
+		long sizeRef = ref.getMemoryStats().getTotalBytes();
+		assertTrue(size + "/" + sizeRef, size < sizeRef);
+	}
+
+	@Test
+	public void testInvalidKey() {
+		PhTree<Integer> tree = create(new int[]{8, 64}, false);
+		tree.put(new long[]{255, -1}, 1);
+		for (long v: new long[]{256, -1}) {
+			try {
+				tree.put(new long[]{v, 0}, 1);
+				fail();
+			} catch (IllegalArgumentException e) {
+				//good
+			}
+		}
+		try {
+			tree.update(new long[]{255, -1}, new long[]{1000, 0});
+			fail();
+		} catch (IllegalArgumentException e) {
+			//good
+		}
+		assertEquals(1, tree.size());
+	}
+
+	@Test
+	public void testConfig() {
+		PhTreeConfig cfg = new PhTreeConfig(3);
+		assertEquals(64, cfg.getDepth());
+		cfg.setDepth(16);
+		assertEquals(16, cfg.getDepth());
+		cfg.setDepth(1, 32);
+		assertEquals(16, cfg.getDepth(0));
+		assertEquals(32, cfg.getDepth(1));
+		assertEquals(32, cfg.getDepth());
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTreeConfig;
+
+/**
+ * Measures memory and insert/lookup cost of trees with reduced bit depth,
+ * see {@link PhTreeConfig#setDepth(int, int)}.
+ */
+public class TestDepthPerf {
+
+	private static final int N = 1000000;
+
+	public static void main(String[] args) {
+		measure(new int[]{16, 16, 16});
+		measure(new int[]{16, 32, 32});
+		measure(new int[]{16, 16, 32, 32});
+		measure(new int[]{16, 48});
+		measure(new int[]{8, 16, 32, 64});
+	}
+
+	private static void measure(int[] depth) {
+		Random R = new Random(0);
+		long[][] keys = new long[N][depth.length];
+		for (long[] key: keys) {
+			for (int d = 0; d < depth.length; d++) {
+				key[d] = R.nextLong() >>> (64 - depth[d]);
+			}
+		}
+		System.out.println("depth=" + Arrays.toString(depth));
+		int[] depth64 = new int[depth.length];
+		Arrays.fill(depth64, 64);
+		measure(depth64, keys);
+		measure(depth, keys);
+	}
+
+	private static void measure(int[] depth, long[][] keys) {
+		PhTreeConfig cfg = new PhTreeConfig(depth.length);
+		for (int d = 0; d < depth.length; d++) {
+			cfg.setDepth(d, depth[d]);
+		}
+		PhTree<Integer> tree = PhTree.create(cfg);
+		long t0 = System.nanoTime();
+		for (int i = 0; i < keys.length; i++) {
+			tree.put(keys[i], i);
+		}
+		long t1 = System.nanoTime();
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			n += tree.get(keys[i]) != null ? 1 : 0;
+		}
+		long t2 = System.nanoTime();
+		if (n != keys.length) {
+			throw new IllegalStateException();
+		}
+		long bytes = tree.getMemoryStats().getTotalBytes();
+		System.out.println(String.format("  %-16s  bytes/entry=%5.1f  bitArrays=%5.1f  " +
+				"insert=%5.0fns  get=%5.0fns", Arrays.toString(depth),
+				bytes/(double)tree.size(),
+				tree.getMemoryStats().bytesBitArrays/(double)tree.size(),
+				(t1-t0)/(double)keys.length, (t2-t1)/(double)keys.length));
+	}
+}
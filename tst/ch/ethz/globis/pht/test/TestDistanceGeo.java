@@ -0,0 +1,219 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhDistanceGeo;
+import ch.ethz.globis.pht.PhTreeF;
+import ch.ethz.globis.pht.PhTreeF.PhEntryF;
+import ch.ethz.globis.pht.PhTreeF.PhIteratorF;
+import ch.ethz.globis.pht.PhTreeF.PhKnnQueryF;
+import ch.ethz.globis.pht.PhTreeF.PhRangeQueryF;
+import ch.ethz.globis.pht.util.BitTools;
+
+public class TestDistanceGeo {
+
+	private static final PhDistanceGeo GEO = PhDistanceGeo.THIS;
+
+	private static long[] enc(double ... d) {
+		long[] l = new long[d.length];
+		for (int i = 0; i < d.length; i++) {
+			l[i] = BitTools.toSortableLong(d[i]);
+		}
+		return l;
+	}
+
+	private static double[] randomPoint(Random R) {
+		return new double[]{R.nextDouble()*360-180, R.nextDouble()*180-90};
+	}
+
+	/** Centers near the poles and the antimeridian. */
+	private static double[][] centers(Random R) {
+		double[][] c = new double[200][];
+		for (int i = 0; i < c.length; i++) {
+			c[i] = randomPoint(R);
+			if (i % 4 == 1) {
+				c[i][0] = 180 - R.nextDouble();
+			} else if (i % 4 == 2) {
+				c[i][0] = -180 + R.nextDouble();
+			} else if (i % 4 == 3) {
+				c[i][1] = (R.nextBoolean() ? 1 : -1) * (89 + R.nextDouble());
+			}
+		}
+		return c;
+	}
+
+	@Test
+	public void testDist() {
+		double deg = PhDistanceGeo.EARTH_RADIUS_M * Math.PI / 180;
+		assertEquals(deg, GEO.dist(enc(0, 0), enc(0, 1)), 1e-6);
+		assertEquals(deg, GEO.dist(enc(0, 0), enc(1, 0)), 1e-6);
+		//across the antimeridian
+		assertEquals(2*deg, GEO.dist(enc(179, 0), enc(-179, 0)), 1e-6);
+		//all meridians meet at the pole
+		assertEquals(0, GEO.dist(enc(-120, 90), enc(45, 90)), 1e-6);
+		assertEquals(180*deg, GEO.dist(enc(0, 90), enc(0, -90)), 1e-6);
+	}
+
+	@Test
+	public void testToMBB() {
+		Random R = new Random(0);
+		long[] min = new long[2];
+		long[] max = new long[2];
+		for (double[] c: centers(R)) {
+			double dist = Math.pow(10, 2 + R.nextDouble()*5);
+			GEO.toMBB(dist, enc(c), min, max);
+			for (int i = 0; i < 2000; i++) {
+				//points close to the circle
+				double[] p = {c[0] + (R.nextDouble()-0.5)*dist/10000, 
+						c[1] + (R.nextDouble()-0.5)*dist/50000};
+				p[0] = ((p[0] + 540) % 360 + 360) % 360 - 180;
+				p[1] = Math.max(-90, Math.min(90, p[1]));
+				long[] lp = enc(p);
+				if (GEO.dist(enc(c), lp) <= dist) {
+					for (int d = 0; d < 2; d++) {
+						assertTrue(Arrays.toString(c) + " " + Arrays.toString(p), 
+								lp[d] >= min[d] && lp[d] <= max[d]);
+					}
+				}
+			}
+		}
+		//small circle away from poles and antimeridian is tight
+		GEO.toMBB(111195, enc(10, 60), min, max);
+		assertEquals(8, BitTools.toDouble(min[0]), 0.01);
+		assertEquals(12, BitTools.toDouble(max[0]), 0.01);
+		assertEquals(59, BitTools.toDouble(min[1]), 0.01);
+		assertEquals(61, BitTools.toDouble(max[1]), 0.01);
+	}
+
+	@Test
+	public void testDistToBox() {
+		Random R = new Random(0);
+		long[] buf = new long[2];
+		for (double[] c: centers(R)) {
+			double[] b1 = randomPoint(R);
+			double[] b2 = {b1[0] + R.nextDouble()*20, b1[1] + R.nextDouble()*20};
+			b2[0] = Math.min(180, b2[0]);
+			b2[1] = Math.min(90, b2[1]);
+			double lb = GEO.distToBox(enc(c), enc(b1), enc(b2), buf);
+			double minDist = Double.MAX_VALUE;
+			int N = 200;
+			for (int i = 0; i <= N; i++) {
+				for (int j = 0; j <= N; j++) {
+					double lon = b1[0] + (b2[0]-b1[0]) * i / N;
+					double lat = b1[1] + (b2[1]-b1[1]) * j / N;
+					minDist = Math.min(minDist, GEO.dist(c[0], c[1], lon, lat));
+				}
+			}
+			//lower bound
+			assertTrue(Arrays.toString(c) + Arrays.toString(b1) + Arrays.toString(b2) + 
+					lb + " / " + minDist, lb <= minDist + 1e-3);
+			//tight
+			double step = PhDistanceGeo.EARTH_RADIUS_M * Math.toRadians(20.0 / N);
+			assertTrue(lb + " / " + minDist, lb >= minDist - step);
+		}
+		//node boxes with NaN boundaries
+		long[] lMin = {Long.MIN_VALUE, Long.MIN_VALUE};
+		long[] lMax = {Long.MAX_VALUE, Long.MAX_VALUE};
+		assertEquals(0, GEO.distToBox(enc(1, 1), lMin, lMax, buf), 0);
+	}
+
+	private static PhTreeF<double[]> createTree(int N, Random R) {
+		PhTreeF<double[]> tree = PhTreeF.create(2);
+		for (int i = 0; i < N; i++) {
+			double[] p = randomPoint(R);
+			tree.put(p, p);
+		}
+		return tree;
+	}
+
+	@Test
+	public void testKnn() {
+		Random R = new Random(0);
+		PhTreeF<double[]> tree = createTree(20000, R);
+		for (double[] c: centers(R)) {
+			int k = 1 + R.nextInt(10);
+			double[] dists = new double[tree.size()];
+			int i = 0;
+			PhIteratorF<double[]> it = tree.queryExtent();
+			while (it.hasNext()) {
+				double[] p = it.next();
+				dists[i++] = GEO.dist(c[0], c[1], p[0], p[1]);
+			}
+			Arrays.sort(dists);
+			PhKnnQueryF<double[]> q = tree.nearestNeighbour(k, GEO, c);
+			int n = 0;
+			while (q.hasNext()) {
+				double[] p = q.next();
+				assertEquals(dists[n], GEO.dist(c[0], c[1], p[0], p[1]), 1e-6);
+				n++;
+			}
+			assertEquals(k, n);
+		}
+	}
+
+	@Test
+	public void testRangeQuery() {
+		Random R = new Random(0);
+		PhTreeF<double[]> tree = createTree(20000, R);
+		for (double[] c: centers(R)) {
+			double dist = Math.pow(10, 4 + R.nextDouble()*3);
+			int nExp = 0;
+			PhIteratorF<double[]> it = tree.queryExtent();
+			while (it.hasNext()) {
+				double[] p = it.next();
+				nExp += GEO.dist(c[0], c[1], p[0], p[1]) <= dist ? 1 : 0;
+			}
+			PhRangeQueryF<double[]> q = tree.rangeQuery(dist, GEO, c);
+			int n = 0;
+			while (q.hasNext()) {
+				double[] p = q.next();
+				assertTrue(GEO.dist(c[0], c[1], p[0], p[1]) <= dist);
+				n++;
+			}
+			assertEquals(nExp, n);
+		}
+	}
+
+	@Test
+	public void testQueryAntimeridian() {
+		Random R = new Random(0);
+		PhTreeF<double[]> tree = createTree(20000, R);
+		for (int i = 0; i < 100; i++) {
+			double[] min = {170 + R.nextDouble()*10, R.nextDouble()*40-20};
+			double[] max = {-180 + R.nextDouble()*10, min[1] + R.nextDouble()*10};
+			if (i % 10 == 0) {
+				//not crossing
+				min[0] = -10;
+				max[0] = 10;
+			}
+			int nExp = 0;
+			PhIteratorF<double[]> it = tree.queryExtent();
+			while (it.hasNext()) {
+				double[] p = it.next();
+				boolean lonOk = min[0] <= max[0] ? (p[0] >= min[0] && p[0] <= max[0]) 
+						: (p[0] >= min[0] || p[0] <= max[0]);
+				nExp += lonOk && p[1] >= min[1] && p[1] <= max[1] ? 1 : 0;
+			}
+			PhIteratorF<double[]> q = tree.queryAntimeridian(min, max, 0);
+			int n = 0;
+			while (q.hasNext()) {
+				PhEntryF<double[]> e = q.nextEntry();
+				assertTrue(e.getKey()[1] >= min[1] && e.getKey()[1] <= max[1]);
+				n++;
+			}
+			assertEquals(nExp, n);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhFilterEllipsoid;
+import ch.ethz.globis.pht.PhFilterHalfSpaces;
+import ch.ethz.globis.pht.PhFilterOrientedBox;
+import ch.ethz.globis.pht.PhFilterPolygon;
+import ch.ethz.globis.pht.PhFilterRegion;
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+import ch.ethz.globis.pht.PhTreeF;
+import ch.ethz.globis.pht.PhTreeF.PhQueryF;
+import ch.ethz.globis.pht.pre.EmptyPPF;
+import ch.ethz.globis.pht.pre.IntegerPP;
+import ch.ethz.globis.pht.test.util.TestUtil;
+
+public class TestFilterRegion {
+
+	private static final double[] MIN2 = {-1000, -1000};
+	private static final double[] MAX2 = {1000, 1000};
+
+	private static class CountingPolygon extends PhFilterPolygon {
+		int nChecked = 0;
+		CountingPolygon(double[][] vertices) {
+			super(2, new EmptyPPF(), vertices);
+		}
+		@Override
+		public boolean contains(double[] point) {
+			nChecked++;
+			return super.contains(point);
+		}
+	}
+
+	private PhTreeF<double[]> createTree(int N, Random R) {
+		PhTreeF<double[]> tree = PhTreeF.create(2);
+		for (int i = 0; i < N; i++) {
+			double[] p = {R.nextDouble()*200-100, R.nextDouble()*200-100};
+			tree.put(p, p);
+		}
+		return tree;
+	}
+
+	private int check(PhTreeF<double[]> tree, PhFilterRegion f) {
+		int nExpected = 0;
+		PhQueryF<double[]> all = tree.query(MIN2, MAX2);
+		while (all.hasNext()) {
+			if (f.contains(all.nextValue())) {
+				nExpected++;
+			}
+		}
+		int n = 0;
+		PhQueryF<double[]> q = tree.query(MIN2, MAX2, f);
+		while (q.hasNext()) {
+			double[] p = q.nextValue();
+			assertTrue(f.contains(p));
+			n++;
+		}
+		assertEquals(nExpected, n);
+		return n;
+	}
+
+	@Test
+	public void testPolygon() {
+		Random R = new Random(0);
+		PhTreeF<double[]> tree = createTree(10000, R);
+		//clockwise
+		double[][] poly = {{-50, 0}, {0, 60}, {70, 10}, {40, -40}, {-20, -50}};
+		CountingPolygon f = new CountingPolygon(poly);
+		int n = check(tree, f);
+		assertTrue(n > 1000);
+		//counter-clockwise
+		double[][] poly2 = {{-20, -50}, {40, -40}, {70, 10}, {0, 60}, {-50, 0}};
+		assertEquals(n, check(tree, new PhFilterPolygon(2, new EmptyPPF(), poly2)));
+	}
+
+	@Test
+	public void testPolygonSkipsInsideNodes() {
+		Random R = new Random(0);
+		PhTreeF<double[]> tree = createTree(10000, R);
+		double[][] poly = {{-90, -90}, {90, -90}, {90, 90}, {-90, 90}};
+		CountingPolygon f = new CountingPolygon(poly);
+		int n = 0;
+		PhQueryF<double[]> q = tree.query(MIN2, MAX2, f);
+		while (q.hasNext()) {
+			q.nextValue();
+			n++;
+		}
+		assertTrue(n > 7000);
+		//most nodes are completely inside the polygon, their entries are not checked
+		assertTrue("checked=" + f.nChecked, f.nChecked < n/2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPolygonNotConvex() {
+		double[][] poly = {{0, 0}, {10, 0}, {5, 1}, {10, 10}, {0, 10}};
+		new PhFilterPolygon(2, new EmptyPPF(), poly);
+	}
+
+	@Test
+	public void testEllipsoid() {
+		Random R = new Random(1);
+		PhTreeF<double[]> tree = createTree(10000, R);
+		PhFilterEllipsoid f = new PhFilterEllipsoid(new EmptyPPF(),
+				new double[]{10, -20}, new double[]{30, 50});
+		assertTrue(check(tree, f) > 500);
+	}
+
+	@Test
+	public void testOrientedBox() {
+		Random R = new Random(2);
+		PhTreeF<double[]> tree = createTree(10000, R);
+		double s = Math.sqrt(0.5);
+		double[][] axes = {{s, s}, {-s, s}};
+		PhFilterOrientedBox f = new PhFilterOrientedBox(new EmptyPPF(),
+				new double[]{5, 5}, axes, new double[]{60, 10});
+		assertTrue(check(tree, f) > 500);
+	}
+
+	@Test
+	public void testHalfSpacesInteger() {
+		final int DIM = 3;
+		Random R = new Random(3);
+		PhTree<long[]> tree = TestUtil.newTree(DIM, 64);
+		for (int i = 0; i < 10000; i++) {
+			long[] p = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				p[d] = R.nextInt(2000) - 1000;
+			}
+			tree.put(p, p);
+		}
+		//tetrahedron-like polytope: x+y+z <= 500, x >= -300, y >= -300, z >= -300
+		double[][] normals = {{1, 1, 1}, {-1, 0, 0}, {0, -1, 0}, {0, 0, -1}};
+		double[] offsets = {500, 300, 300, 300};
+		PhFilterHalfSpaces f = new PhFilterHalfSpaces(new IntegerPP(1), normals, offsets);
+		long[] min = {-1000, -1000, -1000};
+		long[] max = {1000, 1000, 1000};
+		int nExpected = 0;
+		PhQuery<long[]> all = tree.query(min, max);
+		while (all.hasNext()) {
+			if (f.isValid(all.nextValue())) {
+				nExpected++;
+			}
+		}
+		int n = 0;
+		PhQuery<long[]> q = tree.query(min, max, f);
+		while (q.hasNext()) {
+			long[] p = q.nextValue();
+			assertTrue(p[0] + p[1] + p[2] <= 500);
+			n++;
+		}
+		assertTrue(n > 100);
+		assertEquals(nExpected, n);
+	}
+}
@@ -12,14 +12,26 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Random;
 
 import org.junit.Test;
 
+import ch.ethz.globis.pht.PhCursor;
+import ch.ethz.globis.pht.PhDistanceL;
+import ch.ethz.globis.pht.PhEntry;
 import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhKnnQuery;
+import ch.ethz.globis.pht.PhTree.PhQueryMulti;
+import ch.ethz.globis.pht.PhTreeHelper;
+import ch.ethz.globis.pht.hd.PhTreeHD;
 import ch.ethz.globis.pht.test.util.TestUtil;
 import ch.ethz.globis.pht.util.Bits;
+import ch.ethz.globis.pht.util.PhTreeMemoryStats;
+import ch.ethz.globis.pht.util.PhTreeQStats;
 
 /**
  *  This test harness contains all of the tests for trees whose number of dimensions k will
@@ -257,4 +269,320 @@ public class TestHighDimensions {
             assertTrue(n2 < n);
         }
     }
-}
\ No newline at end of file
+
+    private static final int[] DIMS_HD = {65, 100, 128, 129, 256};
+
+    private static long[][] createKeys(Random R, int N, int DIM, boolean small) {
+        long[][] keys = new long[N][DIM];
+        for (long[] key: keys) {
+            for (int d = 0; d < DIM; d++) {
+                //small values create deep trees with long common prefixes
+                key[d] = small ? R.nextInt(8) - 4 : R.nextLong();
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void testHDPutRemove() {
+        final int N = 1000;
+        Random R = new Random(0);
+        for (int DIM: DIMS_HD) {
+            for (boolean small: new boolean[]{false, true}) {
+                PhTree<long[]> ind = create(DIM, 64);
+                assertTrue(ind instanceof PhTreeHD);
+                long[][] keys = createKeys(R, N, DIM, small);
+                for (long[] v: keys) {
+                    assertNull(ind.put(v, v));
+                }
+                assertEquals(N, ind.size());
+                for (long[] v: keys) {
+                    assertTrue(ind.contains(v));
+                    assertTrue(Arrays.equals(v, ind.get(v)));
+                    long[] v2 = v.clone();
+                    v2[DIM-1]++;
+                    assertFalse(ind.contains(v2));
+                }
+                for (int i = 0; i < N; i++) {
+                    assertNotNull(ind.remove(keys[i]));
+                    assertNull(ind.remove(keys[i]));
+                    assertEquals(N-i-1, ind.size());
+                    if (i+1 < N) {
+                        assertTrue(ind.contains(keys[i+1]));
+                    }
+                }
+                assertFalse(ind.queryExtent().hasNext());
+                assertEquals(0, ind.getNodeCount());
+            }
+        }
+    }
+
+    @Test
+    public void testHDQuery() {
+        final int N = 2000;
+        Random R = new Random(0);
+        for (int DIM: DIMS_HD) {
+            PhTree<long[]> ind = create(DIM, 64);
+            long[][] keys = createKeys(R, N, DIM, true);
+            for (long[] v: keys) {
+                ind.put(v, v);
+            }
+            for (int q = 0; q < 20; q++) {
+                long[] min = new long[DIM];
+                long[] max = new long[DIM];
+                for (int d = 0; d < DIM; d++) {
+                    //restrict only some dimensions, otherwise all queries are empty
+                    min[d] = d % 16 == q % 16 ? R.nextInt(4) - 4 : Long.MIN_VALUE;
+                    max[d] = d % 16 == q % 16 ? min[d] + R.nextInt(5) : Long.MAX_VALUE;
+                }
+                int nExp = 0;
+                for (long[] v: keys) {
+                    boolean in = true;
+                    for (int d = 0; d < DIM; d++) {
+                        in &= v[d] >= min[d] && v[d] <= max[d];
+                    }
+                    nExp += in ? 1 : 0;
+                }
+                int n = 0;
+                Iterator<long[]> it = ind.query(min, max);
+                while (it.hasNext()) {
+                    long[] v = it.next();
+                    for (int d = 0; d < DIM; d++) {
+                        assertTrue(v[d] >= min[d] && v[d] <= max[d]);
+                    }
+                    n++;
+                }
+                assertEquals(nExp, n);
+            }
+        }
+    }
+
+    @Test
+    public void testHDKnn() {
+        final int N = 1000;
+        Random R = new Random(0);
+        for (int DIM: DIMS_HD) {
+            PhTree<long[]> ind = create(DIM, 64);
+            long[][] keys = createKeys(R, N, DIM, true);
+            for (long[] v: keys) {
+                ind.put(v, v);
+            }
+            for (int q = 0; q < 10; q++) {
+                long[] center = createKeys(R, 1, DIM, true)[0];
+                ArrayList<Double> dists = new ArrayList<>();
+                for (long[] v: keys) {
+                    dists.add(PhDistanceL.THIS.dist(center, v));
+                }
+                dists.sort(null);
+                PhKnnQuery<long[]> knn = ind.nearestNeighbour(10, center);
+                for (int i = 0; i < 10; i++) {
+                    PhEntry<long[]> e = knn.nextEntry();
+                    assertEquals(dists.get(i), PhDistanceL.THIS.dist(center, e.getKey()), 0.0);
+                }
+                assertFalse(knn.hasNext());
+            }
+        }
+    }
+
+    @Test
+    public void testHDLowDim() {
+        //PhTreeHD also works for few dimensions
+        final int N = 1000;
+        Random R = new Random(0);
+        for (int DIM = 1; DIM <= 10; DIM++) {
+            PhTree<long[]> ind = new PhTreeHD<>(DIM);
+            PhTree<long[]> ref = PhTree.create(DIM);
+            long[][] keys = createKeys(R, N, DIM, DIM > 3);
+            for (long[] v: keys) {
+                assertEquals(ref.put(v, v) == null, ind.put(v, v) == null);
+            }
+            assertEquals(ref.size(), ind.size());
+            long[] min = new long[DIM];
+            long[] max = new long[DIM];
+            Arrays.fill(min, -2);
+            Arrays.fill(max, 1);
+            assertEquals(ref.queryAll(min, max).size(), ind.queryAll(min, max).size());
+            for (long[] v: keys) {
+                assertEquals(ref.remove(v) == null, ind.remove(v) == null);
+            }
+            assertEquals(0, ind.size());
+        }
+    }
+
+    @Test
+    public void testHDStats() {
+        final int N = 1000;
+        Random R = new Random(0);
+        for (int DIM: DIMS_HD) {
+            PhTree<long[]> ind = create(DIM, 64);
+            long[][] keys = createKeys(R, N, DIM, true);
+            for (int i = 0; i < N; i++) {
+                ind.put(keys[i], keys[i]);
+                if (i % 3 == 0) {
+                    ind.remove(keys[i/2]);
+                }
+                if (i % 100 == 0) {
+                    checkStats(ind);
+                }
+            }
+            checkStats(ind);
+            ind.clear();
+            assertEquals(0, ind.getMemoryStats().nNodes);
+            assertEquals(0, ind.getMemoryStats().getTotalBytes());
+        }
+    }
+
+    private static void checkStats(PhTree<?> ind) {
+        PhTreeMemoryStats m = ind.getMemoryStats();
+        PhTreeQStats q = ind.getQuality();
+        PhTreeHelper.Stats s = ind.getStats();
+        assertEquals(ind.getNodeCount(), m.nNodes);
+        assertEquals(ind.getNodeCount(), q.nNodes);
+        assertEquals(ind.getNodeCount(), s.nNodes);
+        assertEquals(0, s.nLonely);
+        assertTrue(Arrays.equals(q.infixHist, m.infixHist));
+        assertEquals(s.size, m.getTotalBytes());
+        int nPost = 0;
+        for (int n: q.q_nPostFixN) {
+            nPost += n;
+        }
+        assertEquals(ind.size(), nPost);
+    }
+
+    @Test
+    public void testHDQueryMulti() {
+        final int N = 2000;
+        Random R = new Random(0);
+        for (int DIM: DIMS_HD) {
+            PhTree<long[]> ind = create(DIM, 64);
+            long[][] keys = createKeys(R, N, DIM, true);
+            for (long[] v: keys) {
+                ind.put(v, v);
+            }
+            //overlapping windows
+            long[][] mins = new long[3][DIM];
+            long[][] maxs = new long[3][DIM];
+            for (int w = 0; w < mins.length; w++) {
+                Arrays.fill(mins[w], Long.MIN_VALUE);
+                Arrays.fill(maxs[w], Long.MAX_VALUE);
+                mins[w][w] = -4 + w;
+                maxs[w][w] = -2 + w;
+                mins[w][DIM-1] = -2;
+                maxs[w][DIM-1] = 1;
+            }
+            HashSet<PhEntry<long[]>> exp = new HashSet<>();
+            for (int w = 0; w < mins.length; w++) {
+                exp.addAll(ind.queryAll(mins[w], maxs[w]));
+            }
+            HashSet<PhEntry<long[]>> res = new HashSet<>();
+            PhQueryMulti<long[]> q = ind.query(mins, maxs);
+            while (q.hasNext()) {
+                assertTrue(res.add(q.nextEntry()));
+            }
+            assertEquals(exp, res);
+            assertTrue(res.size() > 0);
+        }
+    }
+
+    @Test
+    public void testHDCursor() {
+        final int N = 1000;
+        Random R = new Random(0);
+        for (int DIM: DIMS_HD) {
+            PhTree<long[]> ind = create(DIM, 64);
+            PhCursor<long[]> c = ind.cursor();
+            long[][] keys = createKeys(R, N, DIM, true);
+            for (long[] v: keys) {
+                c.put(v, v);
+            }
+            for (long[] v: keys) {
+                assertTrue(c.contains(v));
+                long[] v2 = v.clone();
+                v2[0] += 10;
+                assertTrue(Arrays.equals(v, c.update(v, v2)));
+                assertTrue(Arrays.equals(v, c.get(v2)));
+                assertNotNull(c.remove(v2));
+            }
+            assertEquals(0, ind.size());
+        }
+    }
+
+    @Test
+    public void testHDQueryMultiRandom() {
+        final int N = 2000;
+        Random R = new Random(0);
+        for (int DIM: DIMS_HD) {
+            PhTree<long[]> ind = create(DIM, 64);
+            long[][] keys = createKeys(R, N, DIM, true);
+            for (long[] v: keys) {
+                ind.put(v, v);
+            }
+            for (int r = 0; r < 20; r++) {
+                //windows around existing keys, they may or may not overlap
+                int nW = 1 + R.nextInt(5);
+                long[][] mins = new long[nW][DIM];
+                long[][] maxs = new long[nW][DIM];
+                for (int w = 0; w < nW; w++) {
+                    long[] k = keys[R.nextInt(N)];
+                    for (int d = 0; d < DIM; d++) {
+                        mins[w][d] = k[d] - R.nextInt(8);
+                        maxs[w][d] = k[d] + R.nextInt(8);
+                    }
+                }
+                HashSet<PhEntry<long[]>> exp = new HashSet<>();
+                for (int w = 0; w < nW; w++) {
+                    exp.addAll(ind.queryAll(mins[w], maxs[w]));
+                }
+                HashSet<PhEntry<long[]>> res = new HashSet<>();
+                PhQueryMulti<long[]> q = ind.query(mins, maxs);
+                while (q.hasNext()) {
+                    assertTrue(res.add(q.nextEntry()));
+                }
+                assertEquals(exp, res);
+                assertTrue(res.size() >= 1);
+            }
+        }
+    }
+
+    @Test
+    public void testHDCursorMixed() {
+        final int N = 1000;
+        Random R = new Random(0);
+        for (int DIM: DIMS_HD) {
+            PhTree<long[]> ind = create(DIM, 64);
+            PhTree<long[]> ref = create(DIM, 64);
+            PhCursor<long[]> c = ind.cursor();
+            long[][] keys = createKeys(R, N, DIM, true);
+            for (int i = 0; i < 5*N; i++) {
+                long[] k = keys[R.nextInt(N)];
+                long[] k2 = k.clone();
+                k2[R.nextInt(DIM)] += R.nextInt(3) - 1;
+                switch (R.nextInt(6)) {
+                case 0:
+                case 1:
+                    assertTrue(Arrays.equals(ref.put(k, k), c.put(k, k)));
+                    break;
+                case 2:
+                    assertTrue(Arrays.equals(ref.remove(k), c.remove(k)));
+                    break;
+                case 3:
+                    assertTrue(Arrays.equals(ref.update(k, k2), c.update(k, k2)));
+                    break;
+                case 4:
+                    assertTrue(Arrays.equals(ref.get(k2), c.get(k2)));
+                    assertEquals(ref.contains(k), c.contains(k));
+                    break;
+                default:
+                    //modifications that bypass the cursor
+                    assertTrue(Arrays.equals(ref.put(k2, k2), ind.put(k2, k2)));
+                    assertTrue(Arrays.equals(ref.remove(k), ind.remove(k)));
+                }
+                assertEquals(ref.size(), ind.size());
+            }
+            for (long[] k: keys) {
+                assertTrue(Arrays.equals(ref.get(k), ind.get(k)));
+            }
+            checkStats(ind);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhKnnQuery;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+
+/**
+ * Measures insert, lookup, window query and kNN cost of {@link PhTree#create(int)} for
+ * more than 64 dimensions, see {@link ch.ethz.globis.pht.hd.PhTreeHD}.
+ */
+public class TestHighDimensionsPerf {
+
+	private static final int N = 100000;
+	private static final int N_QUERY = 1000;
+
+	public static void main(String[] args) {
+		for (int DIM: new int[]{48, 64, 96, 128, 256}) {
+			Random R = new Random(0);
+			long[][] keys = new long[N][DIM];
+			for (int i = 0; i < N; i++) {
+				for (int d = 0; d < DIM; d++) {
+					//clustered data, 10 bits per dimension
+					keys[i][d] = R.nextInt(1024);
+				}
+			}
+			measure(DIM, keys);
+		}
+	}
+
+	private static void measure(int DIM, long[][] keys) {
+		long tIns = 0, tGet = 0, tQuery = 0, tKnn = 0;
+		final int ROUNDS = 3;
+		long[] min = new long[DIM];
+		long[] max = new long[DIM];
+		for (int r = 0; r < ROUNDS; r++) {
+			PhTree<Integer> tree = PhTree.create(DIM);
+			long t0 = System.nanoTime();
+			for (int i = 0; i < keys.length; i++) {
+				tree.put(keys[i], i);
+			}
+			long t1 = System.nanoTime();
+			int n = 0;
+			for (int i = 0; i < keys.length; i++) {
+				n += tree.get(keys[i]) != null ? 1 : 0;
+			}
+			long t2 = System.nanoTime();
+			for (int i = 0; i < N_QUERY; i++) {
+				//restrict the first 8 dimensions
+				Arrays.fill(min, Long.MIN_VALUE);
+				Arrays.fill(max, Long.MAX_VALUE);
+				for (int d = 0; d < 8; d++) {
+					min[d] = keys[i][d] - 256;
+					max[d] = keys[i][d] + 256;
+				}
+				PhQuery<Integer> q = tree.query(min, max);
+				while (q.hasNext()) {
+					q.nextEntryReuse();
+					n++;
+				}
+			}
+			long t3 = System.nanoTime();
+			for (int i = 0; i < N_QUERY; i++) {
+				PhKnnQuery<Integer> q = tree.nearestNeighbour(10, keys[i]);
+				while (q.hasNext()) {
+					q.nextEntryReuse();
+					n++;
+				}
+			}
+			long t4 = System.nanoTime();
+			if (n < keys.length) {
+				throw new IllegalStateException();
+			}
+			if (r > 0) {
+				tIns += t1-t0;
+				tGet += t2-t1;
+				tQuery += t3-t2;
+				tKnn += t4-t3;
+			}
+		}
+		double div = (ROUNDS-1) * (double)keys.length;
+		double divQ = (ROUNDS-1) * (double)N_QUERY * 1000;
+		System.out.println(String.format("DIM=%3d  insert=%6.0fns  get=%6.0fns  " +
+				"query=%7.1fus  knn=%7.1fus",
+				DIM, tIns/div, tGet/div, tQuery/divQ, tKnn/divQ));
+	}
+}
@@ -6,6 +6,7 @@
  */
 package ch.ethz.globis.pht.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -227,4 +228,166 @@ public class TestIndexUpdate extends TestSuper {
 			assertFalse(tree.contains(r));
 		}
 	}
+
+	private void checkSmallDisplacement(int K, int N, int maxStep) {
+		Random R = new Random(K);
+		long[][] data = new long[N][K];
+		PhTree<long[]> tree = create(K, 64);
+		for (int i = 0; i < N; i++) {
+			for (int k = 0; k < K; k++) {
+				data[i][k] = R.nextInt(1000000);
+			}
+			tree.put(data[i], data[i]);
+		}
+		N = tree.size();
+
+		for (int repeat = 0; repeat < 10; repeat++) {
+			for (int i = 0; i < data.length; i++) {
+				long[] r = data[i];
+				long[] rNew = new long[K];
+				Arrays.setAll(rNew, x -> r[x] + R.nextInt(2*maxStep+1) - maxStep);
+				long[] v = tree.update(r, rNew);
+				if (v != null) {
+					assertTrue(Arrays.equals(v, r));
+					tree.put(rNew, rNew);
+					data[i] = rNew;
+				}
+			}
+		}
+
+		//the structure of the tree does not depend on the history of modifications
+		PhTree<long[]> tree2 = create(K, 64);
+		for (long[] r: data) {
+			assertTrue(Arrays.equals(r, tree.get(r)));
+			tree2.put(r, r);
+		}
+		assertEquals(N, tree.size());
+		assertEquals(tree2.size(), tree.size());
+		assertEquals(tree2.getNodeCount(), tree.getNodeCount());
+		assertEquals(tree2.toStringPlain(), tree.toStringPlain());
+	}
+
+	@Test
+	public void testSmallDisplacement2D() {
+		checkSmallDisplacement(2, 20000, 3);
+	}
+
+	@Test
+	public void testSmallDisplacement3D() {
+		checkSmallDisplacement(3, 20000, 100);
+	}
+
+	@Test
+	public void testSmallDisplacement10D() {
+		//NI nodes
+		checkSmallDisplacement(10, 5000, 10);
+	}
+
+	@Test
+	public void testUpdateAll() {
+		final int K = 3;
+		final int N = 20000;
+		Random R = new Random(0);
+		PhTree<long[]> tree = create(K, 64);
+		PhTree<long[]> ref = create(K, 64);
+		long[][] data = new long[N][K];
+		for (int i = 0; i < N; i++) {
+			for (int k = 0; k < K; k++) {
+				data[i][k] = R.nextLong();
+			}
+			tree.put(data[i], data[i]);
+			ref.put(data[i], data[i]);
+		}
+		for (int repeat = 0; repeat < 5; repeat++) {
+			//including some missing keys
+			long[][] oldKeys = new long[N + 100][];
+			long[][] newKeys = new long[N + 100][K];
+			int nExpected = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				long[] r = i < N ? data[i] : new long[]{i, i, i}; 
+				oldKeys[i] = r;
+				long maxStep = 1L << R.nextInt(63);
+				Arrays.setAll(newKeys[i], x -> r[x] + R.nextLong() % maxStep);
+				if (ref.update(oldKeys[i], newKeys[i]) != null) {
+					nExpected++;
+				}
+			}
+			assertEquals(N, nExpected);
+			assertEquals(nExpected, tree.updateAll(oldKeys, newKeys));
+			for (int i = 0; i < N; i++) {
+				data[i] = newKeys[i];
+			}
+			assertEquals(ref.size(), tree.size());
+			assertEquals(ref.getNodeCount(), tree.getNodeCount());
+			assertEquals(ref.toStringPlain(), tree.toStringPlain());
+		}
+	}
+
+	@Test
+	public void testUpdateAllSmallMoves3D() {
+		checkUpdateAllSmallMoves(3, 20000);
+	}
+
+	@Test
+	public void testUpdateAllSmallMoves10D() {
+		//NI nodes
+		checkUpdateAllSmallMoves(10, 5000);
+	}
+
+	/**
+	 * Entries move around fixed grid points, so that new keys never collide. Most moves
+	 * stay in their node, some require merges and splits.
+	 */
+	private void checkUpdateAllSmallMoves(int K, int N) {
+		Random R = new Random(0);
+		PhTree<long[]> tree = create(K, 64);
+		PhTree<long[]> ref = create(K, 64);
+		long[][] grid = new long[N][K];
+		long[][] data = new long[N][];
+		for (int i = 0; i < N; i++) {
+			for (int k = 0; k < K; k++) {
+				grid[i][k] = R.nextInt(N) * 8L;
+			}
+			data[i] = grid[i].clone();
+			if (ref.put(data[i], data[i]) == null) {
+				tree.put(data[i], data[i]);
+			} else {
+				//duplicate grid point
+				data[i] = null;
+			}
+		}
+		for (int repeat = 0; repeat < 10; repeat++) {
+			int n = 0;
+			for (long[] d: data) {
+				n += d == null ? 0 : 1;
+			}
+			long[][] oldKeys = new long[n + 10][];
+			long[][] newKeys = new long[n + 10][];
+			int j = 0;
+			for (int i = 0; i < N; i++) {
+				if (data[i] == null) {
+					continue;
+				}
+				long[] g = grid[i];
+				oldKeys[j] = data[i];
+				newKeys[j] = new long[K];
+				Arrays.setAll(newKeys[j], x -> g[x] + R.nextInt(7) - 3);
+				data[i] = newKeys[j];
+				j++;
+			}
+			for (; j < oldKeys.length; j++) {
+				//missing keys
+				oldKeys[j] = new long[K];
+				Arrays.fill(oldKeys[j], 4 + j);
+				newKeys[j] = oldKeys[j].clone();
+			}
+			for (int i = 0; i < n; i++) {
+				assertNotNull(ref.update(oldKeys[i], newKeys[i]));
+			}
+			assertEquals(n, tree.updateAll(oldKeys, newKeys));
+			assertEquals(ref.size(), tree.size());
+			assertEquals(ref.getNodeCount(), tree.getNodeCount());
+			assertEquals(ref.toStringPlain(), tree.toStringPlain());
+		}
+	}
 }
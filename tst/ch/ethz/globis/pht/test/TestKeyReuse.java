@@ -0,0 +1,229 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTreeConfig;
+import ch.ethz.globis.pht.PhTreeF;
+import ch.ethz.globis.pht.PhTreeF.PhEntryF;
+import ch.ethz.globis.pht.PhTreeF.PhQueryF;
+import ch.ethz.globis.pht.PhTreeMulti;
+import ch.ethz.globis.pht.PhTreeSolidF;
+import ch.ethz.globis.pht.PhTreeSolidF.PhEntrySF;
+import ch.ethz.globis.pht.PhTreeSolidF.PhIteratorSF;
+import ch.ethz.globis.pht.pre.EmptyPPF;
+
+/**
+ * Tests for operations that reuse key buffers.
+ */
+public class TestKeyReuse {
+
+	private static PhTreeF<Integer> createF(int dim) {
+		//small nodes to test node indexes (NI)
+		PhTreeConfig cfg = new PhTreeConfig(dim);
+		cfg.setNiThresholds(2, 2);
+		return PhTreeF.wrap(PhTree.create(cfg));
+	}
+
+	@Test
+	public void testPutOverwrite() {
+		Random R = new Random(0);
+		int N = 10000;
+		PhTreeF<Integer> tree = createF(3);
+		double[][] keys = new double[N][3];
+		for (int i = 0; i < N; i++) {
+			for (int d = 0; d < 3; d++) {
+				keys[i][d] = R.nextDouble();
+			}
+			tree.put(keys[i], i);
+		}
+		//overwrite all values, then insert more keys
+		for (int i = 0; i < N; i++) {
+			assertEquals(i, (int)tree.put(keys[i], -i));
+		}
+		for (int i = 0; i < N; i++) {
+			tree.put(new double[]{-R.nextDouble(), R.nextDouble(), R.nextDouble()}, 0);
+		}
+		for (int i = 0; i < N; i++) {
+			assertEquals(-i, (int)tree.get(keys[i]));
+			assertTrue(tree.contains(keys[i]));
+		}
+		//updates use both buffers
+		for (int i = 0; i < N; i += 2) {
+			double[] newKey = {keys[i][0] + 10, keys[i][1], keys[i][2]};
+			assertEquals(-i, (int)tree.update(keys[i], newKey));
+			keys[i] = newKey;
+		}
+		for (int i = 0; i < N; i++) {
+			assertEquals(-i, (int)tree.remove(keys[i]));
+			assertFalse(tree.contains(keys[i]));
+		}
+		assertEquals(N, tree.size());
+	}
+
+	@Test
+	public void testPutOverwriteLong() {
+		//the tree must not keep a reference to a key that was passed to put()
+		PhTreeConfig cfg = new PhTreeConfig(2);
+		cfg.setNiThresholds(2, 2);
+		PhTree<Integer> tree = PhTree.create(cfg);
+		for (int i = 0; i < 64; i++) {
+			tree.put(new long[]{i % 8, i / 8}, i);
+		}
+		long[] key = {5, 5};
+		tree.put(key, -1);
+		key[0] = 6;
+		assertEquals(-1, (int)tree.get(5, 5));
+		assertEquals(46, (int)tree.get(6, 5));
+		assertEquals(64, tree.queryAll(new long[]{0, 0}, new long[]{7, 7}).size());
+	}
+
+	/**
+	 * Overwrite keys in NI nodes with a reused key buffer, the tree must not keep
+	 * a reference to the buffer.
+	 */
+	@Test
+	public void testPutOverwriteNI() {
+		int DIM = 8;
+		int N = 246;
+		//keys differ only in the last bit, they end up as posts in a single NI leaf node
+		PhTreeConfig cfg = new PhTreeConfig(DIM);
+		cfg.setNiThresholds(1, 1);
+		PhTreeF<Integer> tree = PhTreeF.create(cfg, new EmptyPPF());
+		double[][] keys = new double[N][DIM];
+		for (int i = 0; i < N; i++) {
+			for (int d = 0; d < DIM; d++) {
+				keys[i][d] = ((i >> d) & 1) == 0 ? 1.0 : Math.nextUp(1.0);
+			}
+			tree.put(keys[i], i);
+		}
+		assertEquals(1, tree.getInternalTree().getMemoryStats().nNI);
+		for (int i = 0; i < N; i++) {
+			assertEquals(i, (int)tree.put(keys[i], -i));
+		}
+		//overwrites the key buffer once more
+		assertFalse(tree.contains(filled(DIM, -1)));
+		checkKeys(tree, keys);
+
+		//same for compute()
+		for (int i = 0; i < N; i++) {
+			final int i2 = i;
+			assertEquals(i, (int)tree.computeIfPresent(keys[i], (k, v) -> i2));
+		}
+		assertFalse(tree.contains(filled(DIM, -1)));
+		checkKeys(tree, keys);
+	}
+
+	private static void checkKeys(PhTreeF<Integer> tree, double[][] keys) {
+		PhQueryF<Integer> q = tree.query(filled(keys[0].length, -1), filled(keys[0].length, 2));
+		int n = 0;
+		while (q.hasNext()) {
+			PhEntryF<Integer> e = q.nextEntry();
+			assertArrayEquals(keys[Math.abs(e.getValue())], e.getKey(), 0.0);
+			n++;
+		}
+		assertEquals(keys.length, n);
+	}
+
+	private static double[] filled(int dim, double v) {
+		double[] a = new double[dim];
+		Arrays.fill(a, v);
+		return a;
+	}
+
+	@Test
+	public void testMultiOverwriteNI() {
+		PhTreeConfig cfg = new PhTreeConfig(2);
+		cfg.setNiThresholds(2, 2);
+		PhTreeMulti<Integer> tree = PhTreeMulti.create(cfg);
+		long[] buf = new long[2];
+		for (int r = 0; r < 2; r++) {
+			for (int i = 0; i < 64; i++) {
+				buf[0] = i % 8;
+				buf[1] = i / 8;
+				tree.put(buf, i);
+			}
+		}
+		buf[0] = -1;
+		buf[1] = -1;
+		assertEquals(128, tree.size());
+		for (int i = 0; i < 64; i++) {
+			assertEquals(2, tree.getAll(i % 8, i / 8).size());
+		}
+		assertEquals(64, tree.getKeyCount());
+		for (PhEntry<Integer> e: tree.queryAll(new long[]{0, 0}, new long[]{7, 7})) {
+			int i = e.getValue();
+			assertArrayEquals(new long[]{i % 8, i / 8}, e.getKey());
+		}
+	}
+
+	@Test
+	public void testIteratorReuse() {
+		Random R = new Random(0);
+		PhTreeF<Integer> tree = createF(2);
+		for (int i = 0; i < 1000; i++) {
+			tree.put(new double[]{R.nextDouble(), R.nextDouble()}, i);
+		}
+		double[] min = {0.2, 0.2};
+		double[] max = {0.7, 0.7};
+		PhQueryF<Integer> q1 = tree.query(min, max);
+		PhQueryF<Integer> q2 = tree.query(min, max);
+		PhQueryF<Integer> q3 = tree.query(min, max);
+		double[] out = new double[2];
+		int n = 0;
+		while (q1.hasNext()) {
+			PhEntryF<Integer> e1 = q1.nextEntry();
+			PhEntryF<Integer> e2 = q2.nextEntryReuse();
+			assertArrayEquals(e1.getKey(), e2.getKey(), 0.0);
+			assertEquals(e1.getValue(), e2.getValue());
+			assertArrayEquals(e1.getKey(), q3.nextKeyReuse(out), 0.0);
+			n++;
+		}
+		assertFalse(q2.hasNext());
+		assertFalse(q3.hasNext());
+		assertTrue(n > 0);
+	}
+
+	@Test
+	public void testSolidReuse() {
+		PhTreeSolidF<Integer> tree = PhTreeSolidF.create(2);
+		for (int i = 0; i < 100; i++) {
+			tree.put(new double[]{i, i}, new double[]{i + 0.5, i + 1.5}, i);
+		}
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, (int)tree.get(new double[]{i, i}, new double[]{i + 0.5, i + 1.5}));
+		}
+		PhIteratorSF<Integer> it1 = tree.iterator();
+		PhIteratorSF<Integer> it2 = tree.iterator();
+		PhIteratorSF<Integer> it3 = tree.iterator();
+		double[] out = new double[4];
+		while (it1.hasNext()) {
+			double[] key = it1.nextKey();
+			assertEquals(key[0] + 0.5, key[2], 0.0);
+			assertEquals(key[1] + 1.5, key[3], 0.0);
+			PhEntrySF<Integer> e = it2.nextEntryReuse();
+			assertArrayEquals(new double[]{key[0], key[1]}, e.lower(), 0.0);
+			assertArrayEquals(new double[]{key[2], key[3]}, e.upper(), 0.0);
+			assertArrayEquals(key, it3.nextKeyReuse(out), 0.0);
+		}
+		assertEquals(50, (int)tree.update(new double[]{50, 50}, new double[]{50.5, 51.5},
+				new double[]{-1, -1}, new double[]{1, 1}));
+		assertEquals(50, (int)tree.remove(new double[]{-1, -1}, new double[]{1, 1}));
+		assertEquals(99, tree.size());
+	}
+}
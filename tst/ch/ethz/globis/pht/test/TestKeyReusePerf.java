@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import ch.ethz.globis.pht.PhTreeF;
+import ch.ethz.globis.pht.PhTreeF.PhQueryF;
+
+/**
+ * Measures allocated bytes per operation of {@link PhTreeF} lookups and query iteration.
+ */
+public class TestKeyReusePerf {
+
+	private static final int N = 1000000;
+	private static final int DIM = 3;
+
+	private static final com.sun.management.ThreadMXBean MX =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private static long allocated() {
+		return MX.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	public static void main(String[] args) {
+		Random R = new Random(0);
+		double[][] keys = new double[N][DIM];
+		PhTreeF<Integer> tree = PhTreeF.create(DIM);
+		Integer value = 1;
+		for (int i = 0; i < N; i++) {
+			for (int d = 0; d < DIM; d++) {
+				keys[i][d] = R.nextDouble();
+			}
+			tree.put(keys[i], value);
+		}
+		double[] min = {0.2, 0.2, 0.2};
+		double[] max = {0.4, 0.4, 0.4};
+		PhQueryF<Integer> q = tree.query(min, max);
+		double[] buf = new double[DIM];
+		for (int r = 0; r < 5; r++) {
+			long n = 0;
+			long a0 = allocated();
+			long t0 = System.nanoTime();
+			for (int i = 0; i < N; i++) {
+				n += tree.get(keys[i]) != null ? 1 : 0;
+			}
+			long a1 = allocated();
+			long t1 = System.nanoTime();
+			for (int i = 0; i < N; i++) {
+				tree.put(keys[i], value);
+			}
+			long a2 = allocated();
+			long t2 = System.nanoTime();
+			int nq = 0;
+			for (int i = 0; i < 20; i++) {
+				q.reset(min, max);
+				while (q.hasNext()) {
+					n += q.nextEntryReuse().getKey().length;
+					nq++;
+				}
+			}
+			long a3 = allocated();
+			long t3 = System.nanoTime();
+			for (int i = 0; i < 20; i++) {
+				q.reset(min, max);
+				while (q.hasNext()) {
+					n += q.nextKeyReuse(buf).length;
+				}
+			}
+			long a4 = allocated();
+			long t4 = System.nanoTime();
+			for (int i = 0; i < 20; i++) {
+				q.reset(min, max);
+				while (q.hasNext()) {
+					n += q.nextEntry().getKey().length;
+				}
+			}
+			long a5 = allocated();
+			long t5 = System.nanoTime();
+			if (n == 0) {
+				throw new IllegalStateException();
+			}
+			System.out.println(String.format("get: %4.1f B/op %4.0fns  put: %4.1f B/op %4.0fns  " +
+					"nextEntryReuse: %4.1f B/op %3.0fns  nextKeyReuse: %4.1f B/op %3.0fns  " +
+					"nextEntry: %4.1f B/op %3.0fns",
+					(a1-a0)/(double)N, (t1-t0)/(double)N,
+					(a2-a1)/(double)N, (t2-t1)/(double)N,
+					(a3-a2)/(double)nq, (t3-t2)/(double)nq,
+					(a4-a3)/(double)nq, (t4-t3)/(double)nq,
+					(a5-a4)/(double)nq, (t5-t4)/(double)nq));
+		}
+	}
+}
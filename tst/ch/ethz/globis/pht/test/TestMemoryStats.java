@@ -0,0 +1,133 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTreeConfig;
+import ch.ethz.globis.pht.PhTreeHelper;
+import ch.ethz.globis.pht.util.PhTreeMemoryStats;
+import ch.ethz.globis.pht.util.PhTreeQStats;
+
+public class TestMemoryStats {
+
+	private static void check(PhTree<Object> tree) {
+		PhTreeMemoryStats m = tree.getMemoryStats();
+		PhTreeHelper.Stats s = tree.getStats();
+		PhTreeQStats q = tree.getQuality();
+		assertEquals(s.nNodes, m.nNodes);
+		assertEquals(s.size, m.getTotalBytes());
+		assertEquals(q.nHCP, m.nHCP);
+		assertEquals(q.nHCS, m.nHCS);
+		assertEquals(q.nNI, m.nNI);
+		assertArrayEquals(q.infixHist, m.infixHist);
+	}
+
+	private static long[] key(Random R, int DIM, int range) {
+		long[] key = new long[DIM];
+		for (int d = 0; d < DIM; d++) {
+			key[d] = R.nextInt(range);
+		}
+		return key;
+	}
+
+	private void run(PhTreeConfig cfg, int N, int range) {
+		final int DIM = cfg.getDim();
+		PhTree<Object> tree = PhTree.create(cfg);
+		Random R = new Random(DIM);
+		for (int r = 0; r < 5; r++) {
+			for (int i = 0; i < N; i++) {
+				long[] key = key(R, DIM, range);
+				switch (R.nextInt(4)) {
+				case 0: tree.remove(key); break;
+				case 1: tree.update(key, key(R, DIM, range)); break;
+				default: tree.put(key, (long) i);
+				}
+			}
+			check(tree);
+
+			//move half of the entries
+			long[][] oldKeys = new long[tree.size()/2][];
+			long[][] newKeys = new long[oldKeys.length][];
+			PhTree.PhExtent<Object> it = tree.queryExtent();
+			for (int i = 0; i < oldKeys.length; i++) {
+				oldKeys[i] = it.nextKey();
+				newKeys[i] = oldKeys[i].clone();
+				newKeys[i][R.nextInt(DIM)] = R.nextInt(range);
+			}
+			tree.updateAll(oldKeys, newKeys);
+			check(tree);
+
+			long[] min = key(R, DIM, range);
+			long[] max = min.clone();
+			for (int d = 0; d < DIM; d++) {
+				max[d] += range/4;
+			}
+			tree.removeRange(min, max);
+			check(tree);
+
+			tree.compact();
+			check(tree);
+		}
+
+		//remove everything
+		long[] min = new long[DIM];
+		long[] max = new long[DIM];
+		Arrays.fill(max, range);
+		tree.removeRange(min, max);
+		check(tree);
+		assertEquals(1, tree.getMemoryStats().nNodes);
+
+		tree.clear();
+		assertEquals(0, tree.getMemoryStats().nNodes);
+		assertEquals(0, tree.getMemoryStats().getTotalBytes());
+	}
+
+	@Test
+	public void test3D() {
+		run(new PhTreeConfig(3), 20000, 1 << 20);
+	}
+
+	@Test
+	public void test3DDense() {
+		run(new PhTreeConfig(3), 20000, 32);
+	}
+
+	@Test
+	public void test10D() {
+		run(new PhTreeConfig(10), 20000, 8);
+	}
+
+	@Test
+	public void testSmallNodes() {
+		PhTreeConfig cfg = new PhTreeConfig(6);
+		cfg.setNiThresholds(4, 2);
+		run(cfg, 20000, 16);
+	}
+
+	@Test
+	public void testSmallNodesArray() {
+		PhTreeConfig cfg = new PhTreeConfig(6);
+		cfg.setNiThresholds(4, 2);
+		cfg.setNiIndexType(PhTreeConfig.NI_INDEX_ARRAY);
+		run(cfg, 20000, 16);
+	}
+
+	@Test
+	public void testValuesLong() {
+		PhTreeConfig cfg = new PhTreeConfig(4);
+		cfg.setValueType(PhTreeConfig.VALUES_LONG);
+		run(cfg, 20000, 64);
+	}
+}
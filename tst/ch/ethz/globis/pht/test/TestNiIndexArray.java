@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhExtent;
+import ch.ethz.globis.pht.PhTree.PhKnnQuery;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+import ch.ethz.globis.pht.PhTreeConfig;
+
+public class TestNiIndexArray {
+
+	private static PhTree<Integer> create(int DIM, int indexType, boolean smallNodes,
+			int valueType) {
+		PhTreeConfig cfg = new PhTreeConfig(DIM);
+		cfg.setNiIndexType(indexType);
+		cfg.setValueType(valueType);
+		if (smallNodes) {
+			cfg.setNiThresholds(4, 2);
+		}
+		return PhTree.create(cfg);
+	}
+
+	private static ArrayList<String> query(PhTree<Integer> tree, long[] min, long[] max) {
+		ArrayList<String> ret = new ArrayList<>();
+		PhQuery<Integer> q = tree.query(min, max);
+		while (q.hasNext()) {
+			ret.add(Arrays.toString(q.nextKey()));
+		}
+		return ret;
+	}
+
+	private void check(int DIM, int N, int range, boolean smallNodes) {
+		check(DIM, N, range, smallNodes, PhTreeConfig.VALUES_OBJECT);
+	}
+
+	private void check(int DIM, int N, int range, boolean smallNodes, int valueType) {
+		Random R = new Random(DIM);
+		PhTree<Integer> ref = create(DIM, PhTreeConfig.NI_INDEX_CRITBIT, smallNodes,
+				PhTreeConfig.VALUES_OBJECT);
+		PhTree<Integer> tree = create(DIM, PhTreeConfig.NI_INDEX_ARRAY, smallNodes, valueType);
+		for (int i = 0; i < N; i++) {
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = R.nextInt(range);
+			}
+			if (R.nextInt(4) == 0) {
+				assertEquals(ref.remove(key), tree.remove(key));
+			} else {
+				assertEquals(ref.put(key, i), tree.put(key, i));
+			}
+		}
+		assertEquals(ref.size(), tree.size());
+		assertEquals(ref.toStringPlain(), tree.toStringPlain());
+
+		//move entries, the new key is usually in the same node
+		for (int i = 0; i < N/10; i++) {
+			long[] key = new long[DIM];
+			long[] newKey = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = R.nextInt(range);
+				newKey[d] = d == 0 ? R.nextInt(range) : key[d];
+			}
+			assertEquals(ref.update(key, newKey), tree.update(key, newKey));
+		}
+		assertEquals(ref.toStringPlain(), tree.toStringPlain());
+
+		long[] min = new long[DIM];
+		long[] max = new long[DIM];
+		for (int r = 0; r < 50; r++) {
+			for (int d = 0; d < DIM; d++) {
+				min[d] = R.nextInt(range);
+				max[d] = min[d] + R.nextInt(range);
+			}
+			assertEquals(query(ref, min, max), query(tree, min, max));
+		}
+
+		long[] center = new long[DIM];
+		for (int r = 0; r < 10; r++) {
+			for (int d = 0; d < DIM; d++) {
+				center[d] = R.nextInt(range);
+			}
+			PhKnnQuery<Integer> q1 = ref.nearestNeighbour(5, center);
+			PhKnnQuery<Integer> q2 = tree.nearestNeighbour(5, center);
+			while (q1.hasNext()) {
+				assertTrue(q2.hasNext());
+				assertEquals(q1.nextValue(), q2.nextValue());
+			}
+		}
+
+		//remove everything
+		PhExtent<Integer> q = ref.queryExtent();
+		while (q.hasNext()) {
+			long[] key = q.nextKey();
+			assertEquals(ref.get(key), tree.remove(key));
+		}
+		assertEquals(0, tree.size());
+	}
+
+	@Test
+	public void test20D() {
+		check(20, 20000, 4, false);
+	}
+
+	@Test
+	public void test12D() {
+		check(12, 20000, 8, false);
+	}
+
+	@Test
+	public void testSmallNodes() {
+		check(6, 20000, 16, true);
+	}
+
+	@Test
+	public void testIntValues() {
+		check(20, 20000, 4, false, PhTreeConfig.VALUES_INT);
+		check(6, 20000, 16, true, PhTreeConfig.VALUES_INT);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidType() {
+		new PhTreeConfig(2).setNiIndexType(5);
+	}
+}
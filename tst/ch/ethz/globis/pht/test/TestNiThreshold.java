@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTreeConfig;
+
+public class TestNiThreshold {
+
+	private static PhTree<Integer> create(int DIM, int maxSubs, int maxPosts, double hyst) {
+		PhTreeConfig cfg = new PhTreeConfig(DIM);
+		cfg.setNiThresholds(maxSubs, maxPosts);
+		cfg.setNiHysteresis(hyst);
+		return PhTree.create(cfg);
+	}
+
+	private void checkRandom(PhTree<Integer> tree, int DIM, int N, int range, Random R) {
+		HashMap<String, Integer> ref = new HashMap<>();
+		for (int i = 0; i < N; i++) {
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = R.nextInt(range);
+			}
+			String k = Arrays.toString(key);
+			if (R.nextBoolean()) {
+				assertEquals(ref.put(k, i), tree.put(key, i));
+			} else {
+				assertEquals(ref.remove(k), tree.remove(key));
+			}
+			assertEquals(ref.size(), tree.size());
+		}
+		for (String k: ref.keySet()) {
+			String[] sa = k.substring(1, k.length()-1).split(", ");
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = Long.parseLong(sa[d]);
+			}
+			assertEquals(ref.get(k), tree.get(key));
+		}
+	}
+
+	@Test
+	public void testSmallThresholds() {
+		checkRandom(create(4, 4, 2, 0.5), 4, 50000, 16, new Random(0));
+	}
+
+	@Test
+	public void testNoHysteresis() {
+		checkRandom(create(6, 8, 4, 1.0), 6, 50000, 8, new Random(1));
+	}
+
+	@Test
+	public void testNeverRevert() {
+		checkRandom(create(6, 8, 4, 0.0), 6, 50000, 8, new Random(2));
+	}
+
+	@Test
+	public void testAutoTune() {
+		PhTreeConfig cfg = new PhTreeConfig(8);
+		cfg.setNiAutoTune(true);
+		PhTree<Integer> tree = PhTree.create(cfg);
+		checkRandom(tree, 8, 50000, 4, new Random(3));
+		//with DIM=8, the nodes are not converted
+		assertEquals(0, tree.getQuality().nNI);
+	}
+
+	private static long[] postKey(int i, int DIM) {
+		long[] key = new long[DIM];
+		for (int d = 0; d < DIM; d++) {
+			key[d] = (i >>> d) & 1;
+		}
+		return key;
+	}
+
+	@Test
+	public void testHysteresis() {
+		//all entries are posts of the same node
+		final int DIM = 6;
+		PhTree<Integer> tree = create(DIM, 500, 20, 0.5);
+		for (int i = 0; i < 21; i++) {
+			tree.put(postKey(i, DIM), i);
+		}
+		assertEquals(0, tree.getQuality().nNI);
+		//conversion happens when adding to a node with more than 20 posts
+		tree.put(postKey(21, DIM), 21);
+		assertEquals(1, tree.getQuality().nNI);
+		//remove/insert around the threshold does not convert the node back
+		for (int r = 0; r < 5; r++) {
+			tree.remove(postKey(21, DIM));
+			tree.remove(postKey(20, DIM));
+			assertEquals(1, tree.getQuality().nNI);
+			tree.put(postKey(20, DIM), 20);
+			tree.put(postKey(21, DIM), 21);
+			assertEquals(1, tree.getQuality().nNI);
+		}
+		//conversion back happens when removing from a node with at most 10 posts
+		for (int i = 21; i >= 9; i--) {
+			assertEquals(1, tree.getQuality().nNI);
+			tree.remove(postKey(i, DIM));
+		}
+		assertEquals(0, tree.getQuality().nNI);
+		assertEquals(9, tree.size());
+		for (int i = 0; i < 9; i++) {
+			assertEquals(i, (int) tree.get(postKey(i, DIM)));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidHysteresis() {
+		new PhTreeConfig(2).setNiHysteresis(1.5);
+	}
+}
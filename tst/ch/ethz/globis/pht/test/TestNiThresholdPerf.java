@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import java.util.Random;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhExtent;
+import ch.ethz.globis.pht.PhTreeConfig;
+
+/**
+ * Measures insert, lookup and iteration cost for different NI post thresholds. 
+ * This was used to choose the thresholds of {@link PhTreeConfig#setNiAutoTune(boolean)}.
+ */
+public class TestNiThresholdPerf {
+
+	private static final int N = 500000;
+	private static final int[] THRESHOLDS = {16, 50, 100, 200, 400, 1000};
+
+	public static void main(String[] args) {
+		for (int DIM: new int[]{4, 6, 7, 8, 9, 10, 12, 16, 24}) {
+			Random R = new Random(0);
+			long[][] keys = new long[N][DIM];
+			for (int i = 0; i < N; i++) {
+				for (int d = 0; d < DIM; d++) {
+					keys[i][d] = R.nextLong();
+				}
+			}
+			System.out.println("DIM=" + DIM);
+			for (int t: THRESHOLDS) {
+				measure(DIM, t, keys);
+			}
+		}
+	}
+
+	private static void measure(int DIM, int threshold, long[][] keys) {
+		long tIns = 0, tGet = 0, tIt = 0;
+		final int ROUNDS = 3;
+		for (int r = 0; r < ROUNDS; r++) {
+			PhTreeConfig cfg = new PhTreeConfig(DIM);
+			cfg.setNiThresholds(10*threshold, threshold);
+			PhTree<Integer> tree = PhTree.create(cfg);
+			long t0 = System.nanoTime();
+			for (int i = 0; i < keys.length; i++) {
+				tree.put(keys[i], i);
+			}
+			long t1 = System.nanoTime();
+			int n = 0;
+			for (int i = 0; i < keys.length; i++) {
+				n += tree.get(keys[i]) != null ? 1 : 0;
+			}
+			long t2 = System.nanoTime();
+			PhExtent<Integer> it = tree.queryExtent();
+			while (it.hasNext()) {
+				it.nextEntryReuse();
+				n++;
+			}
+			long t3 = System.nanoTime();
+			if (n != 2*keys.length) {
+				throw new IllegalStateException();
+			}
+			if (r > 0) {
+				tIns += t1-t0;
+				tGet += t2-t1;
+				tIt += t3-t2;
+			}
+		}
+		double div = (ROUNDS-1) * (double)keys.length;
+		System.out.println(String.format("  threshold=%4d  insert=%6.0fns  get=%6.0fns  " +
+				"iterate=%5.0fns", threshold, tIns/div, tGet/div, tIt/div));
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhKnnQuery;
+import ch.ethz.globis.pht.PhTree32;
+import ch.ethz.globis.pht.PhTree32.PhEntry32;
+import ch.ethz.globis.pht.PhTree32.PhKnnQuery32;
+import ch.ethz.globis.pht.PhTree32.PhQuery32;
+import ch.ethz.globis.pht.PhTreeConfig;
+
+public class TestPhTree32 {
+
+	private static long[] toLong(int[] key) {
+		long[] l = new long[key.length];
+		for (int i = 0; i < key.length; i++) {
+			l[i] = key[i];
+		}
+		return l;
+	}
+
+	private static int[] toInt(long[] key) {
+		int[] k = new int[key.length];
+		for (int i = 0; i < key.length; i++) {
+			k[i] = (int) key[i];
+		}
+		return k;
+	}
+
+	private static int[][] createKeys(int N, int DIM, Random R) {
+		int[][] keys = new int[N][DIM];
+		for (int[] key: keys) {
+			for (int d = 0; d < DIM; d++) {
+				key[d] = R.nextInt();
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Compare a PhTree32 with a PhTree that stores the sign-extended keys.
+	 */
+	private void check(int DIM, int N) {
+		Random R = new Random(0);
+		PhTree32<Integer> tree = PhTree32.create(DIM);
+		PhTree<Integer> ref = PhTree.create(DIM);
+		int[][] keys = createKeys(N, DIM, R);
+		for (int i = 0; i < N; i++) {
+			assertEquals(ref.put(toLong(keys[i]), i), tree.put(keys[i], i));
+		}
+		assertEquals(ref.size(), tree.size());
+		for (int i = 0; i < N; i++) {
+			assertEquals(ref.get(toLong(keys[i])), tree.get(keys[i]));
+			assertTrue(tree.contains(keys[i]));
+		}
+
+		//window queries
+		for (int i = 0; i < 20; i++) {
+			int[] min = new int[DIM];
+			int[] max = new int[DIM];
+			for (int d = 0; d < DIM; d++) {
+				int a = R.nextInt();
+				int b = R.nextInt();
+				min[d] = Math.min(a, b);
+				max[d] = Math.max(a, b);
+			}
+			int n = ref.queryAll(toLong(min), toLong(max)).size();
+			assertEquals(n, tree.queryAll(min, max).size());
+			PhQuery32<Integer> q = tree.query(min, max);
+			while (q.hasNext()) {
+				PhEntry32<Integer> e = q.nextEntry();
+				assertEquals(ref.get(toLong(e.getKey())), e.getValue());
+				n--;
+			}
+			assertEquals(0, n);
+		}
+
+		//kNN
+		for (int i = 0; i < 20; i++) {
+			int[] center = createKeys(1, DIM, R)[0];
+			PhKnnQuery<Integer> q1 = ref.nearestNeighbour(3, toLong(center));
+			PhKnnQuery32<Integer> q2 = tree.nearestNeighbour(3, center);
+			while (q1.hasNext()) {
+				assertArrayEquals(toInt(q1.nextKey()), q2.nextKey());
+			}
+			assertFalse(q2.hasNext());
+		}
+
+		//update and remove
+		for (int i = 0; i < N; i += 2) {
+			int[] newKey = createKeys(1, DIM, R)[0];
+			if (tree.contains(newKey)) {
+				continue;
+			}
+			assertEquals(ref.update(toLong(keys[i]), toLong(newKey)), tree.update(keys[i], newKey));
+			keys[i] = newKey;
+		}
+		for (int i = 0; i < N; i++) {
+			assertEquals(ref.remove(toLong(keys[i])), tree.remove(keys[i]));
+			assertNull(tree.remove(keys[i]));
+		}
+		assertEquals(0, tree.size());
+	}
+
+	@Test
+	public void testRandom() {
+		check(1, 10000);
+		check(3, 20000);
+		check(10, 10000);
+	}
+
+	@Test
+	public void testExtremes() {
+		int[] vals = {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -1, 0, 1,
+				Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+		PhTree32<Integer> tree = PhTree32.create(2);
+		int n = 0;
+		for (int v1: vals) {
+			for (int v2: vals) {
+				assertNull(tree.put(new int[]{v1, v2}, n++));
+			}
+		}
+		assertEquals(n, tree.size());
+		n = 0;
+		for (int v1: vals) {
+			for (int v2: vals) {
+				assertEquals(n++, (int)tree.get(v1, v2));
+			}
+		}
+
+		//query over negative and positive values
+		List<PhEntry32<Integer>> res = tree.queryAll(new int[]{-1, -1}, new int[]{1, 1});
+		assertEquals(9, res.size());
+		for (PhEntry32<Integer> e: res) {
+			for (int v: e.getKey()) {
+				assertTrue(v >= -1 && v <= 1);
+			}
+		}
+		assertEquals(n, tree.queryAll(
+				new int[]{Integer.MIN_VALUE, Integer.MIN_VALUE},
+				new int[]{Integer.MAX_VALUE, Integer.MAX_VALUE}).size());
+
+		//nearest neighbours across zero
+		PhKnnQuery32<Integer> q = tree.nearestNeighbour(1, 0, 0);
+		assertArrayEquals(new int[]{0, 0}, q.nextKey());
+		q.reset(1, null, Integer.MIN_VALUE + 5, Integer.MAX_VALUE - 5);
+		assertArrayEquals(new int[]{Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1}, q.nextKey());
+
+		assertEquals(9, tree.removeRange(new int[]{-1, -1}, new int[]{1, 1}));
+		assertEquals(n - 9, tree.size());
+	}
+
+	@Test
+	public void testCompute() {
+		PhTree32<Integer> tree = PhTree32.create(2);
+		int[] key = {-5, 5};
+		assertEquals(1, (int)tree.computeIfAbsent(key, k -> k[1] - 4));
+		assertEquals(1, (int)tree.putIfAbsent(key, 7));
+		assertEquals(3, (int)tree.computeIfPresent(key, (k, v) -> v + 2));
+		assertEquals(5, (int)tree.merge(key, 2, (v1, v2) -> v1 + v2));
+		assertNull(tree.compute(key, (k, v) -> null));
+		assertEquals(0, tree.size());
+		assertTrue(Arrays.equals(key, new int[]{-5, 5}));
+	}
+
+	@Test
+	public void testConfigNotModified() {
+		PhTreeConfig cfg = new PhTreeConfig(2);
+		cfg.setNiIndexType(PhTreeConfig.NI_INDEX_ARRAY);
+		PhTree32<Integer> tree = PhTree32.create(cfg);
+		assertEquals(64, cfg.getDepth());
+		tree.put(new int[]{-1, 1}, 1);
+		assertEquals(1, (int)tree.get(-1, 1));
+		//the same configuration can still be used for 64 bit trees
+		PhTree<Integer> tree64 = PhTree.create(cfg);
+		tree64.put(new long[]{-1L << 40, 1}, 1);
+		assertEquals(1, tree64.size());
+	}
+
+	@Test
+	public void testQueryAllFilter() {
+		PhTree32<Integer> tree = PhTree32.create(2);
+		for (int x = -10; x <= 10; x++) {
+			for (int y = -10; y <= 10; y++) {
+				tree.put(new int[]{x, y}, x * 100 + y);
+			}
+		}
+		//the filter and the mapper see int coordinates
+		List<int[]> res = tree.queryAll(new int[]{-5, -5}, new int[]{5, 5}, Integer.MAX_VALUE,
+				k -> k[0] < 0 && k[1] >= 0, e -> e.getKey());
+		assertEquals(5 * 6, res.size());
+		for (int[] k: res) {
+			assertTrue(k[0] >= -5 && k[0] < 0 && k[1] >= 0 && k[1] <= 5);
+		}
+		List<Integer> vals = tree.queryAll(new int[]{-10, -10}, new int[]{10, 10}, 
+				Integer.MAX_VALUE, k -> k[0] == -3 && k[1] == -4, e -> e.getValue());
+		assertEquals(Arrays.asList(-304), vals);
+	}
+}
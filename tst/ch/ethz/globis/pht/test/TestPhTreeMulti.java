@@ -0,0 +1,166 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhTreeMulti;
+import ch.ethz.globis.pht.PhTreeMulti.PhMultiKnnQuery;
+import ch.ethz.globis.pht.PhTreeMulti.PhMultiQuery;
+
+public class TestPhTreeMulti {
+
+	private static List<Long> toList(long[] key) {
+		ArrayList<Long> l = new ArrayList<>();
+		for (long k: key) {
+			l.add(k);
+		}
+		return l;
+	}
+
+	private static List<Integer> sorted(List<Integer> list) {
+		ArrayList<Integer> l = new ArrayList<>(list);
+		Collections.sort(l);
+		return l;
+	}
+
+	@Test
+	public void testRandom() {
+		final int DIM = 3;
+		final int N = 20000;
+		Random R = new Random(0);
+		PhTreeMulti<Integer> tree = PhTreeMulti.create(DIM);
+		Map<List<Long>, List<Integer>> ref = new HashMap<>();
+		long[][] keys = new long[N][DIM];
+		for (int i = 0; i < N; i++) {
+			//few distinct coordinates -> many duplicates
+			for (int d = 0; d < DIM; d++) {
+				keys[i][d] = R.nextInt(20) - 10;
+			}
+			tree.put(keys[i], i);
+			ref.computeIfAbsent(toList(keys[i]), k -> new ArrayList<>()).add(i);
+		}
+		assertEquals(N, tree.size());
+		assertEquals(ref.size(), tree.getKeyCount());
+		for (int i = 0; i < N; i++) {
+			assertEquals(sorted(ref.get(toList(keys[i]))), sorted(tree.getAll(keys[i])));
+			assertTrue(tree.contains(keys[i], i));
+		}
+
+		//window query
+		long[] min = {-5, -5, -5};
+		long[] max = {3, 3, 3};
+		int n = 0;
+		for (Map.Entry<List<Long>, List<Integer>> e: ref.entrySet()) {
+			boolean inside = true;
+			for (int d = 0; d < DIM; d++) {
+				long v = e.getKey().get(d);
+				inside &= v >= min[d] && v <= max[d];
+			}
+			n += inside ? e.getValue().size() : 0;
+		}
+		PhMultiQuery<Integer> q = tree.query(min, max);
+		int n2 = 0;
+		while (q.hasNext()) {
+			PhEntry<Integer> e = q.nextEntryReuse();
+			assertTrue(ref.get(toList(e.getKey())).contains(e.getValue()));
+			n2++;
+		}
+		assertEquals(n, n2);
+		assertEquals(n, tree.queryAll(min, max).size());
+		q.reset(min, max);
+		assertEquals(n, count(q));
+		assertEquals(N, count(tree.queryExtent()));
+
+		//kNN returns all values of the nearest key
+		long[] center = keys[0];
+		PhMultiKnnQuery<Integer> knn = tree.nearestNeighbour(1, center);
+		assertEquals(ref.get(toList(center)).size(), count(knn));
+
+		//remove values
+		for (int i = 0; i < N; i += 2) {
+			assertTrue(tree.removeValue(keys[i], i));
+			assertFalse(tree.removeValue(keys[i], i));
+			ref.get(toList(keys[i])).remove((Integer)i);
+		}
+		assertEquals(N/2, tree.size());
+		for (int i = 1; i < N; i += 2) {
+			assertEquals(sorted(ref.get(toList(keys[i]))), sorted(tree.getAll(keys[i])));
+		}
+		for (int i = 1; i < N; i += 2) {
+			List<Integer> expected = ref.remove(toList(keys[i]));
+			if (expected == null) {
+				expected = Collections.emptyList();
+			}
+			assertEquals(sorted(expected), sorted(tree.removeAll(keys[i])));
+		}
+		assertEquals(0, tree.size());
+		assertEquals(0, tree.getKeyCount());
+	}
+
+	private static int count(PhTreeMulti.PhMultiIterator<?> it) {
+		int n = 0;
+		while (it.hasNext()) {
+			it.next();
+			n++;
+		}
+		return n;
+	}
+
+	@Test
+	public void testBucket() {
+		PhTreeMulti<String> tree = PhTreeMulti.create(2);
+		long[] k = {1, 2};
+		tree.put(k, "a");
+		tree.put(k, "b");
+		tree.put(k, null);
+		tree.put(k, "a");
+		assertEquals(4, tree.size());
+		assertEquals(1, tree.getKeyCount());
+		assertEquals(Arrays.asList("a", "b", null, "a"), tree.getAll(k));
+		assertTrue(tree.contains(k, null));
+		assertTrue(tree.removeValue(k, null));
+		assertFalse(tree.contains(k, null));
+		assertTrue(tree.removeValue(k, "a"));
+		assertTrue(tree.removeValue(k, "b"));
+		assertEquals(Arrays.asList("a"), tree.getAll(k));
+		assertFalse(tree.removeValue(k, "b"));
+
+		//single null value
+		long[] k2 = {3, 4};
+		tree.put(k2, null);
+		assertTrue(tree.contains(k2));
+		assertEquals(Collections.singletonList(null), tree.getAll(k2));
+		PhEntry<String> e = tree.query(k2, k2).nextEntry();
+		assertTrue(Arrays.equals(k2, e.getKey()));
+		assertNull(e.getValue());
+
+		assertTrue(tree.update(k, k2, "a"));
+		assertFalse(tree.contains(k));
+		assertEquals(Arrays.asList(null, "a"), tree.getAll(k2));
+		assertEquals(2, tree.size());
+		assertEquals(Collections.emptyList(), tree.getAll(k));
+
+		tree.clear();
+		assertEquals(0, tree.size());
+		assertFalse(tree.queryExtent().hasNext());
+	}
+}
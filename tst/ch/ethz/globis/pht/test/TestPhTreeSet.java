@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.nv.PhTreeNV;
+import ch.ethz.globis.pht.nv.PhTreeNV.PhIteratorNV;
+import ch.ethz.globis.pht.nv.PhTreeSet;
+
+public class TestPhTreeSet {
+
+	private void checkRandom(int DIM, int N, int range, Random R) {
+		PhTreeNV tree = new PhTreeSet(DIM);
+		Set<String> ref = new HashSet<>();
+		for (int i = 0; i < N; i++) {
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = R.nextInt(range) - range/2;
+			}
+			String k = Arrays.toString(key);
+			switch (R.nextInt(4)) {
+			case 0:
+			case 1:
+				//insert() returns true if the key existed 
+				assertEquals(!ref.add(k), tree.insert(key));
+				break;
+			case 2:
+				assertEquals(ref.remove(k), tree.delete(key));
+				break;
+			case 3:
+				long[] key2 = key.clone();
+				key2[0]++;
+				String k2 = Arrays.toString(key2);
+				if (ref.contains(k2)) {
+					break;
+				}
+				boolean exists = ref.remove(k);
+				if (exists) {
+					ref.add(k2);
+				}
+				assertEquals(exists, tree.update(key, key2));
+				break;
+			}
+			assertEquals(ref.size(), tree.size());
+		}
+		long[] min = new long[DIM];
+		long[] max = new long[DIM];
+		Arrays.fill(min, Long.MIN_VALUE);
+		Arrays.fill(max, Long.MAX_VALUE);
+		Set<String> found = new HashSet<>();
+		PhIteratorNV it = tree.query(min, max);
+		while (it.hasNext()) {
+			long[] key = it.nextKey();
+			assertTrue(tree.contains(key));
+			found.add(Arrays.toString(key));
+		}
+		assertEquals(ref, found);
+	}
+
+	@Test
+	public void testRandom2D() {
+		checkRandom(2, 100000, 1000, new Random(0));
+	}
+
+	@Test
+	public void testRandom3D() {
+		checkRandom(3, 100000, 100, new Random(1));
+	}
+
+	@Test
+	public void testRandom10DNI() {
+		checkRandom(10, 50000, 4, new Random(2));
+	}
+
+	@Test
+	public void testCreate() {
+		PhTreeNV tree = PhTreeNV.create(2, 64);
+		assertTrue(tree instanceof PhTreeSet);
+		assertFalse(tree.insert(1, 2));
+		assertTrue(tree.insert(1, 2));
+		assertTrue(tree.contains(1, 2));
+		assertTrue(tree.delete(1, 2));
+		assertFalse(tree.contains(1, 2));
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import java.util.Random;
+
+import ch.ethz.globis.pht.nv.PhTreeNV;
+import ch.ethz.globis.pht.nv.PhTreeSet;
+import ch.ethz.globis.pht.nv.PhTreeVProxy;
+
+/**
+ * Compares the memory per entry of the key-only PhTreeSet with the PhTreeVProxy.
+ */
+public class TestPhTreeSetPerf {
+
+	private static long usedMemory() {
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		Runtime rt = Runtime.getRuntime();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	private static void measure(String name, PhTreeNV tree, long[][] keys) {
+		long m0 = usedMemory();
+		long t0 = System.currentTimeMillis();
+		for (long[] key: keys) {
+			tree.insert(key);
+		}
+		long t1 = System.currentTimeMillis();
+		long m1 = usedMemory();
+		System.out.println(name + ": " + (m1-m0)/(double)keys.length + " bytes/entry;  " +
+				"insert: " + (t1-t0) + "ms  n=" + tree.size());
+	}
+
+	public static void main(String[] args) {
+		final int N = 2000000;
+		for (int DIM: new int[]{2, 3, 6}) {
+			Random R = new Random(0);
+			long[][] keys = new long[N][DIM];
+			for (int i = 0; i < N; i++) {
+				for (int d = 0; d < DIM; d++) {
+					keys[i][d] = R.nextLong();
+				}
+			}
+			System.out.println("DIM=" + DIM);
+			measure("PhTreeVProxy", new PhTreeVProxy(DIM), keys);
+			measure("PhTreeSet   ", new PhTreeSet(DIM), keys);
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhExtent;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+import ch.ethz.globis.pht.PhTreeConfig;
+import ch.ethz.globis.pht.PhTreeDouble;
+import ch.ethz.globis.pht.PhTreeDouble.PhQueryDouble;
+import ch.ethz.globis.pht.PhTreeInt;
+import ch.ethz.globis.pht.PhTreeLong;
+import ch.ethz.globis.pht.PhTreeLong.PhQueryLong;
+
+public class TestPrimitiveValues {
+
+	private void checkRandom(int DIM, int N, int range, Random R) {
+		PhTreeLong tree = PhTreeLong.create(DIM, -1);
+		PhTree<Long> ref = PhTree.create(DIM);
+		HashMap<String, Long> map = new HashMap<>();
+		for (int i = 0; i < N; i++) {
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = R.nextInt(range) - range/2;
+			}
+			String k = Arrays.toString(key);
+			long v = R.nextLong();
+			switch (R.nextInt(4)) {
+			case 0:
+			case 1:
+				Long prev = map.put(k, v);
+				assertEquals(prev == null ? -1 : prev, tree.put(key, v));
+				ref.put(key, v);
+				break;
+			case 2:
+				prev = map.remove(k);
+				assertEquals(prev == null ? -1 : prev, tree.remove(key));
+				ref.remove(key);
+				break;
+			case 3:
+				prev = map.get(k);
+				assertEquals(prev == null ? -1 : prev, tree.get(key));
+				assertEquals(prev != null, tree.contains(key));
+				break;
+			}
+		}
+		assertEquals(map.size(), tree.size());
+		assertEquals(ref.toStringPlain(), tree.getInternalTree().toStringPlain());
+
+		//window query
+		long[] min = new long[DIM];
+		long[] max = new long[DIM];
+		Arrays.fill(min, -range/4);
+		Arrays.fill(max, range/4);
+		PhQueryLong q = tree.query(min, max);
+		int n = 0;
+		long[] key = new long[DIM];
+		while (q.hasNext()) {
+			long v = q.nextValueLong(key);
+			assertEquals((long) map.get(Arrays.toString(key)), v);
+			n++;
+		}
+		assertEquals(ref.queryAll(min, max).size(), n);
+
+		//remove everything
+		for (String k: map.keySet()) {
+			String[] sa = k.substring(1, k.length()-1).split(", ");
+			for (int d = 0; d < DIM; d++) {
+				key[d] = Long.parseLong(sa[d]);
+			}
+			assertEquals((long) map.get(k), tree.remove(key));
+		}
+		assertEquals(0, tree.size());
+	}
+
+	@Test
+	public void testLong2D() {
+		checkRandom(2, 100000, 1000, new Random(0));
+	}
+
+	@Test
+	public void testLong3D() {
+		checkRandom(3, 100000, 100, new Random(1));
+	}
+
+	@Test
+	public void testLong10DNI() {
+		checkRandom(10, 50000, 4, new Random(2));
+	}
+
+	@Test
+	public void testUpdate() {
+		//update() moves values between positions
+		final int DIM = 3;
+		Random R = new Random(3);
+		PhTreeLong tree = PhTreeLong.create(DIM);
+		long[][] keys = new long[10000][DIM];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i][0] = i*10;
+			for (int d = 1; d < DIM; d++) {
+				keys[i][d] = R.nextInt(1000);
+			}
+			tree.put(keys[i], i);
+		}
+		for (int r = 0; r < 5; r++) {
+			for (int i = 0; i < keys.length; i++) {
+				long[] key2 = keys[i].clone();
+				key2[R.nextInt(DIM)] += R.nextInt(5) - 2;
+				if (tree.contains(key2)) {
+					continue;
+				}
+				tree.getInternalTree().update(keys[i], key2);
+				keys[i] = key2;
+			}
+		}
+		assertEquals(keys.length, tree.size());
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals(i, tree.get(keys[i]));
+		}
+	}
+
+	@Test
+	public void testQueryValues() {
+		//mix primitive and boxed access, LHC/HC nodes (2D) and NI nodes (10D)
+		for (int DIM : new int[]{2, 10}) {
+			Random R = new Random(DIM);
+			PhTreeLong tree = PhTreeLong.create(DIM);
+			HashMap<String, Long> map = new HashMap<>();
+			for (int i = 0; i < 20000; i++) {
+				long[] key = new long[DIM];
+				for (int d = 0; d < DIM; d++) {
+					key[d] = R.nextInt(8);
+				}
+				long v = R.nextLong();
+				tree.put(key, v);
+				map.put(Arrays.toString(key), v);
+			}
+			long[] min = new long[DIM];
+			long[] max = new long[DIM];
+			Arrays.fill(max, 7);
+
+			PhQuery<Long> qObj = tree.getInternalTree().query(min, max);
+			int n = 0;
+			while (qObj.hasNext()) {
+				PhEntry<Long> e = qObj.nextEntryReuse();
+				assertEquals(map.get(Arrays.toString(e.getKey())), e.getValue());
+				n++;
+			}
+			assertEquals(map.size(), n);
+
+			//remove every second entry with the primitive query
+			PhQueryLong q = tree.query(min, max);
+			long[] key = new long[DIM];
+			n = 0;
+			while (q.hasNext()) {
+				long v = q.nextValueLong(key);
+				String k = Arrays.toString(key);
+				assertEquals((long) map.get(k), v);
+				if ((n++ & 1) == 0) {
+					q.remove();
+					map.remove(k);
+				}
+			}
+			assertEquals(map.size(), tree.size());
+			q.reset(min, max);
+			n = 0;
+			while (q.hasNext()) {
+				long[] k = q.nextKey();
+				assertEquals((long) map.get(Arrays.toString(k)), tree.get(k));
+				n++;
+			}
+			assertEquals(map.size(), n);
+		}
+	}
+
+	@Test
+	public void testInt() {
+		PhTreeInt tree = PhTreeInt.create(2, Integer.MIN_VALUE);
+		assertEquals(Integer.MIN_VALUE, tree.get(1, 2));
+		assertEquals(Integer.MIN_VALUE, tree.put(new long[]{1, 2}, -5));
+		assertEquals(-5, tree.put(new long[]{1, 2}, 7));
+		assertEquals(7, tree.get(1, 2));
+		assertTrue(tree.contains(1, 2));
+		assertEquals(7, tree.remove(1, 2));
+		assertFalse(tree.contains(1, 2));
+	}
+
+	@Test
+	public void testIntRandom() {
+		//HC/LHC nodes (3D) and NI nodes (10D)
+		for (int DIM : new int[]{3, 10}) {
+			Random R = new Random(DIM);
+			PhTreeInt tree = PhTreeInt.create(DIM, -1);
+			HashMap<String, Integer> map = new HashMap<>();
+			for (int i = 0; i < 50000; i++) {
+				long[] key = new long[DIM];
+				for (int d = 0; d < DIM; d++) {
+					key[d] = R.nextInt(DIM == 3 ? 50 : 4);
+				}
+				String k = Arrays.toString(key);
+				int v = R.nextInt() & 0x7FFFFFFF;
+				if (R.nextInt(3) == 0) {
+					Integer prev = map.remove(k);
+					assertEquals(prev == null ? -1 : prev, tree.remove(key));
+				} else {
+					Integer prev = map.put(k, v);
+					assertEquals(prev == null ? -1 : prev, tree.put(key, v));
+				}
+			}
+			assertEquals(map.size(), tree.size());
+			PhExtent<Integer> qObj = tree.getInternalTree().queryExtent();
+			int n = 0;
+			while (qObj.hasNext()) {
+				PhEntry<Integer> e = qObj.nextEntryReuse();
+				assertEquals(map.get(Arrays.toString(e.getKey())), e.getValue());
+				n++;
+			}
+			assertEquals(map.size(), n);
+		}
+	}
+
+	@Test
+	public void testIntMemory() {
+		final int DIM = 3;
+		PhTreeInt treeI = PhTreeInt.create(DIM);
+		PhTreeLong treeL = PhTreeLong.create(DIM);
+		Random R = new Random(0);
+		for (int i = 0; i < 100000; i++) {
+			long[] key = {R.nextInt(1000), R.nextInt(1000), R.nextInt(1000)};
+			treeI.put(key, i);
+			treeL.put(key, i);
+		}
+		long bytesI = treeI.getInternalTree().getMemoryStats().getTotalBytes();
+		long bytesL = treeL.getInternalTree().getMemoryStats().getTotalBytes();
+		assertTrue(bytesI + "/" + bytesL, bytesI < bytesL);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullValue() {
+		PhTreeConfig cfg = new PhTreeConfig(2);
+		cfg.setValueType(PhTreeConfig.VALUES_LONG);
+		PhTree<Long> tree = PhTree.create(cfg);
+		tree.put(new long[]{1, 2}, 3L);
+		tree.put(new long[]{1, 2}, null);
+	}
+
+	@Test
+	public void testDouble() {
+		PhTreeDouble tree = PhTreeDouble.create(2, Double.NaN);
+		for (int i = 0; i < 1000; i++) {
+			tree.put(new long[]{i, -i}, i * 0.5);
+		}
+		assertTrue(Double.isNaN(tree.get(-1, 1)));
+		assertEquals(10.5, tree.get(21, -21), 0.0);
+		PhQueryDouble q = tree.query(new long[]{10, -20}, new long[]{20, -10});
+		double sum = 0;
+		int n = 0;
+		while (q.hasNext()) {
+			sum += q.nextValueDouble();
+			n++;
+		}
+		assertEquals(11, n);
+		assertEquals(82.5, sum, 0.0);
+		assertEquals(10.5, tree.remove(21, -21), 0.0);
+		assertEquals(999, tree.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidValueType() {
+		new PhTreeConfig(2).setValueType(5);
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTreeF;
+import ch.ethz.globis.pht.PhTreeF.PhEntryF;
+import ch.ethz.globis.pht.PhTreeF.PhQueryF;
+import ch.ethz.globis.pht.pre.ColumnType;
+import ch.ethz.globis.pht.pre.ColumnType.DoubleColumn;
+import ch.ethz.globis.pht.pre.ColumnType.IntColumn;
+import ch.ethz.globis.pht.pre.QuantizingPP;
+
+public class TestQuantizingPP {
+
+	@Test
+	public void testDepth() {
+		QuantizingPP pp = new QuantizingPP(
+				new double[]{0, -1000, 5, 0}, 
+				new double[]{1, 1000, 5, 1e6},
+				new double[]{0.01, 0.01, 1, 1});
+		//0..100
+		assertEquals(7, pp.getDepth(0));
+		//0..200000
+		assertEquals(18, pp.getDepth(1));
+		assertEquals(1, pp.getDepth(2));
+		assertEquals(20, pp.getDepth(3));
+		assertEquals(18, pp.createConfig().getDepth(1));
+	}
+
+	@Test
+	public void testColumnTypes() {
+		QuantizingPP pp = new QuantizingPP(
+				new ColumnType[]{new DoubleColumn(2), new IntColumn()}, 
+				new double[]{0, 0}, new double[]{1, 255});
+		assertEquals(7, pp.getDepth(0));
+		assertEquals(8, pp.getDepth(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPrecision() {
+		new QuantizingPP(new double[]{0}, new double[]{1}, new double[]{0});
+	}
+
+	@Test
+	public void testRoundTrip() {
+		QuantizingPP pp = new QuantizingPP(
+				new double[]{-180, -90}, new double[]{180, 90}, new double[]{1e-7, 1e-7});
+		Random R = new Random(0);
+		long[] l = new long[2];
+		double[] d2 = new double[2];
+		for (int i = 0; i < 10000; i++) {
+			double[] d = {R.nextDouble()*360-180, R.nextDouble()*180-90};
+			pp.pre(d, l);
+			assertTrue(l[0] >= 0 && l[0] < (1L << pp.getDepth(0)));
+			assertTrue(l[1] >= 0 && l[1] < (1L << pp.getDepth(1)));
+			pp.post(l, d2);
+			assertEquals(d[0], d2[0], 0.5e-7 + 1e-12);
+			assertEquals(d[1], d2[1], 0.5e-7 + 1e-12);
+		}
+		//clamping
+		pp.pre(new double[]{-200, 100}, l);
+		assertEquals(0, l[0]);
+		assertEquals((long)(180/1e-7 + 0.5), l[1]);
+	}
+
+	@Test
+	public void testTree() {
+		int N = 20000;
+		double[] min = {0, 0, 0};
+		double[] max = {1000, 1000, 100};
+		QuantizingPP pp = new QuantizingPP(min, max, new double[]{0.01, 0.01, 0.01});
+		PhTreeF<Integer> tree = PhTreeF.create(pp.createConfig(), pp);
+		Random R = new Random(0);
+		double[][] keys = new double[N][];
+		for (int i = 0; i < N; i++) {
+			//keys with two digits, they can be represented exactly
+			keys[i] = new double[]{R.nextInt(100000)/100., R.nextInt(100000)/100., 
+					R.nextInt(10000)/100.};
+			tree.put(keys[i], i);
+		}
+		for (int i = 0; i < N; i++) {
+			assertTrue(tree.contains(keys[i]));
+		}
+
+		//query with boundaries outside of the range 
+		double[] qMin = {-10, 200, 50};
+		double[] qMax = {300, 5000, 50.5};
+		int nExp = 0;
+		for (double[] k: keys) {
+			boolean inside = true;
+			for (int d = 0; d < k.length; d++) {
+				inside &= k[d] >= qMin[d] && k[d] <= qMax[d];
+			}
+			nExp += inside ? 1 : 0;
+		}
+		int n = 0;
+		PhQueryF<Integer> q = tree.query(qMin, qMax);
+		while (q.hasNext()) {
+			PhEntryF<Integer> e = q.nextEntry();
+			double[] k = e.getKey();
+			for (int d = 0; d < k.length; d++) {
+				assertEquals(k[d], keys[e.getValue()][d], 0.005);
+			}
+			n++;
+		}
+		assertEquals(nExp, n);
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import java.util.Random;
+
+import ch.ethz.globis.pht.PhTreeF;
+import ch.ethz.globis.pht.PhTreeF.PhQueryF;
+import ch.ethz.globis.pht.pre.EmptyPPF;
+import ch.ethz.globis.pht.pre.QuantizingPP;
+
+/**
+ * Compares memory and insert/lookup/query cost of {@link QuantizingPP} with
+ * {@link EmptyPPF}. The keys are 3D coordinates in a 10km x 10km x 1km volume,
+ * with 1cm precision.
+ */
+public class TestQuantizingPPPerf {
+
+	private static final int N = 1000000;
+	private static final int N_QUERY = 10000;
+
+	public static void main(String[] args) {
+		double[] min = {0, 0, 0};
+		double[] max = {10000, 10000, 1000};
+		Random R = new Random(0);
+		double[][] keys = new double[N][3];
+		for (double[] key: keys) {
+			for (int d = 0; d < 3; d++) {
+				key[d] = R.nextDouble() * max[d];
+			}
+		}
+		QuantizingPP pp = new QuantizingPP(min, max, new double[]{0.01, 0.01, 0.01});
+		for (int i = 0; i < 3; i++) {
+			measure("EmptyPPF", PhTreeF.<Integer>create(3), keys);
+			measure("QuantizingPP", PhTreeF.<Integer>create(pp.createConfig(), pp), keys);
+		}
+	}
+
+	private static void measure(String name, PhTreeF<Integer> tree, double[][] keys) {
+		long t0 = System.nanoTime();
+		for (int i = 0; i < keys.length; i++) {
+			tree.put(keys[i], i);
+		}
+		long t1 = System.nanoTime();
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			n += tree.get(keys[i]) != null ? 1 : 0;
+		}
+		long t2 = System.nanoTime();
+		if (n != keys.length) {
+			throw new IllegalStateException();
+		}
+		//queries of 100m x 100m x 10m, ~10 results each
+		Random R = new Random(1);
+		double[] qMin = new double[3];
+		double[] qMax = new double[3];
+		PhQueryF<Integer> q = tree.query(qMin, qMax);
+		long nResults = 0;
+		for (int i = 0; i < N_QUERY; i++) {
+			qMin[0] = R.nextDouble() * 9900;
+			qMin[1] = R.nextDouble() * 9900;
+			qMin[2] = R.nextDouble() * 990;
+			qMax[0] = qMin[0] + 100;
+			qMax[1] = qMin[1] + 100;
+			qMax[2] = qMin[2] + 10;
+			q.reset(qMin, qMax);
+			while (q.hasNext()) {
+				q.nextValue();
+				nResults++;
+			}
+		}
+		long t3 = System.nanoTime();
+		long bytes = tree.getInternalTree().getMemoryStats().getTotalBytes();
+		System.out.println(String.format("%-12s  bytes/entry=%5.1f  nodes=%7d  " +
+				"insert=%5.0fns  get=%5.0fns  query=%6.0fns (%d results)", name, 
+				bytes/(double)tree.size(), tree.getInternalTree().getMemoryStats().nNodes, 
+				(t1-t0)/(double)keys.length, (t2-t1)/(double)keys.length, 
+				(t3-t2)/(double)N_QUERY, nResults));
+	}
+}
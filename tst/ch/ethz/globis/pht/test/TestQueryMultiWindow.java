@@ -0,0 +1,171 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+import ch.ethz.globis.pht.PhTree.PhQueryMulti;
+import ch.ethz.globis.pht.PhTreeF;
+import ch.ethz.globis.pht.PhTreeF.PhIteratorF;
+import ch.ethz.globis.pht.test.util.TestUtil;
+
+public class TestQueryMultiWindow {
+
+	private PhTree<long[]> createTree(int N, int DIM, Random R) {
+		PhTree<long[]> tree = TestUtil.newTree(DIM, 64);
+		for (int i = 0; i < N; i++) {
+			long[] p = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				p[d] = R.nextInt(2000) - 1000;
+			}
+			tree.put(p, p);
+		}
+		return tree;
+	}
+
+	private void check(PhTree<long[]> tree, long[][] mins, long[][] maxs) {
+		Set<String> expected = new HashSet<>();
+		for (int i = 0; i < mins.length; i++) {
+			PhQuery<long[]> q = tree.query(mins[i], maxs[i]);
+			while (q.hasNext()) {
+				expected.add(Arrays.toString(q.nextKey()));
+			}
+		}
+		Set<String> found = new HashSet<>();
+		PhQueryMulti<long[]> q = tree.query(mins, maxs);
+		while (q.hasNext()) {
+			long[] key = q.nextKey();
+			assertTrue("duplicate: " + Arrays.toString(key), found.add(Arrays.toString(key)));
+		}
+		assertEquals(expected, found);
+	}
+
+	@Test
+	public void testRandomWindows() {
+		final int DIM = 3;
+		Random R = new Random(0);
+		PhTree<long[]> tree = createTree(20000, DIM, R);
+		for (int r = 0; r < 20; r++) {
+			int nWindows = 1 + R.nextInt(10);
+			long[][] mins = new long[nWindows][DIM];
+			long[][] maxs = new long[nWindows][DIM];
+			for (int i = 0; i < nWindows; i++) {
+				for (int d = 0; d < DIM; d++) {
+					mins[i][d] = R.nextInt(2000) - 1000;
+					maxs[i][d] = mins[i][d] + R.nextInt(500);
+				}
+			}
+			check(tree, mins, maxs);
+		}
+	}
+
+	@Test
+	public void testOverlappingWindows() {
+		Random R = new Random(1);
+		PhTree<long[]> tree = createTree(10000, 2, R);
+		long[][] mins = {{-500, -500}, {-200, -200}, {0, -600}, {-500, -500}};
+		long[][] maxs = {{100, 100}, {300, 300}, {50, 700}, {100, 100}};
+		check(tree, mins, maxs);
+	}
+
+	@Test
+	public void testReset() {
+		Random R = new Random(2);
+		PhTree<long[]> tree = createTree(1000, 2, R);
+		PhQueryMulti<long[]> q = tree.query(new long[0][], new long[0][]);
+		assertFalse(q.hasNext());
+		q.reset(new long[][]{{-1000, -1000}}, new long[][]{{1000, 1000}});
+		int n = 0;
+		while (q.hasNext()) {
+			q.nextEntryReuse();
+			n++;
+		}
+		assertEquals(tree.size(), n);
+	}
+
+	@Test
+	public void testDoubleWindows() {
+		PhTreeF<Integer> tree = PhTreeF.create(2);
+		for (int i = 0; i < 100; i++) {
+			tree.put(new double[]{i*0.5, -i*0.5}, i);
+		}
+		double[][] mins = {{0, -5}, {10, -20}, {2, -10}};
+		double[][] maxs = {{5, 0}, {20, -10}, {3, -1}};
+		PhIteratorF<Integer> it = tree.query(mins, maxs);
+		Set<Integer> found = new HashSet<>();
+		while (it.hasNext()) {
+			assertTrue(found.add(it.nextValue()));
+		}
+		//0..10 and 20..40
+		assertEquals(11 + 21, found.size());
+	}
+
+	@Test
+	public void testRemove() {
+		Random R = new Random(3);
+		PhTree<long[]> tree = createTree(20000, 3, R);
+		long[][] mins = {{-500, -500, -500}, {-200, -200, -900}, {0, -600, 0}};
+		long[][] maxs = {{100, 100, 100}, {300, 300, 300}, {50, 700, 800}};
+		Set<String> expected = new HashSet<>();
+		PhQueryMulti<long[]> q = tree.query(mins, maxs);
+		while (q.hasNext()) {
+			expected.add(Arrays.toString(q.nextKey()));
+		}
+		int n0 = tree.size();
+		q.reset(mins, maxs);
+		Set<String> found = new HashSet<>();
+		int n = 0;
+		while (q.hasNext()) {
+			long[] key = q.nextKey();
+			assertTrue(found.add(Arrays.toString(key)));
+			if (n++ % 2 == 0) {
+				q.remove();
+				assertFalse(tree.contains(key));
+			} else {
+				assertTrue(tree.contains(key));
+			}
+		}
+		assertEquals(expected, found);
+		assertEquals(n0 - (n+1)/2, tree.size());
+
+		//remove all remaining entries in the windows
+		q.reset(mins, maxs);
+		while (q.hasNext()) {
+			q.nextEntryReuse();
+			q.remove();
+		}
+		assertFalse(tree.query(mins, maxs).hasNext());
+		assertEquals(n0 - n, tree.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRemoveTwice() {
+		PhTree<long[]> tree = createTree(10, 2, new Random(4));
+		PhQueryMulti<long[]> q = tree.query(
+				new long[][]{{-1000, -1000}}, new long[][]{{1000, 1000}});
+		q.next();
+		q.remove();
+		q.remove();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWindows() {
+		PhTree<long[]> tree = TestUtil.newTree(2, 64);
+		tree.query(new long[2][2], new long[1][2]);
+	}
+}
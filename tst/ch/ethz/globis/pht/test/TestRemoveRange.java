@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhEntry;
+import ch.ethz.globis.pht.PhTree;
+import ch.ethz.globis.pht.PhTree.PhQuery;
+import ch.ethz.globis.pht.PhTreeF;
+import ch.ethz.globis.pht.test.util.TestUtil;
+
+public class TestRemoveRange {
+
+	private void checkRemoveRange(int DIM, int N, Random R) {
+		PhTree<Integer> tree = TestUtil.newTree(DIM, 64);
+		PhTree<Integer> ref = TestUtil.newTree(DIM, 64);
+		for (int i = 0; i < N; i++) {
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = R.nextInt(100000) - 50000;
+			}
+			tree.put(key, i);
+			ref.put(key, i);
+		}
+		for (int r = 0; r < 20; r++) {
+			long[] min = new long[DIM];
+			long[] max = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				min[d] = R.nextInt(100000) - 50000;
+				max[d] = min[d] + R.nextInt(60000);
+			}
+			List<PhEntry<Integer>> list = ref.queryAll(min, max);
+			for (PhEntry<Integer> e: list) {
+				ref.remove(e.getKey());
+			}
+			assertEquals(list.size(), tree.removeRange(min, max));
+			assertEquals(ref.size(), tree.size());
+			assertEquals(ref.getNodeCount(), tree.getNodeCount());
+			assertEquals(ref.toStringPlain(), tree.toStringPlain());
+		}
+		long[] min = new long[DIM];
+		long[] max = new long[DIM];
+		for (int d = 0; d < DIM; d++) {
+			min[d] = Long.MIN_VALUE;
+			max[d] = Long.MAX_VALUE;
+		}
+		assertEquals(ref.size(), tree.removeRange(min, max));
+		assertEquals(0, tree.size());
+		assertEquals(1, tree.getNodeCount());
+	}
+
+	@Test
+	public void testRemoveRange2D() {
+		checkRemoveRange(2, 20000, new Random(0));
+	}
+
+	@Test
+	public void testRemoveRange3D() {
+		checkRemoveRange(3, 20000, new Random(1));
+	}
+
+	@Test
+	public void testRemoveRange10D() {
+		checkRemoveRange(10, 5000, new Random(2));
+	}
+
+	@Test
+	public void testRemoveRangeF() {
+		PhTreeF<Integer> tree = PhTreeF.create(2);
+		for (int i = 0; i < 100; i++) {
+			tree.put(new double[]{i*0.5, -i*0.5}, i);
+		}
+		assertEquals(21, tree.removeRange(new double[]{10, -100}, new double[]{20, 100}));
+		assertEquals(79, tree.size());
+		assertFalse(tree.contains(15, -15));
+		assertTrue(tree.contains(20.5, -20.5));
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		final int DIM = 3;
+		Random R = new Random(3);
+		PhTree<Integer> tree = TestUtil.newTree(DIM, 64);
+		for (int i = 0; i < 20000; i++) {
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = R.nextInt(1000) - 500;
+			}
+			tree.put(key, i);
+		}
+		long[] min = {-300, -400, -500};
+		long[] max = {300, 200, 100};
+		List<PhEntry<Integer>> expected = new ArrayList<>();
+		PhQuery<Integer> q = tree.query(min, max);
+		while (q.hasNext()) {
+			expected.add(q.nextEntry());
+		}
+		int n0 = tree.size();
+		q.reset(min, max);
+		int n = 0;
+		while (q.hasNext()) {
+			PhEntry<Integer> e = q.nextEntry();
+			assertEquals("n=" + n, expected.get(n).getValue(), e.getValue());
+			if (n % 2 == 0) {
+				q.remove();
+				assertFalse(tree.contains(e.getKey()));
+			}
+			n++;
+		}
+		assertEquals(expected.size(), n);
+		assertEquals(n0 - (n+1)/2, tree.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(i % 2 != 0, tree.contains(expected.get(i).getKey()));
+		}
+
+		//remove all remaining entries in the window
+		q.reset(min, max);
+		while (q.hasNext()) {
+			q.nextEntryReuse();
+			q.remove();
+		}
+		assertTrue(tree.queryAll(min, max).isEmpty());
+		assertEquals(n0 - n, tree.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testIteratorRemoveTwice() {
+		PhTree<Integer> tree = TestUtil.newTree(2, 64);
+		tree.put(new long[]{1, 1}, 1);
+		tree.put(new long[]{2, 2}, 2);
+		PhQuery<Integer> q = tree.query(new long[]{0, 0}, new long[]{5, 5});
+		q.next();
+		q.remove();
+		q.remove();
+	}
+}
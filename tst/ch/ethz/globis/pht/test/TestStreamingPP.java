@@ -0,0 +1,182 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTreeConfig;
+import ch.ethz.globis.pht.PhTreeF;
+import ch.ethz.globis.pht.PhTreeF.ReEncodeStats;
+import ch.ethz.globis.pht.pre.EmptyPPF;
+import ch.ethz.globis.pht.pre.ExponentPP;
+import ch.ethz.globis.pht.pre.IntegerPP;
+import ch.ethz.globis.pht.pre.QuantizingPP;
+import ch.ethz.globis.pht.pre.StreamingPPAnalyzer;
+import ch.ethz.globis.pht.pre.StreamingPPAnalyzer.Proposal;
+
+public class TestStreamingPP {
+
+	@Test
+	public void testEmpty() {
+		StreamingPPAnalyzer a = new StreamingPPAnalyzer(2, 100);
+		assertNull(a.propose());
+		assertFalse(a.hasDrifted());
+	}
+
+	@Test
+	public void testIntegerPP() {
+		Random R = new Random(0);
+		StreamingPPAnalyzer a = new StreamingPPAnalyzer(2, 1000);
+		for (int i = 0; i < 10000; i++) {
+			//two decimal digits
+			a.add(new double[]{R.nextInt(100000)/100., R.nextInt(100000)/100.});
+		}
+		Proposal p = a.propose();
+		assertTrue(p.toString(), p.getPreprocessor() instanceof IntegerPP);
+		assertEquals(100, ((IntegerPP)p.getPreprocessor()).getMultiplyer(), 0);
+		assertTrue(p.toString(), 
+				p.getSampleStats().getTotalBytes() < p.getSampleStatsEmptyPP().getTotalBytes());
+		assertEquals(1000, p.getSampleSize());
+		assertFalse(a.hasDrifted());
+		
+		a.add(new double[]{1.25, 3});
+		assertFalse(a.hasDrifted());
+		a.add(new double[]{1.255, 3});
+		assertTrue(a.hasDrifted());
+		p = a.propose();
+		assertFalse(a.hasDrifted());
+	}
+
+	@Test
+	public void testExponentPP() {
+		Random R = new Random(0);
+		StreamingPPAnalyzer a = new StreamingPPAnalyzer(3, 1000);
+		for (int i = 0; i < 10000; i++) {
+			//ranges that cross exponent boundaries
+			a.add(new double[]{
+					0.9+R.nextDouble()*0.2, -0.1+R.nextDouble()*0.2, 10+R.nextDouble()});
+		}
+		Proposal p = a.propose();
+		assertTrue(p.toString(), p.getPreprocessor() instanceof ExponentPP);
+		assertTrue(p.toString(), p.getSampleStats().nNodes < p.getSampleStatsEmptyPP().nNodes);
+		assertFalse(a.hasDrifted());
+
+		//slightly outside the original ranges
+		a.add(new double[]{1.1001, 0, 10.5});
+		assertFalse(a.hasDrifted());
+		//far outside
+		a.add(new double[]{1, 0, 5000});
+		assertTrue(a.hasDrifted());
+	}
+
+	@Test
+	public void testReEncode() {
+		Random R = new Random(0);
+		int N = 20000;
+		PhTreeF<Integer> tree = PhTreeF.create(3);
+		tree.setAnalyzer(new StreamingPPAnalyzer(3, 2000));
+		double[][] keys = new double[N][];
+		for (int i = 0; i < N; i++) {
+			keys[i] = new double[]{R.nextInt(1000000)/1000., R.nextInt(1000000)/1000., 
+					R.nextInt(1000000)/1000.};
+			tree.put(keys[i], i);
+		}
+		assertTrue(tree.getPreprocessor() instanceof EmptyPPF);
+		int n = tree.size();
+		ReEncodeStats s = tree.reEncodeIfDrifted();
+		assertNotNull(s);
+		assertTrue(s.toString(), s.bytesAfter < s.bytesBefore);
+		assertEquals(s.nNodesAfter, tree.getInternalTree().getMemoryStats().nNodes);
+		assertTrue(tree.getPreprocessor() instanceof IntegerPP);
+		assertEquals(n, tree.size());
+		for (int i = 0; i < N; i++) {
+			assertNotNull(tree.get(keys[i]));
+		}
+		
+		//no drift, no re-encoding
+		assertNull(tree.reEncodeIfDrifted());
+		
+		//insertion continues with the new preprocessor
+		double[] k = {0.5, 0.25, 0.125};
+		tree.put(k, -1);
+		assertEquals(-1, (int)tree.get(k));
+		assertNull(tree.reEncodeIfDrifted());
+		double[] k2 = {0.1234567, 0.25, 0.125};
+		tree.put(k2, -2);
+		assertTrue(tree.getAnalyzer().hasDrifted());
+		//IntegerPP(1000) is not valid anymore
+		assertNotNull(tree.reEncodeIfDrifted());
+		assertFalse(tree.getPreprocessor() instanceof IntegerPP);
+		assertEquals(-1, (int)tree.get(k));
+		//k2 was inserted with IntegerPP and lost precision
+		assertEquals(-2, (int)tree.get(0.123, 0.25, 0.125));
+		double[] k3 = {0.1234567, 0.5, 0.125};
+		tree.put(k3, -3);
+		assertEquals(-3, (int)tree.get(k3));
+	}
+
+	@Test
+	public void testReEncodeCollision() {
+		PhTreeF<Integer> tree = PhTreeF.create(1);
+		tree.put(new double[]{0.1}, 1);
+		tree.put(new double[]{0.2}, 2);
+		try {
+			tree.reEncode(new IntegerPP(1));
+			fail();
+		} catch (IllegalStateException e) {
+			//good
+		}
+		assertSame(EmptyPPF.class, tree.getPreprocessor().getClass());
+		assertEquals(1, (int)tree.get(0.1));
+	}
+
+	@Test
+	public void testReEncodeKeepsConfig() {
+		QuantizingPP pp = new QuantizingPP(new double[]{0}, new double[]{100}, new double[]{1});
+		PhTreeConfig cfg = pp.createConfig();
+		cfg.setValueType(PhTreeConfig.VALUES_NONE);
+		PhTreeF<Object> tree = PhTreeF.create(cfg, pp);
+		for (int i = 0; i <= 100; i++) {
+			tree.put(new double[]{i}, null);
+		}
+
+		//same depth, shifted range
+		tree.reEncode(new QuantizingPP(new double[]{-20}, new double[]{100}, new double[]{1}));
+		assertEquals(101, tree.size());
+		for (int i = 0; i <= 100; i++) {
+			assertTrue(tree.contains(i));
+			//set trees store a placeholder instead of null
+			assertNotNull(tree.get(i));
+		}
+		try {
+			tree.getInternalTree().put(new long[]{1L << 10}, null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			//good, the depth is still limited
+		}
+
+		//too many bits for the configured depth
+		try {
+			tree.reEncode(new IntegerPP(1000));
+			fail();
+		} catch (IllegalArgumentException e) {
+			//good
+		}
+		assertSame(QuantizingPP.class, tree.getPreprocessor().getClass());
+		assertTrue(tree.contains(100));
+	}
+}
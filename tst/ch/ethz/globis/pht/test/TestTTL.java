@@ -0,0 +1,218 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ethz.globis.pht.PhTreeTTL;
+import ch.ethz.globis.pht.PhTreeTTL.PhQueryTTL;
+
+public class TestTTL {
+
+	private long time = 0;
+
+	@Test
+	public void testExpiry() {
+		PhTreeTTL<String> tree = PhTreeTTL.create(2, () -> time);
+		tree.put(new long[]{1, 1}, "a", 10);
+		tree.put(new long[]{2, 2}, "b", 20);
+		assertEquals("a", tree.get(1, 1));
+		assertEquals(10, tree.getNextExpiry());
+		time = 10;
+		assertNull(tree.get(1, 1));
+		assertFalse(tree.contains(1, 1));
+		assertTrue(tree.contains(2, 2));
+		//not reclaimed yet
+		assertEquals(2, tree.size());
+		assertEquals(1, tree.sweep(100));
+		assertEquals(1, tree.size());
+		assertEquals(20, tree.getNextExpiry());
+		time = 25;
+		assertNull(tree.remove(2, 2));
+		assertEquals(0, tree.size());
+		assertEquals(0, tree.sweep(100));
+		assertEquals(Long.MAX_VALUE, tree.getNextExpiry());
+	}
+
+	@Test
+	public void testRefresh() {
+		PhTreeTTL<String> tree = PhTreeTTL.create(2, () -> time);
+		tree.put(new long[]{1, 1}, "a", 10);
+		time = 5;
+		//refresh with a new TTL, the old expiry record must not remove the new entry
+		assertEquals("a", tree.put(new long[]{1, 1}, "b", 10));
+		time = 12;
+		assertEquals(0, tree.sweep(100));
+		assertEquals("b", tree.get(1, 1));
+		time = 15;
+		assertEquals(1, tree.sweep(100));
+		assertEquals(0, tree.size());
+		//put() on an expired key returns null
+		tree.put(new long[]{1, 1}, "c", 1);
+		time = 16;
+		assertNull(tree.put(new long[]{1, 1}, "d", 1));
+	}
+
+	@Test
+	public void testNextExpiryAfterRemove() {
+		PhTreeTTL<String> tree = PhTreeTTL.create(2, () -> time);
+		tree.put(new long[]{1, 1}, "a", 10);
+		tree.put(new long[]{2, 2}, "b", 20);
+		assertEquals("a", tree.remove(1, 1));
+		assertEquals(20, tree.getNextExpiry());
+		//overwrite with a later expiry
+		tree.put(new long[]{2, 2}, "c", 30);
+		assertEquals(30, tree.getNextExpiry());
+		tree.remove(2, 2);
+		assertEquals(Long.MAX_VALUE, tree.getNextExpiry());
+	}
+
+	@Test
+	public void testLargeTtl() {
+		time = 1000;
+		PhTreeTTL<String> tree = PhTreeTTL.create(2, () -> time);
+		tree.put(new long[]{1, 1}, "a", Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, tree.getNextExpiry());
+		time = Long.MAX_VALUE - 1;
+		assertEquals("a", tree.get(1, 1));
+		assertEquals(0, tree.sweep(100));
+		time = -1000;
+		tree.put(new long[]{2, 2}, "b", Long.MIN_VALUE);
+		assertFalse(tree.contains(2, 2));
+	}
+
+	@Test
+	public void testOverwriteAndRemove() {
+		PhTreeTTL<Integer> tree = PhTreeTTL.create(2, () -> time);
+		//stale expiry records must not prevent reclaiming entries
+		for (int r = 0; r < 100; r++) {
+			for (int i = 0; i < 100; i++) {
+				tree.put(new long[]{i, i}, r, 10 + r);
+			}
+		}
+		for (int i = 0; i < 50; i++) {
+			assertEquals(99, (int) tree.remove(i, i));
+		}
+		assertEquals(50, tree.size());
+		assertEquals(109, tree.getNextExpiry());
+		time = 109;
+		assertEquals(50, tree.sweep(Integer.MAX_VALUE));
+		assertEquals(0, tree.size());
+		assertEquals(Long.MAX_VALUE, tree.getNextExpiry());
+	}
+
+	@Test
+	public void testBoundedSweep() {
+		PhTreeTTL<Integer> tree = PhTreeTTL.create(3, () -> time);
+		Random R = new Random(0);
+		for (int i = 0; i < 10000; i++) {
+			tree.put(new long[]{R.nextInt(), R.nextInt(), R.nextInt()}, i, 1 + i % 100);
+		}
+		time = 50;
+		int nLive = 0;
+		PhQueryTTL<Integer> q = tree.query(
+				new long[]{Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE}, 
+				new long[]{Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE});
+		while (q.hasNext()) {
+			assertTrue(q.nextValue() % 100 >= 50);
+			nLive++;
+		}
+		assertEquals(5000, nLive);
+		int n = 0;
+		int s;
+		while ((s = tree.sweep(100)) > 0) {
+			assertTrue(s <= 100);
+			n += s;
+		}
+		assertEquals(5000, n);
+		assertEquals(nLive, tree.size());
+	}
+
+	@Test
+	public void testPutReclaims() {
+		PhTreeTTL<Integer> tree = PhTreeTTL.create(2, () -> time);
+		for (int i = 0; i < 10000; i++) {
+			time = i;
+			tree.put(new long[]{i, -i}, i, 10);
+		}
+		//put() reclaims expired entries, only the last 10 are alive
+		assertTrue(tree.size() < 20);
+	}
+
+	private void checkRandom(int DIM, int range, Random R) {
+		time = 0;
+		PhTreeTTL<Integer> tree = PhTreeTTL.create(DIM, () -> time);
+		HashMap<String, long[]> keys = new HashMap<>();
+		HashMap<String, Long> expiry = new HashMap<>();
+		for (int i = 0; i < 20000; i++) {
+			long[] key = new long[DIM];
+			for (int d = 0; d < DIM; d++) {
+				key[d] = R.nextInt(range) - range/2;
+			}
+			String k = Arrays.toString(key);
+			if (R.nextInt(4) == 0) {
+				tree.remove(key);
+				keys.remove(k);
+				expiry.remove(k);
+			} else {
+				int ttl = 1 + R.nextInt(500);
+				tree.put(key, i, ttl);
+				keys.put(k, key);
+				expiry.put(k, time + ttl);
+			}
+			if (i % 100 == 0) {
+				time += 10;
+				tree.sweep(R.nextInt(50));
+			}
+			if (i % 1000 == 0) {
+				long min = Long.MAX_VALUE;
+				for (String k2: new ArrayList<>(expiry.keySet())) {
+					if (!tree.getInternalTree().contains(keys.get(k2))) {
+						//reclaimed by sweep()
+						assertTrue(expiry.get(k2) <= time);
+						keys.remove(k2);
+						expiry.remove(k2);
+					} else {
+						min = Math.min(min, expiry.get(k2));
+					}
+				}
+				assertEquals(keys.size(), tree.size());
+				assertEquals(min, tree.getNextExpiry());
+			}
+		}
+		time += 1000;
+		int n = tree.size();
+		assertEquals(n, tree.sweep(Integer.MAX_VALUE));
+		assertEquals(0, tree.size());
+		assertEquals(Long.MAX_VALUE, tree.getNextExpiry());
+	}
+
+	@Test
+	public void testRandom3D() {
+		checkRandom(3, 100, new Random(0));
+	}
+
+	@Test
+	public void testRandom10DNI() {
+		checkRandom(10, 4, new Random(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyDimensions() {
+		PhTreeTTL.create(65);
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011-2015 ETH Zurich. All Rights Reserved.
+ *
+ * This software is the proprietary information of ETH Zurich.
+ * Use is subject to license terms.
+ */
+package ch.ethz.globis.pht.test;
+
+import java.util.Random;
+
+import ch.ethz.globis.pht.PhTree;
+
+/**
+ * Measures update() throughput depending on the displacement of the keys.
+ */
+public class TestUpdatePerf {
+
+	public static void main(String[] args) {
+		final int DIM = 3;
+		final int N = 1000000;
+		final int N_UPDATES = 2000000;
+		for (long maxStep = 1; maxStep <= 1L<<24; maxStep <<= 4) {
+			Random R = new Random(0);
+			PhTree<Integer> tree = PhTree.create(DIM);
+			long[][] keys = new long[N][DIM];
+			for (int i = 0; i < N; i++) {
+				for (int d = 0; d < DIM; d++) {
+					keys[i][d] = R.nextInt(1<<30);
+				}
+				tree.put(keys[i], i);
+			}
+			long t0 = System.currentTimeMillis();
+			for (int u = 0; u < N_UPDATES; u++) {
+				int i = R.nextInt(N);
+				long[] k2 = keys[i].clone();
+				for (int d = 0; d < DIM; d++) {
+					k2[d] += (long) (R.nextDouble()*(2*maxStep+1)) - maxStep;
+				}
+				if (tree.update(keys[i], k2) != null) {
+					keys[i] = k2;
+				}
+			}
+			long t1 = System.currentTimeMillis();
+			System.out.println("displacement=" + maxStep + ": " + (t1-t0) + "ms  -> " + 
+					(N_UPDATES*1000L/Math.max(1, t1-t0)) + " updates/s");
+		}
+	}
+}